@@ -0,0 +1,100 @@
+package com.bookapi.book_api;
+
+import com.bookapi.book_api.mapper.CursorMapper;
+import org.bson.BsonBinaryWriter;
+import org.bson.UuidRepresentation;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.UuidCodec;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encodings every book and reservation id goes through: the string form written to JSON
+ * and links and parsed from path variables, the BSON binary written to MongoDB in the {@code STANDARD}
+ * representation the application stores and in the {@code JAVA_LEGACY} one of documents written before it, which
+ * are still read until the UUID migration rewrites them, and the keyset cursor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UuidEncodingBenchmark {
+
+    private static final int IDS = 1024;
+
+    private final UUID[] ids = new UUID[IDS];
+    private final String[] strings = new String[IDS];
+    private int next;
+
+    private final UuidCodec javaLegacyCodec = new UuidCodec(UuidRepresentation.JAVA_LEGACY);
+    private final UuidCodec standardCodec = new UuidCodec(UuidRepresentation.STANDARD);
+    private final CursorMapper cursorMapper = new CursorMapper();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < IDS; i++) {
+            ids[i] = UUID.randomUUID();
+            strings[i] = ids[i].toString();
+        }
+    }
+
+    @Benchmark
+    public String toJsonString() {
+        return ids[nextIndex()].toString();
+    }
+
+    @Benchmark
+    public UUID fromPathVariable() {
+        return UUID.fromString(strings[nextIndex()]);
+    }
+
+    @Benchmark
+    public int toBsonJavaLegacy() {
+        return writeBson(javaLegacyCodec, ids[nextIndex()]);
+    }
+
+    @Benchmark
+    public int toBsonStandard() {
+        return writeBson(standardCodec, ids[nextIndex()]);
+    }
+
+    @Benchmark
+    public String toCursor() {
+        return cursorMapper.toCursor(ScrollPosition.forward(Map.of("id", ids[nextIndex()])));
+    }
+
+    // Cycles through the ids, so the encoding of a single constant cannot be folded away
+    private int nextIndex() {
+        int index = next;
+        next = (next + 1) & (IDS - 1);
+        return index;
+    }
+
+    // Writes the id as the _id of a document, the way the driver encodes it for a query or an insert
+    private static int writeBson(UuidCodec codec, UUID id) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(32);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writer.writeStartDocument();
+            writer.writeName("_id");
+            codec.encode(writer, id, EncoderContext.builder().build());
+            writer.writeEndDocument();
+        }
+        return buffer.getPosition();
+    }
+}
@@ -0,0 +1,278 @@
+package com.bookapi.book_api;
+
+import com.bookapi.book_api.model.Book;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.UuidRepresentation;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.server.context.WebSessionServerSecurityContextRepository;
+import org.springframework.web.server.WebFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.CookieManager;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the request throughput of the servlet stack on Tomcat's platform thread pool, the servlet stack on
+ * virtual threads ({@code spring.threads.virtual.enabled=true}) and the reactive WebFlux stack, while every
+ * database reply is delayed for a while.
+ * <p>
+ * Each operation sends a burst of concurrent authenticated {@code GET /books} requests, so the score is in
+ * requests per second. The applications run in the benchmark JVM against the MongoDB given by the
+ * {@code BENCHMARK_MONGODB_URI} environment variable, by default a local server. The reactive stack is only
+ * on the classpath with the {@code reactive} profile, e.g.
+ * <pre>
+ * mvn -Pbenchmark,reactive test-compile exec:exec -Djmh.args="WebStackBenchmark"
+ * </pre>
+ * The delay is added by a proxy in front of the database rather than in the driver, so it holds up a
+ * blocking request thread but never the reactive driver's event loop. The connection pool is sized above the
+ * number of concurrent requests, otherwise every stack waits on the pool instead of the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class WebStackBenchmark {
+
+    private static final String DEFAULT_URI = "mongodb://localhost:27017/book-api-bench";
+    private static final String REACTIVE_APPLICATION = "com.bookapi.book_api.reactive.ReactiveBookApiApplication";
+    private static final int CONCURRENT_REQUESTS = 1000;
+
+    @Param({"servlet", "servlet-virtual", "reactive"})
+    private String stack;
+
+    // How long every database reply is held back, standing in for a slow or distant server
+    @Param({"20", "500"})
+    private long databaseStallMillis;
+
+    private DelayingProxy databaseProxy;
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient httpClient;
+    private HttpRequest listBooks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String uri = System.getenv().getOrDefault("BENCHMARK_MONGODB_URI", DEFAULT_URI);
+        seedBooks(uri);
+
+        String host = new ConnectionString(uri).getHosts().get(0);
+        databaseProxy = new DelayingProxy(host, databaseStallMillis);
+        String proxiedUri = uri.replace(host, "localhost:" + databaseProxy.port());
+        String poolUri = proxiedUri + (proxiedUri.contains("?") ? "&" : "?") + "maxPoolSize=" + CONCURRENT_REQUESTS;
+
+        Class<?> application = stack.equals("reactive") ? reactiveApplication() : BookApiApplication.class;
+        context = new SpringApplicationBuilder(application, BenchmarkSupport.class)
+                .web(stack.equals("reactive") ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET)
+                // Passed as arguments, which take precedence over application.properties
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + stack.equals("servlet-virtual"),
+                        "--spring.data.mongodb.uri=" + poolUri,
+                        "--spring.data.mongodb.database=book-api-bench",
+                        "--spring.security.oauth2.client.registration.google.client-id=benchmark",
+                        "--spring.security.oauth2.client.registration.google.client-secret=benchmark",
+                        "--logging.level.root=WARN");
+
+        // The client itself must never be the bottleneck, so it sends from virtual threads for every stack
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .cookieHandler(new CookieManager())
+                .executor(clientExecutor)
+                .build();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        listBooks = HttpRequest.newBuilder(URI.create(
+                "http://localhost:" + port + "/books?limit=20&count=none")).build();
+    }
+
+    // Seeded with a template of its own and without the delay, the stacks differ in their repositories
+    // The reactive variant is only compiled with -Preactive, so it is looked up by name
+    private static Class<?> reactiveApplication() {
+        try {
+            return Class.forName(REACTIVE_APPLICATION);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("The reactive stack needs the reactive profile: -Pbenchmark,reactive", ex);
+        }
+    }
+
+    private static void seedBooks(String uri) {
+        try (MongoClient mongoClient = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .uuidRepresentation(UuidRepresentation.STANDARD)
+                .build())) {
+            MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, "book-api-bench");
+            if (mongoTemplate.estimatedCount(Book.class) < 20) {
+                mongoTemplate.insertAll(IntStream.range(0, 20)
+                        .mapToObj(i -> new Book("Book " + i, "Author " + i, "Synopsis"))
+                        .toList());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpClient.close();
+        clientExecutor.close();
+        context.close();
+        databaseProxy.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public void listBooks() {
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(CONCURRENT_REQUESTS);
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            responses.add(httpClient.sendAsync(listBooks, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            int status = response.join().statusCode();
+            if (status != 200) {
+                throw new IllegalStateException("GET /books returned " + status);
+            }
+        }
+    }
+
+    /**
+     * Beans added to the application for the benchmark only. It is registered as a source rather than
+     * annotated, so component scanning never picks it up. Each stack only uses the login of its own kind.
+     */
+    static class BenchmarkSupport {
+
+        // Stands in for a logged in user, a real login needs the OIDC provider
+        static SecurityContext benchmarkUser() {
+            return new SecurityContextImpl(new UsernamePasswordAuthenticationToken(
+                    "benchmark", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+        }
+
+        @Bean
+        FilterRegistrationBean<Filter> benchmarkLogin() {
+            Filter filter = (request, response, chain) -> {
+                HttpSession session = ((HttpServletRequest) request).getSession();
+                if (session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY) == null) {
+                    session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+                            benchmarkUser());
+                }
+                chain.doFilter(request, response);
+            };
+            FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>(filter);
+            registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+            return registration;
+        }
+
+        // Runs before the security web filter chain, which is ordered at -100
+        @Bean
+        @Order(-200)
+        WebFilter benchmarkReactiveLogin() {
+            return (exchange, chain) -> exchange.getSession()
+                    .doOnNext(session -> session.getAttributes().putIfAbsent(
+                            WebSessionServerSecurityContextRepository.DEFAULT_SPRING_SECURITY_CONTEXT_ATTR_NAME,
+                            benchmarkUser()))
+                    .then(chain.filter(exchange));
+        }
+    }
+
+    /**
+     * A TCP proxy to the database that holds back every reply it relays by a fixed delay. Each connection is
+     * relayed by two virtual threads, so replies on different connections are delayed independently.
+     */
+    static final class DelayingProxy implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+        private final ExecutorService relays = Executors.newVirtualThreadPerTaskExecutor();
+
+        DelayingProxy(String target, long delayMillis) throws IOException {
+            String[] hostAndPort = target.split(":");
+            String host = hostAndPort[0];
+            int port = hostAndPort.length > 1 ? Integer.parseInt(hostAndPort[1]) : 27017;
+            serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+            relays.submit(() -> {
+                while (!serverSocket.isClosed()) {
+                    Socket client = serverSocket.accept();
+                    Socket server = new Socket(host, port);
+                    relays.submit(() -> relay(client, server, 0));
+                    relays.submit(() -> relay(server, client, delayMillis));
+                }
+                return null;
+            });
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private static Void relay(Socket from, Socket to, long delayMillis) throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    if (delayMillis > 0) {
+                        Thread.sleep(delayMillis);
+                    }
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException ex) {
+                // The other side closed the connection
+            } finally {
+                from.close();
+                to.close();
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            relays.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.bookapi.book_api.dto;
+
+import com.bookapi.book_api.dto.generated.BookLinks;
+import com.bookapi.book_api.dto.generated.BookListResponse;
+import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.dto.generated.ReservationListResponse;
+import com.bookapi.book_api.dto.generated.ReservationOutput;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the generated list responses to JSON with the {@code ObjectMapper} settings Spring Boot
+ * applies, the largest part of the CPU time of a {@code GET /books} or {@code GET /reservations} request.
+ * The reservations add the ISO-8601 formatting of their {@code reservedAt}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int pageSize;
+
+    private BookListResponse bookListResponse;
+    private ReservationListResponse reservationListResponse;
+    private ObjectWriter bookListWriter;
+    private ObjectWriter reservationListWriter;
+
+    @Setup
+    public void setUp() {
+        List<BookOutput> books = new ArrayList<>();
+        List<ReservationOutput> reservations = new ArrayList<>();
+        OffsetDateTime reservedAt = OffsetDateTime.of(2025, 1, 1, 12, 0, 0, 123_456_000, ZoneOffset.UTC);
+        for (int i = 0; i < pageSize; i++) {
+            UUID bookId = UUID.randomUUID();
+            BookOutput book = new BookOutput();
+            book.setId(bookId);
+            book.setTitle("Title " + i);
+            book.setAuthor("Author " + i);
+            book.setSynopsis("A synopsis of a few sentences, about as long as the ones in the catalog. ".repeat(3));
+            book.setCopies(3);
+            book.setAvailableCopies(2);
+            BookLinks links = new BookLinks();
+            links.setSelf("https://api.example.com/books/" + bookId);
+            links.setReservations("https://api.example.com/books/" + bookId + "/reservations");
+            book.setLinks(links);
+            books.add(book);
+
+            ReservationOutput reservation = new ReservationOutput();
+            reservation.setId(UUID.randomUUID());
+            reservation.setBookId(bookId);
+            reservation.setUserId(UUID.randomUUID());
+            reservation.setState(ReservationOutput.StateEnum.RESERVED);
+            reservation.setReservedAt(reservedAt.plusMinutes(i));
+            reservations.add(reservation);
+        }
+
+        bookListResponse = new BookListResponse();
+        bookListResponse.setItems(books);
+        bookListResponse.setTotalCount(10 * pageSize);
+        bookListResponse.setOffset(0);
+        bookListResponse.setLimit(pageSize);
+        bookListResponse.setNext("https://api.example.com/books?limit=" + pageSize + "&after=aWQ9dTo");
+
+        reservationListResponse = new ReservationListResponse();
+        reservationListResponse.setItems(reservations);
+        reservationListResponse.setLimit(pageSize);
+
+        // The builder Spring Boot configures its ObjectMapper with, dates are written as ISO-8601 strings
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        bookListWriter = builder.build().writerFor(BookListResponse.class);
+        reservationListWriter = builder.build().writerFor(ReservationListResponse.class);
+    }
+
+    @Benchmark
+    public byte[] writeBookListResponse() throws JsonProcessingException {
+        return bookListWriter.writeValueAsBytes(bookListResponse);
+    }
+
+    @Benchmark
+    public byte[] writeReservationListResponse() throws JsonProcessingException {
+        return reservationListWriter.writeValueAsBytes(reservationListResponse);
+    }
+}
@@ -0,0 +1,112 @@
+package com.bookapi.book_api.mapper;
+
+import com.bookapi.book_api.controller.BookController;
+import com.bookapi.book_api.controller.ReservationController;
+import com.bookapi.book_api.dto.generated.BookLinks;
+import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Compares building the {@code self} and {@code reservations} links of a list response with
+ * {@code linkTo(methodOn(...))} for every book against the precompiled {@link LinkTemplate}s.
+ * <p>
+ * Each invocation maps one page of books inside a fresh request, so the once-per-request base URI
+ * resolution is part of the measured cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookLinkBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int pageSize;
+
+    private List<Book> books;
+    private BookMapper bookMapper;
+
+    @Setup
+    public void setUp() {
+        books = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            books.add(new Book("Title " + i, "Author " + i, "Synopsis " + i));
+        }
+        bookMapper = new BookMapper(new CursorMapper(), new LinkResolver());
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public List<BookOutput> linkBuilderPerBook() {
+        startRequest();
+        List<BookOutput> outputs = new ArrayList<>(books.size());
+        for (Book book : books) {
+            outputs.add(toBookOutputWithLinkBuilder(book));
+        }
+        return outputs;
+    }
+
+    @Benchmark
+    public List<BookOutput> precompiledTemplates() {
+        startRequest();
+        List<BookOutput> outputs = new ArrayList<>(books.size());
+        for (Book book : books) {
+            outputs.add(bookMapper.toBookOutput(book));
+        }
+        return outputs;
+    }
+
+    private void startRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books");
+        request.setServerName("api.example.com");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    // The mapping BookMapper used before the link templates, kept here as the baseline
+    private BookOutput toBookOutputWithLinkBuilder(Book book) {
+        BookOutput dto = new BookOutput();
+        dto.setId(book.getId());
+        dto.setTitle(book.getTitle());
+        dto.setAuthor(book.getAuthor());
+        dto.setSynopsis(book.getSynopsis());
+
+        BookLinks links = new BookLinks();
+        links.setSelf(linkTo(methodOn(BookController.class)
+                .getBookById(book.getId(), null))
+                .withSelfRel()
+                .getHref());
+        links.setReservations(linkTo(methodOn(ReservationController.class)
+                .createReservation(book.getId()))
+                .withRel("reservations")
+                .getHref());
+        dto.setLinks(links);
+        return dto;
+    }
+}
@@ -0,0 +1,115 @@
+package com.bookapi.book_api.mapper;
+
+import com.bookapi.book_api.dto.generated.BookListResponse;
+import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.model.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Window;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link BookMapper} conversions behind {@code GET /books/{id}} and the three kinds of
+ * {@code GET /books} pages: an offset page with an exact count, a slice with an estimated count and a
+ * cursor window.
+ * <p>
+ * Each invocation runs inside a fresh request, as it does in the controller, so resolving the base URI
+ * and the {@code next} link are part of the measured cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookMapperBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int pageSize;
+
+    private Book book;
+    private Page<Book> page;
+    private Slice<Book> slice;
+    private Window<Book> window;
+    private BookMapper bookMapper;
+
+    @Setup
+    public void setUp() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            Book book = new Book("Title " + i, "Author " + i, "Synopsis " + i);
+            book.setCopies(3);
+            book.setAvailableCopies(2);
+            books.add(book);
+        }
+        book = books.get(0);
+
+        // Every page has a next one, so the next link is always built
+        PageRequest pageable = PageRequest.of(1, pageSize);
+        page = new PageImpl<>(books, pageable, 10L * pageSize);
+        slice = new SliceImpl<>(books, pageable, true);
+        window = Window.from(books, i -> ScrollPosition.forward(Map.of("id", books.get(i).getId())), true);
+
+        bookMapper = new BookMapper(new CursorMapper(), new LinkResolver());
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public BookOutput toBookOutput() {
+        startRequest("/books/" + book.getId());
+        return bookMapper.toBookOutput(book);
+    }
+
+    @Benchmark
+    public BookListResponse toBookListResponseFromPage() {
+        startRequest("/books");
+        return bookMapper.toBookListResponse(page);
+    }
+
+    @Benchmark
+    public BookListResponse toBookListResponseFromSlice() {
+        startRequest("/books");
+        return bookMapper.toBookListResponse(slice, 10L * pageSize);
+    }
+
+    @Benchmark
+    public BookListResponse toBookListResponseFromWindow() {
+        startRequest("/books");
+        return bookMapper.toBookListResponse(window, pageSize);
+    }
+
+    private void startRequest(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServerName("api.example.com");
+        request.setQueryString("limit=" + pageSize);
+        request.addParameter("limit", String.valueOf(pageSize));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
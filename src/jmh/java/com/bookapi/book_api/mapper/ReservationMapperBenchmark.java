@@ -0,0 +1,88 @@
+package com.bookapi.book_api.mapper;
+
+import com.bookapi.book_api.dto.generated.ReservationListResponse;
+import com.bookapi.book_api.model.Reservation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ReservationMapper} conversion of a page of reservations, and on its own the
+ * {@code Instant} to {@code OffsetDateTime} conversion it applies to every {@code reservedAt}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationMapperBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int pageSize;
+
+    private Slice<Reservation> slice;
+    private Instant[] instants;
+    private int next;
+    private ReservationMapper reservationMapper;
+
+    @Setup
+    public void setUp() {
+        UUID userId = UUID.randomUUID();
+        List<Reservation> reservations = new ArrayList<>();
+        instants = new Instant[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            Reservation reservation = new Reservation(UUID.randomUUID(), userId);
+            reservation.setReservedAt(reservation.getReservedAt().minusSeconds(i * 3_600L));
+            reservations.add(reservation);
+            instants[i] = reservation.getReservedAt();
+        }
+        slice = new SliceImpl<>(reservations, PageRequest.of(0, pageSize), true);
+
+        reservationMapper = new ReservationMapper(new CursorMapper());
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public ReservationListResponse toReservationListResponse() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservations");
+        request.setServerName("api.example.com");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        return reservationMapper.toReservationListResponse(slice, null);
+    }
+
+    // Cycles through the instants, so the conversion of a single constant cannot be folded away
+    @Benchmark
+    public OffsetDateTime toOffsetDateTime() {
+        Instant instant = instants[next];
+        next = next + 1 == instants.length ? 0 : next + 1;
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
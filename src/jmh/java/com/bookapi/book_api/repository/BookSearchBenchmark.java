@@ -0,0 +1,153 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.config.MongoIndexManager;
+import com.bookapi.book_api.model.Book;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.UuidRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of {@code /books/search} queries through {@link BookRepository} against a real
+ * MongoDB holding a large catalog, one million books by default.
+ * <p>
+ * The books are generated from a fixed vocabulary whose words follow a skewed distribution, so a
+ * "common" term matches a large share of the catalog and a "rare" term only a handful of books. The
+ * catalog is seeded once and reused by later runs as long as it has the requested size. The server is
+ * taken from the {@code BENCHMARK_MONGODB_URI} environment variable, by default a local server, e.g.
+ * <pre>
+ * BENCHMARK_MONGODB_URI=mongodb://localhost:27017/book-api-bench \
+ *     mvn -Pbenchmark test-compile exec:exec -Djmh.args="BookSearchBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class BookSearchBenchmark {
+
+    private static final String DEFAULT_URI = "mongodb://localhost:27017/book-api-bench";
+    private static final int VOCABULARY_SIZE = 5_000;
+    private static final int SEED_BATCH_SIZE = 10_000;
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+
+    @Param({"1000000"})
+    private int catalogSize;
+
+    @Param({"common", "rare", "twoTerms", "phrase"})
+    private String query;
+
+    private MongoClient mongoClient;
+    private BookRepository bookRepository;
+    private TextCriteria criteria;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String uri = System.getenv().getOrDefault("BENCHMARK_MONGODB_URI", DEFAULT_URI);
+        // The same UUID representation as the application writes
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .uuidRepresentation(UuidRepresentation.STANDARD)
+                .build());
+        MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, new ConnectionString(uri).getDatabase());
+
+        seedCatalog(mongoTemplate);
+
+        bookRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(BookRepository.class,
+                RepositoryFragments.just(new BookRepositoryCustomImpl(mongoTemplate, new LegacyUuids())));
+        criteria = TextCriteria.forDefaultLanguage().matching(switch (query) {
+            case "common" -> word(0);
+            case "rare" -> word(VOCABULARY_SIZE - 1);
+            case "twoTerms" -> word(10) + " " + word(500);
+            case "phrase" -> "\"" + word(1) + " " + word(2) + "\"";
+            default -> throw new IllegalArgumentException("Unknown query: " + query);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mongoClient.close();
+    }
+
+    // The first page with count=none, a single ranked query
+    @Benchmark
+    public Slice<Book> searchSlice() {
+        return bookRepository.findSliceByOrderByScoreDesc(criteria, FIRST_PAGE);
+    }
+
+    // The first page with the default count=exact, which also counts every match
+    @Benchmark
+    public Page<Book> searchPage() {
+        return bookRepository.findAllByOrderByScoreDesc(criteria, FIRST_PAGE);
+    }
+
+    private void seedCatalog(MongoTemplate mongoTemplate) {
+        if (mongoTemplate.getCollection(mongoTemplate.getCollectionName(Book.class)).countDocuments() != catalogSize) {
+            mongoTemplate.dropCollection(Book.class);
+            Random random = new Random(42);
+            List<Book> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = 0; i < catalogSize; i++) {
+                batch.add(new Book(words(random, 3), words(random, 2), words(random, 40)));
+                if (batch.size() == SEED_BATCH_SIZE) {
+                    mongoTemplate.insert(batch, Book.class);
+                    batch.clear();
+                }
+            }
+            mongoTemplate.insert(batch, Book.class);
+        }
+
+        // Create the text index the same way the application does at startup
+        new MongoIndexManager(mongoTemplate, new QueryPlanAuditor(mongoTemplate, new LegacyUuids())).ensureIndexes();
+    }
+
+    private String words(Random random, int count) {
+        StringJoiner joiner = new StringJoiner(" ");
+        for (int i = 0; i < count; i++) {
+            // Cubing a uniform value skews the picks towards the start of the vocabulary
+            double skewed = Math.pow(random.nextDouble(), 3);
+            joiner.add(word((int) (skewed * VOCABULARY_SIZE)));
+        }
+        return joiner.toString();
+    }
+
+    private String word(int index) {
+        // Letters only, so the stemmer keeps every word distinct
+        StringBuilder word = new StringBuilder("w");
+        int value = index;
+        do {
+            word.append((char) ('a' + value % 26));
+            value /= 26;
+        } while (value > 0);
+        return word.append("x").toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures {@code /books/suggest} lookups in a {@link BookSuggestionIndex} built from a generated
+ * catalog, and prints the estimated memory the index holds per key once it is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BookSuggestionBenchmark {
+
+    private static final String[] SYLLABLES = {"an", "ber", "cor", "dra", "el", "fin", "gar", "hol", "is", "jor",
+            "kel", "lin", "mor", "nor", "or", "pel", "quin", "ros", "sar", "tor", "ul", "ven", "wyn", "xan", "yor", "zel"};
+
+    @Param({"100000", "1000000"})
+    private int catalogSize;
+
+    // A single letter matches a large share of the keys, a longer prefix only a few
+    @Param({"t", "dra", "dra mor"})
+    private String prefix;
+
+    private BookSuggestionIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<Book> books = IntStream.range(0, catalogSize)
+                .mapToObj(i -> new Book(words(random, 3), words(random, 2), "Synopsis"))
+                .toList();
+
+        // Only streamAll is called while the index is built
+        BookRepository bookRepository = (BookRepository) Proxy.newProxyInstance(
+                BookRepository.class.getClassLoader(), new Class<?>[] {BookRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "streamAll" -> books.stream();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        index = new BookSuggestionIndex(bookRepository, meterRegistry);
+        index.rebuild();
+        System.out.printf("%nBook suggestion index: %.0f keys, about %.0f bytes per key%n",
+                meterRegistry.get("book.suggestions.entries").gauge().value(),
+                meterRegistry.get("book.suggestions.memory.per.entry").gauge().value());
+    }
+
+    @Benchmark
+    public List<BookSuggestionIndex.Suggestion> suggest() {
+        return index.suggest(prefix, 10);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                words.append(' ');
+            }
+            int syllables = 2 + random.nextInt(2);
+            for (int j = 0; j < syllables; j++) {
+                words.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+        }
+        return Character.toUpperCase(words.charAt(0)) + words.substring(1);
+    }
+}
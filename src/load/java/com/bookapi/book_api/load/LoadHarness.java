@@ -0,0 +1,346 @@
+package com.bookapi.book_api.load;
+
+import com.bookapi.book_api.BookApiApplication;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.repository.BookRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import com.bookapi.book_api.repository.UserRepository;
+import com.bookapi.book_api.service.BookSuggestionIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mixed workload against the application at a fixed rate and reports the latency percentiles
+ * and throughput of every endpoint, e.g.
+ * <pre>
+ * mvn -Pload test-compile exec:exec -Dload.args="--rate=500 --duration=120 --baseline=load-baseline.json"
+ * </pre>
+ * The application runs in this JVM on a random port, against the MongoDB given by {@code --mongodb-uri} or
+ * the {@code LOAD_MONGODB_URI} environment variable, by default a local {@code book-api-load} database.
+ * Its books, users and reservations are replaced by a generated catalog on every run, so runs with the same
+ * options and seed send the same requests.
+ * <p>
+ * Requests are sent on schedule whether or not the earlier ones have been answered (an open workload), with
+ * at most {@code --concurrency} of them in flight. The report is written to {@code --report} and compared to
+ * {@code --baseline} when given; the run exits with status 1 when an endpoint regressed by more than
+ * {@code --tolerance}. {@code --save-baseline} replaces the baseline with this run instead.
+ */
+public class LoadHarness {
+
+    private static final String[] WORDS = {"river", "shadow", "garden", "winter", "empire", "silver", "ocean",
+            "forest", "mirror", "harbor", "crown", "desert", "lantern", "stone", "thunder", "island"};
+    private static final int PAGE_SIZE = 20;
+    private static final int BOOK_COPIES = 5;
+    private static final String ADMIN = "admin";
+
+    private final LoadOptions options;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final Map<Operation, Recorder> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<Integer, LongAdder>> statuses = new EnumMap<>(Operation.class);
+    private final ConcurrentLinkedQueue<OpenReservation> reservations = new ConcurrentLinkedQueue<>();
+    private final List<UUID> bookIds = new ArrayList<>();
+    private String baseUri;
+
+    // A reservation made during the run, cancelled later by the same user
+    private record OpenReservation(String user, String path) {
+    }
+
+    // Everything a request needs is drawn on the scheduling thread, so the sequence only depends on the seed
+    private record Request(Operation operation, long dueNanos, boolean measured, int book, int user, int word) {
+    }
+
+    LoadHarness(LoadOptions options) {
+        this.options = options;
+        // Tomcat serves plain HTTP/1.1, an upgrade attempt on every connection would only add to the latency
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+            statuses.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        // DevTools would restart main in a new class loader, with the application's arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> applicationArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.data.mongodb.uri=" + options.mongodbUri(),
+                "--logging.level.root=WARN"));
+        // Passed as arguments, which take precedence over application.properties
+        applicationArgs.addAll(options.applicationArgs());
+
+        boolean regressed;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                BookApiApplication.class, LoadSupport.class).run(applicationArgs.toArray(String[]::new))) {
+            LoadHarness harness = new LoadHarness(options);
+            harness.seed(context);
+            regressed = harness.run();
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    void seed(ConfigurableApplicationContext context) {
+        baseUri = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        // Deleting the documents rather than dropping the database keeps the indexes made at startup
+        context.getBean(ReservationRepository.class).deleteAll();
+        BookRepository bookRepository = context.getBean(BookRepository.class);
+        bookRepository.deleteAll();
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        userRepository.deleteAll();
+
+        SplittableRandom random = new SplittableRandom(options.seed());
+        List<Book> books = new ArrayList<>(options.books());
+        for (int i = 0; i < options.books(); i++) {
+            Book book = new Book(title(random), "Author " + i, "A synopsis about the " + title(random));
+            book.setCopies(BOOK_COPIES);
+            book.setAvailableCopies(BOOK_COPIES);
+            books.add(book);
+        }
+        bookRepository.insert(books);
+        books.forEach(book -> bookIds.add(book.getId()));
+        context.getBean(BookSuggestionIndex.class).rebuild();
+
+        LoadSupport loadSupport = context.getBean(LoadSupport.class);
+        loadSupport.register(ADMIN, userRepository.save(new User("admin@load.example.com", "Admin", "ROLE_ADMIN")));
+        for (int i = 0; i < options.users(); i++) {
+            User user = new User("user" + i + "@load.example.com", "User " + i, "ROLE_USER");
+            loadSupport.register(userName(i), userRepository.save(user));
+        }
+    }
+
+    boolean run() throws Exception {
+        Operation[] weighted = weightedOperations();
+        SplittableRandom random = new SplittableRandom(options.seed());
+        Semaphore inFlight = new Semaphore(options.concurrency());
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long warmupNanos = TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long endNanos = warmupNanos + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        String startedAt = Instant.now().toString();
+
+        System.out.printf("Sending %d req/s for %d s after a %d s warmup, at most %d in flight%n",
+                options.rate(), options.durationSeconds(), options.warmupSeconds(), options.concurrency());
+        long sent = 0;
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i * periodNanos < endNanos; i++) {
+                long due = start + i * periodNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Request request = new Request(weighted[random.nextInt(weighted.length)], due,
+                        i * periodNanos >= warmupNanos, random.nextInt(bookIds.size()),
+                        random.nextInt(options.users()), random.nextInt(WORDS.length));
+                // A full pipeline holds back the next requests, the time they wait still counts as latency
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        send(request);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                if (request.measured()) {
+                    sent++;
+                }
+            }
+        }
+
+        // Until the last answer, which is later than planned when the server fell behind
+        double measuredSeconds = (System.nanoTime() - start - warmupNanos) / 1e9;
+
+        LoadReport report = report(startedAt, sent, measuredSeconds);
+        System.out.println();
+        System.out.print(report.toTable());
+        Files.createDirectories(options.report().toAbsolutePath().getParent());
+        objectMapper.writeValue(options.report().toFile(), report);
+        System.out.println("Report written to " + options.report());
+        return compareToBaseline(report);
+    }
+
+    private void send(Request request) {
+        Operation operation = request.operation();
+        int status;
+        try {
+            status = switch (operation) {
+                case LIST_BOOKS -> get(userName(request.user()), "/books?limit=" + PAGE_SIZE + "&count=estimated"
+                        + "&offset=" + request.book() / PAGE_SIZE * PAGE_SIZE);
+                case GET_BOOK -> get(userName(request.user()), "/books/" + bookIds.get(request.book()));
+                case SEARCH_BOOKS -> get(userName(request.user()),
+                        "/books/search?limit=" + PAGE_SIZE + "&q=" + WORDS[request.word()]);
+                case SUGGEST_BOOKS -> get(userName(request.user()),
+                        "/books/suggest?q=" + WORDS[request.word()].substring(0, 3));
+                case CREATE_BOOK -> write(ADMIN, "POST", "/books", bookInput(request));
+                case UPDATE_BOOK -> write(ADMIN, "PUT", "/books/" + bookIds.get(request.book()), bookInput(request));
+                case LIST_RESERVATIONS -> get(userName(request.user()), "/reservations?limit=" + PAGE_SIZE);
+                case RESERVE -> reserve(request);
+                case CANCEL -> cancel(request);
+            };
+        } catch (IOException ex) {
+            status = -1;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (request.measured()) {
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - request.dueNanos());
+            latencies.get(operation).recordValue(Math.max(latencyMicros, 1));
+            statuses.get(operation).computeIfAbsent(status, key -> new LongAdder()).increment();
+            if (!operation.isExpected(status)) {
+                errors.get(operation).increment();
+            }
+        }
+    }
+
+    private int reserve(Request request) throws IOException, InterruptedException {
+        String user = userName(request.user());
+        String path = "/books/" + bookIds.get(request.book()) + "/reservations";
+        HttpResponse<String> response = exchange(user, "POST", path, null);
+        if (response.statusCode() == 201) {
+            String reservationId = objectMapper.readTree(response.body()).get("id").asText();
+            reservations.add(new OpenReservation(user, path + "/" + reservationId));
+        }
+        return response.statusCode();
+    }
+
+    // Cancels the oldest open reservation, which is as good as a reservation when there is none yet
+    private int cancel(Request request) throws IOException, InterruptedException {
+        OpenReservation reservation = reservations.poll();
+        if (reservation == null) {
+            return Operation.CANCEL.isExpected(reserve(request)) ? 204 : -1;
+        }
+        return exchange(reservation.user(), "DELETE", reservation.path(), null).statusCode();
+    }
+
+    private int get(String user, String path) throws IOException, InterruptedException {
+        return exchange(user, "GET", path, null).statusCode();
+    }
+
+    private int write(String user, String method, String path, String body) throws IOException, InterruptedException {
+        return exchange(user, method, path, body).statusCode();
+    }
+
+    private HttpResponse<String> exchange(String user, String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUri + path))
+                .header(LoadSupport.USER_HEADER, user);
+        if (body != null) {
+            builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(body));
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String bookInput(Request request) throws IOException {
+        Map<String, Object> input = new LinkedHashMap<>();
+        input.put("title", "The " + WORDS[request.word()] + " " + request.book());
+        input.put("author", "Author " + request.book());
+        input.put("synopsis", "A synopsis about the " + WORDS[request.word()]);
+        input.put("copies", BOOK_COPIES);
+        return objectMapper.writeValueAsString(input);
+    }
+
+    private LoadReport report(String startedAt, long sent, double measuredSeconds) {
+        Map<String, LoadReport.EndpointStats> endpoints = new LinkedHashMap<>();
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        options.mix().forEach((operation, weight) -> {
+            mix.put(operation.key(), weight);
+            Map<Integer, Long> statusCounts = new TreeMap<>();
+            statuses.get(operation).forEach((status, count) -> statusCounts.put(status, count.sum()));
+            endpoints.put(operation.endpoint(), LoadReport.EndpointStats.of(
+                    latencies.get(operation).getIntervalHistogram(), errors.get(operation).sum(), statusCounts,
+                    measuredSeconds));
+        });
+        return new LoadReport(startedAt, options.durationSeconds(), options.rate(),
+                sent / measuredSeconds, options.concurrency(), mix, endpoints);
+    }
+
+    private boolean compareToBaseline(LoadReport report) throws IOException {
+        if (options.baseline() == null) {
+            return false;
+        }
+        if (options.saveBaseline() || !Files.exists(options.baseline())) {
+            objectMapper.writeValue(options.baseline().toFile(), report);
+            System.out.println("Baseline written to " + options.baseline());
+            return false;
+        }
+
+        LoadReport baseline = objectMapper.readValue(options.baseline().toFile(), LoadReport.class);
+        // Throughput and queueing depend on the rate and the mix, a baseline of another workload says nothing
+        if (baseline.targetRate() != report.targetRate() || baseline.concurrency() != report.concurrency()
+                || !baseline.mix().equals(report.mix())) {
+            System.out.printf("The baseline %s was recorded with another rate, concurrency or mix, "
+                    + "record a new one with --save-baseline%n", options.baseline());
+            return true;
+        }
+        List<String> regressions = report.regressionsAgainst(baseline, options.tolerance());
+        if (regressions.isEmpty()) {
+            System.out.printf("No regression against %s (tolerance %.0f%%)%n",
+                    options.baseline(), options.tolerance() * 100);
+            return false;
+        }
+        System.out.printf("REGRESSIONS against %s (tolerance %.0f%%):%n",
+                options.baseline(), options.tolerance() * 100);
+        regressions.forEach(regression -> System.out.println("  " + regression));
+        return true;
+    }
+
+    // Each operation appears as often as its weight, so a uniform draw follows the mix
+    private Operation[] weightedOperations() {
+        List<Operation> weighted = new ArrayList<>();
+        options.mix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(operation);
+            }
+        });
+        return weighted.toArray(Operation[]::new);
+    }
+
+    private static String title(SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String userName(int index) {
+        return "user" + index;
+    }
+}
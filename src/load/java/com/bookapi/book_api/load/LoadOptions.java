@@ -0,0 +1,98 @@
+package com.bookapi.book_api.load;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The settings of a load run, read from {@code --name=value} arguments. Arguments starting with
+ * {@code --spring.} or {@code --server.} are passed on to the application instead, e.g.
+ * {@code --spring.threads.virtual.enabled=true}.
+ */
+record LoadOptions(
+        String mongodbUri,
+        int durationSeconds,
+        int warmupSeconds,
+        int rate,
+        int concurrency,
+        Map<Operation, Integer> mix,
+        int books,
+        int users,
+        long seed,
+        Path report,
+        Path baseline,
+        boolean saveBaseline,
+        double tolerance,
+        List<String> applicationArgs) {
+
+    static final String DEFAULT_MIX =
+            "list=35,get=25,search=5,suggest=5,reservations=8,reserve=10,cancel=8,update=3,create=1";
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--spring.") || arg.startsWith("--server.")) {
+                applicationArgs.add(arg);
+                continue;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String[] nameAndValue = arg.substring(2).split("=", 2);
+            values.put(nameAndValue[0], nameAndValue.length > 1 ? nameAndValue[1] : "true");
+        }
+
+        LoadOptions options = new LoadOptions(
+                values.getOrDefault("mongodb-uri",
+                        System.getenv().getOrDefault("LOAD_MONGODB_URI", "mongodb://localhost:27017/book-api-load")),
+                Integer.parseInt(values.getOrDefault("duration", "60")),
+                Integer.parseInt(values.getOrDefault("warmup", "10")),
+                Integer.parseInt(values.getOrDefault("rate", "200")),
+                Integer.parseInt(values.getOrDefault("concurrency", "64")),
+                parseMix(values.getOrDefault("mix", DEFAULT_MIX)),
+                Integer.parseInt(values.getOrDefault("books", "1000")),
+                Integer.parseInt(values.getOrDefault("users", "100")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Path.of(values.getOrDefault("report", "target/load-report.json")),
+                values.containsKey("baseline") ? Path.of(values.get("baseline")) : null,
+                Boolean.parseBoolean(values.getOrDefault("save-baseline", "false")),
+                Double.parseDouble(values.getOrDefault("tolerance", "0.25")),
+                List.copyOf(applicationArgs));
+
+        List<String> known = List.of("mongodb-uri", "duration", "warmup", "rate", "concurrency", "mix", "books",
+                "users", "seed", "report", "baseline", "save-baseline", "tolerance");
+        values.keySet().stream()
+                .filter(name -> !known.contains(name))
+                .findFirst()
+                .ifPresent(name -> {
+                    throw new IllegalArgumentException("Unknown option --" + name + ", expected one of " + known);
+                });
+        if (options.saveBaseline() && options.baseline() == null) {
+            throw new IllegalArgumentException("--save-baseline needs --baseline=<file>");
+        }
+        if (options.rate() <= 0 || options.concurrency() <= 0 || options.durationSeconds() <= 0) {
+            throw new IllegalArgumentException("--rate, --concurrency and --duration must be positive");
+        }
+        return options;
+    }
+
+    // e.g. list=60,get=30,reserve=10, the weights need not add up to 100
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split("=", 2);
+            int weight = Integer.parseInt(keyAndWeight[1]);
+            if (weight > 0) {
+                weights.put(Operation.fromKey(keyAndWeight[0]), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operation with a positive weight: " + mix);
+        }
+        return weights;
+    }
+}
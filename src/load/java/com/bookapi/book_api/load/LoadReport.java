@@ -0,0 +1,101 @@
+package com.bookapi.book_api.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The outcome of a load run, written as JSON so it can be kept as the baseline of the next runs.
+ * Latencies are in milliseconds and measured from when a request was due rather than when it was sent,
+ * so a server that falls behind the rate shows up in the tail instead of lowering the rate.
+ */
+record LoadReport(
+        String startedAt,
+        int durationSeconds,
+        int targetRate,
+        double achievedRate,
+        int concurrency,
+        Map<String, Integer> mix,
+        Map<String, EndpointStats> endpoints) {
+
+    // Latencies this close to the baseline are within the timer's and the scheduler's noise
+    private static final double MIN_LATENCY_CHANGE_MILLIS = 1.0;
+    private static final double MAX_ERROR_RATE_INCREASE = 0.01;
+
+    record EndpointStats(
+            long count,
+            long errors,
+            double throughput,
+            double p50Millis,
+            double p99Millis,
+            double p999Millis,
+            double maxMillis,
+            Map<Integer, Long> statuses) {
+
+        static EndpointStats of(Histogram latencyMicros, long errors, Map<Integer, Long> statuses,
+                                double measuredSeconds) {
+            return new EndpointStats(
+                    latencyMicros.getTotalCount(),
+                    errors,
+                    latencyMicros.getTotalCount() / measuredSeconds,
+                    latencyMicros.getValueAtPercentile(50) / 1000.0,
+                    latencyMicros.getValueAtPercentile(99) / 1000.0,
+                    latencyMicros.getValueAtPercentile(99.9) / 1000.0,
+                    latencyMicros.getMaxValue() / 1000.0,
+                    statuses);
+        }
+
+        double errorRate() {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+    }
+
+    String toTable() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+                "%-52s %8s %7s %9s %9s %9s %9s %9s%n",
+                "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        endpoints.forEach((endpoint, stats) -> table.append(String.format(Locale.ROOT,
+                "%-52s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint, stats.count(), stats.errors(), stats.throughput(),
+                stats.p50Millis(), stats.p99Millis(), stats.p999Millis(), stats.maxMillis())));
+        table.append(String.format(Locale.ROOT, "Target %d req/s, achieved %.1f req/s%n", targetRate, achievedRate));
+        return table.toString();
+    }
+
+    /**
+     * Lists the endpoints that got slower, handled less or failed more than in the baseline, beyond the given
+     * relative tolerance. Endpoints missing from either report are not compared.
+     */
+    List<String> regressionsAgainst(LoadReport baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        endpoints.forEach((endpoint, current) -> {
+            EndpointStats previous = baseline.endpoints().get(endpoint);
+            if (previous == null) {
+                return;
+            }
+            checkLatency(regressions, endpoint, "p50", current.p50Millis(), previous.p50Millis(), tolerance);
+            checkLatency(regressions, endpoint, "p99", current.p99Millis(), previous.p99Millis(), tolerance);
+            checkLatency(regressions, endpoint, "p999", current.p999Millis(), previous.p999Millis(), tolerance);
+            if (current.throughput() < previous.throughput() * (1 - tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s throughput %.1f req/s, was %.1f req/s",
+                        endpoint, current.throughput(), previous.throughput()));
+            }
+            if (current.errorRate() > previous.errorRate() + MAX_ERROR_RATE_INCREASE) {
+                regressions.add(String.format(Locale.ROOT, "%s error rate %.2f%%, was %.2f%%",
+                        endpoint, current.errorRate() * 100, previous.errorRate() * 100));
+            }
+        });
+        return regressions;
+    }
+
+    private static void checkLatency(List<String> regressions, String endpoint, String percentile,
+                                     double current, double previous, double tolerance) {
+        if (current > previous * (1 + tolerance) && current - previous > MIN_LATENCY_CHANGE_MILLIS) {
+            regressions.add(String.format(Locale.ROOT, "%s %s %.2f ms, was %.2f ms",
+                    endpoint, percentile, current, previous));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.bookapi.book_api.load;
+
+import com.bookapi.book_api.model.CustomOAuth2User;
+import com.bookapi.book_api.model.User;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Beans added to the application for the load harness only. It is registered as a source rather than
+ * annotated, so component scanning never picks it up.
+ * <p>
+ * A request names its synthetic user in the {@value #USER_HEADER} header. The user is logged in for that
+ * request only, with the same {@link CustomOAuth2User} principal an OIDC login produces, so the harness
+ * needs neither the identity provider nor sessions.
+ */
+public class LoadSupport {
+
+    static final String USER_HEADER = "X-Load-User";
+
+    private final Map<String, SecurityContext> users = new ConcurrentHashMap<>();
+
+    void register(String name, User user) {
+        DefaultOidcUser oidcUser = new DefaultOidcUser(List.of(), new OidcIdToken("load-test", Instant.now(),
+                Instant.now().plusSeconds(86_400), Map.of("sub", name, "email", user.getEmail())));
+        CustomOAuth2User principal = new CustomOAuth2User(oidcUser, user);
+        users.put(name, new SecurityContextImpl(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())));
+    }
+
+    // Runs before the security filter chain, which reads the context from the request attribute
+    @Bean
+    FilterRegistrationBean<Filter> loadLogin() {
+        Filter filter = (request, response, chain) -> {
+            String name = ((HttpServletRequest) request).getHeader(USER_HEADER);
+            SecurityContext context = name != null ? users.get(name) : null;
+            if (context != null) {
+                request.setAttribute(RequestAttributeSecurityContextRepository.DEFAULT_REQUEST_ATTR_NAME, context);
+            }
+            chain.doFilter(request, response);
+        };
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
@@ -0,0 +1,52 @@
+package com.bookapi.book_api.load;
+
+import java.util.Set;
+
+/**
+ * The requests the harness sends, each reported as its own endpoint. A request whose status is not one of
+ * the expected ones counts as an error.
+ */
+enum Operation {
+
+    LIST_BOOKS("list", "GET /books", Set.of(200)),
+    GET_BOOK("get", "GET /books/{bookId}", Set.of(200)),
+    SEARCH_BOOKS("search", "GET /books/search", Set.of(200)),
+    SUGGEST_BOOKS("suggest", "GET /books/suggest", Set.of(200)),
+    CREATE_BOOK("create", "POST /books", Set.of(201)),
+    UPDATE_BOOK("update", "PUT /books/{bookId}", Set.of(200)),
+    LIST_RESERVATIONS("reservations", "GET /reservations", Set.of(200)),
+    // A book without copies left, or a second reservation of the same book, is turned down as expected
+    RESERVE("reserve", "POST /books/{bookId}/reservations", Set.of(201, 409)),
+    CANCEL("cancel", "DELETE /books/{bookId}/reservations/{reservationId}", Set.of(204));
+
+    private final String key;
+    private final String endpoint;
+    private final Set<Integer> expectedStatuses;
+
+    Operation(String key, String endpoint, Set<Integer> expectedStatuses) {
+        this.key = key;
+        this.endpoint = endpoint;
+        this.expectedStatuses = expectedStatuses;
+    }
+
+    String key() {
+        return key;
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    boolean isExpected(int status) {
+        return expectedStatuses.contains(status);
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation in the mix: " + key);
+    }
+}
@@ -2,12 +2,22 @@ package com.bookapi.book_api;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// The reactive variant, built with -Preactive, is a separate application with its own driver and beans
+@SpringBootApplication(excludeName = {
+		"org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration",
+		"org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration",
+		"org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration"})
 @EnableMongoRepositories(basePackages = "com.bookapi.book_api.repository")
-@ComponentScan(basePackages = "com.bookapi.book_api")
+@ComponentScan(basePackages = "com.bookapi.book_api",
+		excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "com\\.bookapi\\.book_api\\.reactive\\..*"))
+@EnableScheduling
+@EnableCaching
 public class BookApiApplication {
 
 	public static void main(String[] args) {
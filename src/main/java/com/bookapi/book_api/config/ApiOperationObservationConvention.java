@@ -0,0 +1,31 @@
+package com.bookapi.book_api.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Tags the {@code http.server.requests} timer with the API operation that handled the request, the
+ * {@code operationId} of the {@code BooksApi}/{@code ReservationsApi} method the controller implements,
+ * so the latency of every operation can be told apart also when two of them share a URI.
+ */
+public class ApiOperationObservationConvention extends DefaultServerRequestObservationConvention {
+
+    static final String OPERATION = "operation";
+    private static final String NO_OPERATION = "none";
+
+    @Override
+    public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+        return super.getLowCardinalityKeyValues(context).and(KeyValue.of(OPERATION, operation(context.getCarrier())));
+    }
+
+    // The handler is only known once a request has been matched, e.g. not for a 404 or a rejected login
+    static String operation(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        return handler instanceof HandlerMethod handlerMethod ? handlerMethod.getMethod().getName() : NO_OPERATION;
+    }
+}
@@ -0,0 +1,37 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives books stored before copies were tracked a single copy when the application starts, available unless an
+ * active reservation already holds it, otherwise they could never be reserved, and books stored before they were versioned a first version,
+ * otherwise an update conditional on their version could never match. Other books are left untouched.
+ */
+@Slf4j
+@Component
+public class BookInventoryBackfill {
+
+    private static final int DEFAULT_COPIES = 1;
+
+    private final BookRepository bookRepository;
+
+    public BookInventoryBackfill(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        long backfilled = bookRepository.backfillCopies(DEFAULT_COPIES);
+        if (backfilled > 0) {
+            log.info("Gave {} books without copy tracking {} copy", backfilled, DEFAULT_COPIES);
+        }
+        long versioned = bookRepository.backfillVersions();
+        if (versioned > 0) {
+            log.info("Gave {} books without a version their first version", versioned);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.bookapi.book_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.observation.ServerRequestObservationConvention;
+
+import java.time.Duration;
+
+/**
+ * Adds the API operation to the request timers and registers the slow request and slow MongoDB command
+ * logs. The timers themselves are recorded by Spring Boot and scraped from {@code /actuator/prometheus}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public ServerRequestObservationConvention apiOperationObservationConvention() {
+        return new ApiOperationObservationConvention();
+    }
+
+    @Bean
+    public SlowRequestObservationHandler slowRequestObservationHandler(
+            @Value("${book-api.slow-log.request-threshold:PT1S}") Duration threshold) {
+        return new SlowRequestObservationHandler(threshold);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer slowMongoCommandLog(
+            @Value("${book-api.slow-log.mongo-command-threshold:PT0.1S}") Duration threshold) {
+        return settings -> settings.addCommandListener(new SlowMongoCommandListener(threshold));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.model.ReservationState;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.UuidRepresentation;
+import org.bson.types.Binary;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * UUIDs are written in the standard binary representation selected by
+ * {@code spring.data.mongodb.uuid-representation}. Ids written before in the legacy Java representation,
+ * Spring Boot's default, are still read, so documents the {@link com.bookapi.book_api.repository.UuidMigrator}
+ * has not rewritten yet do not fail list pages, and {@link com.bookapi.book_api.repository.LegacyUuids} finds
+ * them by id.
+ * <p>
+ * Reservation states are stored as their integer codes, which also applies to the values in queries.
+ */
+@Configuration
+public class MongoConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(new LegacyUuidReadingConverter(),
+                new ReservationStateWritingConverter(), new ReservationStateReadingConverter(),
+                new LegacyReservationStateReadingConverter()));
+    }
+
+    // The driver only decodes the configured representation to a UUID, any other one arrives as a Binary
+    @ReadingConverter
+    static class LegacyUuidReadingConverter implements Converter<Binary, UUID> {
+
+        @Override
+        public UUID convert(Binary source) {
+            if (source.getType() != BsonBinarySubType.UUID_LEGACY.getValue()) {
+                throw new IllegalArgumentException("Binary subtype " + source.getType() + " is not a UUID");
+            }
+            return new BsonBinary(source.getType(), source.getData()).asUuid(UuidRepresentation.JAVA_LEGACY);
+        }
+    }
+
+    @WritingConverter
+    static class ReservationStateWritingConverter implements Converter<ReservationState, Integer> {
+
+        @Override
+        public Integer convert(ReservationState source) {
+            return source.getCode();
+        }
+    }
+
+    @ReadingConverter
+    static class ReservationStateReadingConverter implements Converter<Integer, ReservationState> {
+
+        @Override
+        public ReservationState convert(Integer source) {
+            return ReservationState.fromCode(source);
+        }
+    }
+
+    // Reservations stored before the states were codes hold the name, e.g. "Reserved", until they are backfilled
+    @ReadingConverter
+    static class LegacyReservationStateReadingConverter implements Converter<String, ReservationState> {
+
+        @Override
+        public ReservationState convert(String source) {
+            return ReservationState.valueOf(source.toUpperCase(Locale.ROOT));
+        }
+    }
+}
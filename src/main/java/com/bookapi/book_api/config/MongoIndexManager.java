@@ -0,0 +1,97 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.repository.QueryPlanAuditor;
+import com.bookapi.book_api.repository.QueryPlanAuditor.QueryPlanReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the indexes declared on the {@link Document} models when the application starts and verifies
+ * that every one of them exists, then logs any repository query shape that would still scan a collection.
+ * <p>
+ * Spring Boot leaves {@code spring.data.mongodb.auto-index-creation} off, so without this the
+ * {@code @Indexed}/{@code @CompoundIndex} annotations are documentation only.
+ */
+@Slf4j
+@Component
+public class MongoIndexManager {
+
+    private final MongoTemplate mongoTemplate;
+    private final QueryPlanAuditor queryPlanAuditor;
+
+    public MongoIndexManager(MongoTemplate mongoTemplate, QueryPlanAuditor queryPlanAuditor) {
+        this.mongoTemplate = mongoTemplate;
+        this.queryPlanAuditor = queryPlanAuditor;
+    }
+
+    // After the startup steps that repair the data a unique index is built on
+    @Order(Ordered.HIGHEST_PRECEDENCE + 2)
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        ensureIndexes();
+        reportCollectionScans();
+    }
+
+    public void ensureIndexes() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        IndexResolver indexResolver = IndexResolver.create(mappingContext);
+
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(Document.class)) {
+                continue;
+            }
+            IndexOperations indexOps = mongoTemplate.indexOps(entity.getCollection());
+
+            // createIndex is a no-op for an identical existing index, and fails on a conflicting definition
+            for (IndexDefinition definition : indexResolver.resolveIndexFor(entity.getTypeInformation())) {
+                indexOps.createIndex(definition);
+            }
+            verifyIndexes(entity, indexResolver, indexOps);
+        }
+    }
+
+    private void verifyIndexes(MongoPersistentEntity<?> entity, IndexResolver indexResolver, IndexOperations indexOps) {
+        Set<String> existing = indexOps.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet());
+
+        for (IndexDefinition definition : indexResolver.resolveIndexFor(entity.getTypeInformation())) {
+            String name = definition.getIndexOptions().getString("name");
+            if (name != null && !existing.contains(name)) {
+                throw new IllegalStateException("Index " + name + " is missing on collection " + entity.getCollection());
+            }
+        }
+        log.info("Verified indexes {} on collection {}", existing, entity.getCollection());
+    }
+
+    private void reportCollectionScans() {
+        try {
+            for (QueryPlanReport report : queryPlanAuditor.audit()) {
+                if (report.isCollectionScan()) {
+                    log.warn("Query shape {} on {} falls back to a collection scan: {}",
+                            report.shape(), report.collection(), report.stages());
+                }
+            }
+        } catch (RuntimeException ex) {
+            // The report is advisory, a server without explain support must not block startup
+            log.warn("Could not explain repository query shapes: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import com.bookapi.book_api.service.BookService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cancels the active reservations of a book that a user holds besides their oldest one when the application
+ * starts, and gives their copies and quota back. They were accepted before a user could only hold one active
+ * reservation of a book, and the unique index that enforces it cannot be built while they are active.
+ */
+@Slf4j
+@Component
+public class ReservationDuplicateCleanup {
+
+    private final ReservationRepository reservationRepository;
+    private final BookService bookService;
+    private final ReservationQuotaRepository reservationQuotaRepository;
+
+    public ReservationDuplicateCleanup(ReservationRepository reservationRepository, BookService bookService,
+                                       ReservationQuotaRepository reservationQuotaRepository) {
+        this.reservationRepository = reservationRepository;
+        this.bookService = bookService;
+        this.reservationQuotaRepository = reservationQuotaRepository;
+    }
+
+    // After the state backfill, the active reservations are found by the code of their state, and before the
+    // index manager builds the unique index
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        int cancelled = 0;
+        for (Reservation reservation : reservationRepository.findDuplicateActiveReservations()) {
+            // Only the call that cancelled the reservation gives its copy and quota back
+            if (reservationRepository.transition(reservation.getBookId(), reservation.getId(),
+                    ReservationState.RESERVED, ReservationState.CANCELLED) != null) {
+                bookService.releaseCopies(reservation.getBookId(), 1);
+                reservationQuotaRepository.release(reservation.getUserId(), 1);
+                cancelled++;
+            }
+        }
+        if (cancelled > 0) {
+            log.info("Cancelled {} duplicate active reservations", cancelled);
+        }
+    }
+}
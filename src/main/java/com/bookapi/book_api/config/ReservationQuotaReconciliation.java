@@ -0,0 +1,47 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recounts the active reservations of every user into their quota counter when the application starts and
+ * periodically afterwards. This counts the reservations made before quotas were counted, otherwise those users
+ * could go past the quota, and corrects counters that drifted from their reservations since.
+ */
+@Slf4j
+@Component
+public class ReservationQuotaReconciliation {
+
+    private final ReservationQuotaRepository reservationQuotaRepository;
+
+    public ReservationQuotaReconciliation(ReservationQuotaRepository reservationQuotaRepository) {
+        this.reservationQuotaRepository = reservationQuotaRepository;
+    }
+
+    // After the state backfill, the active reservations are counted by the code of their state
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        reconcile();
+    }
+
+    @Scheduled(initialDelayString = "${book-api.reservation-quota.reconcile-interval:PT1H}",
+            fixedDelayString = "${book-api.reservation-quota.reconcile-interval:PT1H}")
+    public void reconcile() {
+        try {
+            long corrected = reservationQuotaRepository.reconcile();
+            if (corrected > 0) {
+                log.info("Corrected the quota counters of {} users to their active reservations", corrected);
+            }
+        } catch (RuntimeException ex) {
+            // The counters are corrected on a later run
+            log.warn("Could not reconcile the reservation quotas: {}", ex.getMessage());
+        }
+    }
+}
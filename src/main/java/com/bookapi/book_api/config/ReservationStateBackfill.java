@@ -0,0 +1,34 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the state of reservations saved before states were codes as the code of their state when the
+ * application starts, otherwise a query on the state, e.g. for the active reservations, would miss them.
+ */
+@Slf4j
+@Component
+public class ReservationStateBackfill {
+
+    private final ReservationRepository reservationRepository;
+
+    public ReservationStateBackfill(ReservationRepository reservationRepository) {
+        this.reservationRepository = reservationRepository;
+    }
+
+    // Before the duplicate cleanup and the quota reconciliation, which find the active reservations by the code of their state
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        long backfilled = reservationRepository.backfillStates();
+        if (backfilled > 0) {
+            log.info("Stored the state of {} reservations as its code", backfilled);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.bookapi.book_api.config;
 
 import com.bookapi.book_api.service.CustomOidcUserService;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -28,6 +31,8 @@ public class SecurityConfig {
                 // Authorise all incoming http requests
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/", "/error", "/webjars/**").permitAll() // Home and error page requests do not need authentication
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll() // Probes and metric scrapers do not log in
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ADMIN") // The other endpoints can read and clear caches, only admins may use them
                         .anyRequest().authenticated() // Any other request must be authenticated
                 )
                 // Use http Basic authentication - now commented out
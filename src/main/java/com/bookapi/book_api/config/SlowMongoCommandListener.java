@@ -0,0 +1,119 @@
+package com.bookapi.book_api.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs every MongoDB command that takes longer than a threshold, with the shape of the command: its
+ * filter, sort and pipeline with the values left out, so slow queries can be grouped and matched to an
+ * index without logging the data they carry.
+ * <p>
+ * The driver only hands out the command while it is being sent, so the shape of every command is taken
+ * then and dropped once the command completes in time. It is only rendered as JSON for the commands that
+ * are logged. The latency of all commands is recorded by Spring
+ * Boot as the {@code mongodb.driver.commands} timer.
+ */
+@Slf4j
+public class SlowMongoCommandListener implements CommandListener {
+
+    // Session, cluster and driver bookkeeping that is the same for every command of a kind
+    private static final Set<String> IGNORED_FIELDS = Set.of("$db", "lsid", "$clusterTime", "txnNumber",
+            "$readPreference", "readConcern", "writeConcern", "apiVersion", "apiStrict", "apiDeprecationErrors");
+    // Their values are field names and directions rather than data, and part of what makes a query slow
+    private static final Set<String> VERBATIM_FIELDS = Set.of("sort", "projection", "hint", "key");
+    private static final BsonString VALUE = new BsonString("?");
+    private static final int MAX_SHAPE_LENGTH = 2000;
+
+    private final long thresholdNanos;
+    private final Map<Integer, BsonDocument> shapes = new ConcurrentHashMap<>();
+
+    public SlowMongoCommandListener(Duration threshold) {
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        shapes.put(event.getRequestId(), shapeOf(event.getCommand()));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        completed(event.getRequestId(), event.getCommandName(), event.getDatabaseName(),
+                event.getElapsedTime(TimeUnit.NANOSECONDS), "succeeded");
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        completed(event.getRequestId(), event.getCommandName(), event.getDatabaseName(),
+                event.getElapsedTime(TimeUnit.NANOSECONDS), "failed");
+    }
+
+    private void completed(int requestId, String commandName, String databaseName, long elapsedNanos,
+                           String outcome) {
+        BsonDocument shape = shapes.remove(requestId);
+        if (elapsedNanos >= thresholdNanos) {
+            log.warn("Slow MongoDB command {} on {} {} after {} ms: {}",
+                    commandName, databaseName, outcome, elapsedNanos / 1_000_000, render(shape));
+        }
+    }
+
+    static BsonDocument shapeOf(BsonDocument command) {
+        BsonDocument shape = new BsonDocument();
+        boolean first = true;
+        for (Map.Entry<String, BsonValue> field : command.entrySet()) {
+            String name = field.getKey();
+            if (first) {
+                // The command name, whose value is the collection
+                shape.put(name, field.getValue());
+                first = false;
+            } else if (!IGNORED_FIELDS.contains(name)) {
+                shape.put(name, VERBATIM_FIELDS.contains(name) ? field.getValue() : redact(field.getValue()));
+            }
+        }
+        return shape;
+    }
+
+    static String render(BsonDocument shape) {
+        if (shape == null) {
+            // The command started before the listener was registered
+            return "unknown";
+        }
+        String json = shape.toJson();
+        return json.length() > MAX_SHAPE_LENGTH ? json.substring(0, MAX_SHAPE_LENGTH) + "..." : json;
+    }
+
+    private static BsonValue redact(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument redacted = new BsonDocument();
+            value.asDocument().forEach((name, nested) ->
+                    redacted.put(name, VERBATIM_FIELDS.contains(name) ? nested : redact(nested)));
+            return redacted;
+        }
+        if (value.isArray()) {
+            // Bulk writes and $in lists repeat one shape, only the first element and the size are kept
+            BsonArray array = value.asArray();
+            BsonArray redacted = new BsonArray();
+            if (!array.isEmpty()) {
+                redacted.add(redact(array.get(0)));
+            }
+            if (array.size() > 1) {
+                redacted.add(new BsonString("... " + array.size() + " elements"));
+            }
+            return redacted;
+        }
+        return VALUE;
+    }
+}
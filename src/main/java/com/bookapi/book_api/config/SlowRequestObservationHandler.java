@@ -0,0 +1,49 @@
+package com.bookapi.book_api.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+
+import java.time.Duration;
+
+/**
+ * Logs every API request that takes longer than a threshold, with the operation that handled it. The
+ * MongoDB commands it ran are logged by {@link SlowMongoCommandListener} when they are slow themselves.
+ */
+@Slf4j
+public class SlowRequestObservationHandler implements ObservationHandler<ServerRequestObservationContext> {
+
+    private static final String START = SlowRequestObservationHandler.class.getName() + ".start";
+
+    private final long thresholdNanos;
+
+    public SlowRequestObservationHandler(Duration threshold) {
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    public void onStart(ServerRequestObservationContext context) {
+        context.put(START, System.nanoTime());
+    }
+
+    @Override
+    public void onStop(ServerRequestObservationContext context) {
+        Long start = context.get(START);
+        if (start == null) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        if (elapsedNanos >= thresholdNanos) {
+            log.warn("Slow request {} {} ({}) took {} ms with status {}",
+                    context.getCarrier().getMethod(), context.getCarrier().getRequestURI(),
+                    ApiOperationObservationConvention.operation(context.getCarrier()),
+                    elapsedNanos / 1_000_000, context.getResponse() != null ? context.getResponse().getStatus() : "-");
+        }
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context instanceof ServerRequestObservationContext;
+    }
+}
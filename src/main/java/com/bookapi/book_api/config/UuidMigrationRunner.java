@@ -0,0 +1,47 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.repository.UuidMigrator;
+import com.bookapi.book_api.repository.UuidMigrator.CollectionReport;
+import com.bookapi.book_api.repository.UuidMigrator.UuidMigrationReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the {@link UuidMigrator} as a command against the live database and exits, e.g. with
+ * {@code java -jar book-api.jar --book-api.uuid-migration.run=true --spring.main.web-application-type=none}
+ * right after the application storing standard UUIDs is deployed. It runs while the application keeps serving,
+ * which matches UUIDs in every representation until a run completes the migration.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "book-api.uuid-migration.run", havingValue = "true")
+public class UuidMigrationRunner implements ApplicationRunner {
+
+    private final UuidMigrator uuidMigrator;
+    private final ConfigurableApplicationContext context;
+
+    public UuidMigrationRunner(UuidMigrator uuidMigrator, ConfigurableApplicationContext context) {
+        this.uuidMigrator = uuidMigrator;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        UuidMigrationReport report = uuidMigrator.migrate();
+        long rewritten = report.collections().stream().mapToLong(CollectionReport::rewrittenDocuments).sum();
+        long left = report.collections().stream().mapToLong(CollectionReport::leftDocuments).sum();
+        log.info("UUID migration done, rewrote {} documents, left {} and completed {} left by an earlier run",
+                rewritten, left, report.resumedDocuments());
+        if (!report.completed()) {
+            log.warn("The UUID migration is not complete, run it again to rewrite the documents it left");
+        }
+
+        // The scheduled tasks would otherwise keep the command running
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,40 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.repository.LegacyUuids;
+import com.bookapi.book_api.repository.UuidMigrator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Looks for the completion of the UUID migration, which runs as a separate command, and from then on has
+ * {@link LegacyUuids} match UUIDs in the standard representation alone.
+ */
+@Slf4j
+@Component
+public class UuidMigrationStatusCheck {
+
+    private final UuidMigrator uuidMigrator;
+    private final LegacyUuids legacyUuids;
+
+    public UuidMigrationStatusCheck(UuidMigrator uuidMigrator, LegacyUuids legacyUuids) {
+        this.uuidMigrator = uuidMigrator;
+        this.legacyUuids = legacyUuids;
+    }
+
+    @Scheduled(fixedDelayString = "${book-api.uuid-migration.status-check-interval:PT1M}")
+    public void check() {
+        if (!legacyUuids.stored()) {
+            return;
+        }
+        try {
+            if (uuidMigrator.completed()) {
+                legacyUuids.migrated();
+                log.info("The UUID migration is complete, UUIDs are only matched in the standard representation");
+            }
+        } catch (RuntimeException ex) {
+            // Legacy UUIDs are matched until a later check succeeds
+            log.warn("Could not check the status of the UUID migration: {}", ex.getMessage());
+        }
+    }
+}
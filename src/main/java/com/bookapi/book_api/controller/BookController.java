@@ -1,21 +1,37 @@
 package com.bookapi.book_api.controller;
 
 import com.bookapi.book_api.controller.generated.BooksApi;
+import com.bookapi.book_api.dto.generated.BookImportResult;
 import com.bookapi.book_api.dto.generated.BookInput;
 import com.bookapi.book_api.dto.generated.BookListResponse;
 import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.dto.generated.BookPatch;
+import com.bookapi.book_api.dto.generated.BookSuggestionResponse;
 import com.bookapi.book_api.mapper.BookMapper;
+import com.bookapi.book_api.mapper.CursorMapper;
+import com.bookapi.book_api.mapper.EntityTagMapper;
 import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.CountMode;
+import com.bookapi.book_api.service.BookExportService;
+import com.bookapi.book_api.service.BookImportService;
 import com.bookapi.book_api.service.BookService;
-import org.springframework.data.domain.Page;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.UUID;
 
@@ -23,12 +39,22 @@ import java.util.UUID;
 public class BookController implements BooksApi {
 
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookExportService bookExportService;
     private final BookMapper bookMapper;
+    private final CursorMapper cursorMapper;
+    private final EntityTagMapper entityTagMapper;
 
     // Use constructor injection for all dependencies
-    public BookController (BookService bookService, BookMapper bookMapper) {
+    public BookController (BookService bookService, BookImportService bookImportService,
+                           BookExportService bookExportService, BookMapper bookMapper, CursorMapper cursorMapper,
+                           EntityTagMapper entityTagMapper) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
         this.bookMapper = bookMapper;
+        this.cursorMapper = cursorMapper;
+        this.entityTagMapper = entityTagMapper;
     }
 
 
@@ -45,8 +71,8 @@ public class BookController implements BooksApi {
                 .toUri();
         // Use the mapper to convert it to a public DTO
         BookOutput bookOutput = bookMapper.toBookOutput(createdBook);
-        // Return the DTO with a 201 Created Status
-        return ResponseEntity.created(location).body(bookOutput);
+        // Return the DTO with a 201 Created Status and its entity tag
+        return ResponseEntity.created(location).eTag(entityTagMapper.toEntityTag(createdBook)).body(bookOutput);
     }
 
     @Override
@@ -59,40 +85,151 @@ public class BookController implements BooksApi {
     }
 
     @Override
-    public ResponseEntity<BookListResponse> getAllBooks(Integer offset, Integer limit) {
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BookImportResult> importBooks(InputStreamResource body) {
+        // The body is read straight from the request, it is never buffered as a whole
+        try (InputStream inputStream = body.getInputStream()) {
+            BookImportResult result = bookImportService.importBooks(inputStream);
+            return ResponseEntity.ok(result);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read the book import", ex);
+        }
+    }
+
+    @Override
+    public ResponseEntity<BookListResponse> searchBooks(String q, Integer offset, Integer limit, String count) {
+        CountMode countMode = CountMode.fromParameter(count);
+
+        // Create a pageable object from offset and limit
+        int page = limit > 0 ? offset / limit : 0;
+        Pageable pageable = PageRequest.of(page, limit);
+
+        // Only the exact mode counts the matches, there is no estimate for a search
+        BookListResponse response = countMode == CountMode.EXACT
+                ? bookMapper.toBookListResponse(bookService.searchBooks(q, pageable))
+                : bookMapper.toBookListResponse(bookService.searchBookSlice(q, pageable), null);
+
+        // Return 200 OK with the ranked list
+        return ResponseEntity.ok(response);
+    }
+
+    @Override
+    public ResponseEntity<BookSuggestionResponse> suggestBooks(String q, Integer limit) {
+        // Call the service function, which answers from memory
+        BookSuggestionResponse response = bookMapper.toBookSuggestionResponse(bookService.suggestBooks(q, limit));
+        // Return 200 OK with the suggestions
+        return ResponseEntity.ok(response);
+    }
+
+    @Override
+    public ResponseEntity<InputStreamResource> exportBooks() {
+        // The converter copies the export to the response as it is read and closes it afterwards,
+        // also when the client disconnects, which releases the database cursor
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(new InputStreamResource(bookExportService.exportBooks()));
+    }
+
+    @Override
+    public ResponseEntity<BookListResponse> getAllBooks(Integer offset, Integer limit, String after, String count,
+                                                        String ifNoneMatch) {
+        CountMode countMode = CountMode.fromParameter(count);
+
+        // A cursor switches to keyset pagination, which ignores the offset
+        if (after != null) {
+            ScrollPosition position = cursorMapper.toScrollPosition(after, BookService.CURSOR_SORT);
+            Window<Book> bookWindow = bookService.findAllBooks(position, limit);
+            String entityTag = entityTagMapper.toEntityTag(bookWindow.getContent(), null, bookWindow.hasNext());
+            if (entityTagMapper.isNotModified(ifNoneMatch, entityTag)) {
+                return notModified(entityTag);
+            }
+            return ResponseEntity.ok().eTag(entityTag).body(bookMapper.toBookListResponse(bookWindow, limit));
+        }
+
         // Create a pageable object from offset and limit
         // Calculate the page by dividing offset by limit
         int page = limit > 0 ? offset / limit : 0; // If limit is passed as 0 or <0, set to 0
         Pageable pageable = PageRequest.of(page, limit);
 
-        // Call the service function
-        Page<Book> bookPage = bookService.findAllBooks(pageable);
+        // Call the service function, only the exact mode runs a count alongside the page query
+        Slice<Book> bookSlice;
+        Long totalCount;
+        switch (countMode) {
+            case EXACT -> {
+                Page<Book> bookPage = bookService.findAllBooks(pageable);
+                bookSlice = bookPage;
+                totalCount = bookPage.getTotalElements();
+            }
+            case ESTIMATED -> {
+                bookSlice = bookService.findBookSlice(pageable);
+                totalCount = bookService.estimateBookCount();
+            }
+            default -> {
+                bookSlice = bookService.findBookSlice(pageable);
+                totalCount = null;
+            }
+        }
+
+        // The tag is computed from the stored books, an unchanged list is neither mapped nor serialized
+        String entityTag = entityTagMapper.toEntityTag(bookSlice.getContent(), totalCount, bookSlice.hasNext());
+        if (entityTagMapper.isNotModified(ifNoneMatch, entityTag)) {
+            return notModified(entityTag);
+        }
 
-        // Use the mapper to convert the Page to a list of DTOs
-        BookListResponse response = bookMapper.toBookListResponse(bookPage);
+        // Use the mapper to convert the Slice to a list of DTOs
+        BookListResponse response = bookMapper.toBookListResponse(bookSlice, totalCount);
 
         // Return 200 OK with the list
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(entityTag).body(response);
     }
 
     @Override
-    public ResponseEntity<BookOutput> getBookById(UUID bookId) {
+    public ResponseEntity<BookOutput> getBookById(UUID bookId, String ifNoneMatch) {
         // Call the service function
         Book foundBook = bookService.findBookById(bookId);
+        // Return 304 Not Modified without a body if the client holds the current version
+        String entityTag = entityTagMapper.toEntityTag(foundBook);
+        if (entityTagMapper.isNotModified(ifNoneMatch, entityTag)) {
+            return withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), foundBook).build();
+        }
         // Use the mapper to convert it to a public DTO
         BookOutput bookOutput = bookMapper.toBookOutput(foundBook);
         // Return the DTO with a 200 OK Status
-        return ResponseEntity.ok(bookOutput);
+        return withValidators(ResponseEntity.ok(), foundBook).body(bookOutput);
     }
 
     @Override
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<BookOutput> updateBook(UUID bookId, BookInput bookInput) {
-        // Call the service function
-        Book updatedBook = bookService.updateBook(bookId, bookInput);
+    public ResponseEntity<BookOutput> updateBook(UUID bookId, BookInput bookInput, String ifMatch) {
+        // Call the service function, conditional on the version in If-Match if one is given
+        Book updatedBook = bookService.updateBook(bookId, bookInput, entityTagMapper.toExpectedVersion(ifMatch));
         // Use the mapper to convert it to a public DTO
         BookOutput bookOutput = bookMapper.toBookOutput(updatedBook);
         // Return the DTO with a 200 OK Status
-        return ResponseEntity.ok(bookOutput);
+        return withValidators(ResponseEntity.ok(), updatedBook).body(bookOutput);
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BookOutput> patchBook(UUID bookId, BookPatch bookPatch, String ifMatch) {
+        // Call the service function, which only sends the supplied fields to the database
+        Book patchedBook = bookService.patchBook(bookId, bookPatch, entityTagMapper.toExpectedVersion(ifMatch));
+        // Use the mapper to convert it to a public DTO
+        BookOutput bookOutput = bookMapper.toBookOutput(patchedBook);
+        // Return the DTO with a 200 OK Status
+        return withValidators(ResponseEntity.ok(), patchedBook).body(bookOutput);
+    }
+
+    private ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, Book book) {
+        builder.eTag(entityTagMapper.toEntityTag(book));
+        // Books stored before they were versioned have no modification time until their next write
+        if (book.getLastModified() != null) {
+            builder.lastModified(book.getLastModified());
+        }
+        return builder;
+    }
+
+    private static <T> ResponseEntity<T> notModified(String entityTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTag).build();
     }
 }
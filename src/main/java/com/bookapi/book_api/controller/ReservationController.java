@@ -3,13 +3,18 @@ package com.bookapi.book_api.controller;
 import com.bookapi.book_api.controller.generated.ReservationsApi;
 import com.bookapi.book_api.dto.generated.ReservationListResponse;
 import com.bookapi.book_api.dto.generated.ReservationOutput;
+import com.bookapi.book_api.mapper.CursorMapper;
 import com.bookapi.book_api.mapper.ReservationMapper;
+import com.bookapi.book_api.model.CountMode;
 import com.bookapi.book_api.model.CustomOAuth2User;
 import com.bookapi.book_api.model.Reservation;
 import com.bookapi.book_api.service.ReservationService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -30,10 +35,13 @@ public class ReservationController implements ReservationsApi {
 
     private final ReservationService reservationService;
     private final ReservationMapper reservationMapper;
+    private final CursorMapper cursorMapper;
 
-    public ReservationController (ReservationService reservationService, ReservationMapper reservationMapper) {
+    public ReservationController (ReservationService reservationService, ReservationMapper reservationMapper,
+                                  CursorMapper cursorMapper) {
         this.reservationService = reservationService;
         this.reservationMapper = reservationMapper;
+        this.cursorMapper = cursorMapper;
     }
 
     @Override
@@ -68,12 +76,19 @@ public class ReservationController implements ReservationsApi {
     @PreAuthorize("hasRole('ADMIN') or @reservationSecurityService.isReservationOwner(authentication, #reservationId)")
     public ResponseEntity<ReservationOutput> cancelReservationById(UUID bookId, UUID reservationId) {
         // Call the service function
-        Reservation cancelledReservation = reservationService.deleteReservationById(bookId, reservationId);
+        Reservation cancelledReservation = reservationService.cancelReservation(bookId, reservationId);
         // TODO: Log the cancelled Reservation once logging is set up
         // Return 204 No Content
         return ResponseEntity.noContent().build();
     }
 
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReservationOutput> fulfilReservation(UUID bookId, UUID reservationId) {
+        Reservation fulfilledReservation = reservationService.fulfilReservation(bookId, reservationId);
+        return ResponseEntity.ok(reservationMapper.toReservationOutput(fulfilledReservation));
+    }
+
     @Override
     @PreAuthorize("hasRole('ADMIN') or @reservationSecurityService.isReservationOwner(authentication, #reservationId)")
     public ResponseEntity<ReservationOutput> getReservationById(UUID bookId, UUID reservationId) {
@@ -87,11 +102,9 @@ public class ReservationController implements ReservationsApi {
     }
 
     @Override
-    public ResponseEntity<ReservationListResponse> listReservations(Integer offset, Integer limit, UUID userId) {
-        // Create a pageable object from offset and limit
-        // Calculate the page by dividing offset by limit
-        int page = limit > 0 ? offset / limit : 0; // If limit is passed as 0 or <0, set to 0
-        Pageable pageable = PageRequest.of(page, limit);
+    public ResponseEntity<ReservationListResponse> listReservations(Integer offset, Integer limit, UUID userId,
+                                                                    String after, String count) {
+        CountMode countMode = CountMode.fromParameter(count);
 
         // Get the username from the security context
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -109,23 +122,47 @@ public class ReservationController implements ReservationsApi {
                 .anyMatch(grantedAuthority ->
                         grantedAuthority.getAuthority().equals("ROLE_ADMIN"));
 
-        // Make a conditional call to the service function
-        Page<Reservation> reservationPage;
+        // For a regular user, ignore any query parameter
+        UUID queriedUserId = isAdmin ? userId : currentUserId;
 
-        if (isAdmin) {
-            if (userId != null) {
-                reservationPage = reservationService.findReservationsForUser(userId, pageable);
-            } else {
-                reservationPage = reservationService.findAllReservations(pageable);
-            }
+        // A cursor switches to keyset pagination, which ignores the offset
+        if (after != null) {
+            ScrollPosition position = cursorMapper.toScrollPosition(after, ReservationService.CURSOR_SORT);
+            Window<Reservation> reservationWindow = queriedUserId != null
+                    ? reservationService.findReservationsForUser(queriedUserId, position, limit)
+                    : reservationService.findAllReservations(position, limit);
+            return ResponseEntity.ok(reservationMapper.toReservationListResponse(reservationWindow, limit));
+        }
+
+        // Create a pageable object from offset and limit
+        // Calculate the page by dividing offset by limit
+        int page = limit > 0 ? offset / limit : 0; // If limit is passed as 0 or <0, set to 0
+        Pageable pageable = PageRequest.of(page, limit);
+
+        // The exact mode counts alongside the page query, the other modes read a Slice without a count
+        if (countMode == CountMode.EXACT) {
+            Page<Reservation> reservationPage = queriedUserId != null
+                    ? reservationService.findReservationsForUser(queriedUserId, pageable)
+                    : reservationService.findAllReservations(pageable);
+
+            // Map the Pageable object to a list
+            return ResponseEntity.ok(reservationMapper.toReservationListResponse(reservationPage));
+        }
+
+        Slice<Reservation> reservationSlice;
+        Long totalCount = null;
+
+        if (queriedUserId != null) {
+            // A collection-wide estimate says nothing about a single user's reservations, so it is left out
+            reservationSlice = reservationService.findReservationSliceForUser(queriedUserId, pageable);
         } else {
-            // For a regular user, ignore any query parameter
-            reservationPage = reservationService.findReservationsForUser(currentUserId, pageable);
+            reservationSlice = reservationService.findAllReservationSlice(pageable);
+            if (countMode == CountMode.ESTIMATED) {
+                totalCount = reservationService.estimateReservationCount();
+            }
         }
 
-        // Map the Pageable object to a list
-        ReservationListResponse responseDto = reservationMapper.toReservationListResponse(reservationPage);
+        ReservationListResponse responseDto = reservationMapper.toReservationListResponse(reservationSlice, totalCount);
         return ResponseEntity.ok(responseDto);
     }
 }
-
@@ -1,6 +1,7 @@
 package com.bookapi.book_api.exception;
 
 import com.bookapi.book_api.dto.generated.Error;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -21,4 +22,50 @@ public class GlobalExceptionHandler {
         // Return the custom DTO along with the 404 response
         return new ResponseEntity<>(errorDetails, HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler(BadResourceException.class)
+    public ResponseEntity<Error> handleBadResourceException(
+            BadResourceException ex, WebRequest request
+    ) {
+        Error errorDetails = new Error();
+        errorDetails.setError(ex.getMessage());
+
+        // Return the custom DTO along with the 400 response
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Error> handleConflictException(
+            ConflictException ex, WebRequest request
+    ) {
+        Error errorDetails = new Error();
+        errorDetails.setError(ex.getMessage());
+
+        // Return the custom DTO along with the 409 response
+        return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
+    }
+
+    // A write rejected by a unique index, e.g. a second active reservation of a book by the same user
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<Error> handleDuplicateKeyException(
+            DuplicateKeyException ex, WebRequest request
+    ) {
+        Error errorDetails = new Error();
+        // The driver message names the index and the key, which is not for the client
+        errorDetails.setError("The resource conflicts with an existing one");
+
+        // Return the custom DTO along with the 409 response
+        return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Error> handlePreconditionFailedException(
+            PreconditionFailedException ex, WebRequest request
+    ) {
+        Error errorDetails = new Error();
+        errorDetails.setError(ex.getMessage());
+
+        // Return the custom DTO along with the 412 response
+        return new ResponseEntity<>(errorDetails, HttpStatus.PRECONDITION_FAILED);
+    }
 }
@@ -0,0 +1,5 @@
+package com.bookapi.book_api.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {super(message);}
+}
@@ -6,20 +6,56 @@ import com.bookapi.book_api.controller.ReservationController;
 import com.bookapi.book_api.dto.generated.BookLinks;
 import com.bookapi.book_api.dto.generated.BookListResponse;
 import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.dto.generated.BookSuggestion;
+import com.bookapi.book_api.dto.generated.BookSuggestionResponse;
 import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.service.BookSuggestionIndex;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
-
 @Component
 public class BookMapper {
 
+    // Compiled once from the controller mappings, expanding them per book is plain string concatenation
+    private static final LinkTemplate SELF_LINK =
+            LinkTemplate.forMethod(BookController.class, "getBookById", UUID.class, String.class);
+    private static final LinkTemplate RESERVATIONS_LINK =
+            LinkTemplate.forMethod(ReservationController.class, "createReservation", UUID.class);
+
+    private final CursorMapper cursorMapper;
+    private final LinkResolver linkResolver;
+
+    public BookMapper(CursorMapper cursorMapper, LinkResolver linkResolver) {
+        this.cursorMapper = cursorMapper;
+        this.linkResolver = linkResolver;
+    }
+
     public BookOutput toBookOutput(Book book) {
+        BookOutput dto = toBookExportOutput(book);
+        if (dto == null) {
+            return null;
+        }
+
+        BookLinks links = new BookLinks();
+
+        links.setSelf(linkResolver.expand(SELF_LINK, book.getId()));
+        links.setReservations(linkResolver.expand(RESERVATIONS_LINK, book.getId()));
+
+        dto.setLinks(links);
+        // Only books found by a text search have a score
+        dto.setScore(book.getScore());
+
+        return dto;
+    }
+
+    // Exported books are read outside of the API, so they carry no links
+    public BookOutput toBookExportOutput(Book book) {
         if (book == null) {
             return null;
         }
@@ -29,37 +65,59 @@ public class BookMapper {
         dto.setTitle(book.getTitle());
         dto.setAuthor(book.getAuthor());
         dto.setSynopsis(book.getSynopsis());
+        dto.setCopies(book.getCopies());
+        dto.setAvailableCopies(book.getAvailableCopies());
+        return dto;
+    }
 
-        BookLinks links = new BookLinks();
-
-        links.setSelf(linkTo(methodOn(BookController.class)
-                .getBookById(book.getId()))
-                .withSelfRel()
-                .getHref());
-
-        links.setReservations(linkTo(methodOn(ReservationController.class)
-                .createReservation(book.getId()))
-                .withRel("reservations")
-                .getHref());
+    public BookListResponse toBookListResponse(Page<Book> bookPage) {
+        return toBookListResponse(bookPage, bookPage.getTotalElements());
+    }
 
-        dto.setLinks(links);
+    public BookListResponse toBookListResponse(Slice<Book> bookSlice, Long totalCount) {
+        // Convert the list of Book models to a list of BookOutput DTOs
+        List<BookOutput> bookOutputs = bookSlice.getContent().stream()
+                .map(this::toBookOutput)
+                .collect(Collectors.toList());
 
-        return dto;
+        // Create the final response DTO, the total count is left out when it was not requested
+        BookListResponse response = new BookListResponse();
+        response.setItems(bookOutputs);
+        response.setTotalCount(totalCount != null ? totalCount.intValue() : null);
+        response.setOffset((int) bookSlice.getPageable().getOffset());
+        response.setLimit(bookSlice.getPageable().getPageSize());
+        response.setNext(cursorMapper.toNextLink(bookSlice));
+        return response;
     }
 
-    public BookListResponse toBookListResponse(Page<Book> bookPage) {
+    public BookListResponse toBookListResponse(Window<Book> bookWindow, int limit) {
         // Convert the list of Book models to a list of BookOutput DTOs
-        List<BookOutput> bookOutputs = bookPage.getContent().stream()
+        List<BookOutput> bookOutputs = bookWindow.getContent().stream()
                 .map(this::toBookOutput)
                 .collect(Collectors.toList());
 
-        // Create the final response DTO
+        // Cursor pages carry no total count or offset, only the link to the next page
         BookListResponse response = new BookListResponse();
         response.setItems(bookOutputs);
-        response.setTotalCount((int) bookPage.getTotalElements());
-        response.setOffset((int) bookPage.getPageable().getOffset());
-        response.setLimit(bookPage.getPageable().getPageSize());
+        response.setLimit(limit);
+        response.setNext(cursorMapper.toNextLink(bookWindow, limit));
         return response;
     }
-}
 
+    public BookSuggestionResponse toBookSuggestionResponse(List<BookSuggestionIndex.Suggestion> suggestions) {
+        // Suggestions are kept small for type-ahead, they carry no links
+        List<BookSuggestion> items = suggestions.stream()
+                .map(suggestion -> {
+                    BookSuggestion dto = new BookSuggestion();
+                    dto.setId(suggestion.id());
+                    dto.setTitle(suggestion.title());
+                    dto.setAuthor(suggestion.author());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+
+        BookSuggestionResponse response = new BookSuggestionResponse();
+        response.setItems(items);
+        return response;
+    }
+}
@@ -0,0 +1,137 @@
+package com.bookapi.book_api.mapper;
+
+import com.bookapi.book_api.exception.BadResourceException;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Converts between the opaque {@code after} cursor exposed by the API and the keyset
+ * {@link ScrollPosition} used by the repositories.
+ * <p>
+ * A cursor holds the sort key values of the last item on a page, e.g. {@code id=u:<uuid>} or
+ * {@code reservedAt=t:<instant>,id=u:<uuid>}, Base64url encoded so clients treat it as a token.
+ */
+@Component
+public class CursorMapper {
+
+    private static final String UUID_TYPE = "u";
+    private static final String INSTANT_TYPE = "t";
+
+    /**
+     * Decodes a cursor for a traversal in the given sort order.
+     *
+     * @throws BadResourceException if the cursor cannot be decoded or does not hold exactly the sort keys,
+     *                              e.g. a cursor of another listing or one edited by the client.
+     */
+    public ScrollPosition toScrollPosition(String cursor, Sort sort) {
+        // An empty cursor starts a new traversal from the first page
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (String entry : decoded.split(",")) {
+                // Each entry is name=type:value
+                String[] nameAndValue = entry.split("=", 2);
+                String[] typeAndValue = nameAndValue[1].split(":", 2);
+                keys.put(nameAndValue[0], parseValue(typeAndValue[0], typeAndValue[1]));
+            }
+            // Any other key would only fail once the repository builds the keyset query from it
+            Set<String> sortKeys = sort.stream().map(Sort.Order::getProperty).collect(Collectors.toSet());
+            if (!keys.keySet().equals(sortKeys)) {
+                throw new IllegalArgumentException("Cursor keys " + keys.keySet() + " do not match " + sortKeys);
+            }
+            return ScrollPosition.forward(keys);
+        } catch (RuntimeException ex) {
+            throw new BadResourceException("Invalid pagination cursor: " + cursor);
+        }
+    }
+
+    public String toCursor(ScrollPosition position) {
+        if (!(position instanceof KeysetScrollPosition keysetPosition)) {
+            throw new IllegalArgumentException("Only keyset positions can be encoded as a cursor");
+        }
+
+        StringJoiner joiner = new StringJoiner(",");
+        keysetPosition.getKeys().forEach((name, value) -> joiner.add(name + "=" + formatValue(value)));
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String toNextLink(Window<?> window, int limit) {
+        return toNextLink(window, limit, ServletUriComponentsBuilder.fromCurrentRequest());
+    }
+
+    public String toNextLink(Window<?> window, int limit, UriComponentsBuilder currentRequest) {
+        // There is no next page once the window has reached the end of the collection
+        if (!window.hasNext() || window.isEmpty()) {
+            return null;
+        }
+
+        // Keep the current query (userId, ...) and swap in the page size and the cursor of the last item
+        String cursor = toCursor(window.positionAt(window.size() - 1));
+        return currentRequest
+                .replaceQueryParam("offset")
+                .replaceQueryParam("limit", limit)
+                .replaceQueryParam("after", cursor)
+                .toUriString();
+    }
+
+    public String toNextLink(Slice<?> slice) {
+        return toNextLink(slice, ServletUriComponentsBuilder.fromCurrentRequest());
+    }
+
+    public String toNextLink(Slice<?> slice, UriComponentsBuilder currentRequest) {
+        if (!slice.hasNext()) {
+            return null;
+        }
+
+        // Offset pages link to the following offset with the same page size
+        Pageable nextPageable = slice.nextPageable();
+        return currentRequest
+                .replaceQueryParam("offset", nextPageable.getOffset())
+                .replaceQueryParam("limit", nextPageable.getPageSize())
+                .toUriString();
+    }
+
+    private Object parseValue(String type, String value) {
+        return switch (type) {
+            case UUID_TYPE -> UUID.fromString(value);
+            case INSTANT_TYPE -> Instant.parse(value);
+            default -> throw new IllegalArgumentException("Unknown cursor value type: " + type);
+        };
+    }
+
+    private String formatValue(Object value) {
+        if (value instanceof UUID uuid) {
+            return UUID_TYPE + ":" + uuid;
+        }
+        if (value instanceof Instant instant) {
+            return INSTANT_TYPE + ":" + instant;
+        }
+        if (value instanceof Date date) {
+            return INSTANT_TYPE + ":" + date.toInstant();
+        }
+        throw new IllegalArgumentException("Unsupported cursor key type: " + value.getClass().getName());
+    }
+}
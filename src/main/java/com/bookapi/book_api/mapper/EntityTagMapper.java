@@ -0,0 +1,107 @@
+package com.bookapi.book_api.mapper;
+
+import com.bookapi.book_api.exception.BadResourceException;
+import com.bookapi.book_api.exception.PreconditionFailedException;
+import com.bookapi.book_api.model.Book;
+import org.springframework.http.ETag;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Derives the strong entity tags of books and lists of books, and evaluates the {@code If-None-Match} and
+ * {@code If-Match} headers against them.
+ * <p>
+ * The tag of a book is its version, which every write raises. The tag of a list is a digest of the ids and
+ * versions of its books together with the total count and whether a next page exists, so it is computed from
+ * the stored books alone, before anything is mapped or serialized.
+ */
+@Component
+public class EntityTagMapper {
+
+    private static final int LIST_TAG_BYTES = 16;
+
+    public String toEntityTag(Book book) {
+        return quote(Long.toString(book.getVersion()));
+    }
+
+    public String toEntityTag(List<Book> books, Long totalCount, boolean hasNext) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Long.BYTES);
+        for (Book book : books) {
+            buffer.clear();
+            buffer.putLong(book.getId().getMostSignificantBits())
+                    .putLong(book.getId().getLeastSignificantBits())
+                    .putLong(book.getVersion());
+            digest.update(buffer.array());
+        }
+        digest.update((totalCount != null ? totalCount.toString() : "-").getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) (hasNext ? 1 : 0));
+
+        // A prefix of the digest is plenty to tell two versions of the same list apart
+        byte[] tag = Arrays.copyOf(digest.digest(), LIST_TAG_BYTES);
+        return quote(Base64.getUrlEncoder().withoutPadding().encodeToString(tag));
+    }
+
+    /**
+     * Tells whether the client already holds the representation with the given tag. {@code If-None-Match}
+     * uses the weak comparison, so a weak tag sent back by a cache in between still matches.
+     */
+    public boolean isNotModified(String ifNoneMatch, String entityTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        ETag current = ETag.create(entityTag);
+        return ETag.parse(ifNoneMatch).stream()
+                .anyMatch(tag -> tag.isWildcard() || tag.compare(current, false));
+    }
+
+    /**
+     * Reads the book version an update is conditional on from an {@code If-Match} header.
+     *
+     * @return the expected version, or null if the update is unconditional.
+     * @throws PreconditionFailedException if the header can never match a book, e.g. a weak tag, since
+     *                                     {@code If-Match} uses the strong comparison.
+     */
+    public Long toExpectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        List<ETag> tags = ETag.parse(ifMatch);
+        if (tags.size() != 1) {
+            throw new BadResourceException("If-Match must hold a single entity tag of the book: " + ifMatch);
+        }
+
+        ETag tag = tags.get(0);
+        // Any current representation matches the wildcard, and there always is one for an existing book
+        if (tag.isWildcard()) {
+            return null;
+        }
+        if (tag.weak()) {
+            throw new PreconditionFailedException("A weak entity tag never matches If-Match: " + ifMatch);
+        }
+        try {
+            return Long.parseLong(tag.tag());
+        } catch (NumberFormatException ex) {
+            throw new PreconditionFailedException("The entity tag " + tag + " does not match the book");
+        }
+    }
+
+    private static String quote(String tag) {
+        return "\"" + tag + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
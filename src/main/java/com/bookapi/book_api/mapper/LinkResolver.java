@@ -0,0 +1,37 @@
+package com.bookapi.book_api.mapper;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Expands {@link LinkTemplate}s against the base URI of the current request.
+ * <p>
+ * The base URI (scheme, host, port and context path) is resolved once per request and kept in the
+ * request attributes, so a list response does not reparse the request for every item it links.
+ * Outside of a request links are relative to the root.
+ */
+@Component
+public class LinkResolver {
+
+    private static final String BASE_URI_ATTRIBUTE = LinkResolver.class.getName() + ".baseUri";
+
+    public String expand(LinkTemplate template, Object... values) {
+        return template.expand(baseUri(), values);
+    }
+
+    String baseUri() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return "";
+        }
+
+        String baseUri = (String) requestAttributes.getAttribute(BASE_URI_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (baseUri == null) {
+            baseUri = ServletUriComponentsBuilder.fromCurrentServletMapping().toUriString();
+            requestAttributes.setAttribute(BASE_URI_ATTRIBUTE, baseUri, RequestAttributes.SCOPE_REQUEST);
+        }
+        return baseUri;
+    }
+}
@@ -0,0 +1,81 @@
+package com.bookapi.book_api.mapper;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.util.UriUtils;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A link path such as {@code /books/{bookId}/reservations}, split once into its literal text and
+ * variable slots so that expanding it is plain string concatenation.
+ */
+public final class LinkTemplate {
+
+    // One more literal than there are variables, the first and last may be empty
+    private final String[] literals;
+    private final int length;
+
+    private LinkTemplate(String[] literals) {
+        this.literals = literals;
+        int literalLength = 0;
+        for (String literal : literals) {
+            literalLength += literal.length();
+        }
+        this.length = literalLength;
+    }
+
+    public static LinkTemplate compile(String path) {
+        List<String> literals = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = path.indexOf('{', start)) >= 0) {
+            int close = path.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed variable in link template: " + path);
+            }
+            literals.add(path.substring(start, open));
+            start = close + 1;
+        }
+        literals.add(path.substring(start));
+        return new LinkTemplate(literals.toArray(String[]::new));
+    }
+
+    /**
+     * Compiles the path mapped to a controller method, so the template follows the API contract
+     * instead of repeating it.
+     */
+    public static LinkTemplate forMethod(Class<?> controllerType, String methodName, Class<?>... parameterTypes) {
+        Method method = ReflectionUtils.findMethod(controllerType, methodName, parameterTypes);
+        RequestMapping mapping = method != null
+                ? AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class)
+                : null;
+        if (mapping == null || mapping.path().length == 0) {
+            throw new IllegalArgumentException("No request mapping found for " + controllerType.getSimpleName() + "." + methodName);
+        }
+        return compile(mapping.path()[0]);
+    }
+
+    public int variableCount() {
+        return literals.length - 1;
+    }
+
+    public String expand(String baseUri, Object... values) {
+        if (values.length != variableCount()) {
+            throw new IllegalArgumentException("Expected " + variableCount() + " link variables but got " + values.length);
+        }
+
+        // Ids are 36 characters, size the builder so it never has to grow for them
+        StringBuilder href = new StringBuilder(baseUri.length() + length + values.length * 36);
+        href.append(baseUri).append(literals[0]);
+        for (int i = 0; i < values.length; i++) {
+            href.append(UriUtils.encodePathSegment(String.valueOf(values[i]), StandardCharsets.UTF_8))
+                    .append(literals[i + 1]);
+        }
+        return href.toString();
+    }
+}
@@ -5,6 +5,8 @@ import com.bookapi.book_api.dto.generated.ReservationListResponse;
 import com.bookapi.book_api.dto.generated.ReservationOutput;
 import com.bookapi.book_api.model.Reservation;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Component;
 
 import java.time.ZoneOffset;
@@ -14,6 +16,12 @@ import java.util.stream.Collectors;
 @Component
 public class ReservationMapper {
 
+    private final CursorMapper cursorMapper;
+
+    public ReservationMapper(CursorMapper cursorMapper) {
+        this.cursorMapper = cursorMapper;
+    }
+
     public ReservationOutput toReservationOutput(Reservation reservation) {
         if (reservation == null) {
             return null;
@@ -23,23 +31,45 @@ public class ReservationMapper {
         dto.setId(reservation.getId());
         dto.setBookId(reservation.getBookId());
         dto.setUserId(reservation.getUserId());
-        dto.setState(reservation.getState());
+        dto.setState(ReservationOutput.StateEnum.valueOf(reservation.getState().name()));
         dto.setReservedAt(reservation.getReservedAt().atOffset(ZoneOffset.UTC));
+        if (reservation.getClosedAt() != null) {
+            dto.setClosedAt(reservation.getClosedAt().atOffset(ZoneOffset.UTC));
+        }
         return dto;
     }
 
     public ReservationListResponse toReservationListResponse(Page<Reservation> reservationPage) {
+        return toReservationListResponse(reservationPage, reservationPage.getTotalElements());
+    }
+
+    public ReservationListResponse toReservationListResponse(Slice<Reservation> reservationSlice, Long totalCount) {
+        // Convert the list of Reservation models to a list of ReservationOutput DTOs
+        List<ReservationOutput> reservationOutputs = reservationSlice.getContent().stream()
+                .map(this::toReservationOutput)
+                .collect(Collectors.toList());
+
+        // Create the final response DTO, the total count is left out when it was not requested
+        ReservationListResponse response = new ReservationListResponse();
+        response.setItems(reservationOutputs);
+        response.setTotalCount(totalCount != null ? totalCount.intValue() : null);
+        response.setOffset((int) reservationSlice.getPageable().getOffset());
+        response.setLimit(reservationSlice.getPageable().getPageSize());
+        response.setNext(cursorMapper.toNextLink(reservationSlice));
+        return response;
+    }
+
+    public ReservationListResponse toReservationListResponse(Window<Reservation> reservationWindow, int limit) {
         // Convert the list of Reservation models to a list of ReservationOutput DTOs
-        List<ReservationOutput> reservationOutputs = reservationPage.getContent().stream()
+        List<ReservationOutput> reservationOutputs = reservationWindow.getContent().stream()
                 .map(this::toReservationOutput)
                 .collect(Collectors.toList());
 
-        // Create the final response DTO
+        // Cursor pages carry no total count or offset, only the link to the next page
         ReservationListResponse response = new ReservationListResponse();
         response.setItems(reservationOutputs);
-        response.setTotalCount((int) reservationPage.getTotalElements());
-        response.setOffset((int) reservationPage.getPageable().getOffset());
-        response.setLimit(reservationPage.getPageable().getPageSize());
+        response.setLimit(limit);
+        response.setNext(cursorMapper.toNextLink(reservationWindow, limit));
         return response;
     }
 }
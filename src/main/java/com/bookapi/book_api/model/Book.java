@@ -3,8 +3,11 @@ package com.bookapi.book_api.model;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Data
@@ -15,14 +18,34 @@ public class Book {
     @Id
     private UUID id;
 
+    // A single text index covers all three fields, a match in the title ranks highest
+    @TextIndexed(weight = 3)
     private String title;
+    @TextIndexed(weight = 2)
     private String author;
+    @TextIndexed
     private String synopsis;
+    // availableCopies is only ever changed by conditional $inc updates, never by saving a loaded book
+    private int copies;
+    private int availableCopies;
+    // Raised by every write to the book, including the copy counters, it is the entity tag of the book
+    private long version;
+    private Instant lastModified;
+    // Relevance to a text search, only read on search results and never stored
+    @TextScore
+    private Float score;
 
     public Book(String title, String author, String synopsis) {
+        this(title, author, synopsis, 1);
+    }
+
+    public Book(String title, String author, String synopsis, int copies) {
         this.id = UUID.randomUUID();
         this.title = title;
         this.synopsis = synopsis;
         this.author = author;
+        this.copies = copies;
+        this.availableCopies = copies;
+        this.lastModified = Instant.now();
     }
 }
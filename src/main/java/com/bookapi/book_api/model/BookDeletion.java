@@ -0,0 +1,39 @@
+package com.bookapi.book_api.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A deleted book whose reservations are being removed in the background. It is recorded before the book
+ * itself is removed, so a cleanup interrupted by a crash is always resumed.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "bookDeletions")
+public class BookDeletion {
+
+    // The id of the deleted book, so a book is only ever cleaned up by a single deletion
+    @Id
+    private UUID bookId;
+    private Instant requestedAt;
+    // The progress of the cleanup, raised after every batch of reservations that is removed
+    private long removedReservations;
+    private Instant lastProgressAt;
+    // A worker owns the deletion until its lease runs out, then another worker takes it over
+    private String owner;
+    private Instant leaseUntil;
+    // Completed deletions are kept for a week as a record of the cleanup, then they expire
+    @Indexed(name = "completedAt_ttl", expireAfter = "7d")
+    private Instant completedAt;
+
+    public BookDeletion(UUID bookId) {
+        this.bookId = bookId;
+        this.requestedAt = Instant.now();
+    }
+}
@@ -0,0 +1,28 @@
+package com.bookapi.book_api.model;
+
+import com.bookapi.book_api.exception.BadResourceException;
+
+/**
+ * How the {@code totalCount} of an offset list response is filled, selected with the {@code count} query parameter.
+ */
+public enum CountMode {
+    // Count the matching documents on every call
+    EXACT,
+    // Serve a cached estimate of the collection size, refreshed in the background
+    ESTIMATED,
+    // Skip the count and only report whether there is a next page
+    NONE;
+
+    public static CountMode fromParameter(String value) {
+        // The parameter is optional, fall back to the historical behaviour
+        if (value == null) {
+            return EXACT;
+        }
+        for (CountMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new BadResourceException("Invalid count mode: " + value);
+    }
+}
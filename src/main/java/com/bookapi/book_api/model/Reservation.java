@@ -3,6 +3,8 @@ package com.bookapi.book_api.model;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -11,20 +13,36 @@ import java.util.UUID;
 @Data
 @NoArgsConstructor
 @Document(collection = "reservations")
+// Keyset pages sort on reservedAt with the id as tie-breaker, both for a single user and for the admin listing
+@CompoundIndex(name = "userId_reservedAt", def = "{'userId': 1, 'reservedAt': 1, '_id': 1}")
+@CompoundIndex(name = "reservedAt", def = "{'reservedAt': 1, '_id': 1}")
+// Reservations are looked up per book and state, e.g. to count the active reservations of a book
+@CompoundIndex(name = "bookId_state", def = "{'bookId': 1, 'state': 1}")
+// The expiry sweeper reads the oldest active reservations, which are at the start of this index
+@CompoundIndex(name = "state_reservedAt", def = "{'state': 1, 'reservedAt': 1}")
+// A user has at most one active reservation of a book, the filter matches the code of the RESERVED state
+@CompoundIndex(name = "userId_bookId_active", def = "{'userId': 1, 'bookId': 1}", unique = true,
+        partialFilter = "{'state': 0}")
 public class Reservation {
 
+    // Closed reservations are moved here after a while, which keeps the reservations collection to the active ones
+    public static final String HISTORY_COLLECTION = "reservationHistory";
+
     @Id
     private UUID id;
     private UUID bookId;
     private UUID userId;
-    private String state;
+    private ReservationState state;
     private Instant reservedAt;
+    // Set when the reservation leaves the RESERVED state, so the sparse index only holds closed reservations
+    @Indexed(name = "closedAt", sparse = true)
+    private Instant closedAt;
 
     public Reservation(UUID bookId, UUID userId) {
         this.id = UUID.randomUUID();
         this.bookId = bookId;
         this.userId = userId;
-        this.state = "Reserved";
+        this.state = ReservationState.RESERVED;
         this.reservedAt = Instant.now();
     }
 
@@ -0,0 +1,23 @@
+package com.bookapi.book_api.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.UUID;
+
+/**
+ * The number of active reservations of a user, raised with a conditional update when a reservation is made
+ * and lowered when it is closed, so the quota is checked without counting the reservations.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "reservationQuotas")
+public class ReservationQuota {
+
+    // The id of the user, a user has a single counter which their first reservation creates
+    @Id
+    private UUID userId;
+    private int activeReservations;
+}
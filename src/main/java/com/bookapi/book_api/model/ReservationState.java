@@ -0,0 +1,37 @@
+package com.bookapi.book_api.model;
+
+/**
+ * The lifecycle of a reservation. It starts out {@link #RESERVED} and moves to exactly one of the other
+ * states, which are final.
+ * <p>
+ * A state is stored as its small integer code rather than its name, the codes must never be reused.
+ */
+public enum ReservationState {
+    // Holds a copy of the book for the user
+    RESERVED(0),
+    // The copy was handed to the user
+    FULFILLED(1),
+    // The user or an admin cancelled it, the copy was given back
+    CANCELLED(2),
+    // It was not fulfilled within the hold period, the copy was given back
+    EXPIRED(3);
+
+    private final int code;
+
+    ReservationState(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static ReservationState fromCode(int code) {
+        for (ReservationState state : values()) {
+            if (state.code == code) {
+                return state;
+            }
+        }
+        throw new IllegalArgumentException("Unknown reservation state code: " + code);
+    }
+}
@@ -0,0 +1,22 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.BookDeletion;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface BookDeletionRepository extends MongoRepository<BookDeletion, UUID>, BookDeletionRepositoryCustom {
+
+    long countByCompletedAtIsNull();
+
+    /**
+     * @return the query {@link #countByCompletedAtIsNull} derives, for the {@link QueryPlanAuditor} to explain.
+     */
+    static Query unfinished() {
+        return Query.query(Criteria.where("completedAt").is(null));
+    }
+}
@@ -0,0 +1,18 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.BookDeletion;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+public interface BookDeletionRepositoryCustom {
+
+    boolean insertIfAbsent(BookDeletion bookDeletion);
+
+    BookDeletion claimNext(String owner, Instant requestedBefore, Duration lease);
+
+    boolean recordProgress(UUID bookId, String owner, long removedReservations, Duration lease);
+
+    boolean complete(UUID bookId, String owner);
+}
@@ -0,0 +1,94 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.BookDeletion;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+public class BookDeletionRepositoryCustomImpl implements BookDeletionRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+
+    public BookDeletionRepositoryCustomImpl(MongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+    }
+
+    /**
+     * Records a deletion unless one is already recorded for the book.
+     *
+     * @return true if the deletion was recorded, false if the book already had one.
+     */
+    @Override
+    public boolean insertIfAbsent(BookDeletion bookDeletion) {
+        try {
+            mongoTemplate.insert(bookDeletion);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes the oldest unfinished deletion that no worker holds a lease on, in a single findAndModify, so two
+     * workers never take the same one. A lease that ran out belonged to a worker that stopped or crashed.
+     *
+     * @param requestedBefore only deletions recorded before this time are taken.
+     * @return the deletion with the new lease, or null if there is none to take.
+     */
+    @Override
+    public BookDeletion claimNext(String owner, Instant requestedBefore, Duration lease) {
+        Instant now = Instant.now();
+        Update update = new Update().set("owner", owner).set("leaseUntil", now.plus(lease));
+        return mongoTemplate.findAndModify(claimable(requestedBefore, now), update,
+                FindAndModifyOptions.options().returnNew(true), BookDeletion.class);
+    }
+
+    /**
+     * Adds a batch of removed reservations to the progress and renews the lease.
+     *
+     * @return false if the worker no longer holds the lease, it must then stop.
+     */
+    @Override
+    public boolean recordProgress(UUID bookId, String owner, long removedReservations, Duration lease) {
+        Instant now = Instant.now();
+        Update update = new Update()
+                .inc("removedReservations", removedReservations)
+                .set("lastProgressAt", now)
+                .set("leaseUntil", now.plus(lease));
+        return mongoTemplate.updateFirst(ownedBy(bookId, owner), update, BookDeletion.class).getModifiedCount() == 1;
+    }
+
+    /**
+     * Marks a deletion as completed and releases its lease.
+     *
+     * @return false if the worker no longer holds the lease.
+     */
+    @Override
+    public boolean complete(UUID bookId, String owner) {
+        Update update = new Update().set("completedAt", Instant.now()).unset("leaseUntil");
+        return mongoTemplate.updateFirst(ownedBy(bookId, owner), update, BookDeletion.class).getModifiedCount() == 1;
+    }
+
+    // Also explained by the QueryPlanAuditor, so it audits what claimNext runs
+    static Query claimable(Instant requestedBefore, Instant now) {
+        return Query.query(Criteria.where("completedAt").is(null)
+                        .and("requestedAt").lt(requestedBefore)
+                        .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now)))
+                .with(Sort.by("requestedAt"));
+    }
+
+    // A deletion recorded before UUIDs were standard is still held by its legacy id
+    private Query ownedBy(UUID bookId, String owner) {
+        return Query.query(legacyUuids.where("_id", bookId).and("owner").is(owner).and("completedAt").is(null));
+    }
+}
@@ -1,11 +1,50 @@
 package com.bookapi.book_api.repository;
 
 import com.bookapi.book_api.model.Book;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface BookRepository extends MongoRepository<Book, UUID> {
+public interface BookRepository extends MongoRepository<Book, UUID>, BookRepositoryCustom {
+    // Cursor pages seek on the _id index so every page costs the same regardless of depth
+    Sort CURSOR_SORT = Sort.by("id");
+
+    // Implemented by BookRepositoryCustomImpl, which also matches legacy UUIDs
+    @Override
+    Optional<Book> findById(UUID id);
+
+    @Override
+    boolean existsById(UUID id);
+
+    // A Slice reads one extra document to detect a next page instead of running a count
+    Slice<Book> findAllBy(Pageable pageable);
+
+    // An explicit empty filter is needed, keyset scrolling cannot extend the derived empty query
+    @Query("{}")
+    Window<Book> findAllBy(ScrollPosition position, Limit limit, Sort sort);
+
+    // Text search through the text index, the most relevant books first with their score read into Book.score
+    Page<Book> findAllByOrderByScoreDesc(TextCriteria criteria, Pageable pageable);
+
+    Slice<Book> findSliceByOrderByScoreDesc(TextCriteria criteria, Pageable pageable);
+
+    /**
+     * @return the query the derived text searches above run, for the {@link QueryPlanAuditor} to explain.
+     */
+    static TextQuery textSearch(TextCriteria criteria) {
+        return TextQuery.queryText(criteria).sortByScore();
+    }
 }
@@ -0,0 +1,41 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Book;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface BookRepositoryCustom {
+
+    Optional<Book> findById(UUID bookId);
+
+    boolean existsById(UUID bookId);
+
+    boolean takeCopy(UUID bookId);
+
+    boolean returnCopy(UUID bookId);
+
+    boolean returnCopies(UUID bookId, int count);
+
+    void returnCopies(Map<UUID, Integer> countsByBook);
+
+    Book replaceDetails(UUID bookId, Long expectedVersion, String title, String author, String synopsis,
+                        Integer copies, Instant lastModified);
+
+    Book patchDetails(UUID bookId, Long expectedVersion, String title, String author, String synopsis,
+                      Integer copies, Instant lastModified);
+
+    Book findAndRemove(UUID bookId);
+
+    long backfillCopies(int copies);
+
+    long backfillVersions();
+
+    Map<Integer, String> insertUnordered(List<Book> books);
+
+    Stream<Book> streamAll(int batchSize);
+}
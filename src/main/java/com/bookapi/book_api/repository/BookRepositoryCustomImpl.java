@@ -0,0 +1,267 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.Document;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+
+    public BookRepositoryCustomImpl(MongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+    }
+
+    // Both look the book up in either UUID representation while legacy ones are stored
+    @Override
+    public Optional<Book> findById(UUID bookId) {
+        return Optional.ofNullable(mongoTemplate.findOne(Query.query(legacyUuids.where("_id", bookId)), Book.class));
+    }
+
+    @Override
+    public boolean existsById(UUID bookId) {
+        return mongoTemplate.exists(Query.query(legacyUuids.where("_id", bookId)), Book.class);
+    }
+
+    /**
+     * Decrements the available copies of a book in a single conditional update, which only matches
+     * while a copy is left. Concurrent reservers of the same book are serialized by the server, so
+     * the counter can never go below zero.
+     *
+     * @return true if a copy was taken, false if the book does not exist or has no copy left.
+     */
+    @Override
+    public boolean takeCopy(UUID bookId) {
+        Query query = Query.query(legacyUuids.where("_id", bookId).and("availableCopies").gt(0));
+        Update update = changed(new Update().inc("availableCopies", -1));
+        return mongoTemplate.updateFirst(query, update, Book.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public boolean returnCopy(UUID bookId) {
+        return returnCopies(bookId, 1);
+    }
+
+    @Override
+    public boolean returnCopies(UUID bookId, int count) {
+        Query query = Query.query(returnable(bookId, count));
+        Update update = changed(new Update().inc("availableCopies", count));
+        return mongoTemplate.updateFirst(query, update, Book.class).getModifiedCount() == 1;
+    }
+
+    // Gives back the copies of many books in one round trip, a book deleted meanwhile is not matched
+    @Override
+    public void returnCopies(Map<UUID, Integer> countsByBook) {
+        if (countsByBook.isEmpty()) {
+            return;
+        }
+        BulkOperations books = mongoTemplate.bulkOps(BulkMode.UNORDERED, Book.class);
+        countsByBook.forEach((bookId, count) -> books.updateOne(Query.query(returnable(bookId, count)),
+                changed(new Update().inc("availableCopies", count))));
+        books.execute();
+    }
+
+    /**
+     * Replaces the descriptive fields of a book with the same single update as {@link #patchDetails}, a null
+     * synopsis clears it. Copies passed as null keep their value.
+     *
+     * @return the book as stored before the change, or null if it does not exist or a condition no longer holds.
+     */
+    @Override
+    public Book replaceDetails(UUID bookId, Long expectedVersion, String title, String author, String synopsis,
+                               Integer copies, Instant lastModified) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("title", title);
+        fields.put("author", author);
+        fields.put("synopsis", synopsis);
+        return updateFields(bookId, expectedVersion, fields, copies, lastModified);
+    }
+
+    /**
+     * Sets the given fields of a book in a single findAndModify, fields passed as null keep their value. When
+     * the copies change the available copies move with them, in an update pipeline that reads the stored
+     * counters, and only while at least as many copies remain as are reserved.
+     *
+     * @param expectedVersion the version the book must still be at, or null to change any version.
+     * @param lastModified    the new modification time, set by the caller so the returned book can be patched
+     *                        to exactly what was stored.
+     * @return the book as stored before the change, or null if it does not exist or a condition no longer holds.
+     */
+    @Override
+    public Book patchDetails(UUID bookId, Long expectedVersion, String title, String author, String synopsis,
+                             Integer copies, Instant lastModified) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        putIfNotNull(fields, "title", title);
+        putIfNotNull(fields, "author", author);
+        putIfNotNull(fields, "synopsis", synopsis);
+        return updateFields(bookId, expectedVersion, fields, copies, lastModified);
+    }
+
+    private Book updateFields(UUID bookId, Long expectedVersion, Map<String, Object> fields, Integer copies,
+                              Instant lastModified) {
+        Criteria criteria = legacyUuids.where("_id", bookId);
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+
+        FindAndModifyOptions returnPrevious = FindAndModifyOptions.options().returnNew(false);
+
+        if (copies == null) {
+            Update update = new Update().inc("version", 1).set("lastModified", lastModified);
+            fields.forEach(update::set);
+            return mongoTemplate.findAndModify(Query.query(criteria), update, returnPrevious, Book.class);
+        }
+
+        // Only unreserved copies can be removed, the reserved ones are the difference of the two counters
+        criteria = criteria.andOperator(Criteria.expr(ComparisonOperators
+                .valueOf(ArithmeticOperators.valueOf("copies").subtract("availableCopies"))
+                .lessThanEqualToValue(copies)));
+
+        // Values are passed as literals, so a title starting with $ is never read as a field path
+        Document set = new Document();
+        fields.forEach((field, value) -> set.append(field, new Document("$literal", value)));
+        set.append("availableCopies", new Document("$add",
+                        List.of("$availableCopies", new Document("$subtract", List.of(copies, "$copies")))))
+                .append("copies", copies)
+                .append("version", new Document("$add", List.of("$version", 1)))
+                .append("lastModified", Date.from(lastModified));
+        AggregationUpdate update = AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+        return mongoTemplate.findAndModify(Query.query(criteria), update, returnPrevious, Book.class);
+    }
+
+    /**
+     * Removes a book in a single findAndRemove.
+     *
+     * @return the removed book, or null if it does not exist.
+     */
+    @Override
+    public Book findAndRemove(UUID bookId) {
+        return mongoTemplate.findAndRemove(Query.query(legacyUuids.where("_id", bookId)), Book.class);
+    }
+
+    /**
+     * Gives books stored before copies were tracked the given number of copies, of which those not held by an
+     * active reservation are available. Such a book has no available copy to take until it is backfilled, so
+     * the count of its active reservations cannot grow meanwhile.
+     *
+     * @return the number of books updated.
+     */
+    @Override
+    public long backfillCopies(int copies) {
+        Criteria untracked = Criteria.where("copies").exists(false);
+        if (!mongoTemplate.exists(Query.query(untracked), Book.class)) {
+            return 0;
+        }
+
+        // Reads the bookId_state index, ids stored in either UUID representation count towards the same book
+        Aggregation activeByBook = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("state").is(ReservationState.RESERVED)),
+                Aggregation.group("bookId").count().as("activeReservations"));
+        ConversionService conversions = mongoTemplate.getConverter().getConversionService();
+        Map<UUID, Integer> activeReservations = new LinkedHashMap<>();
+        for (Document count : mongoTemplate.aggregate(activeByBook, Reservation.class, Document.class)) {
+            activeReservations.merge(conversions.convert(count.get("_id"), UUID.class),
+                    count.getInteger("activeReservations"), Integer::sum);
+        }
+
+        long updated = 0;
+        if (!activeReservations.isEmpty()) {
+            BulkOperations books = mongoTemplate.bulkOps(BulkMode.UNORDERED, Book.class);
+            activeReservations.forEach((bookId, active) -> books.updateOne(
+                    Query.query(legacyUuids.where("_id", bookId).andOperator(untracked)),
+                    changed(new Update().set("copies", copies).set("availableCopies", Math.max(0, copies - active)))));
+            updated = books.execute().getModifiedCount();
+        }
+        Update update = changed(new Update().set("copies", copies).set("availableCopies", copies));
+        return updated + mongoTemplate.updateMulti(Query.query(untracked), update, Book.class).getModifiedCount();
+    }
+
+    /**
+     * Gives books stored before they were versioned their first version, so conditional updates match them.
+     *
+     * @return the number of books updated.
+     */
+    @Override
+    public long backfillVersions() {
+        Query query = Query.query(Criteria.where("version").exists(false));
+        Update update = new Update().set("version", 0L).currentDate("lastModified");
+        return mongoTemplate.updateMulti(query, update, Book.class).getModifiedCount();
+    }
+
+    /**
+     * Inserts the books in one unordered bulk write, so the server keeps going past a failed document
+     * and may apply the inserts in parallel.
+     *
+     * @return the error of every book that was not inserted, keyed by its index in {@code books}.
+     */
+    @Override
+    public Map<Integer, String> insertUnordered(List<Book> books) {
+        if (books.isEmpty()) {
+            return Map.of();
+        }
+
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, Book.class).insert(books).execute();
+            return Map.of();
+        } catch (BulkOperationException ex) {
+            Map<Integer, String> errors = new LinkedHashMap<>();
+            for (BulkWriteError error : ex.getErrors()) {
+                errors.put(error.getIndex(), error.getMessage());
+            }
+            return errors;
+        }
+    }
+
+    /**
+     * Streams every book in natural order from a server-side cursor that fetches {@code batchSize}
+     * books per round trip. The stream must be closed to release the cursor.
+     */
+    @Override
+    public Stream<Book> streamAll(int batchSize) {
+        return mongoTemplate.stream(new Query().cursorBatchSize(batchSize), Book.class);
+    }
+
+    private static void putIfNotNull(Map<String, Object> fields, String field, Object value) {
+        if (value != null) {
+            fields.put(field, value);
+        }
+    }
+
+    // Every write moves the book to a new version, which changes its entity tag
+    // Never gives back more copies than the book has, e.g. a release repeated after its counters were reset
+    private Criteria returnable(UUID bookId, int count) {
+        return legacyUuids.where("_id", bookId).andOperator(Criteria.expr(ComparisonOperators
+                .valueOf(ArithmeticOperators.valueOf("availableCopies").add(count))
+                .lessThanEqualTo("copies")));
+    }
+
+    private static Update changed(Update update) {
+        return update.inc("version", 1).currentDate("lastModified");
+    }
+}
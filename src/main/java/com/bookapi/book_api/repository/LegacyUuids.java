@@ -0,0 +1,71 @@
+package com.bookapi.book_api.repository;
+
+import org.bson.BsonBinary;
+import org.bson.BsonString;
+import org.bson.UuidRepresentation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Matches ids and references in the standard binary representation the application writes as well as in the
+ * legacy Java binary one and as strings, for as long as the {@link UuidMigrator} may not have rewritten every
+ * stored document. Documents are then found by id before and after their batch is migrated. Once a migration
+ * reports that nothing is left it records so in the {@link UuidMigrator#STATUS_COLLECTION}, and queries go back
+ * to the standard representation alone.
+ */
+@Component
+public class LegacyUuids {
+
+    private volatile boolean stored = true;
+
+    /**
+     * @return true until a migration rewrote every stored UUID.
+     */
+    public boolean stored() {
+        return stored;
+    }
+
+    public void migrated() {
+        stored = false;
+    }
+
+    /**
+     * @return a criteria matching the UUID at {@code key} in any of its representations.
+     */
+    public Criteria where(String key, UUID id) {
+        return Criteria.where(key).in(values(id));
+    }
+
+    /**
+     * @return a criteria matching any of the UUIDs at {@code key} in any of their representations.
+     */
+    public Criteria in(String key, Collection<UUID> ids) {
+        return Criteria.where(key).in(values(ids));
+    }
+
+    /**
+     * @return the values a UUID may be stored as, to be matched with {@code $in}.
+     */
+    public List<Object> values(UUID id) {
+        return stored ? List.of(id, legacy(id), new BsonString(id.toString())) : List.of(id);
+    }
+
+    public List<Object> values(Collection<UUID> ids) {
+        List<Object> values = new ArrayList<>(ids.size() * 3);
+        for (UUID id : ids) {
+            values.addAll(values(id));
+        }
+        return values;
+    }
+
+    // Bson values are passed to the driver as they are, a UUID or a String would be converted to the
+    // standard representation
+    public static BsonBinary legacy(UUID id) {
+        return new BsonBinary(id, UuidRepresentation.JAVA_LEGACY);
+    }
+}
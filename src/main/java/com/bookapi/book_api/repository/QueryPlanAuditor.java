@@ -0,0 +1,165 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.BookDeletion;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.model.User;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Explains the query shapes issued by the repositories and reports which plan stages the server picks,
+ * so a query that would fall back to a collection scan is visible before it reaches production.
+ */
+@Component
+public class QueryPlanAuditor {
+
+    public static final String COLLECTION_SCAN = "COLLSCAN";
+
+    private final MongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+    private final QueryMapper queryMapper;
+
+    public QueryPlanAuditor(MongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+    }
+
+    public List<QueryPlanReport> audit() {
+        List<QueryPlanReport> reports = new ArrayList<>();
+        for (QueryShape shape : queryShapes()) {
+            reports.add(new QueryPlanReport(shape.name(), shape.collection(), explainStages(shape)));
+        }
+        return reports;
+    }
+
+    /**
+     * The filters and sorts sent by the repository methods, built by the same query methods the repositories
+     * run, with placeholder values, and mapped to the stored field names and types as MongoTemplate maps them.
+     * Unfiltered offset listings are left out on purpose, they read the collection in natural order.
+     */
+    List<QueryShape> queryShapes() {
+        UUID id = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        return List.of(
+                keysetShape("BookRepository.findAllBy(cursor)",
+                        new Query().with(BookRepository.CURSOR_SORT), Book.class),
+                shape("BookRepository.findAllByOrderByScoreDesc",
+                        BookRepository.textSearch(TextCriteria.forDefaultLanguage().matching("galaxy")), Book.class),
+                shape("ReservationRepository.findByUserId(pageable)",
+                        ReservationRepositoryCustomImpl.byUserId(legacyUuids, id), Reservation.class),
+                keysetShape("ReservationRepository.findByUserId(cursor)",
+                        ReservationRepositoryCustomImpl.byUserId(legacyUuids, id)
+                                .with(ReservationRepository.CURSOR_SORT), Reservation.class),
+                keysetShape("ReservationRepository.findAllBy(cursor)",
+                        new Query().with(ReservationRepository.CURSOR_SORT), Reservation.class),
+                shape("ReservationRepository.findIdsByBookId",
+                        ReservationRepositoryCustomImpl.byBookId(legacyUuids, id), Reservation.class),
+                keysetShape("ReservationRepository.findIdsByStateAndReservedAtBefore",
+                        ReservationRepositoryCustomImpl.overdue(ReservationState.RESERVED, now), Reservation.class),
+                shape("ReservationRepository.countByStateAndReservedAtBefore",
+                        ReservationRepositoryCustomImpl.overdue(ReservationState.RESERVED, now), Reservation.class),
+                shape("ReservationRepository.findByClosedAtBefore",
+                        ReservationRepositoryCustomImpl.closedBefore(now), Reservation.class),
+                shape("UserRepository.findByEmail",
+                        UserRepository.byEmail("someone@example.com"), User.class),
+                shape("BookDeletionRepository.claimNext",
+                        BookDeletionRepositoryCustomImpl.claimable(now, now), BookDeletion.class),
+                shape("BookDeletionRepository.countByCompletedAtIsNull",
+                        BookDeletionRepository.unfinished(), BookDeletion.class)
+        );
+    }
+
+    private QueryShape shape(String name, Query query, Class<?> type) {
+        return shape(name, query.getQueryObject(), query, type);
+    }
+
+    // MongoTemplate.scroll adds the keyset to the filter: past the position in the sort order on the first sort
+    // key, or equal on it and past the position on the next one, and so on
+    private QueryShape keysetShape(String name, Query query, Class<?> type) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(type);
+        Document sort = query.getSortObject();
+        List<String> keys = new ArrayList<>(sort.keySet());
+        List<Document> keyset = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Document constraint = new Document();
+            for (String key : keys.subList(0, i)) {
+                constraint.append(key, placeholder(entity, key));
+            }
+            String comparator = sort.getInteger(keys.get(i)) < 0 ? "$lt" : "$gt";
+            keyset.add(constraint.append(keys.get(i), new Document(comparator, placeholder(entity, keys.get(i)))));
+        }
+        Document filter = new Document(query.getQueryObject()).append("$or", keyset);
+        return shape(name, filter, query, type);
+    }
+
+    private QueryShape shape(String name, Document filter, Query query, Class<?> type) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(type);
+        return new QueryShape(name, mongoTemplate.getCollectionName(type),
+                queryMapper.getMappedObject(filter, entity), queryMapper.getMappedSort(query.getSortObject(), entity));
+    }
+
+    private Object placeholder(MongoPersistentEntity<?> entity, String key) {
+        Class<?> type = entity.getRequiredPersistentProperty(key).getType();
+        if (type == UUID.class) {
+            return UUID.randomUUID();
+        }
+        if (type == Instant.class) {
+            return Instant.now();
+        }
+        throw new IllegalArgumentException("No placeholder for the keyset property " + key + " of type " + type);
+    }
+
+    private List<String> explainStages(QueryShape shape) {
+        Document find = new Document("find", shape.collection())
+                .append("filter", shape.filter())
+                .append("sort", shape.sort())
+                .append("limit", 20);
+        Document explain = mongoTemplate.getDb().runCommand(
+                new Document("explain", find).append("verbosity", "queryPlanner"));
+
+        // The winning plan is a tree of stages, nested differently depending on the server's query engine
+        List<String> stages = new ArrayList<>();
+        Object queryPlanner = explain.get("queryPlanner");
+        if (queryPlanner instanceof Document planner) {
+            collectStages(planner.get("winningPlan"), stages);
+        }
+        return stages;
+    }
+
+    private void collectStages(Object node, List<String> stages) {
+        if (node instanceof Map<?, ?> map) {
+            Object stage = map.get("stage");
+            if (stage instanceof String stageName) {
+                stages.add(stageName);
+            }
+            map.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
+    record QueryShape(String name, String collection, Document filter, Document sort) {}
+
+    public record QueryPlanReport(String shape, String collection, List<String> stages) {
+        public boolean isCollectionScan() {
+            return stages.contains(COLLECTION_SCAN);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.ReservationQuota;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface ReservationQuotaRepository extends MongoRepository<ReservationQuota, UUID>,
+        ReservationQuotaRepositoryCustom {
+}
@@ -0,0 +1,15 @@
+package com.bookapi.book_api.repository;
+
+import java.util.Map;
+import java.util.UUID;
+
+public interface ReservationQuotaRepositoryCustom {
+
+    boolean take(UUID userId, int maxActiveReservations);
+
+    void release(UUID userId, int count);
+
+    void release(Map<UUID, Integer> countsByUser);
+
+    long reconcile();
+}
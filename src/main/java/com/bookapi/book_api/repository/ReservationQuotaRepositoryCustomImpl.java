@@ -0,0 +1,144 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationQuota;
+import com.bookapi.book_api.model.ReservationState;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public class ReservationQuotaRepositoryCustomImpl implements ReservationQuotaRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ReservationQuotaRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Counts a reservation against the quota of a user in a single conditional upsert, which only matches
+     * while the user has fewer than {@code maxActiveReservations} active reservations. Concurrent reservations
+     * of the same user are serialized by the server, so the counter never goes past the quota.
+     *
+     * @return true if the reservation was counted, false if the user is at the quota.
+     */
+    @Override
+    public boolean take(UUID userId, int maxActiveReservations) {
+        Query query = Query.query(Criteria.where("_id").is(userId)
+                .and("activeReservations").lt(maxActiveReservations));
+        Update update = new Update().inc("activeReservations", 1);
+        try {
+            mongoTemplate.upsert(query, update, ReservationQuota.class);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            // The counter exists but did not match, it is either at the quota or was just created by a
+            // concurrent first reservation of the user, which a second attempt tells apart
+            try {
+                mongoTemplate.upsert(query, update, ReservationQuota.class);
+                return true;
+            } catch (DuplicateKeyException atQuota) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void release(UUID userId, int count) {
+        // Only ever lowered by what was counted, the counter never goes below zero
+        Query query = Query.query(Criteria.where("_id").is(userId).and("activeReservations").gte(count));
+        mongoTemplate.updateFirst(query, new Update().inc("activeReservations", -count), ReservationQuota.class);
+    }
+
+    // Releases the quota of many users in one round trip, with the same floor as a single release
+    @Override
+    public void release(Map<UUID, Integer> countsByUser) {
+        if (countsByUser.isEmpty()) {
+            return;
+        }
+        BulkOperations quotas = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReservationQuota.class);
+        countsByUser.forEach((userId, count) -> quotas.updateOne(
+                Query.query(Criteria.where("_id").is(userId).and("activeReservations").gte(count)),
+                new Update().inc("activeReservations", -count)));
+        quotas.execute();
+    }
+
+    /**
+     * Sets the quota counter of every user to the number of their active reservations, which also corrects a
+     * counter that drifted, e.g. when a release failed after its reservation was closed. A counter is only set
+     * while it still holds the value read before the reservations were counted, so one changed by a reservation
+     * made or closed meanwhile is left for the next run.
+     *
+     * @return the number of counters corrected.
+     */
+    @Override
+    public long reconcile() {
+        // Read first, a reservation counted below was then either counted here as well or changes the counter
+        Map<UUID, Integer> counters = new HashMap<>();
+        try (Stream<ReservationQuota> quotas = mongoTemplate.stream(
+                Query.query(Criteria.where("activeReservations").gt(0)), ReservationQuota.class)) {
+            quotas.forEach(quota -> counters.put(quota.getUserId(), quota.getActiveReservations()));
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("state").is(ReservationState.RESERVED)),
+                Aggregation.group("userId").count().as("activeReservations"));
+        // The reservations of a user stored with a legacy UUID are grouped apart from those with a standard one
+        ConversionService conversionService = mongoTemplate.getConverter().getConversionService();
+        Map<UUID, Integer> activeReservations = new HashMap<>();
+        for (Document count : mongoTemplate.aggregate(aggregation, Reservation.class, Document.class)) {
+            activeReservations.merge(conversionService.convert(count.get("_id"), UUID.class),
+                    count.getInteger("activeReservations"), Integer::sum);
+        }
+
+        Set<UUID> userIds = new HashSet<>(counters.keySet());
+        userIds.addAll(activeReservations.keySet());
+        BulkOperations quotas = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReservationQuota.class);
+        int corrections = 0;
+        for (UUID userId : userIds) {
+            int counted = counters.getOrDefault(userId, 0);
+            int active = activeReservations.getOrDefault(userId, 0);
+            if (counted == active) {
+                continue;
+            }
+            // A missing counter is the same as zero, it is created unless a reservation created it meanwhile
+            Query query = Query.query(Criteria.where("_id").is(userId).and("activeReservations").is(counted));
+            Update update = new Update().set("activeReservations", active);
+            if (counted == 0) {
+                quotas.upsert(query, update);
+            } else {
+                quotas.updateOne(query, update);
+            }
+            corrections++;
+        }
+        if (corrections == 0) {
+            return 0;
+        }
+
+        try {
+            BulkWriteResult result = quotas.execute();
+            return result.getModifiedCount() + result.getUpserts().size();
+        } catch (BulkOperationException ex) {
+            // The upsert of a counter created meanwhile collides with it, and is left for the next run
+            if (ex.getErrors().stream().anyMatch(error -> error.getCategory() != ErrorCategory.DUPLICATE_KEY)) {
+                throw ex;
+            }
+            return ex.getResult().getModifiedCount() + ex.getResult().getUpserts().size();
+        }
+    }
+}
@@ -1,14 +1,35 @@
 package com.bookapi.book_api.repository;
 
 import com.bookapi.book_api.model.Reservation;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ReservationRepository extends MongoRepository<Reservation, UUID> {
-    Page<Reservation> findByUserId(UUID userId, Pageable pageable);
+public interface ReservationRepository extends MongoRepository<Reservation, UUID>, ReservationRepositoryCustom {
+    // Cursor pages are ordered by reservation time, with the id as a tie-breaker so the keyset is unique
+    Sort CURSOR_SORT = Sort.by("reservedAt", "id");
+
+    // Implemented by ReservationRepositoryCustomImpl, which also matches legacy UUIDs
+    @Override
+    Optional<Reservation> findById(UUID id);
+
+    @Override
+    void deleteAllById(Iterable<? extends UUID> ids);
+
+    // A Slice reads one extra document to detect a next page instead of running a count
+    Slice<Reservation> findAllBy(Pageable pageable);
+
+    // An explicit empty filter is needed, keyset scrolling cannot extend the derived empty query
+    @Query("{}")
+    Window<Reservation> findAllBy(ScrollPosition position, Limit limit, Sort sort);
 }
@@ -0,0 +1,55 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ReservationRepositoryCustom {
+    Optional<Reservation> findById(UUID id);
+
+    void deleteAllById(Iterable<? extends UUID> ids);
+
+    Page<Reservation> findByUserId(UUID userId, Pageable pageable);
+
+    Slice<Reservation> findSliceByUserId(UUID userId, Pageable pageable);
+
+    Window<Reservation> findByUserId(UUID userId, ScrollPosition position, Limit limit, Sort sort);
+
+    List<Reservation> findIdsByBookId(UUID bookId, Limit limit);
+
+    Window<Reservation> findIdsByStateAndReservedAtBefore(ReservationState state, Instant reservedBefore,
+                                                          ScrollPosition position, Limit limit);
+
+    long countByStateAndReservedAtBefore(ReservationState state, Instant reservedBefore);
+
+    List<Reservation> findByClosedAtBefore(Instant closedBefore, Limit limit);
+
+    boolean existsLegacyActiveReservation(UUID bookId, UUID userId);
+
+    Reservation transition(UUID bookId, UUID id, ReservationState from, ReservationState to);
+
+    long transitionAll(UUID bookId, Collection<UUID> ids, ReservationState from, ReservationState to,
+                       Instant closedAt);
+
+    List<Reservation> findClosedAt(Collection<UUID> ids, ReservationState state, Instant closedAt);
+
+    Optional<Reservation> findInHistory(UUID id);
+
+    void moveToHistory(List<Reservation> reservations);
+
+    long backfillStates();
+
+    List<Reservation> findDuplicateActiveReservations();
+}
@@ -0,0 +1,266 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import org.bson.Document;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public class ReservationRepositoryCustomImpl implements ReservationRepositoryCustom {
+
+    // Keyset windows of the sweeper seek past the (reservedAt, _id) of the last reservation read
+    private static final Sort OVERDUE_SORT = Sort.by("reservedAt", "id");
+
+    private final MongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+
+    public ReservationRepositoryCustomImpl(MongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+    }
+
+    // The lookups by id and by user below match the UUIDs in any of their representations, see LegacyUuids
+    @Override
+    public Optional<Reservation> findById(UUID id) {
+        return Optional.ofNullable(mongoTemplate.findOne(Query.query(legacyUuids.where("id", id)), Reservation.class));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends UUID> ids) {
+        List<UUID> idList = new ArrayList<>();
+        ids.forEach(idList::add);
+        mongoTemplate.remove(Query.query(legacyUuids.in("id", idList)), Reservation.class);
+    }
+
+    @Override
+    public Page<Reservation> findByUserId(UUID userId, Pageable pageable) {
+        List<Reservation> content = mongoTemplate.find(byUserId(userId).with(pageable), Reservation.class);
+        // Only counted when the page does not tell the total itself
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> mongoTemplate.count(byUserId(userId), Reservation.class));
+    }
+
+    @Override
+    public Slice<Reservation> findSliceByUserId(UUID userId, Pageable pageable) {
+        // Reads one extra reservation to detect a next page instead of running a count
+        Query query = byUserId(userId).with(pageable).limit(pageable.getPageSize() + 1);
+        List<Reservation> content = mongoTemplate.find(query, Reservation.class);
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    @Override
+    public Window<Reservation> findByUserId(UUID userId, ScrollPosition position, Limit limit, Sort sort) {
+        return mongoTemplate.scroll(byUserId(userId).with(position).limit(limit).with(sort), Reservation.class);
+    }
+
+    /**
+     * Reads only the ids, users and states of the reservations of a book, found on the {@code bookId_state}
+     * index, a batch of them is then removed with a single {@code $in}.
+     */
+    @Override
+    public List<Reservation> findIdsByBookId(UUID bookId, Limit limit) {
+        Query query = byBookId(legacyUuids, bookId).limit(limit);
+        query.fields().include("id", "userId", "state");
+        return mongoTemplate.find(query, Reservation.class);
+    }
+
+    /**
+     * Reads the ids, books and users of the active reservations held past a given time from the
+     * {@code state_reservedAt} index. The window seeks past the last reservation read, so a reservation that
+     * stays active is not read again.
+     */
+    @Override
+    public Window<Reservation> findIdsByStateAndReservedAtBefore(ReservationState state, Instant reservedBefore,
+                                                                 ScrollPosition position, Limit limit) {
+        Query query = overdue(state, reservedBefore).with(position).limit(limit);
+        query.fields().include("id", "bookId", "userId", "reservedAt");
+        return mongoTemplate.scroll(query, Reservation.class);
+    }
+
+    @Override
+    public long countByStateAndReservedAtBefore(ReservationState state, Instant reservedBefore) {
+        return mongoTemplate.count(overdue(state, reservedBefore), Reservation.class);
+    }
+
+    // Only closed reservations have a closedAt, so this reads the small sparse closedAt index
+    @Override
+    public List<Reservation> findByClosedAtBefore(Instant closedBefore, Limit limit) {
+        return mongoTemplate.find(closedBefore(closedBefore).limit(limit), Reservation.class);
+    }
+
+    /**
+     * Tells whether the user holds an active reservation of the book that still references both in the legacy
+     * representation, which the unique {@code userId_bookId_active} index does not compare with a new one.
+     *
+     * @return false without a query once no legacy UUIDs are stored.
+     */
+    @Override
+    public boolean existsLegacyActiveReservation(UUID bookId, UUID userId) {
+        if (!legacyUuids.stored()) {
+            return false;
+        }
+        Query query = Query.query(Criteria.where("userId").is(LegacyUuids.legacy(userId))
+                .and("bookId").is(LegacyUuids.legacy(bookId))
+                .and("state").is(ReservationState.RESERVED));
+        return mongoTemplate.exists(query, Reservation.class);
+    }
+
+    /**
+     * Moves a reservation of the book from one state to another in a single findAndModify that matches on the
+     * current state, so of two concurrent transitions only one ever applies. Every transition leaves the
+     * {@code RESERVED} state, which is when the reservation is closed.
+     *
+     * @return the reservation in its new state, or null if the book has no such reservation in that state.
+     */
+    @Override
+    public Reservation transition(UUID bookId, UUID id, ReservationState from, ReservationState to) {
+        Query query = Query.query(legacyUuids.where("id", id)
+                .and("bookId").in(legacyUuids.values(bookId))
+                .and("state").is(from));
+        Update update = new Update()
+                .set("state", to)
+                .set("closedAt", Instant.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                Reservation.class);
+    }
+
+    /**
+     * Moves the reservations of the book that are still in the {@code from} state to another state in a single
+     * update, with the given closing time so the caller can tell them apart from reservations closed meanwhile.
+     *
+     * @return the number of reservations moved.
+     */
+    @Override
+    public long transitionAll(UUID bookId, Collection<UUID> ids, ReservationState from, ReservationState to,
+                              Instant closedAt) {
+        Query query = Query.query(legacyUuids.in("id", ids)
+                .and("bookId").in(legacyUuids.values(bookId))
+                .and("state").is(from));
+        Update update = new Update()
+                .set("state", to)
+                .set("closedAt", closedAt);
+        return mongoTemplate.updateMulti(query, update, Reservation.class).getModifiedCount();
+    }
+
+    // The reservations among ids that were moved to the state at exactly the given closing time
+    @Override
+    public List<Reservation> findClosedAt(Collection<UUID> ids, ReservationState state, Instant closedAt) {
+        Query query = Query.query(legacyUuids.in("id", ids).and("state").is(state).and("closedAt").is(closedAt));
+        query.fields().include("id", "userId");
+        return mongoTemplate.find(query, Reservation.class);
+    }
+
+    @Override
+    public Optional<Reservation> findInHistory(UUID id) {
+        return Optional.ofNullable(mongoTemplate.findOne(Query.query(legacyUuids.where("id", id)), Reservation.class,
+                Reservation.HISTORY_COLLECTION));
+    }
+
+    /**
+     * Copies closed reservations to the history and then removes them, a move that stops halfway leaves a
+     * reservation in both collections and is completed by the next one.
+     */
+    @Override
+    public void moveToHistory(List<Reservation> reservations) {
+        BulkOperations history = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Reservation.class,
+                Reservation.HISTORY_COLLECTION);
+        for (Reservation reservation : reservations) {
+            history.replaceOne(Query.query(Criteria.where("id").is(reservation.getId())), reservation,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        history.execute();
+
+        List<UUID> ids = reservations.stream().map(Reservation::getId).toList();
+        mongoTemplate.remove(Query.query(legacyUuids.in("id", ids).and("closedAt").ne(null)), Reservation.class);
+    }
+
+    /**
+     * Stores the state of reservations saved before states were codes, whose state is always the name
+     * "Reserved", as its code.
+     *
+     * @return the number of reservations updated.
+     */
+    @Override
+    public long backfillStates() {
+        Query query = Query.query(Criteria.where("state").type(JsonSchemaObject.Type.STRING));
+        return mongoTemplate.updateMulti(query, Update.update("state", ReservationState.RESERVED), Reservation.class)
+                .getModifiedCount();
+    }
+
+    /**
+     * Finds the active reservations of a book that a user holds besides their oldest one, which were accepted
+     * before a user could only hold one active reservation of a book.
+     *
+     * @return the extra reservations, which the unique {@code userId_bookId_active} index cannot be built with.
+     */
+    @Override
+    public List<Reservation> findDuplicateActiveReservations() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("state").is(ReservationState.RESERVED)),
+                Aggregation.sort(Sort.Direction.ASC, "reservedAt"),
+                Aggregation.group("userId", "bookId").push("id").as("ids").count().as("count"),
+                Aggregation.match(Criteria.where("count").gt(1)));
+        ConversionService conversionService = mongoTemplate.getConverter().getConversionService();
+        List<UUID> duplicateIds = new ArrayList<>();
+        for (Document duplicates : mongoTemplate.aggregate(aggregation, Reservation.class, Document.class)
+                .getMappedResults()) {
+            // The ids are in the order the reservations were made, the first one is kept
+            List<Object> ids = duplicates.getList("ids", Object.class);
+            for (Object id : ids.subList(1, ids.size())) {
+                // A legacy id is read as a Binary
+                duplicateIds.add(conversionService.convert(id, UUID.class));
+            }
+        }
+        if (duplicateIds.isEmpty()) {
+            return List.of();
+        }
+        return mongoTemplate.find(Query.query(legacyUuids.in("id", duplicateIds)), Reservation.class);
+    }
+
+    private Query byUserId(UUID userId) {
+        return byUserId(legacyUuids, userId);
+    }
+
+    // The queries below are also explained by the QueryPlanAuditor, so it audits what the methods above run
+
+    static Query byUserId(LegacyUuids legacyUuids, UUID userId) {
+        return Query.query(legacyUuids.where("userId", userId));
+    }
+
+    static Query byBookId(LegacyUuids legacyUuids, UUID bookId) {
+        return Query.query(legacyUuids.where("bookId", bookId));
+    }
+
+    static Query overdue(ReservationState state, Instant reservedBefore) {
+        return Query.query(Criteria.where("state").is(state).and("reservedAt").lt(reservedBefore)).with(OVERDUE_SORT);
+    }
+
+    static Query closedBefore(Instant closedBefore) {
+        return Query.query(Criteria.where("closedAt").lt(closedBefore));
+    }
+}
@@ -1,6 +1,8 @@
 package com.bookapi.book_api.repository;
 
 import com.bookapi.book_api.model.User;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,6 +10,14 @@ import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface UserRepository extends MongoRepository<User, UUID> {
+public interface UserRepository extends MongoRepository<User, UUID>, UserRepositoryCustom {
     Optional<User> findByEmail(String email);
+
+    /**
+     * @return the query {@link #findByEmail} derives, which {@code upsertByEmail} also runs, for the
+     * {@link QueryPlanAuditor} to explain.
+     */
+    static Query byEmail(String email) {
+        return Query.query(Criteria.where("email").is(email));
+    }
 }
@@ -0,0 +1,7 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.User;
+
+public interface UserRepositoryCustom {
+    User upsertByEmail(String email, String name, String defaultRole);
+}
@@ -0,0 +1,74 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.User;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.UUID;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+
+    public UserRepositoryCustomImpl(MongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+    }
+
+    /**
+     * Finds the user with the given email and sets their name, or creates them with the default role,
+     * in a single findAndModify round trip. When the stored name is already equal the update is a no-op
+     * and MongoDB does not write anything.
+     * <p>
+     * Until the UUID migration completes, a user is only registered after an update found no one with the
+     * email, and no move of a user with it is pending in the journal of the migration.
+     *
+     * @return the user as stored after the update.
+     */
+    @Override
+    public User upsertByEmail(String email, String name, String defaultRole) {
+        Query query = UserRepository.byEmail(email);
+        Update update = new Update()
+                .set("name", name)
+                .setOnInsert("_id", UUID.randomUUID())
+                .setOnInsert("role", defaultRole);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        if (legacyUuids.stored()) {
+            User user = mongoTemplate.findAndModify(query, Update.update("name", name),
+                    FindAndModifyOptions.options().returnNew(true), User.class);
+            if (user != null) {
+                return user;
+            }
+            completePendingMove(email);
+        }
+        try {
+            return mongoTemplate.findAndModify(query, update, options, User.class);
+        } catch (DuplicateKeyException ex) {
+            // A concurrent first login inserted the same email, the user now exists and is updated instead
+            return mongoTemplate.findAndModify(query, update, options, User.class);
+        }
+    }
+
+    // A user the migration removed under their legacy id and did not insert under the new one yet is inserted
+    // from the journal, rather than registered again with a new id. A migration inserting them meanwhile wins
+    private void completePendingMove(String email) {
+        String collectionName = mongoTemplate.getCollectionName(User.class);
+        Query pending = Query.query(Criteria.where("collection").is(collectionName).and("document.email").is(email));
+        Document entry = mongoTemplate.findOne(pending, Document.class, UuidMigrator.JOURNAL_COLLECTION);
+        if (entry == null) {
+            return;
+        }
+        try {
+            mongoTemplate.insert(entry.get("document", Document.class), collectionName);
+        } catch (DuplicateKeyException ex) {
+            // The migration inserted the user first
+        }
+    }
+}
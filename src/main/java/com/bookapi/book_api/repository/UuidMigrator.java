@@ -0,0 +1,364 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Reservation;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.UuidRepresentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Rewrites the UUIDs of stored documents that are not in the standard binary representation, i.e. in the
+ * legacy Java binary representation or as strings, and reports the size of every collection and its
+ * indexes before and after.
+ * <p>
+ * The {@code UUID} fields are taken from the {@link Document} models. Documents are rewritten in small
+ * batches while the application keeps serving, which finds them by id in either representation meanwhile, see
+ * {@link LegacyUuids}. References are set in place, each only if it still holds the value that was read.
+ * <p>
+ * An id cannot be changed in place, so a document with a legacy id is removed and inserted again under its new
+ * id. On a replica set or sharded cluster every batch is moved in a transaction, a request never sees a
+ * document missing in between. Without transactions the documents are written to a journal first and then
+ * moved one at a time, each missing for a single round trip. A login in that moment completes the move of its
+ * user from the journal rather than registering them again, and a migration that stops halfway completes the
+ * journaled documents first when it is run again.
+ * <p>
+ * A migration that leaves no document behind records that it completed in the {@link #STATUS_COLLECTION}, the
+ * application then only looks UUIDs up in the standard representation.
+ */
+@Slf4j
+@Component
+public class UuidMigrator {
+
+    public static final String JOURNAL_COLLECTION = "uuidMigrationJournal";
+    public static final String STATUS_COLLECTION = "uuidMigrationStatus";
+    public static final String STATUS_ID = "uuid-representation";
+
+    // Collections that store a model besides its own
+    private static final Map<Class<?>, List<String>> OTHER_COLLECTIONS =
+            Map.of(Reservation.class, List.of(Reservation.HISTORY_COLLECTION));
+
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+    private final Duration pause;
+
+    public UuidMigrator(MongoTemplate mongoTemplate,
+                        @Value("${book-api.uuid-migration.batch-size:500}") int batchSize,
+                        @Value("${book-api.uuid-migration.pause:PT0.1S}") Duration pause) {
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    public UuidMigrationReport migrate() {
+        Map<String, List<String>> fieldsByCollection = new TreeMap<>();
+        for (MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()) {
+            List<String> fields = uuidFields(entity);
+            if (entity.isAnnotationPresent(Document.class) && !fields.isEmpty()) {
+                fieldsByCollection.put(entity.getCollection(), fields);
+                OTHER_COLLECTIONS.getOrDefault(entity.getType(), List.of())
+                        .forEach(collection -> fieldsByCollection.put(collection, fields));
+            }
+        }
+        boolean transactions = supportsTransactions();
+        long resumed = replayJournal(fieldsByCollection);
+
+        List<CollectionReport> collections = new ArrayList<>();
+        fieldsByCollection.forEach((collection, fields) ->
+                collections.add(migrate(collection, fields, transactions)));
+
+        boolean completed = collections.stream().allMatch(collection -> collection.leftDocuments() == 0)
+                && rawCollection(JOURNAL_COLLECTION).countDocuments() == 0;
+        if (completed) {
+            rawCollection(STATUS_COLLECTION).replaceOne(new BsonDocument("_id", new BsonString(STATUS_ID)),
+                    new BsonDocument("_id", new BsonString(STATUS_ID))
+                            .append("completedAt", new BsonDateTime(System.currentTimeMillis())),
+                    new ReplaceOptions().upsert(true));
+        }
+        return new UuidMigrationReport(resumed, collections, completed);
+    }
+
+    /**
+     * @return true once a migration rewrote every stored UUID.
+     */
+    public boolean completed() {
+        return rawCollection(STATUS_COLLECTION).countDocuments(Filters.eq("_id", STATUS_ID)) > 0;
+    }
+
+    private CollectionReport migrate(String collectionName, List<String> fields, boolean transactions) {
+        MongoCollection<BsonDocument> collection = rawCollection(collectionName);
+        CollectionStats before = stats(collectionName);
+
+        long rewritten = 0;
+        long left = 0;
+        List<BsonDocument> batch = new ArrayList<>(batchSize);
+        // Documents inserted under their new id may come up again further on, they need no rewrite then
+        try (MongoCursor<BsonDocument> cursor = collection.find().batchSize(batchSize).cursor()) {
+            while (cursor.hasNext()) {
+                BsonDocument document = cursor.next();
+                if (!toStandard(document, fields).equals(document)) {
+                    batch.add(document);
+                }
+                if (batch.size() == batchSize) {
+                    long batchLeft = rewrite(collectionName, batch, fields, transactions);
+                    rewritten += batch.size() - batchLeft;
+                    left += batchLeft;
+                    batch.clear();
+                    // Leave the database some room for the requests it serves meanwhile
+                    pause();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            long batchLeft = rewrite(collectionName, batch, fields, transactions);
+            rewritten += batch.size() - batchLeft;
+            left += batchLeft;
+        }
+
+        if (left > 0) {
+            log.warn("Left {} documents in {} that changed or were removed while they were rewritten, run the " +
+                    "migration again to complete it",
+                    left, collectionName);
+        }
+        CollectionReport report = new CollectionReport(collectionName, rewritten, left, before,
+                stats(collectionName));
+        log.info("Rewrote the UUIDs of {} documents in {}: {} documents, data {} -> {} bytes, storage {} -> {} bytes, " +
+                        "indexes {} -> {} bytes", rewritten, collectionName, report.after().documents(),
+                before.dataSize(), report.after().dataSize(), before.storageSize(), report.after().storageSize(),
+                before.indexSize(), report.after().indexSize());
+        return report;
+    }
+
+    // Returns the number of documents left as they were, whose references changed since they were read
+    private long rewrite(String collectionName, List<BsonDocument> documents, List<String> fields,
+                         boolean transactions) {
+        List<BsonDocument> moves = new ArrayList<>();
+        BsonArray movedIds = new BsonArray();
+        List<WriteModel<BsonDocument>> updates = new ArrayList<>();
+        for (BsonDocument document : documents) {
+            BsonDocument rewritten = toStandard(document, fields);
+            if (!rewritten.get("_id").equals(document.get("_id"))) {
+                movedIds.add(document.get("_id"));
+                moves.add(new BsonDocument("_id", new BsonObjectId())
+                        .append("collection", new BsonString(collectionName))
+                        .append("previousId", document.get("_id"))
+                        .append("document", rewritten));
+                continue;
+            }
+
+            // The references are set in place, each one only if it still holds the value that was read
+            BsonDocument filter = new BsonDocument("_id", document.get("_id"));
+            BsonDocument changes = new BsonDocument();
+            for (String field : fields) {
+                if (document.containsKey(field) && !rewritten.get(field).equals(document.get(field))) {
+                    filter.append(field, document.get(field));
+                    changes.append(field, rewritten.get(field));
+                }
+            }
+            updates.add(new UpdateOneModel<>(filter, new BsonDocument("$set", changes)));
+        }
+
+        long left = 0;
+        if (!updates.isEmpty()) {
+            left = updates.size() - rawCollection(collectionName)
+                    .bulkWrite(updates, new BulkWriteOptions().ordered(false)).getMatchedCount();
+        }
+        if (moves.isEmpty()) {
+            return left;
+        }
+        if (transactions) {
+            moveInTransaction(collectionName, movedIds, fields);
+        } else {
+            // The journal holds the rewritten documents until they are stored, so none is lost in between
+            rawCollection(JOURNAL_COLLECTION).insertMany(moves);
+            move(collectionName, moves, fields, false);
+        }
+        return left;
+    }
+
+    // Removes the documents under their previous ids and inserts them under their new ones in a single transaction
+    private void moveInTransaction(String collectionName, BsonArray previousIds, List<String> fields) {
+        MongoCollection<BsonDocument> collection = rawCollection(collectionName);
+        BsonDocument filter = new BsonDocument("_id", new BsonDocument("$in", previousIds));
+        try (ClientSession session = mongoTemplate.getMongoDatabaseFactory()
+                .getSession(ClientSessionOptions.builder().causallyConsistent(true).build())) {
+            session.withTransaction(() -> {
+                // Read again in the transaction, a document changed since its batch was read is moved as it is
+                // now, and a concurrent change makes the transaction retry
+                List<BsonDocument> documents = collection.find(session, filter).into(new ArrayList<>()).stream()
+                        .map(document -> toStandard(document, fields))
+                        .toList();
+                collection.deleteMany(session, filter);
+                if (!documents.isEmpty()) {
+                    collection.insertMany(session, documents);
+                }
+                return documents.size();
+            });
+        }
+    }
+
+    private long replayJournal(Map<String, List<String>> fieldsByCollection) {
+        List<BsonDocument> entries = rawCollection(JOURNAL_COLLECTION).find().into(new ArrayList<>());
+        Map<String, List<BsonDocument>> entriesByCollection = new LinkedHashMap<>();
+        for (BsonDocument entry : entries) {
+            entriesByCollection.computeIfAbsent(entry.getString("collection").getValue(), name -> new ArrayList<>())
+                    .add(entry);
+        }
+        entriesByCollection.forEach((collectionName, collectionEntries) -> move(collectionName, collectionEntries,
+                fieldsByCollection.getOrDefault(collectionName, List.of()), true));
+        if (!entries.isEmpty()) {
+            log.info("Completed {} documents left in the journal by an earlier UUID migration", entries.size());
+        }
+        return entries.size();
+    }
+
+    /**
+     * Moves journaled documents one at a time, each is removed under its previous id and right away inserted
+     * under its new one, then clears their journal entries.
+     *
+     * @param replay true for the entries of a migration that stopped halfway, a document it already removed is
+     *               inserted as journaled. Otherwise a document that is gone was removed meanwhile and stays so.
+     */
+    private void move(String collectionName, List<BsonDocument> entries, List<String> fields, boolean replay) {
+        MongoCollection<BsonDocument> collection = rawCollection(collectionName);
+        BsonArray entryIds = new BsonArray();
+        for (BsonDocument entry : entries) {
+            entryIds.add(entry.get("_id"));
+            // Removed as it is now, so a change made since its batch was read moves with it
+            BsonDocument current = collection.findOneAndDelete(new BsonDocument("_id", entry.get("previousId")));
+            if (current == null && !replay) {
+                continue;
+            }
+            BsonDocument document = current != null ? toStandard(current, fields) : entry.getDocument("document");
+            try {
+                collection.insertOne(document);
+            } catch (MongoWriteException ex) {
+                // Inserted before the migration stopped, or by a login that completed the move of its user
+                boolean stored = ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY
+                        && collection.countDocuments(Filters.eq("_id", document.get("_id"))) > 0;
+                if (!stored) {
+                    throw ex;
+                }
+            }
+        }
+        rawCollection(JOURNAL_COLLECTION).deleteMany(new BsonDocument("_id", new BsonDocument("$in", entryIds)));
+    }
+
+    // Multi-document transactions need a replica set or a sharded cluster
+    private boolean supportsTransactions() {
+        BsonDocument hello;
+        try {
+            hello = mongoTemplate.getDb().runCommand(new BsonDocument("hello", new BsonInt32(1)), BsonDocument.class);
+        } catch (MongoCommandException ex) {
+            // A server too old to answer hello is treated as one without transactions
+            return false;
+        }
+        return hello.containsKey("setName") || new BsonString("isdbgrid").equals(hello.get("msg"));
+    }
+
+    private static BsonDocument toStandard(BsonDocument document, List<String> fields) {
+        BsonDocument rewritten = document.clone();
+        for (String field : fields) {
+            BsonBinary standard = toStandard(document.get(field));
+            if (standard != null) {
+                rewritten.put(field, standard);
+            }
+        }
+        return rewritten;
+    }
+
+    // The standard binary form of a UUID stored in another representation, or null if it needs no rewrite
+    static BsonBinary toStandard(BsonValue value) {
+        if (value instanceof BsonBinary binary && binary.getType() == BsonBinarySubType.UUID_LEGACY.getValue()) {
+            return new BsonBinary(binary.asUuid(UuidRepresentation.JAVA_LEGACY), UuidRepresentation.STANDARD);
+        }
+        if (value instanceof BsonString string) {
+            try {
+                return new BsonBinary(UUID.fromString(string.getValue()), UuidRepresentation.STANDARD);
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> uuidFields(MongoPersistentEntity<?> entity) {
+        List<String> fields = new ArrayList<>();
+        entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+            if (UUID.class.equals(property.getType())) {
+                fields.add(property.getFieldName());
+            }
+        });
+        return fields;
+    }
+
+    // Storage and index sizes are what the storage engine holds, space freed by a rewrite may only be
+    // returned to the file system by a compact
+    private CollectionStats stats(String collectionName) {
+        BsonDocument stats = mongoTemplate.getDb()
+                .runCommand(new BsonDocument("collStats", new BsonString(collectionName)), BsonDocument.class);
+        return new CollectionStats(number(stats, "count"), number(stats, "size"), number(stats, "storageSize"),
+                number(stats, "totalIndexSize"));
+    }
+
+    private static long number(BsonDocument stats, String key) {
+        BsonValue value = stats.get(key);
+        return value != null && value.isNumber() ? value.asNumber().longValue() : 0;
+    }
+
+    private MongoCollection<BsonDocument> rawCollection(String collectionName) {
+        return mongoTemplate.getDb().getCollection(collectionName, BsonDocument.class);
+    }
+
+    private void pause() {
+        if (pause.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The UUID migration was interrupted", ex);
+        }
+    }
+
+    public record UuidMigrationReport(long resumedDocuments, List<CollectionReport> collections, boolean completed) {}
+
+    public record CollectionReport(String collection, long rewrittenDocuments, long leftDocuments,
+                                   CollectionStats before, CollectionStats after) {}
+
+    public record CollectionStats(long documents, long dataSize, long storageSize, long indexSize) {}
+}
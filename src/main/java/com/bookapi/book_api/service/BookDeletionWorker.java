@@ -0,0 +1,145 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.BookDeletion;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.BookDeletionRepository;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes the reservations of deleted books in the background, in batches of a bounded size, so deleting a
+ * book with many reservations never holds up the DELETE request or a large part of the collection.
+ * <p>
+ * A worker takes a recorded {@link BookDeletion} with a lease, which it renews with the progress after every
+ * batch. Removing a batch is idempotent, so when a worker crashes its deletion is taken over once the lease
+ * runs out and continues with the reservations that are left.
+ */
+@Slf4j
+@Component
+public class BookDeletionWorker {
+
+    private final BookDeletionRepository bookDeletionRepository;
+    private final ReservationRepository reservationRepository;
+    private final ReservationQuotaRepository reservationQuotaRepository;
+    private final BookService bookService;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration settleTime;
+    private final Counter removedReservations;
+    private final AtomicLong pendingDeletions = new AtomicLong();
+    // Identifies the leases taken by this instance
+    private final String owner = UUID.randomUUID().toString();
+
+    public BookDeletionWorker(BookDeletionRepository bookDeletionRepository,
+                              ReservationRepository reservationRepository,
+                              ReservationQuotaRepository reservationQuotaRepository, BookService bookService,
+                              MeterRegistry meterRegistry,
+                              @Value("${book-api.book-deletion.batch-size:500}") int batchSize,
+                              @Value("${book-api.book-deletion.lease:PT1M}") Duration lease,
+                              @Value("${book-api.book-deletion.settle-time:PT10S}") Duration settleTime) {
+        this.bookDeletionRepository = bookDeletionRepository;
+        this.reservationRepository = reservationRepository;
+        this.reservationQuotaRepository = reservationQuotaRepository;
+        this.bookService = bookService;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.settleTime = settleTime;
+        this.removedReservations = Counter.builder("book.deletions.reservations.removed")
+                .description("Reservations removed after their book was deleted")
+                .register(meterRegistry);
+        Gauge.builder("book.deletions.pending", pendingDeletions, AtomicLong::get)
+                .description("Deleted books whose reservations are not all removed yet, as of the last run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${book-api.book-deletion.poll-interval:PT5S}")
+    public void processPendingDeletions() {
+        try {
+            // A reservation taken just before its book was removed may still be written for a moment, a
+            // deletion is only taken once that moment has passed so that it is never left behind
+            BookDeletion bookDeletion;
+            while ((bookDeletion = bookDeletionRepository.claimNext(owner, Instant.now().minus(settleTime), lease)) != null) {
+                process(bookDeletion);
+            }
+            pendingDeletions.set(bookDeletionRepository.countByCompletedAtIsNull());
+        } catch (RuntimeException ex) {
+            // The lease runs out and the deletion is taken again on a later run, by this or another instance
+            log.warn("Could not remove the reservations of deleted books: {}", ex.getMessage());
+        }
+    }
+
+    private void process(BookDeletion bookDeletion) {
+        UUID bookId = bookDeletion.getBookId();
+        long start = System.nanoTime();
+        // The request that recorded the deletion may have failed before it removed the book
+        bookService.removeDeletedBook(bookId);
+
+        long removed = bookDeletion.getRemovedReservations();
+        while (true) {
+            List<Reservation> reservations = reservationRepository.findIdsByBookId(bookId, Limit.of(batchSize));
+            if (reservations.isEmpty()) {
+                break;
+            }
+            cancelActiveReservations(bookId, reservations);
+            List<UUID> reservationIds = reservations.stream().map(Reservation::getId).toList();
+            reservationRepository.deleteAllById(reservationIds);
+            removed += reservationIds.size();
+            removedReservations.increment(reservationIds.size());
+
+            if (!bookDeletionRepository.recordProgress(bookId, owner, reservationIds.size(), lease)) {
+                log.warn("Lost the lease on deleted book {} after removing {} reservations", bookId, removed);
+                return;
+            }
+            log.debug("Removed {} reservations of deleted book {} so far", removed, bookId);
+        }
+
+        if (bookDeletionRepository.complete(bookId, owner)) {
+            log.info("Removed {} reservations of deleted book {} in {} ms",
+                    removed, bookId, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    // The active reservations no longer count against the quotas of their users. They are cancelled together with
+    // one conditional update before they are removed, so a reservation closed meanwhile, or by a previous worker that
+    // lost its lease, is not cancelled again. Only the quota of those this update cancelled is given back, in one
+    // write per batch
+    private void cancelActiveReservations(UUID bookId, List<Reservation> reservations) {
+        List<Reservation> active = reservations.stream()
+                .filter(reservation -> reservation.getState() == ReservationState.RESERVED)
+                .toList();
+        if (active.isEmpty()) {
+            return;
+        }
+        List<UUID> activeIds = active.stream().map(Reservation::getId).toList();
+        // Mongo stores milliseconds, the closing time is truncated so the cancelled reservations can be found by it
+        Instant closedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        long cancelled = reservationRepository.transitionAll(bookId, activeIds, ReservationState.RESERVED,
+                ReservationState.CANCELLED, closedAt);
+        if (cancelled < active.size()) {
+            // Some were closed between the read and the update, the others are told apart by their closing time
+            active = reservationRepository.findClosedAt(activeIds, ReservationState.CANCELLED, closedAt);
+        }
+
+        Map<UUID, Integer> quotaByUser = new HashMap<>();
+        active.forEach(reservation -> quotaByUser.merge(reservation.getUserId(), 1, Integer::sum));
+        reservationQuotaRepository.release(quotaByUser);
+    }
+}
@@ -0,0 +1,136 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.mapper.BookMapper;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Exports the catalog as NDJSON, one {@link BookOutput} without links per line.
+ * <p>
+ * The export is an {@link InputStream} that reads the next book from a database cursor only when the
+ * previous line has been consumed, so the response is written while the cursor is read and memory
+ * use does not depend on the size of the collection.
+ */
+@Slf4j
+@Service
+public class BookExportService {
+
+    private final BookRepository bookRepository;
+    private final BookMapper bookMapper;
+    private final ObjectWriter bookWriter;
+    private final int batchSize;
+
+    public BookExportService(BookRepository bookRepository, BookMapper bookMapper, ObjectMapper objectMapper,
+                             @Value("${book-api.export.batch-size:500}") int batchSize) {
+        this.bookRepository = bookRepository;
+        this.bookMapper = bookMapper;
+        this.bookWriter = objectMapper.writerFor(BookOutput.class);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the export, which must be closed to release the database cursor. Closing it before the
+     * end, e.g. because the client disconnected, stops reading the collection.
+     */
+    public InputStream exportBooks() {
+        // The cursor is only opened on the first read, so a response that is never written leaks nothing
+        return new NdjsonInputStream(() -> bookRepository.streamAll(batchSize)
+                .map(bookMapper::toBookExportOutput));
+    }
+
+    private class NdjsonInputStream extends InputStream {
+
+        private final Supplier<Stream<BookOutput>> source;
+        private Stream<BookOutput> books;
+        private Iterator<BookOutput> iterator;
+        // The current line, with its trailing newline, and how much of it has been read
+        private byte[] line = new byte[0];
+        private int position;
+        private long written;
+        // Set once a read found no book left, so close() can tell without touching the cursor again
+        private boolean exhausted;
+        private boolean closed;
+
+        NdjsonInputStream(Supplier<Stream<BookOutput>> source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextLineIfConsumed()) {
+                return -1;
+            }
+            return line[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextLineIfConsumed()) {
+                return -1;
+            }
+
+            int count = Math.min(length, line.length - position);
+            System.arraycopy(line, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (books != null) {
+                books.close();
+                // The reader stopped before the end, most likely because the client went away
+                if (exhausted) {
+                    log.info("Exported {} books", written);
+                } else {
+                    log.info("Book export closed early after {} books", written);
+                }
+            }
+        }
+
+        private boolean nextLineIfConsumed() throws IOException {
+            if (closed) {
+                return false;
+            }
+            if (position < line.length) {
+                return true;
+            }
+            if (books == null) {
+                books = source.get();
+                iterator = books.iterator();
+            }
+            if (!iterator.hasNext()) {
+                exhausted = true;
+                return false;
+            }
+
+            byte[] json = bookWriter.writeValueAsBytes(iterator.next());
+            line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            position = 0;
+            written++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.dto.generated.BookImportError;
+import com.bookapi.book_api.dto.generated.BookImportResult;
+import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.exception.BadResourceException;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports books from a stream of {@link BookInput}, given as NDJSON or as a JSON array.
+ * <p>
+ * Only one chunk of books and a bounded number of error reports are held at a time, so memory use
+ * does not grow with the size of the import.
+ */
+@Slf4j
+@Service
+public class BookImportService {
+
+    private final BookRepository bookRepository;
+    private final BookSuggestionIndex bookSuggestionIndex;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public BookImportService(BookRepository bookRepository, BookSuggestionIndex bookSuggestionIndex,
+                             ObjectMapper objectMapper, Validator validator,
+                             @Value("${book-api.import.chunk-size:1000}") int chunkSize,
+                             @Value("${book-api.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.bookRepository = bookRepository;
+        this.bookSuggestionIndex = bookSuggestionIndex;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public BookImportResult importBooks(InputStream body) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(body);
+        ImportRun run = new ImportRun();
+
+        // A JSON array starts with '[', anything else is read as one book per line
+        if (firstNonWhitespace(input) == '[') {
+            importArray(input, run);
+        } else {
+            importLines(input, run);
+        }
+
+        BookImportResult result = run.finish();
+        log.info("Imported {} of {} books, {} failed", result.getImported(), result.getReceived(), result.getFailed());
+        return result;
+    }
+
+    private void importLines(InputStream input, ImportRun run) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            // Every line is parsed on its own, so a malformed line does not stop the ones after it
+            try {
+                run.add(lineNumber, objectMapper.readValue(line, BookInput.class));
+            } catch (JsonProcessingException ex) {
+                run.reject(lineNumber, "Invalid JSON: " + ex.getOriginalMessage());
+            }
+        }
+    }
+
+    private void importArray(InputStream input, ImportRun run) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(input)) {
+            parser.nextToken();
+            int position = 0;
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        run.reject(position + 1, "Invalid JSON, the array is not closed");
+                        return;
+                    }
+                    position++;
+                    // Reading the element as a tree consumes it whole, even when it is not a valid book
+                    JsonNode element = parser.readValueAsTree();
+                    try {
+                        run.add(position, objectMapper.treeToValue(element, BookInput.class));
+                    } catch (JsonProcessingException ex) {
+                        run.reject(position, "Invalid book: " + ex.getOriginalMessage());
+                    }
+                }
+            } catch (JsonProcessingException ex) {
+                // The array itself is malformed, nothing after this point can be read
+                run.reject(position, "Invalid JSON, the import stopped here: " + ex.getOriginalMessage());
+            }
+        }
+    }
+
+    private int firstNonWhitespace(BufferedInputStream input) throws IOException {
+        while (true) {
+            input.mark(1);
+            int next = input.read();
+            if (next == -1) {
+                throw new BadResourceException("The import contains no books");
+            }
+            if (!Character.isWhitespace(next)) {
+                input.reset();
+                return next;
+            }
+        }
+    }
+
+    /**
+     * The state of one import: the chunk waiting to be written and the running totals.
+     */
+    private class ImportRun {
+
+        private final List<Book> chunk = new ArrayList<>(chunkSize);
+        private final List<Integer> chunkLines = new ArrayList<>(chunkSize);
+        private final List<BookImportError> errors = new ArrayList<>();
+        private int received;
+        private int imported;
+        private int failed;
+
+        void add(int line, BookInput bookInput) {
+            received++;
+            Set<ConstraintViolation<BookInput>> violations = validator.validate(bookInput);
+            if (!violations.isEmpty()) {
+                String message = violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+                recordError(line, message);
+                return;
+            }
+
+            chunk.add(new Book(
+                    bookInput.getTitle(),
+                    bookInput.getAuthor(),
+                    bookInput.getSynopsis(),
+                    bookInput.getCopies() != null ? bookInput.getCopies() : 1
+            ));
+            chunkLines.add(line);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(int line, String message) {
+            received++;
+            recordError(line, message);
+        }
+
+        BookImportResult finish() {
+            flush();
+            BookImportResult result = new BookImportResult();
+            result.setReceived(received);
+            result.setImported(imported);
+            result.setFailed(failed);
+            result.setErrors(errors);
+            result.setErrorsTruncated(failed > errors.size());
+            return result;
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+
+            // Write the chunk in one unordered bulk insert, then map any failed index back to its line
+            Map<Integer, String> insertErrors = bookRepository.insertUnordered(chunk);
+            imported += chunk.size() - insertErrors.size();
+            insertErrors.forEach((index, message) -> recordError(chunkLines.get(index), message));
+
+            // Only the books that were written can be suggested
+            List<Book> insertedBooks = new ArrayList<>(chunk.size() - insertErrors.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                if (!insertErrors.containsKey(i)) {
+                    insertedBooks.add(chunk.get(i));
+                }
+            }
+            bookSuggestionIndex.putAll(insertedBooks);
+
+            chunk.clear();
+            chunkLines.clear();
+        }
+
+        private void recordError(int line, String message) {
+            failed++;
+            // Only the first errors are reported, so a bad file cannot grow the response without bound
+            if (errors.size() < maxReportedErrors) {
+                BookImportError error = new BookImportError();
+                error.setLine(line);
+                error.setError(message);
+                errors.add(error);
+            }
+        }
+    }
+}
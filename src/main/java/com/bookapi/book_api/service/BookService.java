@@ -1,29 +1,65 @@
 package com.bookapi.book_api.service;
 
 import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.dto.generated.BookPatch;
+import com.bookapi.book_api.exception.ConflictException;
+import com.bookapi.book_api.exception.PreconditionFailedException;
 import com.bookapi.book_api.exception.ResourceNotFoundException;
 import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.BookDeletion;
+import com.bookapi.book_api.repository.BookDeletionRepository;
 import com.bookapi.book_api.repository.BookRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.query.TextCriteria;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 public class BookService {
 
+    public static final String BOOK_CACHE = "books";
+
+    public static final Sort CURSOR_SORT = BookRepository.CURSOR_SORT;
+
     private final BookRepository bookRepository;
+    private final EstimatedCountService estimatedCountService;
+    private final BookSuggestionIndex bookSuggestionIndex;
+    private final BookDeletionRepository bookDeletionRepository;
+    private final CacheManager cacheManager;
+    // Concurrent cache misses for the same book share a single repository read
+    private final SingleFlight<UUID, Book> bookLookups = new SingleFlight<>();
 
     // Constructor injection to get the repository
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository, EstimatedCountService estimatedCountService,
+                       BookSuggestionIndex bookSuggestionIndex, BookDeletionRepository bookDeletionRepository,
+                       CacheManager cacheManager) {
         this.bookRepository = bookRepository;
+        this.estimatedCountService = estimatedCountService;
+        this.bookSuggestionIndex = bookSuggestionIndex;
+        this.bookDeletionRepository = bookDeletionRepository;
+        this.cacheManager = cacheManager;
     }
 
+    // Served from the book cache, a miss reads through to the repository
+    @Cacheable(cacheNames = BOOK_CACHE, key = "#id")
     public Book findBookById(UUID id) {
-        // Use the repository to find the book
-        return bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + id));
+        // Callers missing the same book at the same time wait for one read and share its book or exception
+        return bookLookups.execute(id, () -> loadBook(id));
     }
 
     public Page<Book> findAllBooks(Pageable pageable) {
@@ -31,37 +67,202 @@ public class BookService {
         return bookRepository.findAll(pageable);
     }
 
+    public Slice<Book> findBookSlice(Pageable pageable) {
+        // Use the repository to find a page of books without counting the collection
+        return bookRepository.findAllBy(pageable);
+    }
+
+    public long estimateBookCount() {
+        return estimatedCountService.estimatedCount(Book.class);
+    }
+
+    public Window<Book> findAllBooks(ScrollPosition position, int limit) {
+        // Use the repository to return the window of books after the given position
+        return bookRepository.findAllBy(position, Limit.of(limit), CURSOR_SORT);
+    }
+
+    public Page<Book> searchBooks(String terms, Pageable pageable) {
+        // Use the repository to find the matching books, ranked by their text score
+        return bookRepository.findAllByOrderByScoreDesc(toTextCriteria(terms), pageable);
+    }
+
+    public Slice<Book> searchBookSlice(String terms, Pageable pageable) {
+        // Use the repository to find the matching books without counting all of them
+        return bookRepository.findSliceByOrderByScoreDesc(toTextCriteria(terms), pageable);
+    }
+
+    public List<BookSuggestionIndex.Suggestion> suggestBooks(String prefix, int limit) {
+        // Served from the in-process index, type-ahead does not wait for the database
+        return bookSuggestionIndex.suggest(prefix, limit);
+    }
+
     public Book createBook(BookInput bookInput) {
-        // Create a new Book from the input DTO
+        // Create a new Book from the input DTO, every copy starts out available
         Book newBook = new Book(
                 bookInput.getTitle(),
                 bookInput.getAuthor(),
-                bookInput.getSynopsis()
+                bookInput.getSynopsis(),
+                bookInput.getCopies() != null ? bookInput.getCopies() : 1
         );
         // Use the BookRepository's built in methods to save and return the saved book
-        return bookRepository.save(newBook);
+        Book savedBook = bookRepository.save(newBook);
+        bookSuggestionIndex.put(savedBook);
+        return savedBook;
+    }
+
+    /**
+     * Replaces the details and copies of a book in a single atomic update, the same as a patch of every field.
+     * The book is only read again when the update did not match, to tell why.
+     *
+     * @param expectedVersion the version the client last saw, from {@code If-Match}, or null to update
+     *                        whatever the current version is.
+     * @throws PreconditionFailedException if the book is no longer at the expected version.
+     */
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public Book updateBook(UUID id, BookInput bookInput, Long expectedVersion) {
+        // Mongo stores milliseconds, the time is truncated so the updated book is exactly what was stored
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Book previousBook = bookRepository.replaceDetails(id, expectedVersion, bookInput.getTitle(),
+                bookInput.getAuthor(), bookInput.getSynopsis(), bookInput.getCopies(), lastModified);
+        if (previousBook != null) {
+            Book updatedBook = updated(previousBook, bookInput.getTitle(), bookInput.getAuthor(),
+                    bookInput.getSynopsis(), bookInput.getCopies(), lastModified);
+            bookSuggestionIndex.replace(previousBook, updatedBook);
+            return updatedBook;
+        }
+        throw notUpdated(id, expectedVersion, bookInput.getCopies());
     }
 
-    public Book updateBook(UUID id, BookInput bookInput) {
-        // Find the book to be updated
-        Book bookToUpdate = findBookById(id);
+    /**
+     * Changes only the supplied fields of a book in a single atomic update. The book is only read again
+     * when the update did not match, to tell why.
+     *
+     * @param expectedVersion the version the client last saw, from {@code If-Match}, or null to change
+     *                        whatever the current version is.
+     * @throws PreconditionFailedException if the book is no longer at the expected version.
+     */
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public Book patchBook(UUID id, BookPatch bookPatch, Long expectedVersion) {
+        // Mongo stores milliseconds, the time is truncated so the patched book is exactly what was stored
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Book previousBook = bookRepository.patchDetails(id, expectedVersion, bookPatch.getTitle(),
+                bookPatch.getAuthor(), bookPatch.getSynopsis(), bookPatch.getCopies(), lastModified);
+        if (previousBook != null) {
+            Book patchedBook = updated(previousBook,
+                    bookPatch.getTitle() != null ? bookPatch.getTitle() : previousBook.getTitle(),
+                    bookPatch.getAuthor() != null ? bookPatch.getAuthor() : previousBook.getAuthor(),
+                    bookPatch.getSynopsis() != null ? bookPatch.getSynopsis() : previousBook.getSynopsis(),
+                    bookPatch.getCopies(), lastModified);
+            bookSuggestionIndex.replace(previousBook, patchedBook);
+            return patchedBook;
+        }
+        throw notUpdated(id, expectedVersion, bookPatch.getCopies());
+    }
+
+    // The cached book shows the available copies, so it is evicted whenever they change
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public void reserveCopy(UUID id) {
+        // A single conditional decrement, it does not match once the last copy is taken
+        if (bookRepository.takeCopy(id)) {
+            return;
+        }
+        if (!bookRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Book not found with id: " + id);
+        }
+        throw new ConflictException("No copies of book " + id + " are available");
+    }
+
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public void releaseCopy(UUID id) {
+        // The book may have been deleted meanwhile, then there is nothing to give back
+        bookRepository.returnCopy(id);
+    }
 
-        // Update the fields on the book
-        bookToUpdate.setTitle(bookInput.getTitle());
-        bookToUpdate.setAuthor(bookInput.getAuthor());
-        bookToUpdate.setSynopsis(bookInput.getSynopsis());
+    // Gives back the copies of several reservations of the book at once, e.g. when they expire together
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public void releaseCopies(UUID id, int count) {
+        bookRepository.returnCopies(id, count);
+    }
 
-        // Use the BookRepository's built in methods to save and return the updated book
-        return bookRepository.save(bookToUpdate);
+    // Gives back the copies of reservations of many books in one write, e.g. a batch expiring together
+    public void releaseCopies(Map<UUID, Integer> countsByBook) {
+        try {
+            bookRepository.returnCopies(countsByBook);
+        } finally {
+            // Evicted whether or not every book was written, a stale count must not outlive a partial write
+            Cache books = cacheManager.getCache(BOOK_CACHE);
+            if (books != null) {
+                countsByBook.keySet().forEach(books::evict);
+            }
+        }
     }
 
+    /**
+     * Deletes a book. Its reservations are removed afterwards by the {@link BookDeletionWorker}, the deletion is
+     * recorded before the book is removed so that cleanup also happens when this call does not complete.
+     */
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
     public Book deleteBook(UUID id) {
-        // Find the book to be deleted
-        Book bookToDelete = findBookById(id);
+        boolean recorded = bookDeletionRepository.insertIfAbsent(new BookDeletion(id));
+
+        // Find and delete the book in a single command
+        Book deletedBook = bookRepository.findAndRemove(id);
+        if (deletedBook == null) {
+            // There was no book, so there is nothing to clean up either
+            if (recorded) {
+                bookDeletionRepository.deleteById(id);
+            }
+            throw new ResourceNotFoundException("Book not found with id: " + id);
+        }
+        bookSuggestionIndex.remove(deletedBook);
 
-        // Delete the book from the database
-        bookRepository.delete(bookToDelete);
+        return deletedBook;
+    }
+
+    // Removes a book whose deletion is recorded, in case the request that recorded it failed to
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public void removeDeletedBook(UUID id) {
+        Book deletedBook = bookRepository.findAndRemove(id);
+        if (deletedBook != null) {
+            bookSuggestionIndex.remove(deletedBook);
+        }
+    }
 
-        return bookToDelete;
+    private TextCriteria toTextCriteria(String terms) {
+        // The terms are passed to $search as typed, so quoted phrases and -negations keep their meaning
+        return TextCriteria.forDefaultLanguage().matching(terms);
+    }
+
+    // The stored book after the update, derived from the one before it as the update changed it
+    private static Book updated(Book previousBook, String title, String author, String synopsis, Integer copies,
+                                Instant lastModified) {
+        Book updatedBook = new Book();
+        updatedBook.setId(previousBook.getId());
+        updatedBook.setTitle(title);
+        updatedBook.setAuthor(author);
+        updatedBook.setSynopsis(synopsis);
+        int newCopies = copies != null ? copies : previousBook.getCopies();
+        updatedBook.setCopies(newCopies);
+        updatedBook.setAvailableCopies(previousBook.getAvailableCopies() + newCopies - previousBook.getCopies());
+        updatedBook.setVersion(previousBook.getVersion() + 1);
+        updatedBook.setLastModified(lastModified);
+        return updatedBook;
+    }
+
+    // Either the book is missing, or it no longer meets the conditions of the update
+    private RuntimeException notUpdated(UUID id, Long expectedVersion, Integer copies) {
+        Book latestBook = loadBook(id);
+        if (expectedVersion != null && latestBook.getVersion() != expectedVersion) {
+            return new PreconditionFailedException("Book " + id + " is at version " + latestBook.getVersion()
+                    + ", not at the expected version " + expectedVersion);
+        }
+        return new ConflictException("Cannot reduce the copies of book " + id + " to " + copies
+                + ", " + (latestBook.getCopies() - latestBook.getAvailableCopies()) + " are reserved");
+    }
+
+    private Book loadBook(UUID id) {
+        // Use the repository to find the book
+        return bookRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + id));
     }
 }
@@ -0,0 +1,409 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * An in-process prefix index over the title and author of every book, which serves type-ahead
+ * suggestions without a database round trip.
+ * <p>
+ * The index is a sorted array of normalized UTF-8 keys, one for the title and one for the author of each
+ * book, next to an array of the books they belong to. Lookups binary search an immutable snapshot without
+ * locking. A change copies the arrays into a new snapshot, which suits a catalog that is read far more
+ * often than it is written. Changes made by other instances, or directly in the database, are picked up
+ * by a periodic rebuild.
+ */
+@Slf4j
+@Service
+public class BookSuggestionIndex {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Comparator<byte[]> KEY_ORDER = Arrays::compareUnsigned;
+
+    // Object sizes on a 64-bit JVM with compressed references, used to estimate the memory of the index
+    private static final int REFERENCE_BYTES = 4;
+    private static final int SUGGESTION_BYTES = 24;
+    private static final int UUID_BYTES = 32;
+    private static final int STRING_BYTES = 24;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    /**
+     * A book as suggested, holding only what a type-ahead shows.
+     */
+    public record Suggestion(UUID id, String title, String author) {
+    }
+
+    private record Snapshot(byte[][] keys, Suggestion[] suggestions, long estimatedBytes) {
+    }
+
+    // A change to the index, replayed onto a rebuilt snapshot when it was made while the rebuild ran
+    private record Change(Book previous, Book current) {
+    }
+
+    private final BookRepository bookRepository;
+    // Serializes writers; a lock rather than synchronized, so waiting virtual threads do not pin their carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Held by the one rebuild that runs at a time, the rebuilds share the buffer of changes made meanwhile
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Snapshot snapshot = new Snapshot(new byte[0][], new Suggestion[0], 0);
+    // Not null while a rebuild reads the collection, guarded by the write lock
+    private List<Change> changesDuringRebuild;
+
+    public BookSuggestionIndex(BookRepository bookRepository, MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+
+        Gauge.builder("book.suggestions.entries", this, index -> index.snapshot.keys().length)
+                .description("Keys in the book suggestion index")
+                .register(meterRegistry);
+        Gauge.builder("book.suggestions.memory", this, index -> index.snapshot.estimatedBytes())
+                .description("Estimated memory held by the book suggestion index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("book.suggestions.memory.per.entry", this, BookSuggestionIndex::bytesPerEntry)
+                .description("Estimated memory held by the book suggestion index per key")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return up to {@code limit} distinct books whose title or author starts with the given prefix,
+     * in the order of their matching key. Case, accents and punctuation are ignored.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        byte[] normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.length == 0) {
+            return List.of();
+        }
+
+        Snapshot current = snapshot;
+        List<Suggestion> suggestions = new ArrayList<>(limit);
+        Set<UUID> suggestedIds = new HashSet<>();
+        // Every key with the prefix sorts right after the first one at or above it
+        for (int i = lowerBound(current.keys(), normalizedPrefix);
+             i < current.keys().length && suggestions.size() < limit && startsWith(current.keys()[i], normalizedPrefix);
+             i++) {
+            // A book whose title and author both match is only suggested once
+            Suggestion suggestion = current.suggestions()[i];
+            if (suggestedIds.add(suggestion.id())) {
+                suggestions.add(suggestion);
+            }
+        }
+        return suggestions;
+    }
+
+    public void put(Book book) {
+        change(null, book);
+    }
+
+    /**
+     * Adds new books in a single merge, instead of copying the index once per book.
+     */
+    public void putAll(List<Book> books) {
+        Snapshot additions = build(books.stream());
+        writeLock.lock();
+        try {
+            snapshot = merge(snapshot, additions);
+            if (changesDuringRebuild != null) {
+                books.forEach(book -> changesDuringRebuild.add(new Change(null, book)));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void replace(Book previous, Book current) {
+        change(previous, current);
+    }
+
+    public void remove(Book book) {
+        change(book, null);
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${book-api.suggest.rebuild-interval:PT10M}",
+            fixedDelayString = "${book-api.suggest.rebuild-interval:PT10M}")
+    public void rebuild() {
+        // A rebuild that is already reading the collection also picks up the changes made until it is done
+        if (!rebuildLock.tryLock()) {
+            log.debug("The book suggestion index is already being rebuilt");
+            return;
+        }
+        try {
+            rebuildSnapshot();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuildSnapshot() {
+        writeLock.lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            writeLock.unlock();
+        }
+
+        long start = System.nanoTime();
+        Snapshot rebuilt;
+        try {
+            rebuilt = build();
+        } catch (RuntimeException ex) {
+            writeLock.lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                writeLock.unlock();
+            }
+            // Keep serving the previous index until the next rebuild succeeds
+            log.warn("Could not rebuild the book suggestion index: {}", ex.getMessage());
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            // The cursor may have missed changes made while it was read, they are applied on top
+            for (Change change : changesDuringRebuild) {
+                rebuilt = apply(rebuilt, change);
+            }
+            changesDuringRebuild = null;
+            snapshot = rebuilt;
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Built the book suggestion index with {} keys in {} ms, about {} bytes per key",
+                rebuilt.keys().length, (System.nanoTime() - start) / 1_000_000, Math.round(bytesPerEntry()));
+    }
+
+    private Snapshot build() {
+        try (Stream<Book> books = bookRepository.streamAll(BUILD_BATCH_SIZE)) {
+            return build(books);
+        }
+    }
+
+    private Snapshot build(Stream<Book> books) {
+        record Entry(byte[] key, Suggestion suggestion) {
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        books.forEach(book -> {
+            Suggestion suggestion = toSuggestion(book);
+            for (byte[] key : keysOf(book)) {
+                entries.add(new Entry(key, suggestion));
+            }
+        });
+        entries.sort(Comparator.comparing(Entry::key, KEY_ORDER));
+
+        byte[][] keys = new byte[entries.size()][];
+        Suggestion[] suggestions = new Suggestion[entries.size()];
+        long estimatedBytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            keys[i] = entries.get(i).key();
+            suggestions[i] = entries.get(i).suggestion();
+            estimatedBytes += estimateBytes(keys[i], suggestions[i]);
+        }
+        return new Snapshot(keys, suggestions, estimatedBytes);
+    }
+
+    private void change(Book previous, Book current) {
+        Change change = new Change(previous, current);
+        writeLock.lock();
+        try {
+            snapshot = apply(snapshot, change);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Snapshot apply(Snapshot target, Change change) {
+        UUID id = change.current() != null ? change.current().getId() : change.previous().getId();
+
+        // Removing the keys of both versions first makes a change safe to apply twice
+        Snapshot result = target;
+        for (Book book : new Book[] {change.previous(), change.current()}) {
+            if (book != null) {
+                for (byte[] key : keysOf(book)) {
+                    result = without(result, key, id);
+                }
+            }
+        }
+        if (change.current() != null) {
+            Suggestion suggestion = toSuggestion(change.current());
+            for (byte[] key : keysOf(change.current())) {
+                result = with(result, key, suggestion);
+            }
+        }
+        return result;
+    }
+
+    private Snapshot merge(Snapshot target, Snapshot additions) {
+        int length = target.keys().length + additions.keys().length;
+        byte[][] keys = new byte[length][];
+        Suggestion[] suggestions = new Suggestion[length];
+
+        int fromTarget = 0;
+        int fromAdditions = 0;
+        for (int i = 0; i < length; i++) {
+            boolean takeTarget = fromAdditions == additions.keys().length || (fromTarget < target.keys().length
+                    && KEY_ORDER.compare(target.keys()[fromTarget], additions.keys()[fromAdditions]) <= 0);
+            if (takeTarget) {
+                keys[i] = target.keys()[fromTarget];
+                suggestions[i] = target.suggestions()[fromTarget++];
+            } else {
+                keys[i] = additions.keys()[fromAdditions];
+                suggestions[i] = additions.suggestions()[fromAdditions++];
+            }
+        }
+        return new Snapshot(keys, suggestions, target.estimatedBytes() + additions.estimatedBytes());
+    }
+
+    private Snapshot with(Snapshot target, byte[] key, Suggestion suggestion) {
+        int position = upperBound(target.keys(), key);
+        int length = target.keys().length;
+
+        byte[][] keys = new byte[length + 1][];
+        Suggestion[] suggestions = new Suggestion[length + 1];
+        System.arraycopy(target.keys(), 0, keys, 0, position);
+        System.arraycopy(target.suggestions(), 0, suggestions, 0, position);
+        keys[position] = key;
+        suggestions[position] = suggestion;
+        System.arraycopy(target.keys(), position, keys, position + 1, length - position);
+        System.arraycopy(target.suggestions(), position, suggestions, position + 1, length - position);
+        return new Snapshot(keys, suggestions, target.estimatedBytes() + estimateBytes(key, suggestion));
+    }
+
+    private Snapshot without(Snapshot target, byte[] key, UUID id) {
+        Snapshot result = target;
+        // Several books may share a key, only the one with the given id is removed
+        for (int i = lowerBound(result.keys(), key);
+             i < result.keys().length && Arrays.equals(result.keys()[i], key);
+             i++) {
+            Suggestion removed = result.suggestions()[i];
+            if (removed.id().equals(id)) {
+                int length = result.keys().length;
+                byte[][] keys = new byte[length - 1][];
+                Suggestion[] suggestions = new Suggestion[length - 1];
+                System.arraycopy(result.keys(), 0, keys, 0, i);
+                System.arraycopy(result.suggestions(), 0, suggestions, 0, i);
+                System.arraycopy(result.keys(), i + 1, keys, i, length - i - 1);
+                System.arraycopy(result.suggestions(), i + 1, suggestions, i, length - i - 1);
+                result = new Snapshot(keys, suggestions,
+                        result.estimatedBytes() - estimateBytes(key, removed));
+                i--;
+            }
+        }
+        return result;
+    }
+
+    private double bytesPerEntry() {
+        Snapshot current = snapshot;
+        return current.keys().length == 0 ? 0 : (double) current.estimatedBytes() / current.keys().length;
+    }
+
+    private static List<byte[]> keysOf(Book book) {
+        List<byte[]> keys = new ArrayList<>(2);
+        for (String value : new String[] {book.getTitle(), book.getAuthor()}) {
+            byte[] key = normalize(value);
+            if (key.length > 0) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static Suggestion toSuggestion(Book book) {
+        return new Suggestion(book.getId(), book.getTitle(), book.getAuthor());
+    }
+
+    private static byte[] normalize(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        // Strip accents, fold case and collapse punctuation and whitespace into single spaces
+        String decomposed = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+        String normalized = SEPARATORS.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").strip();
+        return normalized.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The first position whose key is not below the given one
+    private static int lowerBound(byte[][] keys, byte[] key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (KEY_ORDER.compare(keys[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // The first position whose key is above the given one
+    private static int upperBound(byte[][] keys, byte[] key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (KEY_ORDER.compare(keys[middle], key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    // One key with its slots in both arrays, plus half of the book it points to, which has two keys
+    private static long estimateBytes(byte[] key, Suggestion suggestion) {
+        long bookBytes = SUGGESTION_BYTES + UUID_BYTES + stringBytes(suggestion.title()) + stringBytes(suggestion.author());
+        return align(ARRAY_HEADER_BYTES + key.length) + 2L * REFERENCE_BYTES + bookBytes / 2;
+    }
+
+    private static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        // Compact strings store one byte per character unless a character is outside Latin-1
+        boolean latin1 = value.chars().allMatch(c -> c <= 0xFF);
+        return STRING_BYTES + align(ARRAY_HEADER_BYTES + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
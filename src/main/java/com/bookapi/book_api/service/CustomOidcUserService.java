@@ -3,21 +3,36 @@ package com.bookapi.book_api.service;
 import com.bookapi.book_api.model.CustomOAuth2User;
 import com.bookapi.book_api.model.User;
 import com.bookapi.book_api.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
 import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.time.Duration;
 
+@Slf4j
 @Service
 public class CustomOidcUserService extends OidcUserService {
 
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
     private final UserRepository userRepository;
+    // Local users resolved by recent logins, so a login storm does not repeat the upsert for every session
+    private final Cache<String, User> resolvedUsers;
 
-    public CustomOidcUserService(UserRepository userRepository) {
+    public CustomOidcUserService(UserRepository userRepository,
+                                 @Value("${book-api.login-cache.ttl:PT1M}") Duration loginCacheTtl,
+                                 @Value("${book-api.login-cache.maximum-size:10000}") long loginCacheMaximumSize) {
         this.userRepository = userRepository;
+        this.resolvedUsers = Caffeine.newBuilder()
+                .expireAfterWrite(loginCacheTtl)
+                .maximumSize(loginCacheMaximumSize)
+                .build();
     }
 
     @Override
@@ -34,28 +49,31 @@ public class CustomOidcUserService extends OidcUserService {
     protected User processUserRegistration(OidcUser oidcUser) {
         // Get the attributes from the OidcUser object
         String email = oidcUser.getEmail();
+        String name = localName(oidcUser);
+
+        // A user resolved by a recent login with the same name needs no database round trip
+        User cachedUser = resolvedUsers.getIfPresent(email);
+        if (cachedUser != null && name.equals(cachedUser.getName())) {
+            log.debug("Resolved user {} from the login cache", email);
+            return cachedUser;
+        }
+
+        // Create the user, or update their name, in a single atomic upsert
+        User user = userRepository.upsertByEmail(email, name, DEFAULT_ROLE);
+        log.debug("Resolved user {} from the database", email);
+
+        resolvedUsers.put(email, user);
+        return user;
+    }
+
+    // Also used by the reactive login, so both stacks store the same name for a user
+    public static String localName(OidcUser oidcUser) {
         String name = oidcUser.getName();
         // If the Name field is blank, oidcUser resorts to using the OIDC 'sub' field which
         // contains google id and should not be stored
         if (name == null || name.isBlank() || name.matches("\\d+")) {
-            name = email.split("@")[0];
-        }
-        System.out.println("Email from OIDC: " + email + ", Name: " + name);
-
-        // Find the user in the database or create a new user document
-        Optional<User> userOptional = userRepository.findByEmail(email);
-        User user;
-        if (userOptional.isPresent()) {
-            System.out.println("User found in DB. Updating...");
-            user = userOptional.get();
-            user.setName(name);
-        } else {
-            System.out.println("User not found in DB. Creating new user...");
-            user = new User(email, name, "ROLE_USER");
+            name = oidcUser.getEmail().split("@")[0];
         }
-
-        // Update the db
-        userRepository.save(user);
-        return user;
+        return name;
     }
 }
@@ -0,0 +1,50 @@
+package com.bookapi.book_api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves collection sizes from a cache of {@code estimatedDocumentCount} results, which read the collection
+ * metadata instead of counting documents, refreshed on a fixed delay in the background.
+ */
+@Slf4j
+@Service
+public class EstimatedCountService {
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<Class<?>, Long> estimates = new ConcurrentHashMap<>();
+
+    public EstimatedCountService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public long estimatedCount(Class<?> entityClass) {
+        Long estimate = estimates.get(entityClass);
+        if (estimate != null) {
+            return estimate;
+        }
+        // The first requests for a collection read the estimate, later ones are served from the cache.
+        // It is not read inside computeIfAbsent, which would hold a map lock, and pin a virtual thread,
+        // for the whole database round trip
+        estimate = mongoTemplate.estimatedCount(entityClass);
+        Long existing = estimates.putIfAbsent(entityClass, estimate);
+        return existing != null ? existing : estimate;
+    }
+
+    @Scheduled(fixedDelayString = "${book-api.estimated-count.refresh-interval:PT30S}")
+    public void refreshEstimates() {
+        for (Class<?> entityClass : estimates.keySet()) {
+            try {
+                estimates.put(entityClass, mongoTemplate.estimatedCount(entityClass));
+            } catch (RuntimeException ex) {
+                // Keep serving the previous estimate until the next refresh succeeds
+                log.warn("Could not refresh the estimated count of {}: {}", entityClass.getSimpleName(), ex.getMessage());
+            }
+        }
+    }
+}
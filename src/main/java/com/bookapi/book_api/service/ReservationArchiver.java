@@ -0,0 +1,61 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.repository.ReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Moves reservations that were closed a while ago to the reservation history in batches, so the
+ * reservations collection and its indexes only hold the active and recently closed ones, while every
+ * reservation can still be looked up by id.
+ */
+@Slf4j
+@Component
+public class ReservationArchiver {
+
+    private final ReservationRepository reservationRepository;
+    private final int batchSize;
+    private final Duration archiveAfter;
+    private final Counter archivedReservations;
+
+    public ReservationArchiver(ReservationRepository reservationRepository, MeterRegistry meterRegistry,
+                               @Value("${book-api.reservation-history.batch-size:500}") int batchSize,
+                               @Value("${book-api.reservation-history.archive-after:P1D}") Duration archiveAfter) {
+        this.reservationRepository = reservationRepository;
+        this.batchSize = batchSize;
+        this.archiveAfter = archiveAfter;
+        this.archivedReservations = Counter.builder("reservations.archived")
+                .description("Closed reservations moved to the reservation history")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${book-api.reservation-history.archive-interval:PT10M}")
+    public void archiveClosedReservations() {
+        try {
+            Instant closedBefore = Instant.now().minus(archiveAfter);
+            long archived = 0;
+            List<Reservation> reservations;
+            while (!(reservations = reservationRepository.findByClosedAtBefore(closedBefore, Limit.of(batchSize))).isEmpty()) {
+                reservationRepository.moveToHistory(reservations);
+                archived += reservations.size();
+                archivedReservations.increment(reservations.size());
+            }
+            if (archived > 0) {
+                log.info("Moved {} closed reservations to the history", archived);
+            }
+        } catch (RuntimeException ex) {
+            // The reservations left behind are moved on a later run
+            log.warn("Could not move closed reservations to the history: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expires the reservations that were held for longer than the hold period and gives their copies back.
+ * <p>
+ * A sweep reads the oldest active reservations in batches of a bounded size from the {@code state_reservedAt}
+ * index and pauses between batches, so it never scans the collection or keeps the database busy for long. Each
+ * batch seeks past the last reservation of the one before, so a reservation that could not be expired is left
+ * to a later sweep rather than read again. Every reservation is expired with the same conditional transition as
+ * a cancel, a reservation cancelled or fulfilled meanwhile is left alone, and the copies and quota of what the
+ * batch expired are given back together, in one write per collection. A failed release is logged and never
+ * holds back the other one.
+ */
+@Slf4j
+@Component
+public class ReservationExpirySweeper {
+
+    private final ReservationRepository reservationRepository;
+    private final BookService bookService;
+    private final ReservationQuotaRepository reservationQuotaRepository;
+    private final Duration holdPeriod;
+    private final int batchSize;
+    private final Duration pause;
+    private final Counter expiredReservations;
+    private final Timer sweeps;
+    private final AtomicLong backlog = new AtomicLong();
+
+    public ReservationExpirySweeper(ReservationRepository reservationRepository, BookService bookService,
+                                    ReservationQuotaRepository reservationQuotaRepository, MeterRegistry meterRegistry,
+                                    @Value("${book-api.reservation-expiry.hold-period:P14D}") Duration holdPeriod,
+                                    @Value("${book-api.reservation-expiry.batch-size:500}") int batchSize,
+                                    @Value("${book-api.reservation-expiry.pause:PT0.1S}") Duration pause) {
+        this.reservationRepository = reservationRepository;
+        this.bookService = bookService;
+        this.reservationQuotaRepository = reservationQuotaRepository;
+        this.holdPeriod = holdPeriod;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.expiredReservations = Counter.builder("reservations.expired")
+                .description("Reservations expired at the end of their hold period")
+                .register(meterRegistry);
+        this.sweeps = Timer.builder("reservations.expiry.sweep")
+                .description("Time taken by a sweep to expire the reservations past their hold period")
+                .register(meterRegistry);
+        Gauge.builder("reservations.expiry.backlog", backlog, AtomicLong::get)
+                .description("Active reservations past their hold period, as of the end of the last sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${book-api.reservation-expiry.sweep-interval:PT1M}")
+    public void expireReservations() {
+        Timer.Sample sample = Timer.start();
+        try {
+            Instant reservedBefore = Instant.now().minus(holdPeriod);
+            long expired = 0;
+            ScrollPosition position = ScrollPosition.keyset();
+            while (true) {
+                Window<Reservation> reservations = reservationRepository.findIdsByStateAndReservedAtBefore(
+                        ReservationState.RESERVED, reservedBefore, position, Limit.of(batchSize));
+                expired += expire(reservations.getContent());
+                if (!reservations.hasNext()) {
+                    break;
+                }
+                position = reservations.positionAt(reservations.size() - 1);
+                pause();
+            }
+            if (expired > 0) {
+                log.info("Expired {} reservations held since before {}", expired, reservedBefore);
+            }
+            // Counted on the index, this is what the next sweep has to do if nothing is cancelled before it
+            backlog.set(reservationRepository.countByStateAndReservedAtBefore(
+                    ReservationState.RESERVED, Instant.now().minus(holdPeriod)));
+        } catch (RuntimeException ex) {
+            // The reservations left behind are expired on a later run
+            log.warn("Could not expire reservations: {}", ex.getMessage());
+        } finally {
+            sample.stop(sweeps);
+        }
+    }
+
+    private int expire(List<Reservation> reservations) {
+        Map<UUID, Integer> copiesByBook = new HashMap<>();
+        Map<UUID, Integer> quotaByUser = new HashMap<>();
+        for (Reservation reservation : reservations) {
+            try {
+                // Only the call that expired the reservation gives its copy and quota back
+                if (reservationRepository.transition(reservation.getBookId(), reservation.getId(),
+                        ReservationState.RESERVED, ReservationState.EXPIRED) == null) {
+                    continue;
+                }
+            } catch (RuntimeException ex) {
+                // Still active, it is picked up again by a later sweep
+                log.warn("Could not expire reservation {}: {}", reservation.getId(), ex.getMessage());
+                continue;
+            }
+            expiredReservations.increment();
+            copiesByBook.merge(reservation.getBookId(), 1, Integer::sum);
+            quotaByUser.merge(reservation.getUserId(), 1, Integer::sum);
+        }
+
+        // The reservations are already expired, a failed release is logged and does not stop the other one
+        try {
+            bookService.releaseCopies(copiesByBook);
+        } catch (RuntimeException ex) {
+            log.warn("Could not release the copies of books {} held by expired reservations: {}",
+                    copiesByBook.keySet(), ex.getMessage());
+        }
+        try {
+            reservationQuotaRepository.release(quotaByUser);
+        } catch (RuntimeException ex) {
+            log.warn("Could not release the quota of users {} held by expired reservations: {}",
+                    quotaByUser.keySet(), ex.getMessage());
+        }
+        return copiesByBook.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private void pause() {
+        if (pause.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(pause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The reservation expiry sweep was interrupted", ex);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.repository.ReservationRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Loads reservations by id at most once per HTTP request, so the ownership check in
+ * {@link ReservationSecurityService} and the service call it guards share a single read.
+ * <p>
+ * Outside of a request, e.g. in a background job, every lookup goes to the repository. A reservation that is
+ * not among the current ones is looked up in the history.
+ */
+@Component
+public class ReservationLookup {
+
+    private static final String ATTRIBUTE_PREFIX = ReservationLookup.class.getName() + ".";
+
+    private final ReservationRepository reservationRepository;
+
+    public ReservationLookup(ReservationRepository reservationRepository) {
+        this.reservationRepository = reservationRepository;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<Reservation> findById(UUID reservationId) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return load(reservationId);
+        }
+
+        // The memo lives in the request attributes, so it is discarded with the request
+        String attributeName = ATTRIBUTE_PREFIX + reservationId;
+        Optional<Reservation> reservation = (Optional<Reservation>) requestAttributes
+                .getAttribute(attributeName, RequestAttributes.SCOPE_REQUEST);
+        if (reservation == null) {
+            reservation = load(reservationId);
+            requestAttributes.setAttribute(attributeName, reservation, RequestAttributes.SCOPE_REQUEST);
+        }
+        return reservation;
+    }
+
+    private Optional<Reservation> load(UUID reservationId) {
+        return reservationRepository.findById(reservationId)
+                .or(() -> reservationRepository.findInHistory(reservationId));
+    }
+
+    public void forget(UUID reservationId) {
+        // Called after a reservation changes, so later lookups in the same request see the new state
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.removeAttribute(ATTRIBUTE_PREFIX + reservationId, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.bookapi.book_api.service;
 
 import com.bookapi.book_api.model.CustomOAuth2User;
 import com.bookapi.book_api.model.Reservation;
-import com.bookapi.book_api.repository.ReservationRepository;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
@@ -13,10 +12,10 @@ import java.util.UUID;
 @Service("reservationSecurityService")
 public class ReservationSecurityService {
 
-    private final ReservationRepository reservationRepository;
+    private final ReservationLookup reservationLookup;
 
-    public ReservationSecurityService(ReservationRepository reservationRepository) {
-        this.reservationRepository = reservationRepository;
+    public ReservationSecurityService(ReservationLookup reservationLookup) {
+        this.reservationLookup = reservationLookup;
     }
 
     public boolean isReservationOwner(Authentication authentication, UUID reservationId) {
@@ -24,8 +23,8 @@ public class ReservationSecurityService {
         CustomOAuth2User currentUser = (CustomOAuth2User) authentication.getPrincipal();
         UUID currentUserId = currentUser.getLocalUser().getId();
 
-        // Find the reservation in the database
-        Optional<Reservation> currentReservationOptional = reservationRepository.findById(reservationId);
+        // Find the reservation, the guarded service call then reuses this read
+        Optional<Reservation> currentReservationOptional = reservationLookup.findById(reservationId);
         // Check there is a Reservation in the retrieved Optional
         if (currentReservationOptional.isEmpty()) {
             return false;
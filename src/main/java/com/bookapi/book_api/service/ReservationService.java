@@ -1,37 +1,103 @@
 package com.bookapi.book_api.service;
 
 import com.bookapi.book_api.exception.BadResourceException;
+import com.bookapi.book_api.exception.ConflictException;
 import com.bookapi.book_api.exception.ResourceNotFoundException;
 import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
 import com.bookapi.book_api.repository.ReservationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 
+import java.util.Locale;
 import java.util.UUID;
 
 @Service
 public class ReservationService {
 
+    public static final Sort CURSOR_SORT = ReservationRepository.CURSOR_SORT;
+
     private final ReservationRepository reservationRepository;
+    private final ReservationLookup reservationLookup;
+    private final BookService bookService;
+    private final EstimatedCountService estimatedCountService;
+    private final ReservationQuotaRepository reservationQuotaRepository;
+    private final int maxActiveReservations;
 
-    public ReservationService(ReservationRepository reservationRepository) {
+    public ReservationService(ReservationRepository reservationRepository, ReservationLookup reservationLookup,
+                              BookService bookService, EstimatedCountService estimatedCountService,
+                              ReservationQuotaRepository reservationQuotaRepository,
+                              @Value("${book-api.reservation-quota.max-active:5}") int maxActiveReservations) {
         this.reservationRepository = reservationRepository;
+        this.reservationLookup = reservationLookup;
+        this.bookService = bookService;
+        this.estimatedCountService = estimatedCountService;
+        this.reservationQuotaRepository = reservationQuotaRepository;
+        this.maxActiveReservations = maxActiveReservations;
     }
 
+    /**
+     * Reserves a copy of a book for a user. Every check is a conditional write rather than a read: the quota
+     * of the user and the copies of the book are counters, and a second active reservation of the same book
+     * is rejected by the unique index on the active reservations.
+     *
+     * @throws ConflictException if the user is at their quota, already has an active reservation of the book,
+     *                           or no copy of the book is left.
+     */
     public Reservation addReservation(UUID bookId, UUID userId) {
+        // The unique index does not compare a reservation stored with legacy UUIDs to a new one
+        if (reservationRepository.existsLegacyActiveReservation(bookId, userId)) {
+            throw duplicateReservation(bookId, userId);
+        }
+        // Count the reservation against the quota of the user first
+        if (!reservationQuotaRepository.take(userId, maxActiveReservations)) {
+            throw new ConflictException("The user with id " + userId + " already has " + maxActiveReservations
+                    + " active reservations");
+        }
+        try {
+            // Take a copy of the book, this fails with a conflict once every copy is reserved
+            bookService.reserveCopy(bookId);
+        } catch (RuntimeException ex) {
+            reservationQuotaRepository.release(userId, 1);
+            throw ex;
+        }
+
         // Create a new Reservation from the arguments
         Reservation newReservation = new Reservation(
                 bookId,
                 userId
         );
-        // Use the repository's built in methods to save and return the new Reservation
-        return reservationRepository.save(newReservation);
+        try {
+            // Insert rather than save, the new reservation must never replace one
+            return reservationRepository.insert(newReservation);
+        } catch (RuntimeException ex) {
+            // Give the copy and the quota back, otherwise they would stay taken without a reservation
+            bookService.releaseCopy(bookId);
+            reservationQuotaRepository.release(userId, 1);
+            if (ex instanceof DuplicateKeyException) {
+                throw duplicateReservation(bookId, userId);
+            }
+            throw ex;
+        }
+    }
+
+    private static ConflictException duplicateReservation(UUID bookId, UUID userId) {
+        return new ConflictException("The user with id " + userId
+                + " already has an active reservation of the book with id " + bookId);
     }
 
     public Reservation findReservationById(UUID bookId, UUID reservationId) {
-        // Use the repository's built in methods to return the Reservation
-        Reservation reservation = reservationRepository.findById(reservationId)
+        // Use the request's reservation lookup, which the ownership check may already have loaded
+        Reservation reservation = reservationLookup.findById(reservationId)
                 .orElseThrow(() -> new ResourceNotFoundException("Reservation not found with id:" + reservationId));
 
         if (!reservation.getBookId().equals(bookId)) {
@@ -44,20 +110,61 @@ public class ReservationService {
         return reservation;
     }
 
-    public Reservation deleteReservationById(UUID bookId, UUID reservationId) {
-        // Find the reservation to be deleted
-        Reservation reservationToDelete = findReservationById(bookId, reservationId);
-        // Delete the reservation from the database
-        reservationRepository.delete(reservationToDelete);
+    public Reservation cancelReservation(UUID bookId, UUID reservationId) {
+        Reservation cancelledReservation = close(bookId, reservationId, ReservationState.CANCELLED);
+        // Only the call that cancelled the reservation gives the copy back
+        bookService.releaseCopy(bookId);
+
+        return cancelledReservation;
+    }
+
+    public Reservation fulfilReservation(UUID bookId, UUID reservationId) {
+        // The copy stays taken, the user has it now
+        return close(bookId, reservationId, ReservationState.FULFILLED);
+    }
+
+    // Moves an active reservation to a final state, concurrent calls are settled by the update alone
+    private Reservation close(UUID bookId, UUID reservationId, ReservationState state) {
+        Reservation closedReservation = reservationRepository.transition(
+                bookId, reservationId, ReservationState.RESERVED, state);
+        reservationLookup.forget(reservationId);
+        if (closedReservation != null) {
+            // The reservation no longer counts against the quota of its user
+            reservationQuotaRepository.release(closedReservation.getUserId(), 1);
+            return closedReservation;
+        }
 
-        return reservationToDelete;
+        // Nothing matched, the reservation is only read now to tell why
+        Reservation reservation = findReservationById(bookId, reservationId);
+        throw new ConflictException("The reservation with id " + reservationId + " is already "
+                + reservation.getState().name().toLowerCase(Locale.ROOT));
     }
 
     public Page<Reservation> findReservationsForUser(UUID userId, Pageable pageable) {
         return reservationRepository.findByUserId(userId, pageable);
     }
 
+    public Slice<Reservation> findReservationSliceForUser(UUID userId, Pageable pageable) {
+        return reservationRepository.findSliceByUserId(userId, pageable);
+    }
+
+    public Window<Reservation> findReservationsForUser(UUID userId, ScrollPosition position, int limit) {
+        return reservationRepository.findByUserId(userId, position, Limit.of(limit), CURSOR_SORT);
+    }
+
     public Page<Reservation> findAllReservations(Pageable pageable) {
         return reservationRepository.findAll(pageable);
     }
+
+    public Slice<Reservation> findAllReservationSlice(Pageable pageable) {
+        return reservationRepository.findAllBy(pageable);
+    }
+
+    public long estimateReservationCount() {
+        return estimatedCountService.estimatedCount(Reservation.class);
+    }
+
+    public Window<Reservation> findAllReservations(ScrollPosition position, int limit) {
+        return reservationRepository.findAllBy(position, Limit.of(limit), CURSOR_SORT);
+    }
 }
@@ -0,0 +1,280 @@
+package com.bookapi.book_api.reactive.controller;
+
+import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.CustomOAuth2User;
+import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.reactive.repository.ReactiveBookDeletionRepository;
+import com.bookapi.book_api.reactive.repository.ReactiveBookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.mockito.Mockito.mock;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockAuthentication;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveBookControllerIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveBookRepository bookRepository;
+
+    @Autowired
+    private ReactiveBookDeletionRepository bookDeletionRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAll().block();
+        bookDeletionRepository.deleteAll().block();
+    }
+
+    @Test
+    @DisplayName("POST /books should create a book for an admin, which GET /books/{bookId} then returns with links")
+    void postBook_whenUserIsAdmin_shouldCreateBook() {
+        // GIVEN a book input and a logged in admin
+        BookInput bookInput = new BookInput();
+        bookInput.setTitle("Dune");
+        bookInput.setAuthor("Frank Herbert");
+        bookInput.setSynopsis("Spice");
+        bookInput.setCopies(3);
+        WebTestClient admin = webTestClient.mutateWith(mockAuthentication(authenticationFor("ROLE_ADMIN")));
+
+        // WHEN the book is posted
+        String location = admin.post().uri("/books")
+                .bodyValue(bookInput)
+                .exchange()
+        // THEN it is created with its location and all copies available
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Dune")
+                .jsonPath("$.availableCopies").isEqualTo(3)
+                .returnResult().getResponseHeaders().getLocation().toString();
+
+        // AND reading it back returns links to itself, at its location, and to its reservations
+        admin.get().uri(location)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.links.self").isEqualTo(location)
+                .jsonPath("$.links.reservations").value(endsWith("/reservations"));
+    }
+
+    @Test
+    @DisplayName("POST /books should be forbidden for a regular user")
+    void postBook_whenUserIsNotAdmin_shouldReturn403() {
+        // GIVEN a logged in regular user
+        BookInput bookInput = new BookInput();
+        bookInput.setTitle("Dune");
+        bookInput.setAuthor("Frank Herbert");
+        bookInput.setSynopsis("Spice");
+
+        // WHEN they post a book
+        webTestClient.mutateWith(mockAuthentication(authenticationFor("ROLE_USER")))
+                .post().uri("/books")
+                .bodyValue(bookInput)
+                .exchange()
+        // THEN the request is forbidden and nothing is stored
+                .expectStatus().isForbidden();
+        assertThat(bookRepository.count().block()).isZero();
+    }
+
+    @Test
+    @DisplayName("GET /books should page by offset without a count and by cursor through the whole collection")
+    void getBooks_whenPagedByOffsetOrCursor_shouldReturnEveryBookOnce() {
+        // GIVEN five books
+        bookRepository.saveAll(IntStream.range(0, 5)
+                .mapToObj(i -> new Book("Book " + i, "Author", "Synopsis"))
+                .toList()).blockLast();
+        WebTestClient user = webTestClient.mutateWith(mockAuthentication(authenticationFor("ROLE_USER")));
+
+        // WHEN the first offset page is read without a count
+        // THEN it holds two books and links to the next offset
+        user.get().uri("/books?limit=2&count=none")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(2)
+                .jsonPath("$.totalCount").doesNotExist()
+                .jsonPath("$.next").value(endsWith("offset=2&limit=2"));
+
+        // WHEN the collection is traversed by following the cursor links
+        String next = "/books?limit=2&after=";
+        int pages = 0;
+        int books = 0;
+        while (next != null) {
+            BookPage page = user.get().uri(next).exchange()
+                    .expectStatus().isOk()
+                    .expectBody(BookPage.class).returnResult().getResponseBody();
+            books += page.items().size();
+            pages++;
+            next = page.next();
+        }
+
+        // THEN every book is returned exactly once
+        assertThat(books).isEqualTo(5);
+        assertThat(pages).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("POST /books/import should import NDJSON line by line, and GET /books/export should stream it back")
+    void importAndExport_whenGivenNdjson_shouldRoundTripTheValidBooks() {
+        // GIVEN an NDJSON import with two valid books, a malformed line and a book without a title
+        String body = """
+                {"title": "Emma", "author": "Jane Austen", "synopsis": "Matchmaking"}
+                {"title": "Dune", "author": "Frank Herbert", "synopsis": "Spice", "copies": 2}
+                {not json
+
+                {"author": "Nobody", "synopsis": "Untitled"}
+                """;
+        WebTestClient admin = webTestClient.mutateWith(mockAuthentication(authenticationFor("ROLE_ADMIN")));
+
+        // WHEN it is imported
+        admin.post().uri("/books/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+        // THEN the valid books are imported and the others are reported by line
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.received").isEqualTo(4)
+                .jsonPath("$.imported").isEqualTo(2)
+                .jsonPath("$.failed").isEqualTo(2)
+                .jsonPath("$.errors[0].line").isEqualTo(3)
+                .jsonPath("$.errors[1].line").isEqualTo(5);
+
+        // WHEN the catalog is exported
+        List<String> lines = admin.get().uri("/books/export")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(String.class).getResponseBody()
+                .collectList().block();
+
+        // THEN there is one line per imported book
+        assertThat(lines).hasSize(2);
+        assertThat(String.join("\n", lines)).contains("\"title\":\"Emma\"", "\"title\":\"Dune\"");
+    }
+
+    @Test
+    @DisplayName("POST /books/import should import a JSON array element by element")
+    void importBooks_whenGivenJsonArray_shouldImportEachElement() {
+        // GIVEN a JSON array spread over several lines with one invalid element
+        String body = """
+                [
+                  {"title": "Emma", "author": "Jane Austen", "synopsis": "Matchmaking"},
+                  {"title": "Dune", "author": "Frank Herbert",
+                   "synopsis": "Spice"},
+                  {"author": "Nobody", "synopsis": "Untitled"}
+                ]
+                """;
+
+        // WHEN it is imported
+        webTestClient.mutateWith(mockAuthentication(authenticationFor("ROLE_ADMIN")))
+                .post().uri("/books/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+        // THEN the valid elements are imported and the invalid one is reported by its position
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.received").isEqualTo(3)
+                .jsonPath("$.imported").isEqualTo(2)
+                .jsonPath("$.errors[0].line").isEqualTo(3);
+        assertThat(bookRepository.count().block()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("GET /books/{bookId} should answer 304 for the current tag, and PUT should honour If-Match")
+    void conditionalRequests_whenGivenEntityTags_shouldCompareThemWithTheVersion() {
+        // GIVEN a stored book and a logged in admin
+        Book book = bookRepository.save(new Book("Dune", "Frank Herbert", "Spice", 2)).block();
+        WebTestClient admin = webTestClient.mutateWith(mockAuthentication(authenticationFor("ROLE_ADMIN")));
+
+        // WHEN it is read with the tag of its current version
+        // THEN the response is 304 Not Modified without a body
+        admin.get().uri("/books/{bookId}", book.getId())
+                .header("If-None-Match", "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", "\"0\"")
+                .expectBody().isEmpty();
+
+        // WHEN it is updated with the tag of a version it does not have, leaving the copies as they are
+        BookInput bookInput = new BookInput();
+        bookInput.setTitle("Dune Messiah");
+        bookInput.setAuthor("Frank Herbert");
+        bookInput.setSynopsis("Spice");
+        // THEN the update is refused
+        admin.put().uri("/books/{bookId}", book.getId())
+                .header("If-Match", "\"1\"")
+                .bodyValue(bookInput)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        // WHEN it is updated with the tag of its current version
+        // THEN the update succeeds and moves it to the next version
+        admin.put().uri("/books/{bookId}", book.getId())
+                .header("If-Match", "\"0\"")
+                .bodyValue(bookInput)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"1\"")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Dune Messiah");
+    }
+
+    @Test
+    @DisplayName("PATCH /books/{bookId} should change only the supplied fields, and DELETE should remove the book once")
+    void patchAndDelete_whenBookExists_shouldChangeThenRemoveIt() {
+        // GIVEN a stored book with a reserved copy and a logged in admin
+        Book book = new Book("Dune", "Frank Herbert", "Spice", 2);
+        book.setAvailableCopies(1);
+        bookRepository.save(book).block();
+        WebTestClient admin = webTestClient.mutateWith(mockAuthentication(authenticationFor("ROLE_ADMIN")));
+
+        // WHEN only its synopsis is patched
+        // THEN every other field is kept and the book moves to the next version
+        admin.patch().uri("/books/{bookId}", book.getId())
+                .contentType(MediaType.parseMediaType("application/merge-patch+json"))
+                .bodyValue("{\"synopsis\": \"Arrakis\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"1\"")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Dune")
+                .jsonPath("$.synopsis").isEqualTo("Arrakis")
+                .jsonPath("$.availableCopies").isEqualTo(1);
+
+        // WHEN it is deleted twice
+        // THEN the first delete removes it and the second one does not find it
+        admin.delete().uri("/books/{bookId}", book.getId()).exchange().expectStatus().isNoContent();
+        admin.delete().uri("/books/{bookId}", book.getId()).exchange().expectStatus().isNotFound();
+        assertThat(bookRepository.count().block()).isZero();
+    }
+
+    private record BookPage(List<Object> items, String next) {
+    }
+
+    private Authentication authenticationFor(String role) {
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class),
+                new User(role.toLowerCase() + "@example.com", "Test", role));
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+}
@@ -0,0 +1,225 @@
+package com.bookapi.book_api.reactive.controller;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.CustomOAuth2User;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.reactive.repository.ReactiveBookRepository;
+import com.bookapi.book_api.reactive.repository.ReactiveReservationQuotaRepository;
+import com.bookapi.book_api.reactive.repository.ReactiveReservationRepository;
+import com.bookapi.book_api.reactive.repository.ReactiveUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockAuthentication;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveReservationControllerIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveBookRepository bookRepository;
+
+    @MockitoSpyBean
+    private ReactiveReservationRepository reservationRepository;
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    @Autowired
+    private ReactiveReservationQuotaRepository reservationQuotaRepository;
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll().block();
+        bookRepository.deleteAll().block();
+        userRepository.deleteAll().block();
+        reservationQuotaRepository.deleteAll().block();
+    }
+
+    @Test
+    @DisplayName("POST /books/{bookId}/reservations should reserve a copy for the logged in user")
+    void postReservation_whenCopyIsAvailable_shouldCreateReservationAndTakeACopy() {
+        // GIVEN a book with one copy and a logged in user
+        Book book = bookRepository.save(new Book("Dune", "Frank Herbert", "Spice", 1)).block();
+        User user = userRepository.save(new User("user@example.com", "User", "ROLE_USER")).block();
+        WebTestClient client = webTestClient.mutateWith(mockAuthentication(authenticationFor(user)));
+
+        // WHEN they reserve it
+        client.post().uri("/books/{bookId}/reservations", book.getId())
+                .exchange()
+        // THEN the reservation is created for them
+                .expectStatus().isCreated()
+                .expectHeader().exists("Location")
+                .expectBody()
+                .jsonPath("$.userId").isEqualTo(user.getId().toString())
+                .jsonPath("$.state").isEqualTo("Reserved");
+        // AND the only copy is taken, so a second reservation conflicts
+        assertThat(bookRepository.findById(book.getId()).block().getAvailableCopies()).isZero();
+        client.post().uri("/books/{bookId}/reservations", book.getId())
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    @DisplayName("POST /books/{bookId}/reservations should return 409 when the user already holds an active reservation of the book")
+    void postReservation_whenUserAlreadyReservedTheBook_shouldReturn409AndKeepTheCopy() {
+        // GIVEN a book with two copies, one of them reserved by a logged in user
+        Book book = bookRepository.save(new Book("Dune", "Frank Herbert", "Spice", 2)).block();
+        User user = userRepository.save(new User("user@example.com", "User", "ROLE_USER")).block();
+        WebTestClient client = webTestClient.mutateWith(mockAuthentication(authenticationFor(user)));
+        client.post().uri("/books/{bookId}/reservations", book.getId())
+                .exchange()
+                .expectStatus().isCreated();
+
+        // WHEN they reserve it again
+        client.post().uri("/books/{bookId}/reservations", book.getId())
+                .exchange()
+        // THEN the reservation conflicts
+                .expectStatus().isEqualTo(409)
+                .expectBody().jsonPath("$.error").isNotEmpty();
+        // AND the second copy is still available
+        assertThat(bookRepository.findById(book.getId()).block().getAvailableCopies()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("GET /books/{bookId}/reservations/{reservationId} should only be allowed for the owner or an admin")
+    void getReservation_whenNotOwner_shouldReturn403UnlessAdmin() {
+        // GIVEN a reservation of one user, another user and an admin
+        var fixture = setUpReservation();
+        User otherUser = userRepository.save(new User("other@example.com", "Other", "ROLE_USER")).block();
+        User admin = userRepository.save(new User("admin@example.com", "Admin", "ROLE_ADMIN")).block();
+        String uri = "/books/" + fixture.book().getId() + "/reservations/" + fixture.reservation().getId();
+
+        // WHEN each of them reads the reservation
+        // THEN the owner and the admin see it and the other user is forbidden
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(fixture.owner())))
+                .get().uri(uri).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.id").isEqualTo(fixture.reservation().getId().toString());
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(otherUser)))
+                .get().uri(uri).exchange()
+                .expectStatus().isForbidden();
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(admin)))
+                .get().uri(uri).exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    @DisplayName("The ownership check and the guarded call should share a single reservation read")
+    void getReservation_whenOwnershipIsChecked_shouldReadTheReservationOnce() {
+        // GIVEN a reservation and its owner
+        var fixture = setUpReservation();
+        clearInvocations(reservationRepository);
+
+        // WHEN the owner reads it
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(fixture.owner())))
+                .get().uri("/books/{bookId}/reservations/{reservationId}",
+                        fixture.book().getId(), fixture.reservation().getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        // THEN the reservation was only loaded once for the check and the response
+        verify(reservationRepository, times(1)).findById(fixture.reservation().getId());
+    }
+
+    @Test
+    @DisplayName("DELETE /books/{bookId}/reservations/{reservationId} should cancel the reservation and give the copy back")
+    void deleteReservation_whenOwner_shouldCancelItAndReturnTheCopy() {
+        // GIVEN a reservation that took the only copy of a book
+        var fixture = setUpReservation();
+
+        // WHEN the owner cancels it
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(fixture.owner())))
+                .delete().uri("/books/{bookId}/reservations/{reservationId}",
+                        fixture.book().getId(), fixture.reservation().getId())
+                .exchange()
+        // THEN it is kept as cancelled and the copy is available again
+                .expectStatus().isNoContent();
+        assertThat(reservationRepository.findById(fixture.reservation().getId()).block().getState())
+                .isEqualTo(ReservationState.CANCELLED);
+        assertThat(bookRepository.findById(fixture.book().getId()).block().getAvailableCopies()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("POST /books/{bookId}/reservations/{reservationId}/fulfilment should fulfil it for an admin, after which it cannot be cancelled")
+    void fulfilReservation_whenAdmin_shouldFulfilItAndRefuseACancellation() {
+        // GIVEN a reservation that took the only copy of a book, and an admin
+        var fixture = setUpReservation();
+        User admin = userRepository.save(new User("admin@example.com", "Admin", "ROLE_ADMIN")).block();
+
+        // WHEN the admin fulfils it
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(admin)))
+                .post().uri("/books/{bookId}/reservations/{reservationId}/fulfilment",
+                        fixture.book().getId(), fixture.reservation().getId())
+                .exchange()
+        // THEN it is fulfilled
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.state").isEqualTo("Fulfilled");
+
+        // WHEN the owner cancels it afterwards
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(fixture.owner())))
+                .delete().uri("/books/{bookId}/reservations/{reservationId}",
+                        fixture.book().getId(), fixture.reservation().getId())
+                .exchange()
+        // THEN the cancellation conflicts and the copy stays taken
+                .expectStatus().isEqualTo(409);
+        assertThat(bookRepository.findById(fixture.book().getId()).block().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    @DisplayName("GET /reservations should only list the logged in user's reservations")
+    void listReservations_whenRegularUser_shouldOnlyReturnTheirOwn() {
+        // GIVEN a reservation of one user and one of another user
+        var fixture = setUpReservation();
+        User otherUser = userRepository.save(new User("other@example.com", "Other", "ROLE_USER")).block();
+        reservationRepository.save(new Reservation(fixture.book().getId(), otherUser.getId())).block();
+
+        // WHEN the first user lists reservations, asking for the other user's
+        webTestClient.mutateWith(mockAuthentication(authenticationFor(fixture.owner())))
+                .get().uri("/reservations?userId={userId}", otherUser.getId())
+                .exchange()
+        // THEN only their own reservation is returned, with the exact count
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(1)
+                .jsonPath("$.items[0].id").isEqualTo(fixture.reservation().getId().toString())
+                .jsonPath("$.totalCount").isEqualTo(1);
+    }
+
+    private record ReservationFixture(Book book, User owner, Reservation reservation) {
+    }
+
+    private ReservationFixture setUpReservation() {
+        Book book = new Book("Dune", "Frank Herbert", "Spice", 1);
+        book.setAvailableCopies(0);
+        bookRepository.save(book).block();
+        User owner = userRepository.save(new User("owner@example.com", "Owner", "ROLE_USER")).block();
+        Reservation reservation = reservationRepository.save(new Reservation(book.getId(), owner.getId())).block();
+        return new ReservationFixture(book, owner, reservation);
+    }
+
+    private Authentication authenticationFor(User user) {
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), user);
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+}
@@ -0,0 +1,40 @@
+package com.bookapi.book_api.reactive;
+
+import com.bookapi.book_api.config.MongoConfig;
+import com.bookapi.book_api.mapper.BookMapper;
+import com.bookapi.book_api.mapper.CursorMapper;
+import com.bookapi.book_api.mapper.EntityTagMapper;
+import com.bookapi.book_api.mapper.LinkResolver;
+import com.bookapi.book_api.mapper.ReservationMapper;
+import com.bookapi.book_api.repository.LegacyUuids;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+/**
+ * The Books and Reservations API on WebFlux and the reactive MongoDB driver, serving the same
+ * {@code openapi.yml} contract as {@link com.bookapi.book_api.BookApiApplication} without blocking a thread
+ * per request. It shares the models, DTOs, mappers and database with the servlet application.
+ */
+// Only the reactive driver is started, the blocking MongoClient and MongoTemplate are not needed
+@SpringBootApplication(excludeName = {
+        "org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration",
+        "org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration",
+        "org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration"})
+// The models live outside of this package, they are scanned so their indexes are known at startup
+@EntityScan("com.bookapi.book_api.model")
+@EnableReactiveMongoRepositories(basePackages = "com.bookapi.book_api.reactive.repository")
+@Import({MongoConfig.class, LegacyUuids.class, BookMapper.class, ReservationMapper.class, CursorMapper.class,
+        EntityTagMapper.class, LinkResolver.class})
+public class ReactiveBookApiApplication {
+
+    public static void main(String[] args) {
+        // Spring MVC is on the classpath as well, so the reactive web server has to be asked for
+        new SpringApplicationBuilder(ReactiveBookApiApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .run(args);
+    }
+}
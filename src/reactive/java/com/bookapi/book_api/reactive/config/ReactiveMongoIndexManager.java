@@ -0,0 +1,51 @@
+package com.bookapi.book_api.reactive.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Creates the indexes declared on the {@link Document} models when the reactive application starts, like
+ * {@link com.bookapi.book_api.config.MongoIndexManager} does for the servlet application.
+ */
+@Slf4j
+@Component
+public class ReactiveMongoIndexManager {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ReactiveMongoIndexManager(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        // Startup runs on the main thread, which may wait for the indexes before requests are served
+        ensureIndexes().blockLast();
+    }
+
+    public Flux<String> ensureIndexes() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        IndexResolver indexResolver = IndexResolver.create(mappingContext);
+
+        return Flux.fromIterable(mappingContext.getPersistentEntities())
+                .filter(entity -> entity.isAnnotationPresent(Document.class))
+                .concatMap(entity -> {
+                    ReactiveIndexOperations indexOps = mongoTemplate.indexOps(entity.getCollection());
+                    // createIndex is a no-op for an identical existing index, and fails on a conflicting definition
+                    return Flux.fromIterable(indexResolver.resolveIndexFor(entity.getTypeInformation()))
+                            .concatMap(indexOps::createIndex)
+                            .doOnComplete(() -> log.info("Ensured indexes on collection {}", entity.getCollection()));
+                });
+    }
+}
@@ -0,0 +1,67 @@
+package com.bookapi.book_api.reactive.config;
+
+import com.bookapi.book_api.repository.LegacyUuids;
+import com.bookapi.book_api.repository.UuidMigrator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Looks for the completion of the UUID migration like
+ * {@link com.bookapi.book_api.config.UuidMigrationStatusCheck} does for the servlet application, and stops
+ * looking once it is complete.
+ */
+@Slf4j
+@Component
+public class ReactiveUuidMigrationStatusCheck implements DisposableBean {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+    private final Duration interval;
+    private Disposable checks;
+
+    public ReactiveUuidMigrationStatusCheck(ReactiveMongoTemplate mongoTemplate, LegacyUuids legacyUuids,
+                                            @Value("${book-api.uuid-migration.status-check-interval:PT1M}")
+                                            Duration interval) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+        this.interval = interval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        Query completed = Query.query(Criteria.where("_id").is(UuidMigrator.STATUS_ID));
+        checks = Flux.interval(Duration.ZERO, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> mongoTemplate.exists(completed, UuidMigrator.STATUS_COLLECTION)
+                        // Legacy UUIDs are matched until a later check succeeds
+                        .onErrorResume(ex -> {
+                            log.warn("Could not check the status of the UUID migration: {}", ex.getMessage());
+                            return Mono.just(false);
+                        }))
+                .filter(Boolean::booleanValue)
+                .next()
+                .subscribe(migrated -> {
+                    legacyUuids.migrated();
+                    log.info("The UUID migration is complete, UUIDs are only matched in the standard representation");
+                });
+    }
+
+    @Override
+    public void destroy() {
+        if (checks != null) {
+            checks.dispose();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.bookapi.book_api.reactive.controller;
+
+import com.bookapi.book_api.dto.generated.BookImportResult;
+import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.dto.generated.BookListResponse;
+import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.dto.generated.BookPatch;
+import com.bookapi.book_api.dto.generated.BookSuggestionResponse;
+import com.bookapi.book_api.mapper.CursorMapper;
+import com.bookapi.book_api.mapper.EntityTagMapper;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.CountMode;
+import com.bookapi.book_api.reactive.controller.generated.BooksApi;
+import com.bookapi.book_api.reactive.mapper.ReactiveBookMapper;
+import com.bookapi.book_api.reactive.service.ReactiveBookExportService;
+import com.bookapi.book_api.reactive.service.ReactiveBookImportService;
+import com.bookapi.book_api.reactive.service.ReactiveBookService;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.UUID;
+
+@RestController
+public class ReactiveBookController implements BooksApi {
+
+    private final ReactiveBookService bookService;
+    private final ReactiveBookImportService bookImportService;
+    private final ReactiveBookExportService bookExportService;
+    private final ReactiveBookMapper bookMapper;
+    private final CursorMapper cursorMapper;
+    private final EntityTagMapper entityTagMapper;
+
+    public ReactiveBookController(ReactiveBookService bookService, ReactiveBookImportService bookImportService,
+                                  ReactiveBookExportService bookExportService, ReactiveBookMapper bookMapper,
+                                  CursorMapper cursorMapper, EntityTagMapper entityTagMapper) {
+        this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
+        this.bookMapper = bookMapper;
+        this.cursorMapper = cursorMapper;
+        this.entityTagMapper = entityTagMapper;
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<BookOutput>> addBook(Mono<BookInput> bookInput, ServerWebExchange exchange) {
+        return bookInput
+                .flatMap(bookService::createBook)
+                .map(createdBook -> {
+                    // Build the URI to be returned with the 201 response
+                    URI location = UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                            .path("/{id}")
+                            .buildAndExpand(createdBook.getId())
+                            .toUri();
+                    return ResponseEntity.created(location)
+                            .eTag(entityTagMapper.toEntityTag(createdBook))
+                            .body(bookMapper.toBookOutput(createdBook, exchange));
+                });
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<Void>> deleteBookById(UUID bookId, ServerWebExchange exchange) {
+        return bookService.deleteBook(bookId)
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<BookImportResult>> importBooks(Mono<Resource> body, ServerWebExchange exchange) {
+        // The generated body would be collected into one Resource, the request body is read as it arrives instead
+        return bookImportService.importBooks(exchange.getRequest().getBody())
+                .map(ResponseEntity::ok);
+    }
+
+    @Override
+    public Mono<ResponseEntity<BookListResponse>> searchBooks(String q, Integer offset, Integer limit, String count,
+                                                              ServerWebExchange exchange) {
+        CountMode countMode = CountMode.fromParameter(count);
+
+        // Create a pageable object from offset and limit
+        int page = limit > 0 ? offset / limit : 0;
+        Pageable pageable = PageRequest.of(page, limit);
+
+        // Only the exact mode counts the matches, there is no estimate for a search
+        Mono<BookListResponse> response = countMode == CountMode.EXACT
+                ? bookService.searchBooks(q, pageable).map(bookPage -> bookMapper.toBookListResponse(bookPage, exchange))
+                : bookService.searchBookSlice(q, pageable)
+                        .map(bookSlice -> bookMapper.toBookListResponse(bookSlice, null, exchange));
+        return response.map(ResponseEntity::ok);
+    }
+
+    @Override
+    public Mono<ResponseEntity<BookSuggestionResponse>> suggestBooks(String q, Integer limit,
+                                                                     ServerWebExchange exchange) {
+        // The suggestion index is built from the blocking repository and is not part of this variant yet
+        return Mono.just(ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build());
+    }
+
+    @Override
+    public Mono<ResponseEntity<Resource>> exportBooks(ServerWebExchange exchange) {
+        // A Resource body is read through a blocking InputStream, so the lines are written to the response
+        // directly and the handler completes without a body of its own
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_NDJSON);
+        return response.writeWith(bookExportService.exportBooks(response.bufferFactory()))
+                .then(Mono.empty());
+    }
+
+    @Override
+    public Mono<ResponseEntity<BookListResponse>> getAllBooks(Integer offset, Integer limit, String after, String count,
+                                                              String ifNoneMatch, ServerWebExchange exchange) {
+        CountMode countMode = CountMode.fromParameter(count);
+
+        // A cursor switches to keyset pagination, which ignores the offset
+        if (after != null) {
+            ScrollPosition position = cursorMapper.toScrollPosition(after, ReactiveBookService.CURSOR_SORT);
+            return bookService.findAllBooks(position, limit).map(bookWindow -> {
+                String entityTag = entityTagMapper.toEntityTag(bookWindow.getContent(), null, bookWindow.hasNext());
+                if (entityTagMapper.isNotModified(ifNoneMatch, entityTag)) {
+                    return notModified(entityTag);
+                }
+                return ResponseEntity.ok().eTag(entityTag)
+                        .body(bookMapper.toBookListResponse(bookWindow, limit, exchange));
+            });
+        }
+
+        // Create a pageable object from offset and limit
+        int page = limit > 0 ? offset / limit : 0;
+        Pageable pageable = PageRequest.of(page, limit);
+
+        // Only the exact mode runs a count alongside the page query, the estimate is read at the same time
+        return switch (countMode) {
+            case EXACT -> bookService.findAllBooks(pageable)
+                    .map(bookPage -> toBookListEntity(bookPage, bookPage.getTotalElements(), ifNoneMatch, exchange));
+            case ESTIMATED -> Mono.zip(bookService.findBookSlice(pageable), bookService.estimateBookCount())
+                    .map(sliceAndCount -> toBookListEntity(
+                            sliceAndCount.getT1(), sliceAndCount.getT2(), ifNoneMatch, exchange));
+            case NONE -> bookService.findBookSlice(pageable)
+                    .map(bookSlice -> toBookListEntity(bookSlice, null, ifNoneMatch, exchange));
+        };
+    }
+
+    @Override
+    public Mono<ResponseEntity<BookOutput>> getBookById(UUID bookId, String ifNoneMatch, ServerWebExchange exchange) {
+        return bookService.findBookById(bookId).map(foundBook -> {
+            // Answer 304 Not Modified without mapping the book if the client holds the current version
+            if (entityTagMapper.isNotModified(ifNoneMatch, entityTagMapper.toEntityTag(foundBook))) {
+                return withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), foundBook).build();
+            }
+            return withValidators(ResponseEntity.ok(), foundBook).body(bookMapper.toBookOutput(foundBook, exchange));
+        });
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<BookOutput>> updateBook(UUID bookId, Mono<BookInput> bookInput, String ifMatch,
+                                                       ServerWebExchange exchange) {
+        // Read If-Match when the request is handled, a malformed header is an error of the returned Mono
+        return Mono.defer(() -> {
+                    Long expectedVersion = entityTagMapper.toExpectedVersion(ifMatch);
+                    return bookInput.flatMap(input -> bookService.updateBook(bookId, input, expectedVersion));
+                })
+                .map(updatedBook -> withValidators(ResponseEntity.ok(), updatedBook)
+                        .body(bookMapper.toBookOutput(updatedBook, exchange)));
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<BookOutput>> patchBook(UUID bookId, Mono<BookPatch> bookPatch, String ifMatch,
+                                                      ServerWebExchange exchange) {
+        return Mono.defer(() -> {
+                    Long expectedVersion = entityTagMapper.toExpectedVersion(ifMatch);
+                    return bookPatch.flatMap(patch -> bookService.patchBook(bookId, patch, expectedVersion));
+                })
+                .map(patchedBook -> withValidators(ResponseEntity.ok(), patchedBook)
+                        .body(bookMapper.toBookOutput(patchedBook, exchange)));
+    }
+
+    private ResponseEntity<BookListResponse> toBookListEntity(Slice<Book> bookSlice, Long totalCount,
+                                                              String ifNoneMatch, ServerWebExchange exchange) {
+        // The tag is computed from the stored books, an unchanged list is neither mapped nor serialized
+        String entityTag = entityTagMapper.toEntityTag(bookSlice.getContent(), totalCount, bookSlice.hasNext());
+        if (entityTagMapper.isNotModified(ifNoneMatch, entityTag)) {
+            return notModified(entityTag);
+        }
+        return ResponseEntity.ok().eTag(entityTag)
+                .body(bookMapper.toBookListResponse(bookSlice, totalCount, exchange));
+    }
+
+    private ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, Book book) {
+        builder.eTag(entityTagMapper.toEntityTag(book));
+        // Books stored before they were versioned have no modification time until their next write
+        if (book.getLastModified() != null) {
+            builder.lastModified(book.getLastModified());
+        }
+        return builder;
+    }
+
+    private static <T> ResponseEntity<T> notModified(String entityTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTag).build();
+    }
+}
@@ -0,0 +1,144 @@
+package com.bookapi.book_api.reactive.controller;
+
+import com.bookapi.book_api.dto.generated.ReservationListResponse;
+import com.bookapi.book_api.dto.generated.ReservationOutput;
+import com.bookapi.book_api.mapper.CursorMapper;
+import com.bookapi.book_api.model.CountMode;
+import com.bookapi.book_api.model.CustomOAuth2User;
+import com.bookapi.book_api.reactive.controller.generated.ReservationsApi;
+import com.bookapi.book_api.reactive.mapper.ReactiveReservationMapper;
+import com.bookapi.book_api.reactive.service.ReactiveReservationService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.UUID;
+
+@RestController
+public class ReactiveReservationController implements ReservationsApi {
+
+    private final ReactiveReservationService reservationService;
+    private final ReactiveReservationMapper reservationMapper;
+    private final CursorMapper cursorMapper;
+
+    public ReactiveReservationController(ReactiveReservationService reservationService,
+                                         ReactiveReservationMapper reservationMapper, CursorMapper cursorMapper) {
+        this.reservationService = reservationService;
+        this.reservationMapper = reservationMapper;
+        this.cursorMapper = cursorMapper;
+    }
+
+    @Override
+    public Mono<ResponseEntity<ReservationOutput>> createReservation(UUID bookId, ServerWebExchange exchange) {
+        return currentUser()
+                .flatMap(customOAuth2User -> reservationService.addReservation(
+                        bookId, customOAuth2User.getLocalUser().getId()))
+                .map(createdReservation -> {
+                    // Build the URI to be returned with the 201 response
+                    URI location = UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                            .path("/{id}")
+                            .buildAndExpand(createdReservation.getId())
+                            .toUri();
+                    return ResponseEntity.created(location)
+                            .body(reservationMapper.toReservationOutput(createdReservation));
+                })
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
+    }
+
+    @Override
+    @PreAuthorize("@reservationSecurityService.isAdminOrReservationOwner(authentication, #reservationId)")
+    public Mono<ResponseEntity<ReservationOutput>> cancelReservationById(UUID bookId, UUID reservationId,
+                                                                        ServerWebExchange exchange) {
+        return reservationService.cancelReservation(bookId, reservationId)
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<ResponseEntity<ReservationOutput>> fulfilReservation(UUID bookId, UUID reservationId,
+                                                                    ServerWebExchange exchange) {
+        return reservationService.fulfilReservation(bookId, reservationId)
+                .map(fulfilledReservation -> ResponseEntity.ok(reservationMapper.toReservationOutput(fulfilledReservation)));
+    }
+
+    @Override
+    @PreAuthorize("@reservationSecurityService.isAdminOrReservationOwner(authentication, #reservationId)")
+    public Mono<ResponseEntity<ReservationOutput>> getReservationById(UUID bookId, UUID reservationId,
+                                                                     ServerWebExchange exchange) {
+        return reservationService.findReservationById(bookId, reservationId)
+                .map(userReservation -> ResponseEntity.ok(reservationMapper.toReservationOutput(userReservation)));
+    }
+
+    @Override
+    public Mono<ResponseEntity<ReservationListResponse>> listReservations(Integer offset, Integer limit, UUID userId,
+                                                                          String after, String count,
+                                                                          ServerWebExchange exchange) {
+        CountMode countMode = CountMode.fromParameter(count);
+
+        return currentUser()
+                .flatMap(customOAuth2User -> {
+                    // Check if the logged in user is an admin, for a regular user ignore any query parameter
+                    boolean isAdmin = customOAuth2User.getAuthorities().stream()
+                            .anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ROLE_ADMIN"));
+                    UUID queriedUserId = isAdmin ? userId : customOAuth2User.getLocalUser().getId();
+                    return listReservations(queriedUserId, offset, limit, after, countMode, exchange);
+                })
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
+    }
+
+    private Mono<ReservationListResponse> listReservations(UUID queriedUserId, int offset, int limit, String after,
+                                                           CountMode countMode, ServerWebExchange exchange) {
+        // A cursor switches to keyset pagination, which ignores the offset
+        if (after != null) {
+            ScrollPosition position = cursorMapper.toScrollPosition(after, ReactiveReservationService.CURSOR_SORT);
+            return (queriedUserId != null
+                    ? reservationService.findReservationsForUser(queriedUserId, position, limit)
+                    : reservationService.findAllReservations(position, limit))
+                    .map(window -> reservationMapper.toReservationListResponse(window, limit, exchange));
+        }
+
+        // Create a pageable object from offset and limit
+        int page = limit > 0 ? offset / limit : 0;
+        Pageable pageable = PageRequest.of(page, limit);
+
+        // The exact mode counts alongside the page query, the other modes read a Slice without a count
+        if (countMode == CountMode.EXACT) {
+            return (queriedUserId != null
+                    ? reservationService.findReservationsForUser(queriedUserId, pageable)
+                    : reservationService.findAllReservations(pageable))
+                    .map(reservationPage -> reservationMapper.toReservationListResponse(reservationPage, exchange));
+        }
+
+        // A collection-wide estimate says nothing about a single user's reservations, so it is left out
+        if (queriedUserId != null) {
+            return reservationService.findReservationSliceForUser(queriedUserId, pageable)
+                    .map(slice -> reservationMapper.toReservationListResponse(slice, null, exchange));
+        }
+        if (countMode == CountMode.ESTIMATED) {
+            return Mono.zip(reservationService.findAllReservationSlice(pageable),
+                            reservationService.estimateReservationCount())
+                    .map(sliceAndCount -> reservationMapper.toReservationListResponse(
+                            sliceAndCount.getT1(), sliceAndCount.getT2(), exchange));
+        }
+        return reservationService.findAllReservationSlice(pageable)
+                .map(slice -> reservationMapper.toReservationListResponse(slice, null, exchange));
+    }
+
+    private Mono<CustomOAuth2User> currentUser() {
+        // Cast the principal to our Custom User type to get the full user object
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(authentication -> (CustomOAuth2User) authentication.getPrincipal());
+    }
+}
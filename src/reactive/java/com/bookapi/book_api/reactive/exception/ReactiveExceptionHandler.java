@@ -0,0 +1,53 @@
+package com.bookapi.book_api.reactive.exception;
+
+import com.bookapi.book_api.dto.generated.Error;
+import com.bookapi.book_api.exception.BadResourceException;
+import com.bookapi.book_api.exception.ConflictException;
+import com.bookapi.book_api.exception.PreconditionFailedException;
+import com.bookapi.book_api.exception.ResourceNotFoundException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Maps the service exceptions to the same responses as
+ * {@link com.bookapi.book_api.exception.GlobalExceptionHandler}.
+ */
+@ControllerAdvice
+public class ReactiveExceptionHandler {
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<Error> handleResourceNotFoundException(ResourceNotFoundException ex) {
+        return toResponse(ex, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(BadResourceException.class)
+    public ResponseEntity<Error> handleBadResourceException(BadResourceException ex) {
+        return toResponse(ex, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Error> handleConflictException(ConflictException ex) {
+        return toResponse(ex, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<Error> handleDuplicateKeyException(DuplicateKeyException ex) {
+        Error errorDetails = new Error();
+        errorDetails.setError("The resource conflicts with an existing one");
+        return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Error> handlePreconditionFailedException(PreconditionFailedException ex) {
+        return toResponse(ex, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    private ResponseEntity<Error> toResponse(RuntimeException ex, HttpStatus status) {
+        Error errorDetails = new Error();
+        errorDetails.setError(ex.getMessage());
+        return new ResponseEntity<>(errorDetails, status);
+    }
+}
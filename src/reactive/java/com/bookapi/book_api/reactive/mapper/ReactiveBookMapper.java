@@ -0,0 +1,90 @@
+package com.bookapi.book_api.reactive.mapper;
+
+import com.bookapi.book_api.dto.generated.BookLinks;
+import com.bookapi.book_api.dto.generated.BookListResponse;
+import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.mapper.BookMapper;
+import com.bookapi.book_api.mapper.CursorMapper;
+import com.bookapi.book_api.mapper.LinkTemplate;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.reactive.controller.ReactiveBookController;
+import com.bookapi.book_api.reactive.controller.ReactiveReservationController;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Maps books to the same DTOs as {@link BookMapper}, with links resolved against the exchange.
+ */
+@Component
+public class ReactiveBookMapper {
+
+    // Compiled once from the controller mappings, expanding them per book is plain string concatenation
+    private static final LinkTemplate SELF_LINK = LinkTemplate.forMethod(ReactiveBookController.class,
+            "getBookById", UUID.class, String.class, ServerWebExchange.class);
+    private static final LinkTemplate RESERVATIONS_LINK = LinkTemplate.forMethod(ReactiveReservationController.class,
+            "createReservation", UUID.class, ServerWebExchange.class);
+
+    private final BookMapper bookMapper;
+    private final CursorMapper cursorMapper;
+    private final ReactiveLinkResolver linkResolver;
+
+    public ReactiveBookMapper(BookMapper bookMapper, CursorMapper cursorMapper, ReactiveLinkResolver linkResolver) {
+        this.bookMapper = bookMapper;
+        this.cursorMapper = cursorMapper;
+        this.linkResolver = linkResolver;
+    }
+
+    public BookOutput toBookOutput(Book book, ServerWebExchange exchange) {
+        BookOutput dto = bookMapper.toBookExportOutput(book);
+        if (dto == null) {
+            return null;
+        }
+
+        BookLinks links = new BookLinks();
+        links.setSelf(linkResolver.expand(SELF_LINK, exchange, book.getId()));
+        links.setReservations(linkResolver.expand(RESERVATIONS_LINK, exchange, book.getId()));
+
+        dto.setLinks(links);
+        // Only books found by a text search have a score
+        dto.setScore(book.getScore());
+
+        return dto;
+    }
+
+    public BookListResponse toBookListResponse(Page<Book> bookPage, ServerWebExchange exchange) {
+        return toBookListResponse(bookPage, bookPage.getTotalElements(), exchange);
+    }
+
+    public BookListResponse toBookListResponse(Slice<Book> bookSlice, Long totalCount, ServerWebExchange exchange) {
+        // Create the final response DTO, the total count is left out when it was not requested
+        BookListResponse response = new BookListResponse();
+        response.setItems(toBookOutputs(bookSlice.getContent(), exchange));
+        response.setTotalCount(totalCount != null ? totalCount.intValue() : null);
+        response.setOffset((int) bookSlice.getPageable().getOffset());
+        response.setLimit(bookSlice.getPageable().getPageSize());
+        response.setNext(cursorMapper.toNextLink(bookSlice, linkResolver.currentRequest(exchange)));
+        return response;
+    }
+
+    public BookListResponse toBookListResponse(Window<Book> bookWindow, int limit, ServerWebExchange exchange) {
+        // Cursor pages carry no total count or offset, only the link to the next page
+        BookListResponse response = new BookListResponse();
+        response.setItems(toBookOutputs(bookWindow.getContent(), exchange));
+        response.setLimit(limit);
+        response.setNext(cursorMapper.toNextLink(bookWindow, limit, linkResolver.currentRequest(exchange)));
+        return response;
+    }
+
+    private List<BookOutput> toBookOutputs(List<Book> books, ServerWebExchange exchange) {
+        return books.stream()
+                .map(book -> toBookOutput(book, exchange))
+                .collect(Collectors.toList());
+    }
+}
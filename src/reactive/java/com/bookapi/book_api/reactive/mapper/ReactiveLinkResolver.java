@@ -0,0 +1,40 @@
+package com.bookapi.book_api.reactive.mapper;
+
+import com.bookapi.book_api.mapper.LinkTemplate;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Expands {@link LinkTemplate}s against the base URI of an exchange, the reactive counterpart of
+ * {@link com.bookapi.book_api.mapper.LinkResolver}.
+ * <p>
+ * The base URI (scheme, host, port and context path) is resolved once per exchange and kept in its
+ * attributes, so a list response does not rebuild it for every item it links.
+ */
+@Component
+public class ReactiveLinkResolver {
+
+    private static final String BASE_URI_ATTRIBUTE = ReactiveLinkResolver.class.getName() + ".baseUri";
+
+    public String expand(LinkTemplate template, ServerWebExchange exchange, Object... values) {
+        return template.expand(baseUri(exchange), values);
+    }
+
+    // The URI of the request, to derive links that keep its query, e.g. to the next page
+    public UriComponentsBuilder currentRequest(ServerWebExchange exchange) {
+        return UriComponentsBuilder.fromUri(exchange.getRequest().getURI());
+    }
+
+    String baseUri(ServerWebExchange exchange) {
+        return exchange.getAttributes().computeIfAbsent(BASE_URI_ATTRIBUTE, name -> {
+            ServerHttpRequest request = exchange.getRequest();
+            return UriComponentsBuilder.fromUri(request.getURI())
+                    .replacePath(request.getPath().contextPath().value())
+                    .replaceQuery(null)
+                    .fragment(null)
+                    .toUriString();
+        }).toString();
+    }
+}
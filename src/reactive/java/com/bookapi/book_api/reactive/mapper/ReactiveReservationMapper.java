@@ -0,0 +1,70 @@
+package com.bookapi.book_api.reactive.mapper;
+
+import com.bookapi.book_api.dto.generated.ReservationListResponse;
+import com.bookapi.book_api.dto.generated.ReservationOutput;
+import com.bookapi.book_api.mapper.CursorMapper;
+import com.bookapi.book_api.mapper.ReservationMapper;
+import com.bookapi.book_api.model.Reservation;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Maps reservations to the same DTOs as {@link ReservationMapper}, with next links built from the exchange.
+ */
+@Component
+public class ReactiveReservationMapper {
+
+    private final ReservationMapper reservationMapper;
+    private final CursorMapper cursorMapper;
+    private final ReactiveLinkResolver linkResolver;
+
+    public ReactiveReservationMapper(ReservationMapper reservationMapper, CursorMapper cursorMapper,
+                                     ReactiveLinkResolver linkResolver) {
+        this.reservationMapper = reservationMapper;
+        this.cursorMapper = cursorMapper;
+        this.linkResolver = linkResolver;
+    }
+
+    public ReservationOutput toReservationOutput(Reservation reservation) {
+        return reservationMapper.toReservationOutput(reservation);
+    }
+
+    public ReservationListResponse toReservationListResponse(Page<Reservation> reservationPage,
+                                                             ServerWebExchange exchange) {
+        return toReservationListResponse(reservationPage, reservationPage.getTotalElements(), exchange);
+    }
+
+    public ReservationListResponse toReservationListResponse(Slice<Reservation> reservationSlice, Long totalCount,
+                                                             ServerWebExchange exchange) {
+        // Create the final response DTO, the total count is left out when it was not requested
+        ReservationListResponse response = new ReservationListResponse();
+        response.setItems(toReservationOutputs(reservationSlice.getContent()));
+        response.setTotalCount(totalCount != null ? totalCount.intValue() : null);
+        response.setOffset((int) reservationSlice.getPageable().getOffset());
+        response.setLimit(reservationSlice.getPageable().getPageSize());
+        response.setNext(cursorMapper.toNextLink(reservationSlice, linkResolver.currentRequest(exchange)));
+        return response;
+    }
+
+    public ReservationListResponse toReservationListResponse(Window<Reservation> reservationWindow, int limit,
+                                                             ServerWebExchange exchange) {
+        // Cursor pages carry no total count or offset, only the link to the next page
+        ReservationListResponse response = new ReservationListResponse();
+        response.setItems(toReservationOutputs(reservationWindow.getContent()));
+        response.setLimit(limit);
+        response.setNext(cursorMapper.toNextLink(reservationWindow, limit, linkResolver.currentRequest(exchange)));
+        return response;
+    }
+
+    private List<ReservationOutput> toReservationOutputs(List<Reservation> reservations) {
+        return reservations.stream()
+                .map(reservationMapper::toReservationOutput)
+                .collect(Collectors.toList());
+    }
+}
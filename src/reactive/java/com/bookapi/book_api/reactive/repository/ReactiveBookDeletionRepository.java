@@ -0,0 +1,11 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.BookDeletion;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveBookDeletionRepository extends ReactiveMongoRepository<BookDeletion, UUID> {
+}
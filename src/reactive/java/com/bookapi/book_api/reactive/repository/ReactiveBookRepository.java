@@ -0,0 +1,27 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.Book;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveBookRepository extends ReactiveMongoRepository<Book, UUID>, ReactiveBookRepositoryCustom {
+    // Implemented by ReactiveBookRepositoryCustomImpl, which also matches legacy UUIDs
+    @Override
+    Mono<Book> findById(UUID id);
+
+    @Override
+    Mono<Boolean> existsById(UUID id);
+
+    // An explicit empty filter is needed, keyset scrolling cannot extend the derived empty query
+    @Query("{}")
+    Mono<Window<Book>> findAllBy(ScrollPosition position, Limit limit, Sort sort);
+}
@@ -0,0 +1,46 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface ReactiveBookRepositoryCustom {
+
+    Mono<Book> findById(UUID bookId);
+
+    Mono<Boolean> existsById(UUID bookId);
+
+    Mono<Boolean> takeCopy(UUID bookId);
+
+    Mono<Boolean> returnCopy(UUID bookId);
+
+    Mono<Book> replaceDetails(UUID bookId, Long expectedVersion, String title, String author, String synopsis,
+                              Integer copies, Instant lastModified);
+
+    Mono<Book> patchDetails(UUID bookId, Long expectedVersion, String title, String author, String synopsis,
+                            Integer copies, Instant lastModified);
+
+    Mono<Book> findAndRemove(UUID bookId);
+
+    Mono<Map<Integer, String>> insertUnordered(List<Book> books);
+
+    Flux<Book> streamAll(int batchSize);
+
+    Mono<Page<Book>> findPage(Pageable pageable);
+
+    Mono<Slice<Book>> findSlice(Pageable pageable);
+
+    Mono<Long> estimatedCount();
+
+    Mono<Page<Book>> search(String terms, Pageable pageable);
+
+    Mono<Slice<Book>> searchSlice(String terms, Pageable pageable);
+}
@@ -0,0 +1,201 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.LegacyUuids;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.Document;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The reactive counterpart of {@link com.bookapi.book_api.repository.BookRepositoryCustomImpl}, with the
+ * same queries and updates on a {@link ReactiveMongoTemplate}.
+ */
+public class ReactiveBookRepositoryCustomImpl implements ReactiveBookRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+
+    public ReactiveBookRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+    }
+
+    // Both look the book up in either UUID representation while legacy ones are stored
+    @Override
+    public Mono<Book> findById(UUID bookId) {
+        return mongoTemplate.findOne(Query.query(legacyUuids.where("_id", bookId)), Book.class);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(UUID bookId) {
+        return mongoTemplate.exists(Query.query(legacyUuids.where("_id", bookId)), Book.class);
+    }
+
+    // Only matches while a copy is left, so concurrent reservers can never take the counter below zero
+    @Override
+    public Mono<Boolean> takeCopy(UUID bookId) {
+        Query query = Query.query(legacyUuids.where("_id", bookId).and("availableCopies").gt(0));
+        Update update = changed(new Update().inc("availableCopies", -1));
+        return mongoTemplate.updateFirst(query, update, Book.class)
+                .map(result -> result.getModifiedCount() == 1);
+    }
+
+    @Override
+    public Mono<Boolean> returnCopy(UUID bookId) {
+        // Never gives back more copies than the book has
+        Query query = Query.query(legacyUuids.where("_id", bookId).andOperator(Criteria.expr(ComparisonOperators
+                .valueOf(ArithmeticOperators.valueOf("availableCopies").add(1))
+                .lessThanEqualTo("copies"))));
+        Update update = changed(new Update().inc("availableCopies", 1));
+        return mongoTemplate.updateFirst(query, update, Book.class)
+                .map(result -> result.getModifiedCount() == 1);
+    }
+
+    // The same single update as patchDetails with every descriptive field set, a null synopsis clears it
+    @Override
+    public Mono<Book> replaceDetails(UUID bookId, Long expectedVersion, String title, String author,
+                                     String synopsis, Integer copies, Instant lastModified) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("title", title);
+        fields.put("author", author);
+        fields.put("synopsis", synopsis);
+        return updateFields(bookId, expectedVersion, fields, copies, lastModified);
+    }
+
+    // The book as it was before the change, empty when it does not exist or a condition no longer holds
+    @Override
+    public Mono<Book> patchDetails(UUID bookId, Long expectedVersion, String title, String author, String synopsis,
+                                   Integer copies, Instant lastModified) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        putIfNotNull(fields, "title", title);
+        putIfNotNull(fields, "author", author);
+        putIfNotNull(fields, "synopsis", synopsis);
+        return updateFields(bookId, expectedVersion, fields, copies, lastModified);
+    }
+
+    private Mono<Book> updateFields(UUID bookId, Long expectedVersion, Map<String, Object> fields, Integer copies,
+                                    Instant lastModified) {
+        Criteria criteria = legacyUuids.where("_id", bookId);
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+
+        FindAndModifyOptions returnPrevious = FindAndModifyOptions.options().returnNew(false);
+
+        if (copies == null) {
+            Update update = new Update().inc("version", 1).set("lastModified", lastModified);
+            fields.forEach(update::set);
+            return mongoTemplate.findAndModify(Query.query(criteria), update, returnPrevious, Book.class);
+        }
+
+        // Only unreserved copies can be removed, the reserved ones are the difference of the two counters
+        criteria = criteria.andOperator(Criteria.expr(ComparisonOperators
+                .valueOf(ArithmeticOperators.valueOf("copies").subtract("availableCopies"))
+                .lessThanEqualToValue(copies)));
+
+        // Values are passed as literals, so a title starting with $ is never read as a field path
+        Document set = new Document();
+        fields.forEach((field, value) -> set.append(field, new Document("$literal", value)));
+        set.append("availableCopies", new Document("$add",
+                        List.of("$availableCopies", new Document("$subtract", List.of(copies, "$copies")))))
+                .append("copies", copies)
+                .append("version", new Document("$add", List.of("$version", 1)))
+                .append("lastModified", Date.from(lastModified));
+        AggregationUpdate update = AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+        return mongoTemplate.findAndModify(Query.query(criteria), update, returnPrevious, Book.class);
+    }
+
+    @Override
+    public Mono<Book> findAndRemove(UUID bookId) {
+        return mongoTemplate.findAndRemove(Query.query(legacyUuids.where("_id", bookId)), Book.class);
+    }
+
+    // The error of every book that was not inserted, keyed by its index in books
+    @Override
+    public Mono<Map<Integer, String>> insertUnordered(List<Book> books) {
+        if (books.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+
+        return mongoTemplate.bulkOps(BulkMode.UNORDERED, Book.class).insert(books).execute()
+                .<Map<Integer, String>>thenReturn(Map.of())
+                .onErrorResume(BulkOperationException.class, ex -> {
+                    Map<Integer, String> errors = new LinkedHashMap<>();
+                    for (BulkWriteError error : ex.getErrors()) {
+                        errors.put(error.getIndex(), error.getMessage());
+                    }
+                    return Mono.just(errors);
+                });
+    }
+
+    // The driver fetches the next batch of batchSize books once the subscriber asks for more
+    @Override
+    public Flux<Book> streamAll(int batchSize) {
+        return mongoTemplate.find(new Query().cursorBatchSize(batchSize), Book.class);
+    }
+
+    @Override
+    public Mono<Page<Book>> findPage(Pageable pageable) {
+        return ReactivePaging.findPage(mongoTemplate, Query::new, pageable, Book.class);
+    }
+
+    @Override
+    public Mono<Slice<Book>> findSlice(Pageable pageable) {
+        return ReactivePaging.findSlice(mongoTemplate, new Query(), pageable, Book.class);
+    }
+
+    @Override
+    public Mono<Long> estimatedCount() {
+        // Read from the collection metadata, so it is cheap enough to serve without a cache
+        return mongoTemplate.estimatedCount(Book.class);
+    }
+
+    @Override
+    public Mono<Page<Book>> search(String terms, Pageable pageable) {
+        return ReactivePaging.findPage(mongoTemplate, () -> toTextQuery(terms), pageable, Book.class);
+    }
+
+    @Override
+    public Mono<Slice<Book>> searchSlice(String terms, Pageable pageable) {
+        return ReactivePaging.findSlice(mongoTemplate, toTextQuery(terms), pageable, Book.class);
+    }
+
+    private Query toTextQuery(String terms) {
+        // The most relevant books first, with their score read into Book.score
+        return TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(terms)).sortByScore();
+    }
+
+    private static void putIfNotNull(Map<String, Object> fields, String field, Object value) {
+        if (value != null) {
+            fields.put(field, value);
+        }
+    }
+
+    // Every write moves the book to a new version, which changes its entity tag
+    private static Update changed(Update update) {
+        return update.inc("version", 1).currentDate("lastModified");
+    }
+}
@@ -0,0 +1,46 @@
+package com.bookapi.book_api.reactive.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Reads pages and slices with a {@link ReactiveMongoOperations}, which the reactive repositories do not
+ * return themselves.
+ */
+final class ReactivePaging {
+
+    private ReactivePaging() {
+    }
+
+    static <T> Mono<Slice<T>> findSlice(ReactiveMongoOperations operations, Query query, Pageable pageable,
+                                        Class<T> type) {
+        // Read one extra document to detect a next page instead of running a count
+        Query sliceQuery = query.with(pageable).limit(pageable.getPageSize() + 1);
+        return operations.find(sliceQuery, type)
+                .collectList()
+                .map(content -> toSlice(content, pageable));
+    }
+
+    static <T> Mono<Page<T>> findPage(ReactiveMongoOperations operations, Supplier<Query> query, Pageable pageable,
+                                      Class<T> type) {
+        // The page and the count are sent at the same time, each on its own connection
+        return Mono.zip(
+                        operations.find(query.get().with(pageable), type).collectList(),
+                        operations.count(query.get(), type))
+                .map(pageAndCount -> new PageImpl<>(pageAndCount.getT1(), pageable, pageAndCount.getT2()));
+    }
+
+    private static <T> Slice<T> toSlice(List<T> content, Pageable pageable) {
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+}
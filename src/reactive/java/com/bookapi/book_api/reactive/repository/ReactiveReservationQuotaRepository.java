@@ -0,0 +1,12 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.ReservationQuota;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveReservationQuotaRepository extends ReactiveMongoRepository<ReservationQuota, UUID>,
+        ReactiveReservationQuotaRepositoryCustom {
+}
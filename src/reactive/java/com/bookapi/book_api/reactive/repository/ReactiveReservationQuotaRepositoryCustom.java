@@ -0,0 +1,12 @@
+package com.bookapi.book_api.reactive.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public interface ReactiveReservationQuotaRepositoryCustom {
+
+    Mono<Boolean> take(UUID userId, int maxActiveReservations);
+
+    Mono<Void> release(UUID userId, int count);
+}
@@ -0,0 +1,43 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.ReservationQuota;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * The reactive counterpart of {@link com.bookapi.book_api.repository.ReservationQuotaRepositoryCustomImpl}.
+ */
+public class ReactiveReservationQuotaRepositoryCustomImpl implements ReactiveReservationQuotaRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ReactiveReservationQuotaRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // A conditional upsert, a second duplicate key on the counter means the user is at the quota
+    @Override
+    public Mono<Boolean> take(UUID userId, int maxActiveReservations) {
+        Query query = Query.query(Criteria.where("_id").is(userId)
+                .and("activeReservations").lt(maxActiveReservations));
+        Update update = new Update().inc("activeReservations", 1);
+        Mono<Boolean> upsert = Mono.defer(() -> mongoTemplate.upsert(query, update, ReservationQuota.class))
+                .thenReturn(true);
+        return upsert
+                .onErrorResume(DuplicateKeyException.class, ex -> upsert)
+                .onErrorReturn(DuplicateKeyException.class, false);
+    }
+
+    @Override
+    public Mono<Void> release(UUID userId, int count) {
+        Query query = Query.query(Criteria.where("_id").is(userId).and("activeReservations").gte(count));
+        return mongoTemplate.updateFirst(query, new Update().inc("activeReservations", -count), ReservationQuota.class)
+                .then();
+    }
+}
@@ -0,0 +1,25 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.Reservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveReservationRepository
+        extends ReactiveMongoRepository<Reservation, UUID>, ReactiveReservationRepositoryCustom {
+    // Implemented by ReactiveReservationRepositoryCustomImpl, which also matches legacy UUIDs
+    @Override
+    Mono<Reservation> findById(UUID id);
+
+    // An explicit empty filter is needed, keyset scrolling cannot extend the derived empty query
+    @Query("{}")
+    Mono<Window<Reservation>> findAllBy(ScrollPosition position, Limit limit, Sort sort);
+}
@@ -0,0 +1,37 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public interface ReactiveReservationRepositoryCustom {
+
+    Mono<Reservation> findById(UUID id);
+
+    Mono<Window<Reservation>> findByUserId(UUID userId, ScrollPosition position, Limit limit, Sort sort);
+
+    Mono<Boolean> existsLegacyActiveReservation(UUID bookId, UUID userId);
+
+    Mono<Page<Reservation>> findPageByUserId(UUID userId, Pageable pageable);
+
+    Mono<Slice<Reservation>> findSliceByUserId(UUID userId, Pageable pageable);
+
+    Mono<Page<Reservation>> findPage(Pageable pageable);
+
+    Mono<Slice<Reservation>> findSlice(Pageable pageable);
+
+    Mono<Long> estimatedCount();
+
+    Mono<Reservation> transition(UUID bookId, UUID id, ReservationState from, ReservationState to);
+
+    Mono<Reservation> findInHistory(UUID id);
+}
@@ -0,0 +1,103 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.LegacyUuids;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public class ReactiveReservationRepositoryCustomImpl implements ReactiveReservationRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+
+    public ReactiveReservationRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+    }
+
+    // The lookups by id and by user match the UUIDs in any of their representations, see LegacyUuids
+    @Override
+    public Mono<Reservation> findById(UUID id) {
+        return mongoTemplate.findOne(Query.query(legacyUuids.where("id", id)), Reservation.class);
+    }
+
+    @Override
+    public Mono<Window<Reservation>> findByUserId(UUID userId, ScrollPosition position, Limit limit, Sort sort) {
+        return mongoTemplate.scroll(byUserId(userId).with(position).limit(limit).with(sort), Reservation.class);
+    }
+
+    // Like ReservationRepositoryCustomImpl.existsLegacyActiveReservation, false without a query once migrated
+    @Override
+    public Mono<Boolean> existsLegacyActiveReservation(UUID bookId, UUID userId) {
+        if (!legacyUuids.stored()) {
+            return Mono.just(false);
+        }
+        Query query = Query.query(Criteria.where("userId").is(LegacyUuids.legacy(userId))
+                .and("bookId").is(LegacyUuids.legacy(bookId))
+                .and("state").is(ReservationState.RESERVED));
+        return mongoTemplate.exists(query, Reservation.class);
+    }
+
+    @Override
+    public Mono<Page<Reservation>> findPageByUserId(UUID userId, Pageable pageable) {
+        return ReactivePaging.findPage(mongoTemplate, () -> byUserId(userId), pageable, Reservation.class);
+    }
+
+    @Override
+    public Mono<Slice<Reservation>> findSliceByUserId(UUID userId, Pageable pageable) {
+        return ReactivePaging.findSlice(mongoTemplate, byUserId(userId), pageable, Reservation.class);
+    }
+
+    @Override
+    public Mono<Page<Reservation>> findPage(Pageable pageable) {
+        return ReactivePaging.findPage(mongoTemplate, Query::new, pageable, Reservation.class);
+    }
+
+    @Override
+    public Mono<Slice<Reservation>> findSlice(Pageable pageable) {
+        return ReactivePaging.findSlice(mongoTemplate, new Query(), pageable, Reservation.class);
+    }
+
+    @Override
+    public Mono<Long> estimatedCount() {
+        return mongoTemplate.estimatedCount(Reservation.class);
+    }
+
+    // A single findAndModify that matches on the current state, like ReservationRepositoryCustomImpl.transition
+    @Override
+    public Mono<Reservation> transition(UUID bookId, UUID id, ReservationState from, ReservationState to) {
+        Query query = Query.query(legacyUuids.where("id", id)
+                .and("bookId").in(legacyUuids.values(bookId))
+                .and("state").is(from));
+        Update update = new Update()
+                .set("state", to)
+                .set("closedAt", Instant.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                Reservation.class);
+    }
+
+    @Override
+    public Mono<Reservation> findInHistory(UUID id) {
+        return mongoTemplate.findOne(Query.query(legacyUuids.where("id", id)), Reservation.class,
+                Reservation.HISTORY_COLLECTION);
+    }
+
+    private Query byUserId(UUID userId) {
+        return Query.query(legacyUuids.where("userId", userId));
+    }
+}
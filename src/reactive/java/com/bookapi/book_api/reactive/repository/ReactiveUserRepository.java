@@ -0,0 +1,13 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.User;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveUserRepository extends ReactiveMongoRepository<User, UUID>, ReactiveUserRepositoryCustom {
+    Mono<User> findByEmail(String email);
+}
@@ -0,0 +1,9 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.User;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveUserRepositoryCustom {
+
+    Mono<User> upsertByEmail(String email, String name, String defaultRole);
+}
@@ -0,0 +1,64 @@
+package com.bookapi.book_api.reactive.repository;
+
+import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.repository.LegacyUuids;
+import com.bookapi.book_api.repository.UuidMigrator;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public class ReactiveUserRepositoryCustomImpl implements ReactiveUserRepositoryCustom {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final LegacyUuids legacyUuids;
+
+    public ReactiveUserRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, LegacyUuids legacyUuids) {
+        this.mongoTemplate = mongoTemplate;
+        this.legacyUuids = legacyUuids;
+    }
+
+    /**
+     * Finds the user with the given email and sets their name, or creates them with the default role,
+     * in a single findAndModify round trip. Until the UUID migration completes, a user is only registered like
+     * in {@link com.bookapi.book_api.repository.UserRepositoryCustomImpl#upsertByEmail}.
+     *
+     * @return the user as stored after the update.
+     */
+    @Override
+    public Mono<User> upsertByEmail(String email, String name, String defaultRole) {
+        Query query = Query.query(Criteria.where("email").is(email));
+        Update update = new Update()
+                .set("name", name)
+                .setOnInsert("_id", UUID.randomUUID())
+                .setOnInsert("role", defaultRole);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        Mono<User> upsert = mongoTemplate.findAndModify(query, update, options, User.class);
+        // A concurrent first login inserted the same email, the user now exists and is updated instead
+        Mono<User> register = upsert.onErrorResume(DuplicateKeyException.class, ex -> upsert);
+        if (!legacyUuids.stored()) {
+            return register;
+        }
+        return mongoTemplate.findAndModify(query, Update.update("name", name),
+                        FindAndModifyOptions.options().returnNew(true), User.class)
+                .switchIfEmpty(Mono.defer(() -> completePendingMove(email).then(register)));
+    }
+
+    // The user the migration is moving is inserted from its journal rather than registered again
+    private Mono<Void> completePendingMove(String email) {
+        String collectionName = mongoTemplate.getCollectionName(User.class);
+        Query pending = Query.query(Criteria.where("collection").is(collectionName).and("document.email").is(email));
+        return mongoTemplate.findOne(pending, Document.class, UuidMigrator.JOURNAL_COLLECTION)
+                .flatMap(entry -> mongoTemplate.insert(entry.get("document", Document.class), collectionName)
+                        // The migration inserted the user first
+                        .onErrorResume(DuplicateKeyException.class, ex -> Mono.empty()))
+                .then();
+    }
+}
@@ -0,0 +1,69 @@
+package com.bookapi.book_api.reactive.service;
+
+import com.bookapi.book_api.dto.generated.BookOutput;
+import com.bookapi.book_api.mapper.BookMapper;
+import com.bookapi.book_api.reactive.repository.ReactiveBookRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports the catalog as NDJSON, one {@link BookOutput} without links per line, like
+ * {@link com.bookapi.book_api.service.BookExportService}.
+ * <p>
+ * The lines are written as the client reads them: the response's demand is passed up to the database
+ * cursor, which fetches the next batch only once the previous one has been written.
+ */
+@Slf4j
+@Service
+public class ReactiveBookExportService {
+
+    private final ReactiveBookRepository bookRepository;
+    private final BookMapper bookMapper;
+    private final ObjectWriter bookWriter;
+    private final int batchSize;
+
+    public ReactiveBookExportService(ReactiveBookRepository bookRepository, BookMapper bookMapper,
+                                     ObjectMapper objectMapper,
+                                     @Value("${book-api.export.batch-size:500}") int batchSize) {
+        this.bookRepository = bookRepository;
+        this.bookMapper = bookMapper;
+        this.bookWriter = objectMapper.writerFor(BookOutput.class);
+        this.batchSize = batchSize;
+    }
+
+    public Flux<DataBuffer> exportBooks(DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            AtomicLong written = new AtomicLong();
+            return bookRepository.streamAll(batchSize)
+                    .map(book -> toLine(bookMapper.toBookExportOutput(book), bufferFactory))
+                    .doOnNext(line -> written.incrementAndGet())
+                    // A cancel means the client went away, which also closes the cursor
+                    .doFinally(signal -> {
+                        if (signal == SignalType.ON_COMPLETE) {
+                            log.info("Exported {} books", written.get());
+                        } else {
+                            log.info("Book export closed early after {} books", written.get());
+                        }
+                    });
+        });
+    }
+
+    private DataBuffer toLine(BookOutput bookOutput, DataBufferFactory bufferFactory) {
+        try {
+            byte[] json = bookWriter.writeValueAsBytes(bookOutput);
+            return bufferFactory.allocateBuffer(json.length + 1).write(json).write((byte) '\n');
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not write book " + bookOutput.getId(), ex);
+        }
+    }
+}
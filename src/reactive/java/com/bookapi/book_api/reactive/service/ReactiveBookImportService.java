@@ -0,0 +1,214 @@
+package com.bookapi.book_api.reactive.service;
+
+import com.bookapi.book_api.dto.generated.BookImportError;
+import com.bookapi.book_api.dto.generated.BookImportResult;
+import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.exception.BadResourceException;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.reactive.repository.ReactiveBookRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Imports books from a stream of {@link BookInput}, given as NDJSON or as a JSON array, with the same
+ * results as {@link com.bookapi.book_api.service.BookImportService}.
+ * <p>
+ * The body is decoded as it arrives and the next part is only requested once the current chunk has been
+ * written, so memory use does not grow with the size of the import.
+ */
+@Slf4j
+@Service
+public class ReactiveBookImportService {
+
+    private static final ResolvableType LINE_TYPE = ResolvableType.forClass(String.class);
+    private static final ResolvableType ELEMENT_TYPE = ResolvableType.forClass(JsonNode.class);
+
+    private final ReactiveBookRepository bookRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+    private final StringDecoder lineDecoder = StringDecoder.allMimeTypes(List.of("\n"), true);
+    private final Jackson2JsonDecoder arrayDecoder;
+
+    public ReactiveBookImportService(ReactiveBookRepository bookRepository, ObjectMapper objectMapper,
+                                     Validator validator,
+                                     @Value("${book-api.import.chunk-size:1000}") int chunkSize,
+                                     @Value("${book-api.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.bookRepository = bookRepository;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+        this.arrayDecoder = new Jackson2JsonDecoder(objectMapper);
+    }
+
+    public Mono<BookImportResult> importBooks(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            ImportRun run = new ImportRun();
+            // Line numbers count from 1 and include blank lines, like the servlet import
+            Flux<Tuple2<Long, String>> lines = lineDecoder.decode(body, LINE_TYPE, null, null)
+                    .index()
+                    .filter(line -> !line.getT2().isBlank());
+
+            return lines
+                    .switchOnFirst((first, nonBlankLines) -> {
+                        if (first.isOnComplete()) {
+                            return Mono.error(new BadResourceException("The import contains no books"));
+                        }
+                        if (!first.hasValue()) {
+                            return nonBlankLines.then();
+                        }
+                        // A JSON array starts with '[', anything else is read as one book per line
+                        return first.get().getT2().stripLeading().startsWith("[")
+                                ? importArray(nonBlankLines, run)
+                                : importLines(nonBlankLines, run);
+                    })
+                    .then(Mono.defer(run::finish))
+                    .doOnNext(result -> log.info("Imported {} of {} books, {} failed",
+                            result.getImported(), result.getReceived(), result.getFailed()));
+        });
+    }
+
+    private Mono<Void> importLines(Flux<Tuple2<Long, String>> lines, ImportRun run) {
+        // Every line is parsed on its own, so a malformed line does not stop the ones after it
+        return lines.concatMap(line -> {
+            int lineNumber = (int) (line.getT1() + 1);
+            try {
+                return run.add(lineNumber, objectMapper.readValue(line.getT2(), BookInput.class));
+            } catch (JsonProcessingException ex) {
+                run.reject(lineNumber, "Invalid JSON: " + ex.getOriginalMessage());
+                return Mono.empty();
+            }
+        }).then();
+    }
+
+    private Mono<Void> importArray(Flux<Tuple2<Long, String>> lines, ImportRun run) {
+        // The decoder splits the array into its elements as the lines arrive
+        Flux<DataBuffer> json = lines.map(line -> DefaultDataBufferFactory.sharedInstance
+                .wrap((line.getT2() + "\n").getBytes(StandardCharsets.UTF_8)));
+        AtomicInteger position = new AtomicInteger();
+
+        return arrayDecoder.decode(json, ELEMENT_TYPE, null, null)
+                .concatMap(element -> {
+                    int elementPosition = position.incrementAndGet();
+                    try {
+                        return run.add(elementPosition, objectMapper.treeToValue((JsonNode) element, BookInput.class));
+                    } catch (JsonProcessingException ex) {
+                        run.reject(elementPosition, "Invalid book: " + ex.getOriginalMessage());
+                        return Mono.empty();
+                    }
+                })
+                .onErrorResume(DecodingException.class, ex -> {
+                    // The array itself is malformed, nothing after this point can be read
+                    run.reject(position.get(), "Invalid JSON, the import stopped here: " + ex.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * The state of one import: the chunk waiting to be written and the running totals. It is only used by
+     * one import pipeline, which hands it one element at a time.
+     */
+    private class ImportRun {
+
+        private final List<Book> chunk = new ArrayList<>(chunkSize);
+        private final List<Integer> chunkLines = new ArrayList<>(chunkSize);
+        private final List<BookImportError> errors = new ArrayList<>();
+        private int received;
+        private int imported;
+        private int failed;
+
+        Mono<Void> add(int line, BookInput bookInput) {
+            received++;
+            Set<ConstraintViolation<BookInput>> violations = validator.validate(bookInput);
+            if (!violations.isEmpty()) {
+                String message = violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+                recordError(line, message);
+                return Mono.empty();
+            }
+
+            chunk.add(new Book(
+                    bookInput.getTitle(),
+                    bookInput.getAuthor(),
+                    bookInput.getSynopsis(),
+                    bookInput.getCopies() != null ? bookInput.getCopies() : 1
+            ));
+            chunkLines.add(line);
+            // The next element is only read once a full chunk has been written
+            return chunk.size() >= chunkSize ? flush() : Mono.empty();
+        }
+
+        void reject(int line, String message) {
+            received++;
+            recordError(line, message);
+        }
+
+        Mono<BookImportResult> finish() {
+            return flush().then(Mono.fromSupplier(() -> {
+                BookImportResult result = new BookImportResult();
+                result.setReceived(received);
+                result.setImported(imported);
+                result.setFailed(failed);
+                result.setErrors(errors);
+                result.setErrorsTruncated(failed > errors.size());
+                return result;
+            }));
+        }
+
+        private Mono<Void> flush() {
+            if (chunk.isEmpty()) {
+                return Mono.empty();
+            }
+
+            // Write the chunk in one unordered bulk insert, then map any failed index back to its line
+            List<Book> books = List.copyOf(chunk);
+            List<Integer> lines = List.copyOf(chunkLines);
+            chunk.clear();
+            chunkLines.clear();
+            return bookRepository.insertUnordered(books)
+                    .doOnNext(insertErrors -> {
+                        imported += books.size() - insertErrors.size();
+                        insertErrors.forEach((index, message) -> recordError(lines.get(index), message));
+                    })
+                    .then();
+        }
+
+        private void recordError(int line, String message) {
+            failed++;
+            // Only the first errors are reported, so a bad file cannot grow the response without bound
+            if (errors.size() < maxReportedErrors) {
+                BookImportError error = new BookImportError();
+                error.setLine(line);
+                error.setError(message);
+                errors.add(error);
+            }
+        }
+    }
+}
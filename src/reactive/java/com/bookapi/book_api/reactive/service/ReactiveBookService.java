@@ -0,0 +1,175 @@
+package com.bookapi.book_api.reactive.service;
+
+import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.dto.generated.BookPatch;
+import com.bookapi.book_api.exception.ConflictException;
+import com.bookapi.book_api.exception.PreconditionFailedException;
+import com.bookapi.book_api.exception.ResourceNotFoundException;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.BookDeletion;
+import com.bookapi.book_api.reactive.repository.ReactiveBookDeletionRepository;
+import com.bookapi.book_api.reactive.repository.ReactiveBookRepository;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * The reactive counterpart of {@link com.bookapi.book_api.service.BookService}. Every call is a single
+ * pipeline of database round trips, no thread waits for a reply.
+ * <p>
+ * Books are read from the database on every call, there is no book cache or suggestion index yet.
+ */
+@Service
+public class ReactiveBookService {
+
+    // Cursor pages seek on the _id index so every page costs the same regardless of depth
+    public static final Sort CURSOR_SORT = Sort.by("id");
+
+    private final ReactiveBookRepository bookRepository;
+    private final ReactiveBookDeletionRepository bookDeletionRepository;
+
+    public ReactiveBookService(ReactiveBookRepository bookRepository,
+                               ReactiveBookDeletionRepository bookDeletionRepository) {
+        this.bookRepository = bookRepository;
+        this.bookDeletionRepository = bookDeletionRepository;
+    }
+
+    public Mono<Book> findBookById(UUID id) {
+        return bookRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Book not found with id: " + id)));
+    }
+
+    public Mono<Page<Book>> findAllBooks(Pageable pageable) {
+        return bookRepository.findPage(pageable);
+    }
+
+    public Mono<Slice<Book>> findBookSlice(Pageable pageable) {
+        return bookRepository.findSlice(pageable);
+    }
+
+    public Mono<Long> estimateBookCount() {
+        return bookRepository.estimatedCount();
+    }
+
+    public Mono<Window<Book>> findAllBooks(ScrollPosition position, int limit) {
+        return bookRepository.findAllBy(position, Limit.of(limit), CURSOR_SORT);
+    }
+
+    public Mono<Page<Book>> searchBooks(String terms, Pageable pageable) {
+        return bookRepository.search(terms, pageable);
+    }
+
+    public Mono<Slice<Book>> searchBookSlice(String terms, Pageable pageable) {
+        return bookRepository.searchSlice(terms, pageable);
+    }
+
+    public Mono<Book> createBook(BookInput bookInput) {
+        // Create a new Book from the input DTO, every copy starts out available
+        Book newBook = new Book(
+                bookInput.getTitle(),
+                bookInput.getAuthor(),
+                bookInput.getSynopsis(),
+                bookInput.getCopies() != null ? bookInput.getCopies() : 1
+        );
+        return bookRepository.save(newBook);
+    }
+
+    // Replaces every field in the same single update as a patch, expectedVersion is the version from If-Match,
+    // or null to update whatever the current version is
+    public Mono<Book> updateBook(UUID id, BookInput bookInput, Long expectedVersion) {
+        // Mongo stores milliseconds, the time is truncated so the updated book is exactly what was stored
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        return bookRepository.replaceDetails(id, expectedVersion, bookInput.getTitle(), bookInput.getAuthor(),
+                        bookInput.getSynopsis(), bookInput.getCopies(), lastModified)
+                .map(previousBook -> updated(previousBook, bookInput.getTitle(), bookInput.getAuthor(),
+                        bookInput.getSynopsis(), bookInput.getCopies(), lastModified))
+                .switchIfEmpty(Mono.defer(() -> notUpdated(id, expectedVersion, bookInput.getCopies())));
+    }
+
+    // Changes only the supplied fields in one update, the book is only read again to tell why it did not match
+    public Mono<Book> patchBook(UUID id, BookPatch bookPatch, Long expectedVersion) {
+        // Mongo stores milliseconds, the time is truncated so the patched book is exactly what was stored
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        return bookRepository.patchDetails(id, expectedVersion, bookPatch.getTitle(), bookPatch.getAuthor(),
+                        bookPatch.getSynopsis(), bookPatch.getCopies(), lastModified)
+                .map(previousBook -> updated(previousBook,
+                        bookPatch.getTitle() != null ? bookPatch.getTitle() : previousBook.getTitle(),
+                        bookPatch.getAuthor() != null ? bookPatch.getAuthor() : previousBook.getAuthor(),
+                        bookPatch.getSynopsis() != null ? bookPatch.getSynopsis() : previousBook.getSynopsis(),
+                        bookPatch.getCopies(), lastModified))
+                .switchIfEmpty(Mono.defer(() -> notUpdated(id, expectedVersion, bookPatch.getCopies())));
+    }
+
+    // Either the book is missing, or it no longer meets the conditions of the update
+    private Mono<Book> notUpdated(UUID id, Long expectedVersion, Integer copies) {
+        return findBookById(id).flatMap(latestBook -> {
+            if (expectedVersion != null && latestBook.getVersion() != expectedVersion) {
+                return Mono.error(new PreconditionFailedException("Book " + id + " is at version "
+                        + latestBook.getVersion() + ", not at the expected version " + expectedVersion));
+            }
+            return Mono.error(new ConflictException("Cannot reduce the copies of book " + id + " to " + copies
+                    + ", " + (latestBook.getCopies() - latestBook.getAvailableCopies()) + " are reserved"));
+        });
+    }
+
+    public Mono<Void> reserveCopy(UUID id) {
+        // A single conditional decrement, it does not match once the last copy is taken
+        return bookRepository.takeCopy(id).flatMap(taken -> {
+            if (taken) {
+                return Mono.empty();
+            }
+            return bookRepository.existsById(id).flatMap(exists -> Mono.error(exists
+                    ? new ConflictException("No copies of book " + id + " are available")
+                    : new ResourceNotFoundException("Book not found with id: " + id)));
+        });
+    }
+
+    public Mono<Void> releaseCopy(UUID id) {
+        // The book may have been deleted meanwhile, then there is nothing to give back
+        return bookRepository.returnCopy(id).then();
+    }
+
+    /**
+     * Deletes a book. Its reservations are removed afterwards by the
+     * {@link com.bookapi.book_api.service.BookDeletionWorker}, the deletion is recorded before the book is
+     * removed so that cleanup also happens when this call does not complete.
+     */
+    public Mono<Book> deleteBook(UUID id) {
+        Mono<Boolean> recorded = bookDeletionRepository.insert(new BookDeletion(id))
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, ex -> Mono.just(false));
+
+        // Find and delete the book in a single command
+        return recorded.flatMap(inserted -> bookRepository.findAndRemove(id)
+                // There was no book, so there is nothing to clean up either
+                .switchIfEmpty(Mono.defer(() -> (inserted ? bookDeletionRepository.deleteById(id) : Mono.<Void>empty())
+                        .then(Mono.error(new ResourceNotFoundException("Book not found with id: " + id))))));
+    }
+
+    // The stored book after the update, derived from the one before it as the update changed it
+    private static Book updated(Book previousBook, String title, String author, String synopsis, Integer copies,
+                                Instant lastModified) {
+        Book updatedBook = new Book();
+        updatedBook.setId(previousBook.getId());
+        updatedBook.setTitle(title);
+        updatedBook.setAuthor(author);
+        updatedBook.setSynopsis(synopsis);
+        int newCopies = copies != null ? copies : previousBook.getCopies();
+        updatedBook.setCopies(newCopies);
+        updatedBook.setAvailableCopies(previousBook.getAvailableCopies() + newCopies - previousBook.getCopies());
+        updatedBook.setVersion(previousBook.getVersion() + 1);
+        updatedBook.setLastModified(lastModified);
+        return updatedBook;
+    }
+}
@@ -0,0 +1,72 @@
+package com.bookapi.book_api.reactive.service;
+
+import com.bookapi.book_api.model.CustomOAuth2User;
+import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.reactive.repository.ReactiveUserRepository;
+import com.bookapi.book_api.service.CustomOidcUserService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcReactiveOAuth2UserService;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
+import org.springframework.security.oauth2.client.userinfo.ReactiveOAuth2UserService;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * The reactive counterpart of {@link CustomOidcUserService}, picked up by {@code oauth2Login()} as the
+ * OIDC user service of the reactive security chain.
+ */
+@Slf4j
+@Service
+public class ReactiveCustomOidcUserService implements ReactiveOAuth2UserService<OidcUserRequest, OidcUser> {
+
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
+    private final OidcReactiveOAuth2UserService delegate = new OidcReactiveOAuth2UserService();
+    private final ReactiveUserRepository userRepository;
+    // Local users resolved by recent logins, so a login storm does not repeat the upsert for every session
+    private final Cache<String, User> resolvedUsers;
+
+    public ReactiveCustomOidcUserService(ReactiveUserRepository userRepository,
+                                         @Value("${book-api.login-cache.ttl:PT1M}") Duration loginCacheTtl,
+                                         @Value("${book-api.login-cache.maximum-size:10000}") long loginCacheMaximumSize) {
+        this.userRepository = userRepository;
+        this.resolvedUsers = Caffeine.newBuilder()
+                .expireAfterWrite(loginCacheTtl)
+                .maximumSize(loginCacheMaximumSize)
+                .build();
+    }
+
+    @Override
+    public Mono<OidcUser> loadUser(OidcUserRequest userRequest) throws OAuth2AuthenticationException {
+        // Use Spring's built-in class to get the OIDC user data, then resolve the local user
+        return delegate.loadUser(userRequest)
+                .flatMap(oidcUser -> processUserRegistration(oidcUser)
+                        .map(user -> new CustomOAuth2User(oidcUser, user)));
+    }
+
+    Mono<User> processUserRegistration(OidcUser oidcUser) {
+        String email = oidcUser.getEmail();
+        String name = CustomOidcUserService.localName(oidcUser);
+
+        // A user resolved by a recent login with the same name needs no database round trip
+        User cachedUser = resolvedUsers.getIfPresent(email);
+        if (cachedUser != null && name.equals(cachedUser.getName())) {
+            log.debug("Resolved user {} from the login cache", email);
+            return Mono.just(cachedUser);
+        }
+
+        // Create the user, or update their name, in a single atomic upsert
+        return userRepository.upsertByEmail(email, name, DEFAULT_ROLE)
+                .doOnNext(user -> {
+                    log.debug("Resolved user {} from the database", email);
+                    resolvedUsers.put(email, user);
+                });
+    }
+}
@@ -0,0 +1,53 @@
+package com.bookapi.book_api.reactive.service;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.reactive.repository.ReactiveReservationRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Loads reservations by id at most once per exchange, so the ownership check in
+ * {@link ReactiveReservationSecurityService} and the service call it guards share a single read.
+ * <p>
+ * The exchange is taken from the Reactor context, where the {@link ServerWebExchangeContextFilter} that
+ * Spring HATEOAS registers puts it. Without one, e.g. in a background job, every lookup goes to the repository.
+ * A reservation that is not among the current ones is looked up in the history.
+ */
+@Component
+public class ReactiveReservationLookup {
+
+    private static final String ATTRIBUTE_PREFIX = ReactiveReservationLookup.class.getName() + ".";
+
+    private final ReactiveReservationRepository reservationRepository;
+
+    public ReactiveReservationLookup(ReactiveReservationRepository reservationRepository) {
+        this.reservationRepository = reservationRepository;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Mono<Reservation> findById(UUID reservationId) {
+        return Mono.deferContextual(context -> ServerWebExchangeContextFilter.getExchange(context)
+                // The memo is a cached read kept in the exchange attributes, so it is discarded with the exchange
+                .map(exchange -> (Mono<Reservation>) exchange.getAttributes().computeIfAbsent(
+                        ATTRIBUTE_PREFIX + reservationId,
+                        name -> load(reservationId).cache()))
+                .orElseGet(() -> load(reservationId)));
+    }
+
+    private Mono<Reservation> load(UUID reservationId) {
+        return reservationRepository.findById(reservationId)
+                .switchIfEmpty(Mono.defer(() -> reservationRepository.findInHistory(reservationId)));
+    }
+
+    public Mono<Void> forget(UUID reservationId) {
+        // Called after a reservation changes, so later lookups in the same exchange see the new state
+        return Mono.deferContextual(context -> {
+            ServerWebExchangeContextFilter.getExchange(context)
+                    .ifPresent(exchange -> exchange.getAttributes().remove(ATTRIBUTE_PREFIX + reservationId));
+            return Mono.empty();
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package com.bookapi.book_api.reactive.service;
+
+import com.bookapi.book_api.model.CustomOAuth2User;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@Service("reservationSecurityService")
+public class ReactiveReservationSecurityService {
+
+    private final ReactiveReservationLookup reservationLookup;
+
+    public ReactiveReservationSecurityService(ReactiveReservationLookup reservationLookup) {
+        this.reservationLookup = reservationLookup;
+    }
+
+    /**
+     * Reactive method security awaits a {@link Mono} returned by an expression, but cannot combine one
+     * with {@code or}, so the admin check that the servlet expression makes is part of this method.
+     */
+    public Mono<Boolean> isAdminOrReservationOwner(Authentication authentication, UUID reservationId) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ROLE_ADMIN"));
+        if (isAdmin) {
+            return Mono.just(true);
+        }
+        return isReservationOwner(authentication, reservationId);
+    }
+
+    public Mono<Boolean> isReservationOwner(Authentication authentication, UUID reservationId) {
+        // Get the database ID of the current logged in user
+        CustomOAuth2User currentUser = (CustomOAuth2User) authentication.getPrincipal();
+        UUID currentUserId = currentUser.getLocalUser().getId();
+
+        // Find the reservation, the guarded service call then reuses this read
+        return reservationLookup.findById(reservationId)
+                // Check if the userId matches that of the reservation
+                .map(reservation -> reservation.getUserId().equals(currentUserId))
+                .defaultIfEmpty(false);
+    }
+}
@@ -0,0 +1,145 @@
+package com.bookapi.book_api.reactive.service;
+
+import com.bookapi.book_api.exception.BadResourceException;
+import com.bookapi.book_api.exception.ConflictException;
+import com.bookapi.book_api.exception.ResourceNotFoundException;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.reactive.repository.ReactiveReservationQuotaRepository;
+import com.bookapi.book_api.reactive.repository.ReactiveReservationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * The reactive counterpart of {@link com.bookapi.book_api.service.ReservationService}.
+ */
+@Service
+public class ReactiveReservationService {
+
+    // Cursor pages are ordered by reservation time, with the id as a tie-breaker so the keyset is unique
+    public static final Sort CURSOR_SORT = Sort.by("reservedAt", "id");
+
+    private final ReactiveReservationRepository reservationRepository;
+    private final ReactiveReservationLookup reservationLookup;
+    private final ReactiveBookService bookService;
+    private final ReactiveReservationQuotaRepository reservationQuotaRepository;
+    private final int maxActiveReservations;
+
+    public ReactiveReservationService(ReactiveReservationRepository reservationRepository,
+                                      ReactiveReservationLookup reservationLookup, ReactiveBookService bookService,
+                                      ReactiveReservationQuotaRepository reservationQuotaRepository,
+                                      @Value("${book-api.reservation-quota.max-active:5}") int maxActiveReservations) {
+        this.reservationRepository = reservationRepository;
+        this.reservationLookup = reservationLookup;
+        this.bookService = bookService;
+        this.reservationQuotaRepository = reservationQuotaRepository;
+        this.maxActiveReservations = maxActiveReservations;
+    }
+
+    public Mono<Reservation> addReservation(UUID bookId, UUID userId) {
+        // The unique index does not compare a reservation stored with legacy UUIDs to a new one
+        return reservationRepository.existsLegacyActiveReservation(bookId, userId)
+                .flatMap(exists -> exists ? Mono.error(duplicateReservation(bookId, userId))
+                        // Count the reservation against the quota of the user first
+                        : reservationQuotaRepository.take(userId, maxActiveReservations))
+                .flatMap(taken -> taken ? reserve(bookId, userId) : Mono.error(new ConflictException(
+                        "The user with id " + userId + " already has " + maxActiveReservations
+                                + " active reservations")));
+    }
+
+    private Mono<Reservation> reserve(UUID bookId, UUID userId) {
+        // Take a copy of the book, this fails with a conflict once every copy is reserved
+        return bookService.reserveCopy(bookId)
+                .onErrorResume(ex -> reservationQuotaRepository.release(userId, 1).then(Mono.error(ex)))
+                // The unique index on the active reservations rejects a second one of the same book by the user
+                .then(Mono.defer(() -> reservationRepository.insert(new Reservation(bookId, userId))
+                        // Give the copy and the quota back, otherwise they would stay taken without a reservation
+                        .onErrorResume(ex -> bookService.releaseCopy(bookId)
+                                .then(reservationQuotaRepository.release(userId, 1))
+                                .then(Mono.error(ex instanceof DuplicateKeyException
+                                        ? duplicateReservation(bookId, userId)
+                                        : ex)))));
+    }
+
+    private static ConflictException duplicateReservation(UUID bookId, UUID userId) {
+        return new ConflictException("The user with id " + userId
+                + " already has an active reservation of the book with id " + bookId);
+    }
+
+    public Mono<Reservation> findReservationById(UUID bookId, UUID reservationId) {
+        // Use the exchange's reservation lookup, which the ownership check may already have loaded
+        return reservationLookup.findById(reservationId)
+                .switchIfEmpty(Mono.error(() ->
+                        new ResourceNotFoundException("Reservation not found with id:" + reservationId)))
+                .flatMap(reservation -> reservation.getBookId().equals(bookId)
+                        ? Mono.just(reservation)
+                        : Mono.error(new BadResourceException("The reservation with id " + reservationId
+                                + " does not belong to the book with id " + bookId)));
+    }
+
+    public Mono<Reservation> cancelReservation(UUID bookId, UUID reservationId) {
+        // Only the call that cancelled the reservation gives the copy back
+        return close(bookId, reservationId, ReservationState.CANCELLED)
+                .flatMap(cancelledReservation -> bookService.releaseCopy(bookId).thenReturn(cancelledReservation));
+    }
+
+    public Mono<Reservation> fulfilReservation(UUID bookId, UUID reservationId) {
+        // The copy stays taken, the user has it now
+        return close(bookId, reservationId, ReservationState.FULFILLED);
+    }
+
+    // Moves an active reservation to a final state, concurrent calls are settled by the update alone
+    private Mono<Reservation> close(UUID bookId, UUID reservationId, ReservationState state) {
+        return reservationRepository.transition(bookId, reservationId, ReservationState.RESERVED, state)
+                .flatMap(closedReservation -> reservationLookup.forget(reservationId)
+                        // The reservation no longer counts against the quota of its user
+                        .then(reservationQuotaRepository.release(closedReservation.getUserId(), 1))
+                        .thenReturn(closedReservation))
+                // Nothing matched, the reservation is only read now to tell why
+                .switchIfEmpty(Mono.defer(() -> reservationLookup.forget(reservationId)
+                        .then(findReservationById(bookId, reservationId))
+                        .flatMap(reservation -> Mono.error(new ConflictException("The reservation with id "
+                                + reservationId + " is already "
+                                + reservation.getState().name().toLowerCase(Locale.ROOT))))));
+    }
+
+    public Mono<Page<Reservation>> findReservationsForUser(UUID userId, Pageable pageable) {
+        return reservationRepository.findPageByUserId(userId, pageable);
+    }
+
+    public Mono<Slice<Reservation>> findReservationSliceForUser(UUID userId, Pageable pageable) {
+        return reservationRepository.findSliceByUserId(userId, pageable);
+    }
+
+    public Mono<Window<Reservation>> findReservationsForUser(UUID userId, ScrollPosition position, int limit) {
+        return reservationRepository.findByUserId(userId, position, Limit.of(limit), CURSOR_SORT);
+    }
+
+    public Mono<Page<Reservation>> findAllReservations(Pageable pageable) {
+        return reservationRepository.findPage(pageable);
+    }
+
+    public Mono<Slice<Reservation>> findAllReservationSlice(Pageable pageable) {
+        return reservationRepository.findSlice(pageable);
+    }
+
+    public Mono<Long> estimateReservationCount() {
+        return reservationRepository.estimatedCount();
+    }
+
+    public Mono<Window<Reservation>> findAllReservations(ScrollPosition position, int limit) {
+        return reservationRepository.findAllBy(position, Limit.of(limit), CURSOR_SORT);
+    }
+}
@@ -0,0 +1,69 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.anonymous;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+public class MetricsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("GET /actuator/prometheus should openly expose request timers per operation and MongoDB command timers")
+    void scrape_afterApiRequests_shouldExposeOperationAndCommandTimers() throws Exception {
+        // GIVEN a book that has been read through the API
+        Book book = bookRepository.save(new Book("Dune", "Frank Herbert", "Synopsis"));
+        mockMvc.perform(get("/books/{bookId}", book.getId())).andExpect(status().isOk());
+
+        // WHEN the metrics are scraped without a login
+        // THEN the request is timed under its operation, with histogram buckets for percentiles
+        // AND the find it ran on the books collection is timed by command and collection
+        mockMvc.perform(get("/actuator/prometheus").with(anonymous()))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("operation=\"getBookById\"")))
+                .andExpect(content().string(matchesPattern(
+                        "(?s).*http_server_requests_seconds_bucket\\{[^}]*operation=\"getBookById\".*")))
+                .andExpect(content().string(matchesPattern(
+                        "(?s).*mongodb_driver_commands_seconds_count\\{[^}]*collection=\"books\"[^}]*command=\"find\".*")));
+    }
+
+    @Test
+    @DisplayName("GET /actuator/caches should only be allowed for admins")
+    void caches_whenNotAdmin_shouldReturn403() throws Exception {
+        // WHEN a regular user and an admin read the caches endpoint
+        // THEN only the admin is allowed to
+        mockMvc.perform(get("/actuator/caches").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/caches").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,81 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.repository.QueryPlanAuditor;
+import com.bookapi.book_api.repository.QueryPlanAuditor.QueryPlanReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest
+public class MongoIndexManagerIntegrationTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexManager mongoIndexManager;
+
+    @Autowired
+    private QueryPlanAuditor queryPlanAuditor;
+
+    @Test
+    @DisplayName("Startup should create the declared reservation and user indexes")
+    void onStartup_shouldCreateDeclaredIndexes() {
+        // GIVEN the application context has started
+
+        // WHEN the indexes of the reservations and users collections are listed
+        List<String> reservationIndexes = indexNames("reservations");
+        List<String> userIndexes = indexNames("users");
+
+        // THEN the compound reservation indexes and the unique email index exist
+        assertThat(reservationIndexes).contains("userId_reservedAt", "reservedAt", "bookId_state");
+        assertThat(userIndexes).contains("email");
+    }
+
+    @Test
+    @DisplayName("Ensuring indexes a second time should verify the existing indexes without failing")
+    void ensureIndexes_whenIndexesAlreadyExist_shouldBeIdempotent() {
+        // GIVEN the indexes were created at startup
+
+        // WHEN the index manager runs again
+        mongoIndexManager.ensureIndexes();
+
+        // THEN the same indexes are still present
+        assertThat(indexNames("reservations")).contains("userId_reservedAt", "reservedAt", "bookId_state");
+    }
+
+    @Test
+    @DisplayName("No repository query shape should fall back to a collection scan")
+    void audit_shouldReportNoCollectionScans() {
+        // GIVEN a server that can explain queries
+        List<QueryPlanReport> reports;
+        try {
+            reports = queryPlanAuditor.audit();
+        } catch (RuntimeException ex) {
+            assumeTrue(false, "The MongoDB server does not support explain: " + ex.getMessage());
+            return;
+        }
+        assumeTrue(reports.stream().noneMatch(report -> report.stages().isEmpty()),
+                "The MongoDB server did not return a winning plan");
+
+        // WHEN the repository query shapes are explained
+        // THEN every one of them is answered from an index
+        assertThat(reports)
+                .filteredOn(QueryPlanReport::isCollectionScan)
+                .isEmpty();
+    }
+
+    private List<String> indexNames(String collection) {
+        return mongoTemplate.indexOps(collection).getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .toList();
+    }
+}
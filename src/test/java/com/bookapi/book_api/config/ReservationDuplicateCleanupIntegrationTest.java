@@ -0,0 +1,175 @@
+package com.bookapi.book_api.config;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationQuota;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.BookRepository;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest
+public class ReservationDuplicateCleanupIntegrationTest {
+
+    private static final String ACTIVE_INDEX = "userId_bookId_active";
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @Autowired
+    private ReservationDuplicateCleanup reservationDuplicateCleanup;
+
+    @Autowired
+    private MongoIndexManager mongoIndexManager;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationQuotaRepository reservationQuotaRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private Book book;
+    private UUID userId;
+    private Reservation oldest;
+    private Reservation duplicate;
+    private Reservation other;
+
+    @BeforeEach
+    void setUp() {
+        // GIVEN a database from before the unique index, without it
+        reservationRepository.deleteAll();
+        if (indexNames().contains(ACTIVE_INDEX)) {
+            mongoTemplate.indexOps(Reservation.class).dropIndex(ACTIVE_INDEX);
+        }
+        // AND a book with 3 copies, all of them reserved
+        book = new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 3);
+        book.setAvailableCopies(0);
+        bookRepository.save(book);
+        // AND a user who holds two active reservations of it, and another user who holds one
+        userId = UUID.randomUUID();
+        oldest = reserve(userId, Duration.ofHours(2));
+        duplicate = reserve(userId, Duration.ofHours(1));
+        other = reserve(UUID.randomUUID(), Duration.ofHours(1));
+        saveQuota(userId, 2);
+        saveQuota(other.getUserId(), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        reservationQuotaRepository.deleteAll();
+        bookRepository.deleteAll();
+        // Leave the unique index in place for the other tests
+        mongoIndexManager.ensureIndexes();
+    }
+
+    @Test
+    @DisplayName("Startup should cancel the duplicate active reservations and give their copies and quota back")
+    void onStartup_whenAUserHoldsDuplicateReservations_shouldCancelAllButTheOldest() {
+        // WHEN the duplicates are cleaned up at startup
+        reservationDuplicateCleanup.onStartup();
+
+        // THEN the newer reservation of the user is cancelled and the oldest one is kept
+        assertThat(stateOf(duplicate)).isEqualTo(ReservationState.CANCELLED);
+        assertThat(stateOf(oldest)).isEqualTo(ReservationState.RESERVED);
+        // AND the reservation of the other user is untouched
+        assertThat(stateOf(other)).isEqualTo(ReservationState.RESERVED);
+        // AND the copy and the quota of the cancelled reservation are given back
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+        assertThat(reservationQuotaRepository.findById(userId))
+                .map(ReservationQuota::getActiveReservations)
+                .hasValue(1);
+        assertThat(reservationQuotaRepository.findById(other.getUserId()))
+                .map(ReservationQuota::getActiveReservations)
+                .hasValue(1);
+
+        // WHEN the cleanup runs again
+        reservationDuplicateCleanup.onStartup();
+
+        // THEN nothing more is given back
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Starting on a database with duplicate active reservations should build the unique index")
+    void onStartup_whenAUserHoldsDuplicateReservations_shouldBuildTheUniqueIndex() {
+        // GIVEN a server that only applies the unique index to the active reservations
+        assumePartialIndexesSupported();
+
+        // WHEN the application starts
+        applicationContext.publishEvent(new ContextRefreshedEvent(applicationContext));
+
+        // THEN the unique index is built and the user is left with a single active reservation
+        assertThat(indexNames()).contains(ACTIVE_INDEX);
+        assertThat(stateOf(duplicate)).isEqualTo(ReservationState.CANCELLED);
+        assertThat(stateOf(oldest)).isEqualTo(ReservationState.RESERVED);
+    }
+
+    private Reservation reserve(UUID userId, Duration age) {
+        Reservation reservation = new Reservation(book.getId(), userId);
+        reservation.setReservedAt(Instant.now().minus(age));
+        return reservationRepository.save(reservation);
+    }
+
+    private void saveQuota(UUID userId, int activeReservations) {
+        ReservationQuota quota = new ReservationQuota();
+        quota.setUserId(userId);
+        quota.setActiveReservations(activeReservations);
+        reservationQuotaRepository.save(quota);
+    }
+
+    private ReservationState stateOf(Reservation reservation) {
+        return reservationRepository.findById(reservation.getId()).orElseThrow().getState();
+    }
+
+    private List<String> indexNames() {
+        return mongoTemplate.indexOps(Reservation.class).getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .toList();
+    }
+
+    // A server that ignores the partial filter cannot build the index while a closed duplicate is stored
+    private void assumePartialIndexesSupported() {
+        String probe = "partialIndexProbe";
+        mongoTemplate.indexOps(probe).createIndex(new Index().on("key", Sort.Direction.ASC).unique()
+                .partial(PartialIndexFilter.of(Criteria.where("active").is(true))));
+        try {
+            mongoTemplate.insert(new Document("key", 1).append("active", false), probe);
+            mongoTemplate.insert(new Document("key", 1).append("active", false), probe);
+        } catch (DuplicateKeyException ex) {
+            assumeTrue(false, "The MongoDB server does not support partial indexes: " + ex.getMessage());
+        } finally {
+            mongoTemplate.dropCollection(probe);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.bookapi.book_api.config;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(OutputCaptureExtension.class)
+class SlowMongoCommandListenerTest {
+
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    @Test
+    @DisplayName("shapeOf should keep the collection, field names, operators and sort but leave out the values")
+    void shapeOf_whenGivenAFind_shouldRedactTheValues() {
+        // GIVEN a find command as the driver sends it
+        BsonDocument command = BsonDocument.parse("""
+                {"find": "reservations",
+                 "filter": {"userId": "7d3c", "reservedAt": {"$gt": {"$date": "2025-01-01T00:00:00Z"}},
+                            "state": {"$in": ["Reserved", "Collected", "Cancelled"]}},
+                 "sort": {"reservedAt": 1, "_id": 1},
+                 "limit": 21,
+                 "$db": "book-api",
+                 "lsid": {"id": "session"}}""");
+
+        // WHEN its shape is taken
+        String shape = SlowMongoCommandListener.render(SlowMongoCommandListener.shapeOf(command));
+
+        // THEN the structure is kept and every value is replaced
+        assertThat(shape).isEqualTo("{\"find\": \"reservations\", "
+                + "\"filter\": {\"userId\": \"?\", \"reservedAt\": {\"$gt\": \"?\"}, "
+                + "\"state\": {\"$in\": [\"?\", \"... 3 elements\"]}}, "
+                + "\"sort\": {\"reservedAt\": 1, \"_id\": 1}, \"limit\": \"?\"}");
+    }
+
+    @Test
+    @DisplayName("A command slower than the threshold should be logged with its shape, a faster one not at all")
+    void commandSucceeded_whenSlowerThanTheThreshold_shouldLogTheShape(CapturedOutput output) {
+        // GIVEN a listener with a threshold of 100 ms
+        SlowMongoCommandListener listener = new SlowMongoCommandListener(Duration.ofMillis(100));
+        BsonDocument fast = BsonDocument.parse("{\"find\": \"books\", \"filter\": {\"title\": \"Dune\"}}");
+        BsonDocument slow = BsonDocument.parse("{\"find\": \"books\", \"filter\": {\"author\": \"Frank Herbert\"}}");
+
+        // WHEN one command completes in 5 ms and another in 250 ms
+        listener.commandStarted(new CommandStartedEvent(null, 1, 1, CONNECTION, "book-api", "find", fast));
+        listener.commandSucceeded(new CommandSucceededEvent(null, 1, 1, CONNECTION, "book-api", "find",
+                new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(5)));
+        listener.commandStarted(new CommandStartedEvent(null, 2, 2, CONNECTION, "book-api", "find", slow));
+        listener.commandSucceeded(new CommandSucceededEvent(null, 2, 2, CONNECTION, "book-api", "find",
+                new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(250)));
+
+        // THEN only the slow one is logged, with its shape and without its values
+        assertThat(output).contains("Slow MongoDB command find on book-api succeeded after 250 ms: "
+                + "{\"find\": \"books\", \"filter\": {\"author\": \"?\"}}");
+        assertThat(output).doesNotContain("\"title\"").doesNotContain("Frank Herbert");
+    }
+}
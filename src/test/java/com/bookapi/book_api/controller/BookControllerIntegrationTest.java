@@ -5,9 +5,14 @@ import com.bookapi.book_api.dto.generated.BookInput;
 import com.bookapi.book_api.model.Book;
 import com.bookapi.book_api.model.CustomOAuth2User;
 import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.repository.BookDeletionRepository;
 import com.bookapi.book_api.repository.BookRepository;
 import com.bookapi.book_api.repository.UserRepository;
+import com.bookapi.book_api.service.EstimatedCountService;
+import com.bookapi.book_api.service.BookService;
+import com.bookapi.book_api.service.BookSuggestionIndex;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.jayway.jsonpath.JsonPath;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.AfterEach;
@@ -16,6 +21,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
@@ -24,16 +37,24 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultMatcher;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.mock;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -48,15 +69,34 @@ public class BookControllerIntegrationTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookDeletionRepository bookDeletionRepository;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EstimatedCountService estimatedCountService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookSuggestionIndex bookSuggestionIndex;
+
     @AfterEach
     void tearDown() {
         bookRepository.deleteAll();
+        bookDeletionRepository.deleteAll();
     }
 
     @Test
@@ -151,6 +191,75 @@ public class BookControllerIntegrationTest {
                 .andExpect(jsonPath("$.error", is("Book not found with id: " + nonExistentId)));
     }
 
+    @Test
+    @WithMockUser
+    @DisplayName("GET /books/{id} should answer 304 Not Modified while the client holds the current version")
+    void getBookById_whenIfNoneMatchHoldsTheEntityTag_shouldReturn304UntilTheBookChanges() throws Exception {
+        // GIVEN a book exists in the database
+        Book testBook = new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 2);
+        bookRepository.save(testBook);
+
+        // WHEN the book is read
+        MvcResult firstResult = mockMvc.perform(get("/books/{bookId}", testBook.getId()))
+                // THEN it carries a strong entity tag and its modification time
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn();
+        String entityTag = firstResult.getResponse().getHeader("ETag");
+
+        // WHEN it is read again with that tag
+        var notModifiedActions = mockMvc.perform(get("/books/{bookId}", testBook.getId())
+                .header("If-None-Match", entityTag));
+
+        // THEN the response is 304 Not Modified without a body
+        MvcResult notModifiedResult = notModifiedActions.andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", entityTag))
+                .andReturn();
+        assertThat(notModifiedResult.getResponse().getContentAsString()).isEmpty();
+
+        // WHEN a copy is reserved, which changes the book, and it is read again with the old tag
+        bookService.reserveCopy(testBook.getId());
+        var changedActions = mockMvc.perform(get("/books/{bookId}", testBook.getId())
+                .header("If-None-Match", entityTag));
+
+        // THEN the new version is returned under a new tag
+        changedActions.andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.availableCopies", is(1)));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("GET /books should answer 304 Not Modified while the page is unchanged")
+    void getAllBooks_whenIfNoneMatchHoldsTheEntityTag_shouldReturn304UntilThePageChanges() throws Exception {
+        // GIVEN two books exist in the database
+        bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey"));
+        bookRepository.save(new Book("Dune", "Frank Herbert", "Arrakis"));
+
+        // WHEN the first page is read
+        String entityTag = mockMvc.perform(get("/books").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(entityTag).isNotBlank();
+
+        // THEN reading it again with its tag answers 304 Not Modified without a body
+        MvcResult notModifiedResult = mockMvc.perform(get("/books").param("limit", "10")
+                        .header("If-None-Match", entityTag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertThat(notModifiedResult.getResponse().getContentAsString()).isEmpty();
+
+        // WHEN another book is added
+        bookRepository.save(new Book("Emma", "Jane Austen", "Highbury"));
+
+        // THEN the page is returned again under a new tag
+        mockMvc.perform(get("/books").param("limit", "10").header("If-None-Match", entityTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(3)))
+                .andExpect(result -> assertThat(result.getResponse().getHeader("ETag")).isNotEqualTo(entityTag));
+    }
+
     @Test
     @WithMockUser
     @DisplayName("PUT /books/{id} for a logged in Admin user should update an existing book and return 200 OK")
@@ -188,6 +297,262 @@ public class BookControllerIntegrationTest {
                 .andExpect(jsonPath("$.author", is("Updated Author")));
     }
 
+    @Test
+    @DisplayName("PUT /books/{id} should move the available copies with the copies and refuse to remove reserved ones")
+    void putBook_whenCopiesChange_shouldKeepReservedCopies() throws Exception {
+        // GIVEN a book with 3 copies, 2 of which are reserved
+        Book existingBook = new Book("Original Title", "Original Author", "Original Synopsis", 3);
+        existingBook.setAvailableCopies(1);
+        bookRepository.save(existingBook);
+        UUID bookId = existingBook.getId();
+        assumeUpdatePipelinesSupported();
+
+        // AND an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // AND a DTO that adds 2 copies
+        BookInput updatedBookInput = new BookInput();
+        updatedBookInput.setTitle("Updated Title");
+        updatedBookInput.setAuthor("Updated Author");
+        updatedBookInput.setSynopsis("Updated Synopsis");
+        updatedBookInput.setCopies(5);
+
+        // WHEN the book is updated with more copies
+        var resultActions = mockMvc.perform(put("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updatedBookInput)));
+
+        // THEN the new copies are available and the reserved ones stay reserved
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.copies", is(5)))
+                .andExpect(jsonPath("$.availableCopies", is(3)));
+
+        // WHEN the copies are then lowered below the 2 that are reserved
+        updatedBookInput.setCopies(1);
+        var conflictActions = mockMvc.perform(put("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updatedBookInput)));
+
+        // THEN the response should be 409 Conflict and the book is unchanged
+        conflictActions.andExpect(status().isConflict());
+        Optional<Book> storedBook = bookRepository.findById(bookId);
+        assertThat(storedBook).hasValueSatisfying(book -> {
+            assertThat(book.getCopies()).isEqualTo(5);
+            assertThat(book.getAvailableCopies()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    @DisplayName("PUT /books/{id} without copies should keep the copies and reservations of the book")
+    void putBook_whenCopiesAreLeftOut_shouldKeepTheStoredCopies() throws Exception {
+        // GIVEN a book with 3 copies, 2 of which are reserved
+        Book existingBook = new Book("Original Title", "Original Author", "Original Synopsis", 3);
+        existingBook.setAvailableCopies(1);
+        bookRepository.save(existingBook);
+        UUID bookId = existingBook.getId();
+
+        // AND an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN the book is updated with a body that leaves the copies out
+        var resultActions = mockMvc.perform(put("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                        {"title": "Updated Title", "author": "Updated Author", "synopsis": "Updated Synopsis"}
+                        """));
+
+        // THEN the details are updated and the copies are unchanged
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("Updated Title")))
+                .andExpect(jsonPath("$.copies", is(3)))
+                .andExpect(jsonPath("$.availableCopies", is(1)));
+        Optional<Book> storedBook = bookRepository.findById(bookId);
+        assertThat(storedBook).hasValueSatisfying(book -> {
+            assertThat(book.getCopies()).isEqualTo(3);
+            assertThat(book.getAvailableCopies()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    @DisplayName("PUT /books/{id} with If-Match should only update the version the client last read")
+    void putBook_whenIfMatchIsStale_shouldReturn412AndKeepTheBook() throws Exception {
+        // GIVEN a book that exists in the database and has since been reserved, which moved it to version 1
+        Book existingBook = new Book("Original Title", "Original Author", "Original Synopsis", 2);
+        bookRepository.save(existingBook);
+        UUID bookId = existingBook.getId();
+        bookService.reserveCopy(bookId);
+        // The copies are replaced as well, which moves the available copies in an update pipeline
+        assumeUpdatePipelinesSupported();
+
+        // AND an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // AND a DTO with the updated details
+        BookInput updatedBookInput = new BookInput();
+        updatedBookInput.setTitle("Updated Title");
+        updatedBookInput.setAuthor("Updated Author");
+        updatedBookInput.setSynopsis("Updated Synopsis");
+        updatedBookInput.setCopies(2);
+        String updatedBookJson = objectMapper.writeValueAsString(updatedBookInput);
+
+        // WHEN the book is updated with the tag of the version before the reservation
+        var staleActions = mockMvc.perform(put("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(updatedBookJson));
+
+        // THEN the response should be 412 Precondition Failed and the book is unchanged
+        staleActions.andExpect(status().isPreconditionFailed());
+        assertThat(bookRepository.findById(bookId))
+                .hasValueSatisfying(book -> assertThat(book.getTitle()).isEqualTo("Original Title"));
+
+        // WHEN the book is updated with the tag of its current version
+        var currentActions = mockMvc.perform(put("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .header("If-Match", "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(updatedBookJson));
+
+        // THEN the update succeeds, keeps the reservation and moves the book to the next version
+        currentActions.andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.title", is("Updated Title")))
+                .andExpect(jsonPath("$.availableCopies", is(1)));
+    }
+
+    @Test
+    @DisplayName("PATCH /books/{id} should change only the supplied fields and keep the reserved copies")
+    void patchBook_whenFieldsAreSupplied_shouldChangeOnlyThoseFields() throws Exception {
+        // GIVEN a book with 3 copies, 2 of which are reserved
+        Book existingBook = new Book("Original Title", "Original Author", "Original Synopsis", 3);
+        existingBook.setAvailableCopies(1);
+        bookRepository.save(existingBook);
+        UUID bookId = existingBook.getId();
+
+        // AND an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN only the title is patched
+        var resultActions = mockMvc.perform(patch("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType("application/merge-patch+json")
+                .content("{\"title\": \"Patched Title\"}"));
+
+        // THEN the response holds the new title, every other field as it was, and the next version
+        resultActions.andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.title", is("Patched Title")))
+                .andExpect(jsonPath("$.author", is("Original Author")))
+                .andExpect(jsonPath("$.copies", is(3)))
+                .andExpect(jsonPath("$.availableCopies", is(1)));
+        // AND the stored book matches the response
+        assertThat(bookRepository.findById(bookId)).hasValueSatisfying(book -> {
+            assertThat(book.getTitle()).isEqualTo("Patched Title");
+            assertThat(book.getSynopsis()).isEqualTo("Original Synopsis");
+            assertThat(book.getAvailableCopies()).isEqualTo(1);
+            assertThat(book.getVersion()).isEqualTo(1);
+        });
+        // AND the book is suggested under its new title
+        assertThat(bookSuggestionIndex.suggest("patched", 10))
+                .extracting(BookSuggestionIndex.Suggestion::id).containsExactly(bookId);
+    }
+
+    @Test
+    @DisplayName("PATCH /books/{id} should answer 412 for a stale If-Match and 404 for a missing book")
+    void patchBook_whenConditionDoesNotHold_shouldReturn412Or404() throws Exception {
+        // GIVEN a book at version 0 and an admin user who is logged in
+        Book existingBook = new Book("Original Title", "Original Author", "Original Synopsis");
+        bookRepository.save(existingBook);
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN the book is patched with the tag of another version
+        var staleActions = mockMvc.perform(patch("/books/{bookId}", existingBook.getId())
+                .with(authentication(auth))
+                .with(csrf())
+                .header("If-Match", "\"3\"")
+                .contentType("application/merge-patch+json")
+                .content("{\"title\": \"Patched Title\"}"));
+
+        // THEN the response is 412 Precondition Failed and the book is unchanged
+        staleActions.andExpect(status().isPreconditionFailed());
+        assertThat(bookRepository.findById(existingBook.getId()))
+                .hasValueSatisfying(book -> assertThat(book.getTitle()).isEqualTo("Original Title"));
+
+        // WHEN a book that does not exist is patched
+        UUID nonExistentId = UUID.randomUUID();
+        var missingActions = mockMvc.perform(patch("/books/{bookId}", nonExistentId)
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType("application/merge-patch+json")
+                .content("{\"title\": \"Patched Title\"}"));
+
+        // THEN the response is 404 Not Found
+        missingActions.andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error", is("Book not found with id: " + nonExistentId)));
+    }
+
+    @Test
+    @DisplayName("PATCH /books/{id} should move the available copies with the copies and refuse to remove reserved ones")
+    void patchBook_whenCopiesChange_shouldKeepReservedCopies() throws Exception {
+        // GIVEN a book with 3 copies, 2 of which are reserved
+        Book existingBook = new Book("Original Title", "Original Author", "Original Synopsis", 3);
+        existingBook.setAvailableCopies(1);
+        bookRepository.save(existingBook);
+        UUID bookId = existingBook.getId();
+        assumeUpdatePipelinesSupported();
+
+        // AND an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN 2 copies are added
+        var resultActions = mockMvc.perform(patch("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType("application/merge-patch+json")
+                .content("{\"copies\": 5}"));
+
+        // THEN the new copies are available and the reserved ones stay reserved
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.copies", is(5)))
+                .andExpect(jsonPath("$.availableCopies", is(3)));
+
+        // WHEN the copies are then lowered below the 2 that are reserved
+        var conflictActions = mockMvc.perform(patch("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType("application/merge-patch+json")
+                .content("{\"copies\": 1}"));
+
+        // THEN the response should be 409 Conflict and the book is unchanged
+        conflictActions.andExpect(status().isConflict());
+        assertThat(bookRepository.findById(bookId)).hasValueSatisfying(book -> {
+            assertThat(book.getCopies()).isEqualTo(5);
+            assertThat(book.getAvailableCopies()).isEqualTo(3);
+        });
+    }
+
     @Test
     @DisplayName("PUT /books/{id} should return 403 Forbidden for a non-admin user")
     void putBook_whenBookExists_andUserIsNotAdmin_shouldReturn403() throws Exception {
@@ -220,6 +585,233 @@ public class BookControllerIntegrationTest {
         resultActions.andExpect(status().isForbidden());
     }
 
+    @Test
+    @WithMockUser
+    @DisplayName("GET /books/search should return the matching books, the most relevant first")
+    void searchBooks_whenBooksMatch_shouldReturnThemRankedByRelevance() throws Exception {
+        // GIVEN a book with the term in its title, one with it in its synopsis and one without it
+        Book titleMatch = bookRepository.save(new Book("The Galaxy Guide", "Douglas Adams", "Towels"));
+        Book synopsisMatch = bookRepository.save(new Book("Foundation", "Isaac Asimov", "An empire spanning the galaxy"));
+        bookRepository.save(new Book("Emma", "Jane Austen", "Matchmaking"));
+        // AND a server with text search
+        assumeTextSearchSupported();
+
+        // WHEN the books are searched for the term
+        var resultActions = mockMvc.perform(get("/books/search").param("q", "galaxies"));
+
+        // THEN only the matching books are returned, the title match first
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount", is(2)))
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.items[0].id", is(titleMatch.getId().toString())))
+                .andExpect(jsonPath("$.items[1].id", is(synopsisMatch.getId().toString())))
+                // AND each result carries its relevance score
+                .andExpect(jsonPath("$.items[0].score").isNumber());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("GET /books/search?count=none should page through the matches without a total count")
+    void searchBooks_whenCountModeIsNone_shouldOmitTotalCount() throws Exception {
+        // GIVEN 3 books matching the term
+        bookRepository.save(new Book("Galaxy One", "Author", "Synopsis"));
+        bookRepository.save(new Book("Galaxy Two", "Author", "Synopsis"));
+        bookRepository.save(new Book("Galaxy Three", "Author", "Synopsis"));
+        // AND a server with text search
+        assumeTextSearchSupported();
+
+        // WHEN the first page of 2 matches is requested without a count
+        var resultActions = mockMvc.perform(get("/books/search")
+                .param("q", "galaxy")
+                .param("limit", "2")
+                .param("count", "none"));
+
+        // THEN the page has no total count but links to the next page
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.totalCount").doesNotExist())
+                .andExpect(jsonPath("$.next").isNotEmpty());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("GET /books/search without search terms should return 400 Bad Request")
+    void searchBooks_whenTermsAreMissing_shouldReturn400() throws Exception {
+        // GIVEN an authenticated user
+
+        // WHEN the books are searched without a q parameter
+        var resultActions = mockMvc.perform(get("/books/search"));
+
+        // THEN the response should be 400 Bad Request
+        resultActions.andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /books/suggest should follow books as they are created, updated and deleted")
+    void suggestBooks_whenBooksAreWritten_shouldSuggestThemByPrefix() throws Exception {
+        // GIVEN an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        // AND a book that was in the database when the index was built
+        Book existingBook = bookRepository.save(new Book("Zebra Crossings", "Zadie Author", "Synopsis"));
+        bookSuggestionIndex.rebuild();
+
+        // WHEN a second book is created through the API
+        BookInput bookInput = new BookInput();
+        bookInput.setTitle("Zen and the Art");
+        bookInput.setAuthor("Robert Pirsig");
+        bookInput.setSynopsis("Motorcycles");
+        MvcResult created = mockMvc.perform(post("/books")
+                        .with(authentication(auth))
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(bookInput)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String createdId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        // THEN both books are suggested for their shared prefix, in title order, regardless of case
+        mockMvc.perform(get("/books/suggest").param("q", "ZE").with(authentication(auth)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.items[0].id", is(existingBook.getId().toString())))
+                .andExpect(jsonPath("$.items[1].id", is(createdId)));
+
+        // WHEN the existing book is renamed and the created one deleted
+        bookInput.setTitle("Quiet Crossings");
+        mockMvc.perform(put("/books/" + existingBook.getId())
+                        .with(authentication(auth))
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(bookInput)))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/books/" + createdId)
+                        .with(authentication(auth))
+                        .with(csrf()))
+                .andExpect(status().isNoContent());
+
+        // THEN neither book is suggested for the old prefix, and the renamed book is found by its new title
+        mockMvc.perform(get("/books/suggest").param("q", "ze").with(authentication(auth)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(0)));
+        mockMvc.perform(get("/books/suggest").param("q", "quiet").param("limit", "1").with(authentication(auth)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title", is("Quiet Crossings")));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("GET /books/export should stream every book as one JSON line")
+    void exportBooks_whenBooksExist_shouldStreamOneLinePerBook() throws Exception {
+        // GIVEN 3 books in the database
+        bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 2));
+        bookRepository.save(new Book("Dune", "Frank Herbert", "Spice"));
+        bookRepository.save(new Book("Emma", "Jane Austen", "Matchmaking"));
+
+        // WHEN the catalog is exported
+        MvcResult result = mockMvc.perform(get("/books/export"))
+                // THEN the response is 200 OK and newline-delimited JSON
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andReturn();
+
+        // AND every book is on its own line
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(3);
+        Set<String> titles = new HashSet<>();
+        for (String line : lines) {
+            titles.add(JsonPath.read(line, "$.title"));
+        }
+        assertThat(titles).containsExactlyInAnyOrder("The Hobbit", "Dune", "Emma");
+        assertThat((Integer) JsonPath.read(lines[0], "$.copies")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("POST /books/import with NDJSON should insert the valid books and report the rejected lines")
+    void importBooks_whenGivenNdjson_andUserIsAdmin_shouldImportBooksAndReportErrors() throws Exception {
+        // GIVEN an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // AND an NDJSON file with two valid books and a book without an author
+        String ndjson = """
+                {"title": "The Hobbit", "author": "J.R.R.Tolkien", "synopsis": "An Unexpected Journey", "copies": 2}
+                {"title": "Untitled", "synopsis": "No author"}
+                {"title": "Dune", "author": "Frank Herbert", "synopsis": "Spice"}
+                """;
+
+        // WHEN the file is posted to the import endpoint
+        var resultActions = mockMvc.perform(post("/books/import")
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType("application/x-ndjson")
+                .content(ndjson));
+
+        // THEN the response is 200 OK with a summary of the import
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.received", is(3)))
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.failed", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(2)))
+                .andExpect(jsonPath("$.errorsTruncated", is(false)));
+        // AND the valid books are stored with their copies
+        assertThat(bookRepository.findAll())
+                .extracting(Book::getTitle, Book::getAvailableCopies)
+                .containsExactlyInAnyOrder(
+                        tuple("The Hobbit", 2),
+                        tuple("Dune", 1));
+    }
+
+    @Test
+    @DisplayName("POST /books/import with a JSON array should insert every book")
+    void importBooks_whenGivenJsonArray_andUserIsAdmin_shouldImportBooks() throws Exception {
+        // GIVEN an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // AND a JSON array of two books
+        String json = """
+                [{"title": "The Hobbit", "author": "J.R.R.Tolkien", "synopsis": "An Unexpected Journey"},
+                 {"title": "Dune", "author": "Frank Herbert", "synopsis": "Spice"}]
+                """;
+
+        // WHEN the array is posted to the import endpoint
+        var resultActions = mockMvc.perform(post("/books/import")
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json));
+
+        // THEN both books are imported
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.failed", is(0)));
+        assertThat(bookRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("POST /books/import should return 403 Forbidden for a non-admin user")
+    void importBooks_whenUserIsNotAdmin_shouldReturn403() throws Exception {
+        // GIVEN a non-admin user is logged in
+        User regularUser = new User("user@example.com", "Test User", "ROLE_USER");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), regularUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN they post a book to the import endpoint
+        var resultActions = mockMvc.perform(post("/books/import")
+                .with(authentication(auth))
+                .with(csrf())
+                .contentType("application/x-ndjson")
+                .content("{\"title\": \"Dune\", \"author\": \"Frank Herbert\", \"synopsis\": \"Spice\"}"));
+
+        // THEN the response should be 403 Forbidden and nothing is imported
+        resultActions.andExpect(status().isForbidden());
+        assertThat(bookRepository.count()).isZero();
+    }
+
     @Test
     @WithMockUser
     @DisplayName("DELETE /books/{id} for a logged in Admin user should delete the book and return 204 No Content")
@@ -244,6 +836,34 @@ public class BookControllerIntegrationTest {
         resultActions.andExpect(status().isNoContent());
     }
 
+    @Test
+    @DisplayName("DELETE /books/{id} should remove the book once and return 404 Not Found afterwards")
+    void deleteBook_whenDeletedTwice_shouldReturn404TheSecondTime() throws Exception {
+        // GIVEN a book that exists in the database and an admin user who is logged in
+        Book existingBook = new Book("To Be Deleted", "Deleted Author", "Deleted Synopsis");
+        bookRepository.save(existingBook);
+        UUID bookId = existingBook.getId();
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN the book is deleted
+        mockMvc.perform(delete("/books/{bookId}", bookId).with(authentication(auth)).with(csrf()))
+                // THEN it is gone from the database and from the suggestions
+                .andExpect(status().isNoContent());
+        assertThat(bookRepository.existsById(bookId)).isFalse();
+        assertThat(bookSuggestionIndex.suggest("to be deleted", 10)).isEmpty();
+
+        // WHEN it is deleted again
+        var resultActions = mockMvc.perform(delete("/books/{bookId}", bookId)
+                .with(authentication(auth))
+                .with(csrf()));
+
+        // THEN the response is 404 Not Found
+        resultActions.andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error", is("Book not found with id: " + bookId)));
+    }
+
     @Test
     @DisplayName("DELETE /books/{id} should return 403 Forbidden for a non-admin user")
     void deleteBook_whenBookExists_andUserIsNotAdmin_shouldReturn403() throws Exception {
@@ -305,6 +925,232 @@ public class BookControllerIntegrationTest {
         assertThat(firstItemReservationsLink).endsWith("/books/" + firstItemId + "/reservations");
     }
 
+    @Test
+    @DisplayName("GET /books with a cursor should walk every book exactly once by following the next links")
+    void getAllBooks_whenPagingWithCursor_shouldReturnEveryBookOnceAndEndWithoutNextLink() throws Exception {
+        // GIVEN that there are 15 books in the database
+        for (int i = 1; i <= 15; i++) {
+            bookRepository.save(new Book("Book Title " +i, "Author " +i, "Synopsis " +i));
+        }
+
+        // AND a non-admin user
+        User regularUser = new User("user@example.com", "Test User", "ROLE_USER");
+        // AND that user is logged in
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), regularUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN the first cursor page is requested with size 4
+        MvcResult mvcResult = mockMvc.perform(get("/books")
+                        .param("limit", "4")
+                        .param("after", "")
+                        .with(authentication(auth)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(4)))
+                .andReturn();
+
+        // AND every following page is requested through the next link
+        Set<String> seenIds = new HashSet<>();
+        int pages = 1;
+        String responseBody = mvcResult.getResponse().getContentAsString();
+        seenIds.addAll(JsonPath.read(responseBody, "$.items[*].id"));
+        String next = JsonPath.read(responseBody, "$.next");
+        while (next != null) {
+            responseBody = mockMvc.perform(get(URI.create(next)).with(authentication(auth)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            seenIds.addAll(JsonPath.read(responseBody, "$.items[*].id"));
+            next = JsonPath.read(responseBody, "$.next");
+            pages++;
+        }
+
+        // THEN all 15 books are returned exactly once across 4 pages
+        assertThat(seenIds).hasSize(15);
+        assertThat(pages).isEqualTo(4);
+        // AND the cursor pages do not report a total count
+        assertThat((Object) JsonPath.read(responseBody, "$.totalCount")).isNull();
+    }
+
+    @Test
+    @DisplayName("GET /books with a malformed cursor should return 400 Bad Request")
+    void getAllBooks_whenCursorIsMalformed_shouldReturn400() throws Exception {
+        // GIVEN a non-admin user
+        User regularUser = new User("user@example.com", "Test User", "ROLE_USER");
+        // AND that user is logged in
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), regularUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN a request is made with a cursor that was not issued by the API
+        var resultActions = mockMvc.perform(get("/books")
+                .param("after", "not-a-cursor")
+                .with(authentication(auth)));
+
+        // THEN the response should be 400 Bad Request
+        resultActions.andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("Invalid pagination cursor: not-a-cursor")));
+    }
+
+    @Test
+    @DisplayName("GET /books with a well-formed cursor of other sort keys should return 400 Bad Request")
+    void getAllBooks_whenCursorKeysDoNotMatchTheSort_shouldReturn400() throws Exception {
+        // GIVEN a non-admin user
+        User regularUser = new User("user@example.com", "Test User", "ROLE_USER");
+        // AND that user is logged in
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), regularUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+        // AND a cursor that decodes, but names a key the books are not sorted on
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("foo=u:" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+
+        // WHEN a request is made with that cursor
+        var resultActions = mockMvc.perform(get("/books")
+                .param("after", cursor)
+                .with(authentication(auth)));
+
+        // THEN the response should be 400 Bad Request
+        resultActions.andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("Invalid pagination cursor: " + cursor)));
+    }
+
+    @Test
+    @DisplayName("GET /books?count=none should return the page and a next link without a total count")
+    void getAllBooks_whenCountModeIsNone_shouldOmitTotalCountAndLinkToNextOffset() throws Exception {
+        // GIVEN that there are 15 books in the database
+        for (int i = 1; i <= 15; i++) {
+            bookRepository.save(new Book("Book Title " +i, "Author " +i, "Synopsis " +i));
+        }
+
+        // AND a non-admin user
+        User regularUser = new User("user@example.com", "Test User", "ROLE_USER");
+        // AND that user is logged in
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), regularUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN the second page of size 5 is requested without a count
+        var resultActions = mockMvc.perform(get("/books")
+                .param("offset", "5")
+                .param("limit", "5")
+                .param("count", "none")
+                .with(authentication(auth)));
+
+        // THEN the page is returned without a total count
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(5)))
+                .andExpect(jsonPath("$.items[0].title", is("Book Title 6")))
+                .andExpect(jsonPath("$.totalCount").doesNotExist())
+                // AND it links to the third page
+                .andExpect(jsonPath("$.next", endsWith("offset=10&limit=5")));
+    }
+
+    @Test
+    @DisplayName("GET /books?count=estimated should fill the total count from the estimated collection size")
+    void getAllBooks_whenCountModeIsEstimated_shouldReturnEstimatedTotalCount() throws Exception {
+        // GIVEN that there are 15 books in the database
+        for (int i = 1; i <= 15; i++) {
+            bookRepository.save(new Book("Book Title " +i, "Author " +i, "Synopsis " +i));
+        }
+
+        // AND a non-admin user
+        User regularUser = new User("user@example.com", "Test User", "ROLE_USER");
+        // AND that user is logged in
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), regularUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // AND the cached estimates are up to date
+        estimatedCountService.refreshEstimates();
+
+        // WHEN the first page is requested with an estimated count
+        var resultActions = mockMvc.perform(get("/books")
+                .param("limit", "5")
+                .param("count", "estimated")
+                .with(authentication(auth)));
+
+        // THEN the total count reflects the size of the collection
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(5)))
+                .andExpect(jsonPath("$.totalCount", is(15)));
+    }
+
+    @Test
+    @DisplayName("GET /books with an unknown count mode should return 400 Bad Request")
+    void getAllBooks_whenCountModeIsUnknown_shouldReturn400() throws Exception {
+        // GIVEN a non-admin user
+        User regularUser = new User("user@example.com", "Test User", "ROLE_USER");
+        // AND that user is logged in
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), regularUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // WHEN a request is made with a count mode that does not exist
+        var resultActions = mockMvc.perform(get("/books")
+                .param("count", "approximately")
+                .with(authentication(auth)));
+
+        // THEN the response should be 400 Bad Request
+        resultActions.andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("Invalid count mode: approximately")));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("GET /books/{id} a second time should be served from the book cache")
+    void getBookById_whenRequestedTwice_shouldHitTheCache() throws Exception {
+        // GIVEN a book exists in the database
+        Book testBook = new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey");
+        bookRepository.save(testBook);
+        CacheStats before = bookCacheStats();
+
+        // WHEN the book is requested twice
+        mockMvc.perform(get("/books/{bookId}", testBook.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/books/{bookId}", testBook.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("The Hobbit")));
+
+        // THEN the first request is a miss and the second one a hit
+        CacheStats after = bookCacheStats();
+        assertThat(after.missCount() - before.missCount()).isEqualTo(1);
+        assertThat(after.hitCount() - before.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("PUT and DELETE /books/{id} should invalidate the cached book")
+    void updateAndDeleteBook_whenBookIsCached_shouldInvalidateCacheEntry() throws Exception {
+        // GIVEN a book that exists in the database
+        Book existingBook = new Book("Original Title", "Original Author", "Original Synopsis");
+        bookRepository.save(existingBook);
+        UUID bookId = existingBook.getId();
+
+        // AND an admin user is logged in
+        User adminUser = new User("user@example.com", "Test User", "ROLE_ADMIN");
+        CustomOAuth2User principal = new CustomOAuth2User(mock(OidcUser.class), adminUser);
+        var auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+
+        // AND the book has been read into the cache
+        mockMvc.perform(get("/books/{bookId}", bookId).with(authentication(auth))).andExpect(status().isOk());
+
+        // WHEN the book is updated
+        BookInput updatedBookInput = new BookInput();
+        updatedBookInput.setTitle("Updated Title");
+        updatedBookInput.setAuthor("Updated Author");
+        updatedBookInput.setSynopsis("Updated Synopsis");
+        mockMvc.perform(put("/books/{bookId}", bookId)
+                        .with(authentication(auth))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedBookInput)))
+                .andExpect(status().isOk());
+
+        // THEN the next read returns the updated book
+        mockMvc.perform(get("/books/{bookId}", bookId).with(authentication(auth)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("Updated Title")));
+
+        // AND WHEN the book is deleted
+        mockMvc.perform(delete("/books/{bookId}", bookId).with(authentication(auth)))
+                .andExpect(status().isNoContent());
+
+        // THEN the next read no longer finds it
+        mockMvc.perform(get("/books/{bookId}", bookId).with(authentication(auth)))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     @DisplayName("Temporary Test: Verify UserRepository can save and find a user")
     void userRepository_shouldSaveAndFindUser() {
@@ -329,4 +1175,37 @@ public class BookControllerIntegrationTest {
         // Clean up this specific user
         userRepository.deleteById(newUser.getId());
     }
-}
\ No newline at end of file
+
+    private CacheStats bookCacheStats() {
+        CaffeineCache bookCache = (CaffeineCache) cacheManager.getCache(BookService.BOOK_CACHE);
+        return bookCache.getNativeCache().stats();
+    }
+
+    /**
+     * Skips the calling test when the MongoDB server cannot run $text queries, as some embedded test
+     * servers cannot. A real server always can once the text index exists. Call it once books are
+     * stored, such servers only fail when they evaluate the query against a document.
+     */
+    private void assumeTextSearchSupported() {
+        assumeServerSupports("text search",
+                () -> mongoTemplate.find(TextQuery.queryText(TextCriteria.forDefaultLanguage().matching("probe")), Book.class));
+    }
+
+    /**
+     * Skips the calling test when the MongoDB server cannot run updates given as an aggregation pipeline,
+     * which a real server can from MongoDB 4.2.
+     */
+    private void assumeUpdatePipelinesSupported() {
+        assumeServerSupports("update pipelines", () -> mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(UUID.randomUUID())),
+                AggregationUpdate.update().set("version").toValue(0), Book.class));
+    }
+
+    private void assumeServerSupports(String feature, Runnable probe) {
+        try {
+            probe.run();
+        } catch (RuntimeException ex) {
+            assumeTrue(false, "The MongoDB server does not support " + feature + ": " + ex.getMessage());
+        }
+    }
+}
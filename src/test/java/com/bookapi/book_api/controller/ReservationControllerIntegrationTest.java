@@ -4,30 +4,42 @@ package com.bookapi.book_api.controller;
 import com.bookapi.book_api.model.Book;
 import com.bookapi.book_api.model.CustomOAuth2User;
 import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
 import com.bookapi.book_api.model.User;
 import com.bookapi.book_api.repository.BookRepository;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
 import com.bookapi.book_api.repository.ReservationRepository;
 import com.bookapi.book_api.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -44,12 +56,15 @@ public class ReservationControllerIntegrationTest {
     @Autowired
     private BookRepository bookRepository;
 
-    @Autowired
+    @MockitoSpyBean
     private ReservationRepository reservationRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ReservationQuotaRepository reservationQuotaRepository;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -58,6 +73,7 @@ public class ReservationControllerIntegrationTest {
         reservationRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
+        reservationQuotaRepository.deleteAll();
     }
 
     @Test
@@ -66,8 +82,8 @@ public class ReservationControllerIntegrationTest {
         // GIVEN a scenario with a book and an existing user
         var fixture = setUpMultiUserScenario();
 
-        // AND userOne is logged in
-        var auth = createAuthenticationFor(fixture.userOne());
+        // AND userTwo, who has no reservation of the book yet, is logged in
+        var auth = createAuthenticationFor(fixture.userTwo());
 
         // WHEN a POST request is made to the reservations endpoint
         var resultActions = mockMvc.perform(post("/books/{bookId}/reservations", fixture.book().getId())
@@ -78,7 +94,152 @@ public class ReservationControllerIntegrationTest {
                 // AND the response body should contain the new Reservation document
                 .andExpect(jsonPath("$.id").isNotEmpty())
                 .andExpect(jsonPath("$.bookId", is(fixture.book().getId().toString())))
-                .andExpect(jsonPath("$.userId", is(fixture.userOne().getId().toString())));
+                .andExpect(jsonPath("$.userId", is(fixture.userTwo().getId().toString())));
+    }
+
+    @Test
+    @DisplayName("POST /reservations should take a copy of the book and return 409 Conflict once none are left")
+    void postReservation_whenNoCopiesAreLeft_shouldReturn409() throws Exception {
+        // GIVEN a book with a single copy and two users
+        var fixture = setUpMultiUserScenario();
+        Book book = bookRepository.save(new Book("A Rare Book", "Test Author", "Test Synopsis", 1));
+
+        // AND userOne reserves the only copy
+        mockMvc.perform(post("/books/{bookId}/reservations", book.getId())
+                        .with(authentication(createAuthenticationFor(fixture.userOne()))))
+                .andExpect(status().isCreated());
+
+        // WHEN userTwo tries to reserve the same book
+        var resultActions = mockMvc.perform(post("/books/{bookId}/reservations", book.getId())
+                .with(authentication(createAuthenticationFor(fixture.userTwo()))));
+
+        // THEN the response should be 409 Conflict
+        resultActions.andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").isNotEmpty());
+        // AND the book has no copy left
+        mockMvc.perform(get("/books/{bookId}", book.getId())
+                        .with(authentication(createAuthenticationFor(fixture.userTwo()))))
+                .andExpect(jsonPath("$.copies", is(1)))
+                .andExpect(jsonPath("$.availableCopies", is(0)));
+    }
+
+    @Test
+    @DisplayName("POST /reservations should return 409 Conflict when the user already holds an active reservation of the book")
+    void postReservation_whenUserAlreadyReservedTheBook_shouldReturn409() throws Exception {
+        // GIVEN a book with two copies, one of them reserved by userOne
+        var fixture = setUpMultiUserScenario();
+        Book book = bookRepository.save(new Book("A Popular Book", "Test Author", "Test Synopsis", 2));
+        var auth = createAuthenticationFor(fixture.userOne());
+        MvcResult created = mockMvc.perform(post("/books/{bookId}/reservations", book.getId())
+                        .with(authentication(auth)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String reservationId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        // WHEN userOne reserves the same book again
+        // THEN the response is 409 Conflict and the second copy is still available
+        mockMvc.perform(post("/books/{bookId}/reservations", book.getId()).with(authentication(auth)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").isNotEmpty());
+        mockMvc.perform(get("/books/{bookId}", book.getId()).with(authentication(auth)))
+                .andExpect(jsonPath("$.availableCopies", is(1)));
+
+        // WHEN the first reservation is cancelled
+        mockMvc.perform(delete("/books/{bookId}/reservations/{reservationId}", book.getId(), reservationId)
+                        .with(authentication(auth)))
+                .andExpect(status().isNoContent());
+        // THEN userOne may reserve the book again
+        assumePartialIndexesSupported();
+        mockMvc.perform(post("/books/{bookId}/reservations", book.getId()).with(authentication(auth)))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    @DisplayName("DELETE /reservations/{id} should give the reserved copy back to the book")
+    void deleteReservation_whenReservationWasCreated_shouldReturnCopy() throws Exception {
+        // GIVEN a book with a single copy reserved by userOne
+        var fixture = setUpMultiUserScenario();
+        Book book = bookRepository.save(new Book("A Rare Book", "Test Author", "Test Synopsis", 1));
+        var auth = createAuthenticationFor(fixture.userOne());
+        MvcResult created = mockMvc.perform(post("/books/{bookId}/reservations", book.getId())
+                        .with(authentication(auth)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String reservationId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+
+        // WHEN the reservation is cancelled
+        mockMvc.perform(delete("/books/{bookId}/reservations/{reservationId}", book.getId(), reservationId)
+                        .with(authentication(auth)))
+                .andExpect(status().isNoContent());
+
+        // THEN the copy is available again
+        mockMvc.perform(get("/books/{bookId}", book.getId()).with(authentication(auth)))
+                .andExpect(jsonPath("$.availableCopies", is(1)));
+    }
+
+    @Test
+    @DisplayName("DELETE /reservations/{id} should keep the reservation as cancelled and refuse to cancel it again")
+    void deleteReservation_whenCancelledTwice_shouldKeepItCancelledAndReturn409() throws Exception {
+        // GIVEN a reservation of userOne
+        var fixture = setUpMultiUserScenario();
+        var auth = createAuthenticationFor(fixture.userOne());
+        UUID reservationId = fixture.reservationForUserOne().getId();
+
+        // WHEN it is cancelled
+        mockMvc.perform(delete("/books/{bookId}/reservations/{reservationId}", fixture.book().getId(), reservationId)
+                        .with(authentication(auth)))
+                .andExpect(status().isNoContent());
+
+        // THEN it can still be read, as cancelled
+        mockMvc.perform(get("/books/{bookId}/reservations/{reservationId}", fixture.book().getId(), reservationId)
+                        .with(authentication(auth)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state", is("Cancelled")))
+                .andExpect(jsonPath("$.closedAt").isNotEmpty());
+
+        // WHEN it is cancelled again
+        // THEN the second cancellation conflicts with its state
+        mockMvc.perform(delete("/books/{bookId}/reservations/{reservationId}", fixture.book().getId(), reservationId)
+                        .with(authentication(auth)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").isNotEmpty());
+    }
+
+    @Test
+    @DisplayName("POST /reservations/{id}/fulfilment should let an admin fulfil a reservation, which can then not be cancelled")
+    void fulfilReservation_whenUserIsAdmin_shouldFulfilItAndKeepTheCopy() throws Exception {
+        // GIVEN a book with a single copy reserved by userOne, and an admin
+        var fixture = setUpMultiUserScenario();
+        Book book = bookRepository.save(new Book("A Rare Book", "Test Author", "Test Synopsis", 1));
+        var userAuth = createAuthenticationFor(fixture.userOne());
+        MvcResult created = mockMvc.perform(post("/books/{bookId}/reservations", book.getId())
+                        .with(authentication(userAuth)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String reservationId = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+        User adminUser = userRepository.save(new User("admin@example.com", "Admin User", "ROLE_ADMIN"));
+
+        // WHEN the owner tries to fulfil it
+        // THEN only an admin may
+        mockMvc.perform(post("/books/{bookId}/reservations/{reservationId}/fulfilment", book.getId(), reservationId)
+                        .with(authentication(userAuth)))
+                .andExpect(status().isForbidden());
+
+        // WHEN the admin fulfils it
+        mockMvc.perform(post("/books/{bookId}/reservations/{reservationId}/fulfilment", book.getId(), reservationId)
+                        .with(authentication(createAuthenticationFor(adminUser))))
+        // THEN it is fulfilled
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state", is("Fulfilled")))
+                .andExpect(jsonPath("$.closedAt").isNotEmpty());
+
+        // WHEN the owner cancels it afterwards
+        // THEN the cancellation conflicts and the copy stays with the user
+        mockMvc.perform(delete("/books/{bookId}/reservations/{reservationId}", book.getId(), reservationId)
+                        .with(authentication(userAuth)))
+                .andExpect(status().isConflict());
+        mockMvc.perform(get("/books/{bookId}", book.getId()).with(authentication(userAuth)))
+                .andExpect(jsonPath("$.availableCopies", is(0)));
     }
 
     @Test
@@ -172,6 +333,52 @@ public class ReservationControllerIntegrationTest {
         resultActions.andExpect(status().isForbidden());
     }
 
+    @Test
+    @DisplayName("GET /reservations/{id} should read the reservation once for both the ownership check and the response")
+    void getReservationById_whenUserIsOwner_shouldReadReservationOnce() throws Exception {
+        // GIVEN a scenario with a book, an existing user, and a reservation by that user
+        var fixture = setUpMultiUserScenario();
+        UUID reservationId = fixture.reservationForUserOne().getId();
+
+        // AND that user is logged in
+        var auth = createAuthenticationFor(fixture.userOne());
+        // AND the repository calls made while setting up are not counted
+        clearInvocations(reservationRepository);
+
+        // WHEN a GET request is made to the reservation endpoint
+        var resultActions = mockMvc.perform(get(
+                "/books/{bookId}/reservations/{reservationId}", fixture.book().getId(), reservationId)
+                .with(authentication(auth)));
+
+        // THEN the response should be 200 OK
+        resultActions.andExpect(status().isOk());
+        // AND the reservation was loaded from the repository only once
+        verify(reservationRepository, times(1)).findById(reservationId);
+    }
+
+    @Test
+    @DisplayName("DELETE /reservations/{id} should read the reservation once for both the ownership check and the delete")
+    void deleteReservation_whenUserIsOwner_shouldReadReservationOnce() throws Exception {
+        // GIVEN a scenario with a book, an existing user, and a reservation by that user
+        var fixture = setUpMultiUserScenario();
+        UUID reservationId = fixture.reservationForUserOne().getId();
+
+        // AND that user is logged in
+        var auth = createAuthenticationFor(fixture.userOne());
+        // AND the repository calls made while setting up are not counted
+        clearInvocations(reservationRepository);
+
+        // WHEN a DELETE request is made to the reservation endpoint
+        var resultActions = mockMvc.perform(delete(
+                "/books/{bookId}/reservations/{reservationId}", fixture.book().getId(), reservationId)
+                .with(authentication(auth)));
+
+        // THEN the response status should be 204 No Content
+        resultActions.andExpect(status().isNoContent());
+        // AND the reservation was loaded from the repository only once
+        verify(reservationRepository, times(1)).findById(reservationId);
+    }
+
     @Test
     @DisplayName("GET /reservations should return only the authenticated user's reservations- ]")
     void listReservations_whenCalledByUser_shouldReturnOnlyTheirReservations() throws Exception {
@@ -262,7 +469,7 @@ public class ReservationControllerIntegrationTest {
 
         // AND 2 more reservations
         reservationRepository.save(new Reservation(fixture.book().getId(), fixture.userTwo().getId()));
-        reservationRepository.save(new Reservation(fixture.book().getId(), fixture.userOne().getId()));
+        saveReservationOfAnotherBook(fixture.userOne());
 
         // AND an admin user
         User adminUser = new User("admin@example.com", "Admin User", "ROLE_ADMIN");
@@ -283,6 +490,67 @@ public class ReservationControllerIntegrationTest {
                 .andExpect(jsonPath("$.items.length()", is(1))); // The second page of size 2 should have only 1 item
     }
 
+    @Test
+    @DisplayName("GET /reservations with a cursor should page through only the user's reservations")
+    void listReservations_whenPagingWithCursor_shouldReturnUsersReservationsWithNextLink() throws Exception {
+        // GIVEN a scenario with a book, two existing users, and a reservation by userOne
+        var fixture = setUpMultiUserScenario();
+
+        // AND userOne has 2 more reservations and userTwo has one
+        saveReservationOfAnotherBook(fixture.userOne());
+        saveReservationOfAnotherBook(fixture.userOne());
+        reservationRepository.save(new Reservation(fixture.book().getId(), fixture.userTwo().getId()));
+
+        // AND userOne is logged in
+        var auth = createAuthenticationFor(fixture.userOne());
+
+        // WHEN the first cursor page is requested with a size of 2
+        MvcResult firstPage = mockMvc.perform(get("/reservations")
+                        .param("limit", "2")
+                        .param("after", "")
+                        .with(authentication(auth)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.next").isNotEmpty())
+                .andReturn();
+
+        // AND the next link is followed
+        String next = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.next");
+        var resultActions = mockMvc.perform(get(URI.create(next)).with(authentication(auth)));
+
+        // THEN the last page contains userOne's remaining reservation and no next link
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(1)))
+                .andExpect(jsonPath("$.items[0].userId", is(fixture.userOne().getId().toString())))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /reservations?count=none should return the user's reservations without a total count")
+    void listReservations_whenCountModeIsNone_shouldOmitTotalCount() throws Exception {
+        // GIVEN a scenario with a book, two existing users, and a reservation by userOne
+        var fixture = setUpMultiUserScenario();
+
+        // AND userOne has 2 more reservations
+        saveReservationOfAnotherBook(fixture.userOne());
+        saveReservationOfAnotherBook(fixture.userOne());
+
+        // AND userOne is logged in
+        var auth = createAuthenticationFor(fixture.userOne());
+
+        // WHEN the first page of size 2 is requested without a count
+        var resultActions = mockMvc.perform(get("/reservations")
+                .param("limit", "2")
+                .param("count", "none")
+                .with(authentication(auth)));
+
+        // THEN the page is returned without a total count but with a link to the next page
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()", is(2)))
+                .andExpect(jsonPath("$.totalCount").doesNotExist())
+                .andExpect(jsonPath("$.next").isNotEmpty());
+    }
+
     private record TestUsersAndReservation(
             User userOne,
             User userTwo,
@@ -315,6 +583,39 @@ public class ReservationControllerIntegrationTest {
         return new TestUsersAndReservation(userOne, userTwo, book, reservation);
     }
 
+    /**
+     * Helper method to save an active reservation of a new book, since a user holds at most one active
+     * reservation of each book.
+     *
+     * @param user The User the reservation belongs to.
+     * @return The saved Reservation.
+     */
+    private Reservation saveReservationOfAnotherBook(User user) {
+        Book book = bookRepository.save(new Book("Another Test Book", "Test Author", "Test Synopsis"));
+        return reservationRepository.save(new Reservation(book.getId(), user.getId()));
+    }
+
+    /**
+     * Skips the rest of the calling test when the MongoDB server enforces a unique index with a partial
+     * filter on every document, as some embedded test servers do. A real server only enforces it on the
+     * active reservations.
+     */
+    private void assumePartialIndexesSupported() {
+        UUID bookId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Reservation first = new Reservation(bookId, userId);
+        first.setState(ReservationState.CANCELLED);
+        Reservation second = new Reservation(bookId, userId);
+        second.setState(ReservationState.CANCELLED);
+        try {
+            reservationRepository.insert(List.of(first, second));
+        } catch (DuplicateKeyException ex) {
+            assumeTrue(false, "The MongoDB server does not support partial indexes: " + ex.getMessage());
+        } finally {
+            reservationRepository.deleteAllById(List.of(first.getId(), second.getId()));
+        }
+    }
+
     /**
      * Helper method to build a mock {@link Authentication} object for a given {@link User}.
      * This is used with MockMvc's {@code .with(authentication(...))} to simulate
@@ -0,0 +1,68 @@
+package com.bookapi.book_api.mapper;
+
+import com.bookapi.book_api.controller.BookController;
+import com.bookapi.book_api.controller.ReservationController;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LinkTemplateTest {
+
+    @Test
+    @DisplayName("A template should expand every variable in order between its literal parts")
+    void expand_whenGivenValues_shouldFillVariablesInOrder() {
+        // GIVEN a template with two variables
+        LinkTemplate template = LinkTemplate.compile("/books/{bookId}/reservations/{reservationId}");
+        UUID bookId = UUID.randomUUID();
+        UUID reservationId = UUID.randomUUID();
+
+        // WHEN it is expanded against a base URI
+        String href = template.expand("http://localhost", bookId, reservationId);
+
+        // THEN the values are placed in their slots after the base URI
+        assertThat(href).isEqualTo("http://localhost/books/" + bookId + "/reservations/" + reservationId);
+    }
+
+    @Test
+    @DisplayName("A template compiled from a controller method should use that method's mapped path")
+    void forMethod_whenMethodIsMapped_shouldCompileItsPath() {
+        // GIVEN the book and reservation endpoints
+        UUID bookId = UUID.randomUUID();
+
+        // WHEN templates are compiled from the controller methods
+        LinkTemplate self = LinkTemplate.forMethod(BookController.class, "getBookById", UUID.class, String.class);
+        LinkTemplate reservations = LinkTemplate.forMethod(ReservationController.class, "createReservation", UUID.class);
+
+        // THEN they expand to the paths declared in the API contract
+        assertThat(self.expand("", bookId)).isEqualTo("/books/" + bookId);
+        assertThat(reservations.expand("", bookId)).isEqualTo("/books/" + bookId + "/reservations");
+    }
+
+    @Test
+    @DisplayName("Values should be encoded as path segments")
+    void expand_whenValueHasReservedCharacters_shouldEncodeIt() {
+        // GIVEN a template with one variable
+        LinkTemplate template = LinkTemplate.compile("/books/{bookId}");
+
+        // WHEN it is expanded with a value containing a slash and a space
+        String href = template.expand("", "a/b c");
+
+        // THEN the value cannot break out of its segment
+        assertThat(href).isEqualTo("/books/a%2Fb%20c");
+    }
+
+    @Test
+    @DisplayName("Expanding with the wrong number of values should fail")
+    void expand_whenValueCountDoesNotMatch_shouldThrow() {
+        // GIVEN a template with one variable
+        LinkTemplate template = LinkTemplate.compile("/books/{bookId}");
+
+        // WHEN it is expanded without a value THEN it fails
+        assertThatThrownBy(() -> template.expand(""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
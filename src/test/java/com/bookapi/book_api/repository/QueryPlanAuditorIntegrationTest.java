@@ -0,0 +1,83 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.repository.QueryPlanAuditor.QueryShape;
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+@SpringBootTest
+public class QueryPlanAuditorIntegrationTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private QueryPlanAuditor queryPlanAuditor;
+
+    @Test
+    @DisplayName("The audited shapes should include the queries of the book deletion worker")
+    void queryShapes_shouldIncludeBookDeletionQueries() {
+        // GIVEN the shapes built from the repositories' queries
+        List<QueryShape> shapes = queryPlanAuditor.queryShapes();
+
+        // WHEN the book deletion shapes are looked up
+        QueryShape claimNext = shape(shapes, "BookDeletionRepository.claimNext");
+        QueryShape countUnfinished = shape(shapes, "BookDeletionRepository.countByCompletedAtIsNull");
+
+        // THEN claimNext reads the oldest unfinished deletion and the count reads every unfinished one
+        assertThat(claimNext.collection()).isEqualTo("bookDeletions");
+        assertThat(claimNext.filter()).containsKeys("completedAt", "requestedAt", "$or");
+        assertThat(claimNext.sort()).isEqualTo(new Document("requestedAt", 1));
+        assertThat(countUnfinished.filter()).isEqualTo(new Document("completedAt", null));
+    }
+
+    @Test
+    @DisplayName("Keyset shapes should seek past the position on the stored field names")
+    void queryShapes_forKeysetWindows_shouldSeekOnStoredFieldNames() {
+        // GIVEN the shapes built from the repositories' queries
+        List<QueryShape> shapes = queryPlanAuditor.queryShapes();
+
+        // WHEN the reservation cursor shape is looked up
+        QueryShape cursor = shape(shapes, "ReservationRepository.findAllBy(cursor)");
+
+        // THEN it is sorted and seeks on reservedAt then _id, as MongoTemplate.scroll sends it
+        assertThat(cursor.sort()).isEqualTo(new Document("reservedAt", 1).append("_id", 1));
+        List<Document> keyset = cursor.filter().getList("$or", Document.class);
+        assertThat(keyset).hasSize(2);
+        assertThat(keyset.get(0).keySet()).containsExactly("reservedAt");
+        assertThat(keyset.get(1).keySet()).containsExactly("reservedAt", "_id");
+    }
+
+    @Test
+    @DisplayName("Every audited shape should be a query the server accepts")
+    void queryShapes_shouldRunOnTheServer() {
+        // GIVEN the audited shapes, text search aside, which not every test server supports
+        List<QueryShape> shapes = queryPlanAuditor.queryShapes().stream()
+                .filter(shape -> !shape.filter().containsKey("$text"))
+                .toList();
+
+        // WHEN each of them is run
+        // THEN the mapped filters and sorts are encoded and accepted
+        for (QueryShape shape : shapes) {
+            assertThatCode(() -> mongoTemplate.getCollection(shape.collection())
+                    .find(shape.filter()).sort(shape.sort()).first())
+                    .as(shape.name())
+                    .doesNotThrowAnyException();
+        }
+    }
+
+    private QueryShape shape(List<QueryShape> shapes, String name) {
+        return shapes.stream()
+                .filter(shape -> shape.name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,53 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+public class UserRepositoryIntegrationTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("upsertByEmail should insert a new user with an id and the default role")
+    void upsertByEmail_whenUserIsNew_shouldInsertUser() {
+        // GIVEN no user with the email exists
+
+        // WHEN the user is upserted
+        User user = userRepository.upsertByEmail("new.user@example.com", "New User", "ROLE_USER");
+
+        // THEN the user is stored with a generated id and the default role
+        assertThat(user.getId()).isNotNull();
+        assertThat(user.getRole()).isEqualTo("ROLE_USER");
+        assertThat(userRepository.findByEmail("new.user@example.com"))
+                .hasValueSatisfying(stored -> assertThat(stored.getId()).isEqualTo(user.getId()));
+    }
+
+    @Test
+    @DisplayName("upsertByEmail should update the name of an existing user and keep their id and role")
+    void upsertByEmail_whenUserExists_shouldUpdateNameOnly() {
+        // GIVEN an existing admin user
+        User existingUser = userRepository.save(new User("admin@example.com", "Old Name", "ROLE_ADMIN"));
+
+        // WHEN the user is upserted with a new name
+        User user = userRepository.upsertByEmail("admin@example.com", "New Name", "ROLE_USER");
+
+        // THEN the stored user keeps their id and role and has the new name
+        assertThat(user.getId()).isEqualTo(existingUser.getId());
+        assertThat(user.getRole()).isEqualTo("ROLE_ADMIN");
+        assertThat(user.getName()).isEqualTo("New Name");
+        assertThat(userRepository.count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,250 @@
+package com.bookapi.book_api.repository;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.repository.UuidMigrator.CollectionReport;
+import com.bookapi.book_api.repository.UuidMigrator.UuidMigrationReport;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.UuidRepresentation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoConnectionDetails;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Small batches, so the documents below are rewritten over several of them, and legacy UUIDs matched throughout
+@SpringBootTest(properties = {"book-api.uuid-migration.batch-size=2", "book-api.uuid-migration.pause=PT0S",
+        "book-api.uuid-migration.status-check-interval=PT1H"})
+public class UuidMigratorIntegrationTest {
+
+    private static final String EMAIL = "reader@example.com";
+
+    @Autowired
+    private UuidMigrator uuidMigrator;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoConnectionDetails mongoConnectionDetails;
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+        mongoTemplate.dropCollection(Reservation.HISTORY_COLLECTION);
+        mongoTemplate.dropCollection(UuidMigrator.JOURNAL_COLLECTION);
+        mongoTemplate.dropCollection(UuidMigrator.STATUS_COLLECTION);
+    }
+
+    @Test
+    @DisplayName("migrate should rewrite legacy binary and string UUIDs as standard binary UUIDs")
+    void migrate_whenIdsAreStoredInOtherRepresentations_shouldRewriteThemAsStandardUuids() {
+        // GIVEN books stored with legacy binary ids, a user with a string id, and reservations referencing them
+        // in both representations
+        UUID bookId = UUID.randomUUID();
+        UUID otherBookId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        UUID reservationId = UUID.randomUUID();
+        insert("books", book(legacy(bookId), "The Hobbit"));
+        insert("books", book(legacy(otherBookId), "Dune"));
+        insert("users", new BsonDocument("_id", new BsonString(userId.toString()))
+                .append("email", new BsonString("reader@example.com"))
+                .append("name", new BsonString("Reader"))
+                .append("role", new BsonString("ROLE_USER")));
+        insert("reservations", new BsonDocument("_id", legacy(reservationId))
+                .append("bookId", legacy(bookId))
+                .append("userId", new BsonString(userId.toString())));
+        // AND a reservation whose id is already standard, only its references are not
+        UUID standardReservationId = UUID.randomUUID();
+        insert("reservations", new BsonDocument("_id", new BsonBinary(standardReservationId, UuidRepresentation.STANDARD))
+                .append("bookId", legacy(otherBookId))
+                .append("userId", legacy(userId)));
+        // AND a book stored by the application, which is standard already
+        Book standardBook = bookRepository.save(new Book("Emma", "Jane Austen", "Synopsis"));
+        // AND a closed reservation in the history with a legacy id
+        UUID closedReservationId = UUID.randomUUID();
+        insert(Reservation.HISTORY_COLLECTION, new BsonDocument("_id", legacy(closedReservationId))
+                .append("bookId", legacy(bookId))
+                .append("userId", legacy(userId)));
+        // AND the legacy documents are read, and found by id and by reference before they are migrated
+        assertThat(bookRepository.findAll()).extracting(Book::getId).contains(bookId, otherBookId);
+        assertThat(bookRepository.findById(bookId)).isPresent();
+        assertThat(reservationRepository.findById(reservationId)).isPresent();
+        assertThat(reservationRepository.findInHistory(closedReservationId)).isPresent();
+        assertThat(reservationRepository.findByUserId(userId, PageRequest.of(0, 10)))
+                .extracting(Reservation::getId)
+                .containsExactlyInAnyOrder(reservationId, standardReservationId);
+        assertThat(uuidMigrator.completed()).isFalse();
+
+        // WHEN the ids are migrated
+        UuidMigrationReport report = uuidMigrator.migrate();
+
+        // THEN every document is found by its id, with its references
+        assertThat(bookRepository.findById(bookId)).hasValueSatisfying(book ->
+                assertThat(book.getTitle()).isEqualTo("The Hobbit"));
+        assertThat(bookRepository.findById(otherBookId)).isPresent();
+        assertThat(userRepository.findById(userId)).hasValueSatisfying(user ->
+                assertThat(user.getEmail()).isEqualTo("reader@example.com"));
+        assertThat(reservationRepository.findById(reservationId)).hasValueSatisfying(reservation -> {
+            assertThat(reservation.getBookId()).isEqualTo(bookId);
+            assertThat(reservation.getUserId()).isEqualTo(userId);
+        });
+        assertThat(reservationRepository.findById(standardReservationId))
+                .map(Reservation::getBookId).hasValue(otherBookId);
+        assertThat(mongoTemplate.findById(closedReservationId, Reservation.class, Reservation.HISTORY_COLLECTION))
+                .extracting(Reservation::getUserId).isEqualTo(userId);
+        // AND only the documents that were not standard are rewritten, none is lost or duplicated
+        assertThat(report.collections())
+                .filteredOn(collection -> collection.collection().equals("books"))
+                .singleElement()
+                .satisfies(books -> {
+                    assertThat(books.rewrittenDocuments()).isEqualTo(2);
+                    assertThat(books.before().documents()).isEqualTo(3);
+                    assertThat(books.after().documents()).isEqualTo(3);
+                });
+        assertThat(report.collections())
+                .extracting(CollectionReport::collection)
+                .contains("books", "users", "reservations", Reservation.HISTORY_COLLECTION, "bookDeletions");
+        assertThat(bookRepository.findById(standardBook.getId())).isPresent();
+        assertThat(mongoTemplate.getCollection(UuidMigrator.JOURNAL_COLLECTION).countDocuments()).isZero();
+        // AND the migration is recorded as complete, nothing was left
+        assertThat(report.completed()).isTrue();
+        assertThat(uuidMigrator.completed()).isTrue();
+
+        // WHEN the migration runs again
+        UuidMigrationReport secondReport = uuidMigrator.migrate();
+
+        // THEN there is nothing left to rewrite
+        assertThat(secondReport.collections()).extracting(CollectionReport::rewrittenDocuments).containsOnly(0L);
+    }
+
+    @Test
+    @DisplayName("migrate should complete the documents journaled by a migration that stopped halfway")
+    void migrate_whenJournalHasEntries_shouldCompleteThemFirst() {
+        // GIVEN a migration that journaled a book and stopped before it removed the legacy document
+        UUID bookId = UUID.randomUUID();
+        insert("books", book(legacy(bookId), "The Hobbit"));
+        insert(UuidMigrator.JOURNAL_COLLECTION, new BsonDocument("_id", new BsonObjectId())
+                .append("collection", new BsonString("books"))
+                .append("previousId", legacy(bookId))
+                .append("document", book(new BsonBinary(bookId, UuidRepresentation.STANDARD), "The Hobbit")));
+
+        // WHEN the migration runs again
+        UuidMigrationReport report = uuidMigrator.migrate();
+
+        // THEN the journaled book is stored once under its new id and the journal is cleared
+        assertThat(report.resumedDocuments()).isEqualTo(1);
+        assertThat(bookRepository.findById(bookId)).isPresent();
+        assertThat(bookRepository.count()).isEqualTo(1);
+        assertThat(mongoTemplate.getCollection(UuidMigrator.JOURNAL_COLLECTION).countDocuments()).isZero();
+    }
+
+    @Test
+    @DisplayName("A login while an online migration moves the user should neither register them again nor stop it")
+    void migrate_whenTheUserLogsInDuringAMove_shouldKeepASingleUser() {
+        // GIVEN a user stored with a legacy binary id
+        UUID userId = UUID.randomUUID();
+        insert("users", new BsonDocument("_id", legacy(userId))
+                .append("email", new BsonString(EMAIL))
+                .append("name", new BsonString("Reader"))
+                .append("role", new BsonString("ROLE_ADMIN")));
+        // AND the user logs in right after every removal the migration makes, before the migration goes on
+        List<CompletableFuture<User>> logins = new CopyOnWriteArrayList<>();
+        CommandListener logInAfterRemovals = new CommandListener() {
+            @Override
+            public void commandSucceeded(CommandSucceededEvent event) {
+                if (event.getCommandName().equals("delete")) {
+                    CompletableFuture<User> login = CompletableFuture.supplyAsync(() ->
+                            userRepository.upsertByEmail(EMAIL, "Reader", "ROLE_USER"));
+                    logins.add(login);
+                    // A login that waits for the transaction of the move to commit cannot be waited for here
+                    login.completeOnTimeout(null, 1, TimeUnit.SECONDS).join();
+                }
+            }
+        };
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(mongoConnectionDetails.getConnectionString())
+                .uuidRepresentation(UuidRepresentation.STANDARD)
+                .addCommandListener(logInAfterRemovals)
+                .build();
+
+        try (MongoClient mongoClient = MongoClients.create(settings)) {
+            // WHEN the migration runs, which moves ids in transactions where the server has them
+            MongoTemplate listenedTemplate = new MongoTemplate(
+                    new SimpleMongoClientDatabaseFactory(mongoClient, mongoTemplate.getDb().getName()),
+                    mongoTemplate.getConverter());
+            UuidMigrationReport report = new UuidMigrator(listenedTemplate, 2, Duration.ZERO).migrate();
+
+            // THEN the user is moved and the journal is clear
+            assertThat(report.collections())
+                    .filteredOn(collection -> collection.collection().equals("users"))
+                    .singleElement()
+                    .satisfies(users -> assertThat(users.rewrittenDocuments()).isEqualTo(1));
+            assertThat(mongoTemplate.getCollection(UuidMigrator.JOURNAL_COLLECTION).countDocuments()).isZero();
+        }
+        // AND every login that was not held up by a transaction resolved the user with their id
+        assertThat(logins).isNotEmpty();
+        assertThat(logins.stream().map(CompletableFuture::join).filter(Objects::nonNull))
+                .extracting(User::getId)
+                .containsOnly(userId);
+        // AND the email still belongs to a single user, who keeps their id and role on the next login
+        assertThat(userRepository.count()).isEqualTo(1);
+        User user = userRepository.upsertByEmail(EMAIL, "Reader", "ROLE_USER");
+        assertThat(user.getId()).isEqualTo(userId);
+        assertThat(user.getRole()).isEqualTo("ROLE_ADMIN");
+    }
+
+    private static BsonBinary legacy(UUID uuid) {
+        return new BsonBinary(uuid, UuidRepresentation.JAVA_LEGACY);
+    }
+
+    private static BsonDocument book(BsonBinary id, String title) {
+        return new BsonDocument("_id", id)
+                .append("title", new BsonString(title))
+                .append("author", new BsonString("Author"))
+                .append("synopsis", new BsonString("Synopsis"))
+                .append("copies", new BsonInt32(1))
+                .append("availableCopies", new BsonInt32(1))
+                .append("version", new BsonInt64(1));
+    }
+
+    private void insert(String collectionName, BsonDocument document) {
+        mongoTemplate.getDb().getCollection(collectionName, BsonDocument.class).insertOne(document);
+    }
+}
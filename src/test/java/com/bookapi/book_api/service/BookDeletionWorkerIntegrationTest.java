@@ -0,0 +1,220 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.BookDeletion;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationQuota;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.BookDeletionRepository;
+import com.bookapi.book_api.repository.BookRepository;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Small batches, no wait after a deletion, and no scheduled run during a test
+@SpringBootTest(properties = {
+        "book-api.book-deletion.batch-size=10",
+        "book-api.book-deletion.settle-time=PT0S",
+        "book-api.book-deletion.poll-interval=PT1H"})
+public class BookDeletionWorkerIntegrationTest {
+
+    @Autowired
+    private BookDeletionWorker bookDeletionWorker;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @MockitoSpyBean
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationQuotaRepository reservationQuotaRepository;
+
+    @Autowired
+    private BookDeletionRepository bookDeletionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        reservationQuotaRepository.deleteAll();
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        bookDeletionRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Deleting a book should leave its reservations to the worker, which removes them in batches")
+    void deleteBook_whenBookHasReservations_shouldRemoveThemInTheBackground() {
+        // GIVEN a book with 25 reservations, and another book with 3
+        Book deletedBook = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey"));
+        Book keptBook = bookRepository.save(new Book("Dune", "Frank Herbert", "Arrakis"));
+        reserve(deletedBook, 25);
+        reserve(keptBook, 3);
+
+        // WHEN the book is deleted
+        bookService.deleteBook(deletedBook.getId());
+        // THEN the book is gone at once while its reservations are still there
+        assertThat(bookRepository.existsById(deletedBook.getId())).isFalse();
+        assertThat(countReservations(deletedBook)).isEqualTo(25);
+
+        // WHEN the worker runs
+        bookDeletionWorker.processPendingDeletions();
+
+        // THEN every reservation of the deleted book is removed, and none of the other book
+        assertThat(countReservations(deletedBook)).isZero();
+        assertThat(countReservations(keptBook)).isEqualTo(3);
+        // AND the deletion is completed with its progress
+        assertThat(bookDeletionRepository.findById(deletedBook.getId())).hasValueSatisfying(deletion -> {
+            assertThat(deletion.getRemovedReservations()).isEqualTo(25);
+            assertThat(deletion.getCompletedAt()).isNotNull();
+        });
+    }
+
+    @Test
+    @DisplayName("A deletion left behind by a crashed worker should be taken over and resumed once its lease ran out")
+    void processPendingDeletions_whenLeaseRanOut_shouldResumeTheCleanup() {
+        // GIVEN a deletion whose request crashed before the book was removed, and whose worker crashed after
+        // removing 10 reservations, with 15 left
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey"));
+        reserve(book, 15);
+        BookDeletion crashedDeletion = new BookDeletion(book.getId());
+        crashedDeletion.setRemovedReservations(10);
+        crashedDeletion.setOwner("crashed-worker");
+        crashedDeletion.setLeaseUntil(Instant.now().minusSeconds(1));
+        bookDeletionRepository.save(crashedDeletion);
+
+        // WHEN the worker runs
+        bookDeletionWorker.processPendingDeletions();
+
+        // THEN the book and its remaining reservations are removed
+        assertThat(bookRepository.existsById(book.getId())).isFalse();
+        assertThat(countReservations(book)).isZero();
+        // AND the progress continues from where the crashed worker left it
+        assertThat(bookDeletionRepository.findById(book.getId())).hasValueSatisfying(deletion -> {
+            assertThat(deletion.getRemovedReservations()).isEqualTo(25);
+            assertThat(deletion.getCompletedAt()).isNotNull();
+        });
+    }
+
+    @Test
+    @DisplayName("A deletion whose lease is still held by another worker should be left to that worker")
+    void processPendingDeletions_whenLeaseIsHeld_shouldLeaveTheDeletion() {
+        // GIVEN a deletion another worker is processing
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey"));
+        reserve(book, 5);
+        BookDeletion heldDeletion = new BookDeletion(book.getId());
+        heldDeletion.setOwner("other-worker");
+        heldDeletion.setLeaseUntil(Instant.now().plusSeconds(60));
+        bookDeletionRepository.save(heldDeletion);
+
+        // WHEN this worker runs
+        bookDeletionWorker.processPendingDeletions();
+
+        // THEN it does not touch the reservations
+        assertThat(countReservations(book)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("An active reservation cancelled while its book is cleaned up should give its quota back only once")
+    void processPendingDeletions_whenAReservationIsCancelledMeanwhile_shouldReleaseItsQuotaOnce() {
+        // GIVEN a user with an active reservation of a book that is deleted and one of a book that is kept
+        Book deletedBook = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 2));
+        Book keptBook = bookRepository.save(new Book("Dune", "Frank Herbert", "Arrakis", 1));
+        UUID userId = UUID.randomUUID();
+        Reservation cancelled = reservationService.addReservation(deletedBook.getId(), userId);
+        reservationService.addReservation(keptBook.getId(), userId);
+        // AND another user with an active reservation of the deleted book
+        UUID otherUserId = UUID.randomUUID();
+        reservationService.addReservation(deletedBook.getId(), otherUserId);
+        bookService.deleteBook(deletedBook.getId());
+        // AND the first reservation is cancelled just after the worker read it as active
+        doAnswer(invocation -> {
+            Limit limit = invocation.getArgument(1);
+            List<Reservation> reservations = mongoTemplate.find(Query.query(Criteria.where("bookId")
+                    .is(deletedBook.getId())).limit(limit.max()), Reservation.class);
+            if (reservationRepository.transition(deletedBook.getId(), cancelled.getId(),
+                    ReservationState.RESERVED, ReservationState.CANCELLED) != null) {
+                reservationQuotaRepository.release(userId, 1);
+            }
+            return reservations;
+        }).when(reservationRepository).findIdsByBookId(eq(deletedBook.getId()), any(Limit.class));
+
+        // WHEN the worker runs
+        bookDeletionWorker.processPendingDeletions();
+
+        // THEN the reservations of the deleted book are removed
+        assertThat(countReservations(deletedBook)).isZero();
+        // AND the first user still holds the quota of the kept book, the cancel released the other one
+        assertThat(reservationQuotaRepository.findById(userId))
+                .map(ReservationQuota::getActiveReservations)
+                .hasValue(1);
+        // AND the other user gets the quota of the removed reservation back
+        assertThat(reservationQuotaRepository.findById(otherUserId))
+                .map(ReservationQuota::getActiveReservations)
+                .hasValue(0);
+    }
+
+    @Test
+    @DisplayName("The active reservations of a deleted book should be cancelled together and give every quota back")
+    void processPendingDeletions_whenReservationsAreActive_shouldCancelThemInOneUpdate() {
+        // GIVEN a deleted book with two active reservations of different users
+        Book deletedBook = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 2));
+        UUID userId = UUID.randomUUID();
+        UUID otherUserId = UUID.randomUUID();
+        reservationService.addReservation(deletedBook.getId(), userId);
+        reservationService.addReservation(deletedBook.getId(), otherUserId);
+        bookService.deleteBook(deletedBook.getId());
+
+        // WHEN the worker runs
+        bookDeletionWorker.processPendingDeletions();
+
+        // THEN the reservations are cancelled in a single update rather than one by one
+        verify(reservationRepository).transitionAll(eq(deletedBook.getId()), any(), eq(ReservationState.RESERVED),
+                eq(ReservationState.CANCELLED), any(Instant.class));
+        verify(reservationRepository, never()).transition(any(), any(), any(), any());
+        // AND both users get their quota back
+        assertThat(reservationQuotaRepository.findAllById(List.of(userId, otherUserId)))
+                .extracting(ReservationQuota::getActiveReservations)
+                .containsExactlyInAnyOrder(0, 0);
+        assertThat(countReservations(deletedBook)).isZero();
+    }
+
+    private void reserve(Book book, int count) {
+        reservationRepository.saveAll(IntStream.range(0, count)
+                .mapToObj(i -> new Reservation(book.getId(), UUID.randomUUID()))
+                .toList());
+    }
+
+    private long countReservations(Book book) {
+        return mongoTemplate.count(Query.query(Criteria.where("bookId").is(book.getId())), Reservation.class);
+    }
+}
@@ -0,0 +1,114 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.mapper.BookMapper;
+import com.bookapi.book_api.mapper.CursorMapper;
+import com.bookapi.book_api.mapper.LinkResolver;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class BookExportServiceTest {
+
+    private static final int BATCH_SIZE = 10;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BookExportService bookExportService;
+
+    // What the repository's cursor did: how many books it handed out and whether it was closed
+    private final AtomicInteger booksRead = new AtomicInteger();
+    private final AtomicBoolean cursorClosed = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        BookMapper bookMapper = new BookMapper(new CursorMapper(), new LinkResolver());
+        bookExportService = new BookExportService(bookRepository, bookMapper, objectMapper, BATCH_SIZE);
+    }
+
+    @Test
+    @DisplayName("The export should write every book as one JSON line and close the cursor at the end")
+    void exportBooks_whenReadToTheEnd_shouldWriteOneLinePerBook() throws Exception {
+        // GIVEN a collection of 25 books
+        givenBooks(25);
+
+        // WHEN the whole export is read
+        List<String> lines;
+        try (InputStream export = bookExportService.exportBooks()) {
+            lines = new BufferedReader(new InputStreamReader(export, StandardCharsets.UTF_8)).lines().toList();
+        }
+
+        // THEN there is a line per book, in cursor order and without links
+        assertThat(lines).hasSize(25);
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        assertThat(first.get("title").asText()).isEqualTo("Book 0");
+        assertThat(first.get("copies").asInt()).isEqualTo(1);
+        assertThat(first.path("links").isMissingNode() || first.path("links").isNull()).isTrue();
+        // AND the cursor was read with the configured batch size and closed
+        verify(bookRepository).streamAll(BATCH_SIZE);
+        assertThat(cursorClosed).isTrue();
+    }
+
+    @Test
+    @DisplayName("Closing the export early, as when a client disconnects, should stop reading and close the cursor")
+    void exportBooks_whenClosedEarly_shouldCloseCursorAndStopReading() throws Exception {
+        // GIVEN a large collection of books
+        givenBooks(100_000);
+
+        // WHEN only the first few bytes of the export are read before it is closed
+        InputStream export = bookExportService.exportBooks();
+        byte[] firstBytes = export.readNBytes(64);
+        export.close();
+
+        // THEN the cursor is closed
+        assertThat(firstBytes).hasSize(64);
+        assertThat(cursorClosed).isTrue();
+        // AND only the books needed for those bytes were read
+        assertThat(booksRead.get()).isLessThan(5);
+        // AND reading after close returns the end of the stream
+        assertThat(export.read()).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("The cursor should only be opened once the export is read")
+    void exportBooks_whenNeverRead_shouldNotOpenCursor() throws Exception {
+        // GIVEN a collection of books
+        givenBooks(3);
+
+        // WHEN an export is created and closed without being read
+        bookExportService.exportBooks().close();
+
+        // THEN no cursor was opened
+        verify(bookRepository, never()).streamAll(anyInt());
+    }
+
+    private void givenBooks(int count) {
+        when(bookRepository.streamAll(anyInt())).thenAnswer(invocation -> IntStream.range(0, count)
+                .mapToObj(i -> new Book("Book " + i, "Author", "Synopsis"))
+                .peek(book -> booksRead.incrementAndGet())
+                .onClose(() -> cursorClosed.set(true)));
+    }
+}
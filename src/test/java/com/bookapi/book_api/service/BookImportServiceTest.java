@@ -0,0 +1,160 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.dto.generated.BookImportResult;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BookImportServiceTest {
+
+    private static final int CHUNK_SIZE = 2;
+    private static final int MAX_REPORTED_ERRORS = 2;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    private BookImportService bookImportService;
+
+    // Copies of the chunks, the service reuses its chunk list once a chunk is written
+    private final List<List<Book>> insertedChunks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        bookImportService = new BookImportService(bookRepository, bookSuggestionIndex, new ObjectMapper(), validator,
+                CHUNK_SIZE, MAX_REPORTED_ERRORS);
+        when(bookRepository.insertUnordered(anyList())).thenAnswer(invocation -> {
+            insertedChunks.add(new ArrayList<>(invocation.<List<Book>>getArgument(0)));
+            return Map.of();
+        });
+    }
+
+    @Test
+    @DisplayName("NDJSON books should be written in chunks of the configured size")
+    void importBooks_whenGivenNdjson_shouldInsertInChunks() throws Exception {
+        // GIVEN 5 valid books, one per line, with a blank line in between
+        String ndjson = """
+                {"title": "Book 1", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 2", "author": "Author", "synopsis": "Synopsis", "copies": 3}
+
+                {"title": "Book 3", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 4", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 5", "author": "Author", "synopsis": "Synopsis"}
+                """;
+
+        // WHEN they are imported
+        BookImportResult result = bookImportService.importBooks(stream(ndjson));
+
+        // THEN they are inserted in chunks of 2, 2 and 1
+        assertThat(insertedChunks).extracting(List::size).containsExactly(2, 2, 1);
+        assertThat(insertedChunks.get(0).get(1).getCopies()).isEqualTo(3);
+        // AND the summary counts every book as imported
+        assertThat(result.getReceived()).isEqualTo(5);
+        assertThat(result.getImported()).isEqualTo(5);
+        assertThat(result.getFailed()).isZero();
+        assertThat(result.getErrors()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Invalid and malformed lines should be reported by line and not stop the import")
+    void importBooks_whenLinesAreInvalid_shouldReportThemAndImportTheRest() throws Exception {
+        // GIVEN a valid book, a book without a title, a malformed line and another valid book
+        String ndjson = """
+                {"title": "Book 1", "author": "Author", "synopsis": "Synopsis"}
+                {"author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 3", "author":
+                {"title": "Book 4", "author": "Author", "synopsis": "Synopsis"}
+                """;
+
+        // WHEN they are imported
+        BookImportResult result = bookImportService.importBooks(stream(ndjson));
+
+        // THEN only the valid books are inserted
+        assertThat(insertedChunks).flatExtracting(chunk -> chunk).extracting(Book::getTitle)
+                .containsExactly("Book 1", "Book 4");
+        // AND the rejected lines are reported with their reason
+        assertThat(result.getReceived()).isEqualTo(4);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("line").containsExactly(2, 3);
+        assertThat(result.getErrors().get(0).getError()).contains("title");
+        assertThat(result.getErrorsTruncated()).isFalse();
+    }
+
+    @Test
+    @DisplayName("A JSON array should be imported element by element")
+    void importBooks_whenGivenJsonArray_shouldImportEachElement() throws Exception {
+        // GIVEN a JSON array with two valid books and one with the wrong type of copies
+        String json = """
+                [
+                  {"title": "Book 1", "author": "Author", "synopsis": "Synopsis"},
+                  {"title": "Book 2", "author": "Author", "synopsis": "Synopsis", "copies": "many"},
+                  {"title": "Book 3", "author": "Author", "synopsis": "Synopsis"}
+                ]
+                """;
+
+        // WHEN it is imported
+        BookImportResult result = bookImportService.importBooks(stream(json));
+
+        // THEN the valid books are inserted and the invalid one is reported by its position
+        assertThat(insertedChunks).flatExtracting(chunk -> chunk).extracting(Book::getTitle)
+                .containsExactly("Book 1", "Book 3");
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("line").containsExactly(2);
+    }
+
+    @Test
+    @DisplayName("Books the database rejects should be reported by line and only the first errors listed")
+    void importBooks_whenInsertsFailAndErrorsExceedMaximum_shouldTruncateErrors() throws Exception {
+        // GIVEN the database rejects the second book of every chunk
+        when(bookRepository.insertUnordered(anyList())).thenReturn(Map.of(1, "duplicate key"));
+        String ndjson = """
+                {"title": "Book 1", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 2", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 3", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 4", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 5", "author": "Author", "synopsis": "Synopsis"}
+                {"title": "Book 6", "author": "Author", "synopsis": "Synopsis"}
+                """;
+
+        // WHEN the books are imported
+        BookImportResult result = bookImportService.importBooks(stream(ndjson));
+
+        // THEN every chunk was written
+        ArgumentCaptor<List<Book>> chunks = ArgumentCaptor.captor();
+        verify(bookRepository, times(3)).insertUnordered(chunks.capture());
+        // AND the failed books are counted, but only the first 2 are listed
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting("line").containsExactly(2, 4);
+        assertThat(result.getErrorsTruncated()).isTrue();
+    }
+
+    private InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,143 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.exception.ResourceNotFoundException;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class BookServiceTest {
+
+    private static final int CALLERS = 50;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private EstimatedCountService estimatedCountService;
+
+    @Mock
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    @InjectMocks
+    private BookService bookService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    @DisplayName("Concurrent lookups of the same book should share a single repository read")
+    void findBookById_whenCalledConcurrently_shouldReadRepositoryOnce() throws Exception {
+        // GIVEN a book whose repository read blocks until it is released
+        Book book = new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey");
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findById(book.getId())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return Optional.of(book);
+        });
+
+        // WHEN many callers look the book up at the same time
+        ConcurrentLinkedQueue<Object> results = new ConcurrentLinkedQueue<>();
+        List<Thread> callers = startCallers(() -> results.add(bookService.findBookById(book.getId())));
+        // AND the read is released once every caller is waiting on it
+        awaitAllWaiting(callers);
+        release.countDown();
+        joinAll(callers);
+
+        // THEN every caller receives the book
+        assertThat(results).hasSize(CALLERS).allMatch(result -> result == book);
+        // AND the repository was read exactly once
+        verify(bookRepository, times(1)).findById(book.getId());
+    }
+
+    @Test
+    @DisplayName("Concurrent lookups of a missing book should share the read and its not found exception")
+    void findBookById_whenBookIsMissingAndCalledConcurrently_shouldShareTheException() throws Exception {
+        // GIVEN a book id whose repository read blocks and then finds nothing
+        UUID missingId = UUID.randomUUID();
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findById(missingId)).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        // WHEN many callers look the book up at the same time
+        ConcurrentLinkedQueue<Object> results = new ConcurrentLinkedQueue<>();
+        List<Thread> callers = startCallers(() -> {
+            try {
+                bookService.findBookById(missingId);
+            } catch (ResourceNotFoundException ex) {
+                results.add(ex);
+            }
+        });
+        awaitAllWaiting(callers);
+        release.countDown();
+        joinAll(callers);
+
+        // THEN every caller receives the not found exception
+        assertThat(results).hasSize(CALLERS).allMatch(result -> result instanceof ResourceNotFoundException);
+        // AND the repository was read exactly once
+        verify(bookRepository, times(1)).findById(missingId);
+    }
+
+    @Test
+    @DisplayName("Sequential lookups should each read the repository, nothing is kept after a read completes")
+    void findBookById_whenCalledSequentially_shouldReadRepositoryEachTime() {
+        // GIVEN a book in the repository
+        Book book = new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey");
+        when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+
+        // WHEN the book is looked up twice, one after the other
+        bookService.findBookById(book.getId());
+        bookService.findBookById(book.getId());
+
+        // THEN the repository is read twice, caching is left to the book cache
+        verify(bookRepository, times(2)).findById(book.getId());
+    }
+
+    private List<Thread> startCallers(Runnable call) {
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Thread caller = new Thread(call);
+            caller.start();
+            callers.add(caller);
+        }
+        return callers;
+    }
+
+    /**
+     * Waits until every caller is parked, either inside the blocked repository read or waiting for its
+     * result, so the read is only released once all callers have joined it.
+     */
+    private void awaitAllWaiting(List<Thread> callers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!callers.stream().allMatch(caller -> caller.getState() == Thread.State.WAITING
+                || caller.getState() == Thread.State.TIMED_WAITING)) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void joinAll(List<Thread> callers) throws InterruptedException {
+        for (Thread caller : callers) {
+            caller.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+}
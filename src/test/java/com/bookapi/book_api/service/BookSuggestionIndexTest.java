@@ -0,0 +1,146 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+class BookSuggestionIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        bookSuggestionIndex = new BookSuggestionIndex(bookRepository, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("suggest should match the start of titles and authors, ignoring case, accents and punctuation")
+    void suggest_whenPrefixMatches_shouldIgnoreCaseAccentsAndPunctuation() {
+        // GIVEN an index built from three books
+        Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien", "Synopsis");
+        Book bronte = new Book("Jane Eyre", "Charlotte Brontë", "Synopsis");
+        Book dune = new Book("Dune", "Frank Herbert", "Synopsis");
+        when(bookRepository.streamAll(anyInt())).thenReturn(Stream.of(hobbit, bronte, dune));
+        bookSuggestionIndex.rebuild();
+
+        // WHEN prefixes in a different case, without accents and without punctuation are suggested
+        // THEN the books whose title or author starts with them are returned
+        assertThat(bookSuggestionIndex.suggest("THE HOB", 10))
+                .extracting(BookSuggestionIndex.Suggestion::id).containsExactly(hobbit.getId());
+        assertThat(bookSuggestionIndex.suggest("charlotte bronte", 10))
+                .extracting(BookSuggestionIndex.Suggestion::id).containsExactly(bronte.getId());
+        assertThat(bookSuggestionIndex.suggest("j r r", 10))
+                .extracting(BookSuggestionIndex.Suggestion::id).containsExactly(hobbit.getId());
+        // AND a prefix that is not at the start of a title or author matches nothing
+        assertThat(bookSuggestionIndex.suggest("hobbit", 10)).isEmpty();
+        assertThat(bookSuggestionIndex.suggest("  !! ", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("suggest should return at most the limit of distinct books, in key order")
+    void suggest_whenMoreBooksMatch_shouldReturnTheFirstDistinctBooksUpToTheLimit() {
+        // GIVEN a book whose title and author share a prefix, and two more books with that prefix
+        Book sameName = new Book("Austen", "Austen", "Synopsis");
+        Book emma = new Book("Emma", "Austen Jane", "Synopsis");
+        Book persuasion = new Book("Persuasion", "Austen Jane", "Synopsis");
+        when(bookRepository.streamAll(anyInt())).thenReturn(Stream.of(persuasion, emma, sameName));
+        bookSuggestionIndex.rebuild();
+
+        // WHEN the shared prefix is suggested with a limit of 2
+        List<BookSuggestionIndex.Suggestion> suggestions = bookSuggestionIndex.suggest("aus", 2);
+
+        // THEN the book matching twice is only suggested once, followed by the next key
+        assertThat(suggestions).extracting(BookSuggestionIndex.Suggestion::id)
+                .hasSize(2)
+                .startsWith(sameName.getId())
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("put, replace and remove should keep the index in step with the books")
+    void change_whenBooksAreWritten_shouldUpdateTheIndexIncrementally() {
+        // GIVEN an empty index
+        when(bookRepository.streamAll(anyInt())).thenReturn(Stream.empty());
+        bookSuggestionIndex.rebuild();
+
+        // WHEN a book is added
+        Book book = new Book("Dune", "Frank Herbert", "Synopsis");
+        bookSuggestionIndex.put(book);
+        // THEN it is suggested
+        assertThat(bookSuggestionIndex.suggest("dun", 10)).hasSize(1);
+
+        // WHEN its title changes
+        Book renamed = new Book("Dune Messiah", "Frank Herbert", "Synopsis");
+        renamed.setId(book.getId());
+        bookSuggestionIndex.replace(book, renamed);
+        // THEN it is suggested under its new title only once
+        assertThat(bookSuggestionIndex.suggest("dune", 10))
+                .extracting(BookSuggestionIndex.Suggestion::title).containsExactly("Dune Messiah");
+        assertThat(meterRegistry.get("book.suggestions.entries").gauge().value()).isEqualTo(2);
+
+        // WHEN it is removed
+        bookSuggestionIndex.remove(renamed);
+        // THEN it is no longer suggested and the index is empty
+        assertThat(bookSuggestionIndex.suggest("dune", 10)).isEmpty();
+        assertThat(bookSuggestionIndex.suggest("frank", 10)).isEmpty();
+        assertThat(meterRegistry.get("book.suggestions.memory").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("putAll should merge a batch of books into the index")
+    void putAll_whenGivenBooks_shouldMergeThemInOrder() {
+        // GIVEN an index with one book
+        Book emma = new Book("Emma", "Jane Austen", "Synopsis");
+        when(bookRepository.streamAll(anyInt())).thenReturn(Stream.of(emma));
+        bookSuggestionIndex.rebuild();
+
+        // WHEN two more books are added at once
+        Book eragon = new Book("Eragon", "Christopher Paolini", "Synopsis");
+        Book earthsea = new Book("Earthsea", "Ursula Le Guin", "Synopsis");
+        bookSuggestionIndex.putAll(List.of(eragon, earthsea));
+
+        // THEN all three are suggested in order
+        assertThat(bookSuggestionIndex.suggest("e", 10))
+                .extracting(BookSuggestionIndex.Suggestion::title)
+                .containsExactly("Earthsea", "Emma", "Eragon");
+        // AND the memory per key is reported
+        assertThat(meterRegistry.get("book.suggestions.memory.per.entry").gauge().value()).isPositive();
+    }
+
+    @Test
+    @DisplayName("rebuild should keep the changes made while it read the collection")
+    void rebuild_whenBooksChangeDuringTheRebuild_shouldApplyTheChanges() {
+        // GIVEN a collection with one book, and another book created while the rebuild reads it
+        Book emma = new Book("Emma", "Jane Austen", "Synopsis");
+        Book dune = new Book("Dune", "Frank Herbert", "Synopsis");
+        when(bookRepository.streamAll(anyInt())).thenAnswer(invocation -> {
+            bookSuggestionIndex.put(dune);
+            return Stream.of(emma);
+        });
+
+        // WHEN the index is rebuilt
+        bookSuggestionIndex.rebuild();
+
+        // THEN both books are suggested
+        assertThat(bookSuggestionIndex.suggest("emma", 10)).hasSize(1);
+        assertThat(bookSuggestionIndex.suggest("dune", 10)).hasSize(1);
+    }
+}
@@ -6,14 +6,12 @@ import com.bookapi.book_api.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 
-import java.util.Optional;
+import java.time.Duration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -23,7 +21,6 @@ class CustomOidcUserServiceTest {
     @Mock // Creates a mock (fake) UserRepository
     private UserRepository userRepository;
 
-    @InjectMocks // Creates an instance of our service and injects the mock repository into it
     private CustomOidcUserService customOidcUserService;
 
     @Mock // Mock the inputs to the user service
@@ -34,57 +31,94 @@ class CustomOidcUserServiceTest {
 
     @BeforeEach
     void setUp () {
-        MockitoAnnotations.openMocks(this); // Initialize all the Mock and InjectMocks annotations
+        MockitoAnnotations.openMocks(this); // Initialize all the Mock annotations
+        // Create the service with the mock repository and a login cache
+        customOidcUserService = new CustomOidcUserService(userRepository, Duration.ofMinutes(1), 100);
     }
 
     @Test
-    @DisplayName("A new user login via OAuth should create and save a new user in the database")
-    void processUserRegistration_whenUserIsNew_createsAndSavesUser() {
-        // GIVEN a user with no existing database entry
+    @DisplayName("A new user login via OAuth should upsert the user with their details and the USER role")
+    void processUserRegistration_whenUserIsNew_upsertsUserWithDefaultRole() {
+        // GIVEN a user with no existing database entry, who is created by the upsert
         String email = "new.user@example.com";
         String name = "Not Indb";
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+        User createdUser = new User(email, name, "ROLE_USER");
+        when(userRepository.upsertByEmail(email, name, "ROLE_USER")).thenReturn(createdUser);
 
         // AND their details are returned by the OAuth2 provider
         when(oidcUser.getEmail()).thenReturn(email);
         when(oidcUser.getName()).thenReturn(name);
 
         // WHEN the processUserRegistration method is called
-        customOidcUserService.processUserRegistration(oidcUser);
+        User resolvedUser = customOidcUserService.processUserRegistration(oidcUser);
 
-        // THEN the user should be saved to the database with their details and role set as USER
-        ArgumentCaptor<User> userArgumentCaptor = ArgumentCaptor.forClass(User.class);
-        verify(userRepository).save(userArgumentCaptor.capture());
+        // THEN the user is written with a single upsert and no separate lookup or save
+        verify(userRepository).upsertByEmail(email, name, "ROLE_USER");
+        verifyNoMoreInteractions(userRepository);
 
-        User savedUser = userArgumentCaptor.getValue();
-        assertThat(savedUser.getEmail()).isEqualTo(email);
-        assertThat(savedUser.getName()).isEqualTo(name);
-        assertThat(savedUser.getRole()).isEqualTo("ROLE_USER");
+        assertThat(resolvedUser.getEmail()).isEqualTo(email);
+        assertThat(resolvedUser.getName()).isEqualTo(name);
+        assertThat(resolvedUser.getRole()).isEqualTo("ROLE_USER");
     }
 
     @Test
-    @DisplayName("An existing user login via OAuth should update their name and save the user")
-    void processUserRegistration_whenUserExists_updatesAndSavesUser() {
-        // GIVEN a user already exists in the database
+    @DisplayName("An existing user login via OAuth should upsert their new name and keep their stored role")
+    void processUserRegistration_whenUserExists_upsertsNameAndKeepsRole() {
+        // GIVEN a user already exists in the database, and the upsert returns them with the new name
         String email = "existing.user@example.com";
-        User existingUserInDb = new User(email, "Old Name", "ROLE_ADMIN");
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(existingUserInDb));
+        String newNameFromGoogle = "New Name From Google";
+        User existingUserInDb = new User(email, newNameFromGoogle, "ROLE_ADMIN");
+        when(userRepository.upsertByEmail(email, newNameFromGoogle, "ROLE_USER")).thenReturn(existingUserInDb);
 
         // AND their details are returned by the OAuth2 provider with a new name
-        String newNameFromGoogle = "New Name From Google";
         when(oidcUser.getEmail()).thenReturn(email);
         when(oidcUser.getName()).thenReturn(newNameFromGoogle);
 
         // WHEN the processUserRegistration method is called
+        User resolvedUser = customOidcUserService.processUserRegistration(oidcUser);
+
+        // THEN the stored user is returned with the updated name and their existing role
+        assertThat(resolvedUser.getId()).isEqualTo(existingUserInDb.getId());
+        assertThat(resolvedUser.getName()).isEqualTo(newNameFromGoogle);
+        assertThat(resolvedUser.getRole()).isEqualTo("ROLE_ADMIN");
+    }
+
+    @Test
+    @DisplayName("A repeated login with the same name should be resolved from the login cache")
+    void processUserRegistration_whenUserLogsInAgain_usesLoginCache() {
+        // GIVEN a user who has just logged in
+        String email = "repeat.user@example.com";
+        String name = "Repeat User";
+        when(userRepository.upsertByEmail(email, name, "ROLE_USER")).thenReturn(new User(email, name, "ROLE_USER"));
+        when(oidcUser.getEmail()).thenReturn(email);
+        when(oidcUser.getName()).thenReturn(name);
+        User firstLogin = customOidcUserService.processUserRegistration(oidcUser);
+
+        // WHEN the same user logs in again
+        User secondLogin = customOidcUserService.processUserRegistration(oidcUser);
+
+        // THEN the database is only written once
+        verify(userRepository, times(1)).upsertByEmail(email, name, "ROLE_USER");
+        assertThat(secondLogin).isSameAs(firstLogin);
+    }
+
+    @Test
+    @DisplayName("A repeated login with a changed name should bypass the login cache and upsert the new name")
+    void processUserRegistration_whenNameChanges_upsertsAgain() {
+        // GIVEN a user who has just logged in
+        String email = "renamed.user@example.com";
+        when(userRepository.upsertByEmail(email, "Old Name", "ROLE_USER")).thenReturn(new User(email, "Old Name", "ROLE_USER"));
+        when(userRepository.upsertByEmail(email, "New Name", "ROLE_USER")).thenReturn(new User(email, "New Name", "ROLE_USER"));
+        when(oidcUser.getEmail()).thenReturn(email);
+        when(oidcUser.getName()).thenReturn("Old Name");
         customOidcUserService.processUserRegistration(oidcUser);
 
-        // THEN the existing user object should be saved with the updated name
-        ArgumentCaptor<User> userArgumentCaptor = ArgumentCaptor.forClass(User.class);
-        verify(userRepository).save(userArgumentCaptor.capture());
+        // WHEN they log in again with a new name from the provider
+        when(oidcUser.getName()).thenReturn("New Name");
+        User resolvedUser = customOidcUserService.processUserRegistration(oidcUser);
 
-        User savedUser = userArgumentCaptor.getValue();
-        assertThat(savedUser.getId()).isEqualTo(existingUserInDb.getId());
-        assertThat(savedUser.getName()).isEqualTo(newNameFromGoogle);
-        assertThat(savedUser.getRole()).isEqualTo("ROLE_ADMIN");
+        // THEN the new name is written and returned
+        verify(userRepository).upsertByEmail(email, "New Name", "ROLE_USER");
+        assertThat(resolvedUser.getName()).isEqualTo("New Name");
     }
 }
@@ -0,0 +1,79 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.ReservationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// No scheduled run during a test
+@SpringBootTest(properties = {
+        "book-api.reservation-history.archive-after=PT1H",
+        "book-api.reservation-history.archive-interval=PT1H",
+        "book-api.reservation-history.batch-size=2"})
+public class ReservationArchiverIntegrationTest {
+
+    @Autowired
+    private ReservationArchiver reservationArchiver;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        mongoTemplate.dropCollection(Reservation.HISTORY_COLLECTION);
+    }
+
+    @Test
+    @DisplayName("Reservations closed before the archive period should move to the history and still be found by id")
+    void archiveClosedReservations_whenClosedLongAgo_shouldMoveThemToTheHistory() {
+        // GIVEN three reservations closed two hours ago, one closed just now and an active one
+        UUID bookId = UUID.randomUUID();
+        Instant twoHoursAgo = Instant.now().minus(Duration.ofHours(2));
+        Reservation cancelled = save(bookId, ReservationState.CANCELLED, twoHoursAgo);
+        Reservation fulfilled = save(bookId, ReservationState.FULFILLED, twoHoursAgo);
+        Reservation expired = save(bookId, ReservationState.EXPIRED, twoHoursAgo);
+        Reservation recentlyCancelled = save(bookId, ReservationState.CANCELLED, Instant.now());
+        Reservation active = save(bookId, ReservationState.RESERVED, null);
+
+        // WHEN the archiver runs
+        reservationArchiver.archiveClosedReservations();
+
+        // THEN only the active and the recently closed reservations are left in the reservations collection
+        assertThat(reservationRepository.findAll()).extracting(Reservation::getId)
+                .containsExactlyInAnyOrder(recentlyCancelled.getId(), active.getId());
+        // AND the others are in the history with their state, and are still found by id
+        assertThat(mongoTemplate.count(new Query(), Reservation.HISTORY_COLLECTION))
+                .isEqualTo(3);
+        assertThat(reservationService.findReservationById(bookId, cancelled.getId()).getState())
+                .isEqualTo(ReservationState.CANCELLED);
+        assertThat(reservationService.findReservationById(bookId, fulfilled.getId()).getState())
+                .isEqualTo(ReservationState.FULFILLED);
+        assertThat(reservationService.findReservationById(bookId, expired.getId()).getClosedAt()).isNotNull();
+    }
+
+    private Reservation save(UUID bookId, ReservationState state, Instant closedAt) {
+        Reservation reservation = new Reservation(bookId, UUID.randomUUID());
+        reservation.setState(state);
+        reservation.setClosedAt(closedAt);
+        return reservationRepository.save(reservation);
+    }
+}
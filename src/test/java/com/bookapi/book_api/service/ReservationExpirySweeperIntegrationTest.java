@@ -0,0 +1,215 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.exception.ConflictException;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.model.ReservationQuota;
+import com.bookapi.book_api.repository.BookRepository;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+// No scheduled run during a test
+@SpringBootTest(properties = {
+        "book-api.reservation-expiry.hold-period=PT1H",
+        "book-api.reservation-expiry.sweep-interval=PT1H",
+        "book-api.reservation-expiry.batch-size=2",
+        "book-api.reservation-expiry.pause=PT0S"})
+public class ReservationExpirySweeperIntegrationTest {
+
+    @Autowired
+    private ReservationExpirySweeper reservationExpirySweeper;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @MockitoSpyBean
+    private BookService bookService;
+
+    @MockitoSpyBean
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReservationQuotaRepository reservationQuotaRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        reservationQuotaRepository.deleteAll();
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Reservations held past the hold period should expire in batches and give their copies back")
+    void expireReservations_whenHeldPastTheHoldPeriod_shouldExpireThemAndReleaseTheirCopies() {
+        // GIVEN a book with five copies, three of them reserved two hours ago and one reserved just now
+        Book book = createBook(5);
+        List<Reservation> overdue = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            overdue.add(backdate(reservationService.addReservation(book.getId(), UUID.randomUUID()),
+                    Duration.ofHours(2)));
+        }
+        Reservation recent = reservationService.addReservation(book.getId(), UUID.randomUUID());
+        double expiredBefore = meterRegistry.get("reservations.expired").counter().count();
+
+        // WHEN the sweeper runs
+        reservationExpirySweeper.expireReservations();
+
+        // THEN the overdue reservations are expired and closed, over more than one batch
+        for (Reservation reservation : overdue) {
+            Reservation expired = reservationRepository.findById(reservation.getId()).orElseThrow();
+            assertThat(expired.getState()).isEqualTo(ReservationState.EXPIRED);
+            assertThat(expired.getClosedAt()).isNotNull();
+        }
+        // AND the recent reservation is still active
+        assertThat(reservationRepository.findById(recent.getId()).orElseThrow().getState())
+                .isEqualTo(ReservationState.RESERVED);
+        // AND only its copy is still taken
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isEqualTo(4);
+        // AND the metrics show the expired reservations, an empty backlog and the sweep
+        assertThat(meterRegistry.get("reservations.expired").counter().count() - expiredBefore).isEqualTo(3);
+        assertThat(meterRegistry.get("reservations.expiry.backlog").gauge().value()).isZero();
+        assertThat(meterRegistry.get("reservations.expiry.sweep").timer().count()).isPositive();
+    }
+
+    @Test
+    @DisplayName("An expired reservation can no longer be cancelled, and a cancelled one is not expired")
+    void expireReservations_whenRacingACancel_shouldReleaseEachCopyOnce() {
+        // GIVEN a book with two copies and two overdue reservations, one of which is cancelled
+        Book book = createBook(2);
+        Reservation cancelled = backdate(reservationService.addReservation(book.getId(), UUID.randomUUID()),
+                Duration.ofHours(2));
+        Reservation overdue = backdate(reservationService.addReservation(book.getId(), UUID.randomUUID()),
+                Duration.ofHours(2));
+        reservationService.cancelReservation(book.getId(), cancelled.getId());
+
+        // WHEN the sweeper runs
+        reservationExpirySweeper.expireReservations();
+
+        // THEN the cancelled reservation stays cancelled and every copy is available exactly once
+        assertThat(reservationRepository.findById(cancelled.getId()).orElseThrow().getState())
+                .isEqualTo(ReservationState.CANCELLED);
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isEqualTo(2);
+        // AND cancelling the expired reservation is a conflict that gives nothing back
+        assertThatThrownBy(() -> reservationService.cancelReservation(book.getId(), overdue.getId()))
+                .isInstanceOf(ConflictException.class)
+                .hasMessageContaining("expired");
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Copies that cannot be released should not keep the quota of the batch from being released")
+    void expireReservations_whenReleasingCopiesFails_shouldStillReleaseTheQuota() {
+        // GIVEN two books with an overdue reservation each, by different users
+        Book failingBook = createBook(1);
+        Book book = createBook(1);
+        UUID failingUserId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Reservation failing = backdate(reservationService.addReservation(failingBook.getId(), failingUserId),
+                Duration.ofHours(2));
+        Reservation overdue = backdate(reservationService.addReservation(book.getId(), userId), Duration.ofHours(2));
+        // AND the copies of the batch cannot be released
+        doThrow(new DataAccessResourceFailureException("Connection reset"))
+                .when(bookService).releaseCopies(Map.of(failingBook.getId(), 1, book.getId(), 1));
+
+        // WHEN the sweeper runs
+        reservationExpirySweeper.expireReservations();
+
+        // THEN both reservations are expired
+        assertThat(reservationRepository.findById(failing.getId()).orElseThrow().getState())
+                .isEqualTo(ReservationState.EXPIRED);
+        assertThat(reservationRepository.findById(overdue.getId()).orElseThrow().getState())
+                .isEqualTo(ReservationState.EXPIRED);
+        // AND both users get their quota back, the failed copies do not hold back the quota
+        assertThat(reservationQuotaRepository.findById(failingUserId))
+                .map(ReservationQuota::getActiveReservations)
+                .hasValue(0);
+        assertThat(reservationQuotaRepository.findById(userId))
+                .map(ReservationQuota::getActiveReservations)
+                .hasValue(0);
+    }
+
+    @Test
+    @DisplayName("Reservations of one book expired in a batch should give their copies back together")
+    void expireReservations_whenABatchHoldsOneBook_shouldReleaseItsCopiesAtOnce() {
+        // GIVEN a book with two overdue reservations, which fit in one batch
+        Book book = createBook(2);
+        backdate(reservationService.addReservation(book.getId(), UUID.randomUUID()), Duration.ofHours(2));
+        backdate(reservationService.addReservation(book.getId(), UUID.randomUUID()), Duration.ofHours(2));
+
+        // WHEN the sweeper runs
+        reservationExpirySweeper.expireReservations();
+
+        // THEN both copies are given back in a single release
+        verify(bookService).releaseCopies(Map.of(book.getId(), 2));
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("A full batch that expires nothing should not be read again by the same sweep")
+    void expireReservations_whenNoReservationOfABatchExpires_shouldMoveOnToTheNextBatch() {
+        // GIVEN three overdue reservations, more than a batch
+        Book book = createBook(3);
+        List<Reservation> overdue = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            overdue.add(backdate(reservationService.addReservation(book.getId(), UUID.randomUUID()),
+                    Duration.ofHours(2)));
+        }
+        // AND none of them can be expired
+        doThrow(new DataAccessResourceFailureException("Connection reset"))
+                .when(reservationRepository).transition(any(), any(), any(), any());
+
+        // WHEN the sweeper runs
+        reservationExpirySweeper.expireReservations();
+
+        // THEN it finishes after trying each reservation once
+        for (Reservation reservation : overdue) {
+            verify(reservationRepository).transition(book.getId(), reservation.getId(), ReservationState.RESERVED,
+                    ReservationState.EXPIRED);
+        }
+        // AND they are left for a later sweep
+        assertThat(meterRegistry.get("reservations.expiry.backlog").gauge().value()).isEqualTo(3);
+    }
+
+    private Book createBook(int copies) {
+        BookInput bookInput = new BookInput();
+        bookInput.setTitle("The Hobbit");
+        bookInput.setAuthor("J.R.R. Tolkien");
+        bookInput.setSynopsis("A hobbit goes on an adventure.");
+        bookInput.setCopies(copies);
+        return bookService.createBook(bookInput);
+    }
+
+    private Reservation backdate(Reservation reservation, Duration age) {
+        reservation.setReservedAt(Instant.now().minus(age));
+        return reservationRepository.save(reservation);
+    }
+}
@@ -0,0 +1,383 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.exception.BadResourceException;
+import com.bookapi.book_api.exception.ConflictException;
+import com.bookapi.book_api.exception.ResourceNotFoundException;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.Reservation;
+import com.bookapi.book_api.model.ReservationQuota;
+import com.bookapi.book_api.model.ReservationState;
+import com.bookapi.book_api.repository.BookRepository;
+import com.bookapi.book_api.repository.LegacyUuids;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+public class ReservationServiceIntegrationTest {
+
+    private static final int COPIES = 50;
+    private static final int RESERVERS = 300;
+    private static final int MAX_ACTIVE_RESERVATIONS = 5;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReservationQuotaRepository reservationQuotaRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        reservationQuotaRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Concurrent reservers of one book should get exactly as many reservations as there are copies")
+    void addReservation_whenManyReserveConcurrently_shouldNeverOverbook() throws Exception {
+        // GIVEN a hot book with a limited number of copies
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", COPIES));
+
+        // WHEN many more users than there are copies reserve it at the same time
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Reservation> reservations = runConcurrently(RESERVERS, () -> {
+            try {
+                return reservationService.addReservation(book.getId(), UUID.randomUUID());
+            } catch (ConflictException ex) {
+                conflicts.incrementAndGet();
+                return null;
+            }
+        });
+
+        // THEN every copy is reserved exactly once and every other reserver gets a conflict
+        assertThat(reservations).hasSize(COPIES);
+        assertThat(conflicts.get()).isEqualTo(RESERVERS - COPIES);
+        assertThat(reservationRepository.count()).isEqualTo(COPIES);
+        // AND no copy is left available
+        assertThat(bookRepository.findById(book.getId()))
+                .hasValueSatisfying(stored -> assertThat(stored.getAvailableCopies()).isZero());
+    }
+
+    @Test
+    @DisplayName("Concurrent and repeated cancellations should give every copy back exactly once")
+    void cancelReservation_whenCancelledConcurrently_shouldReturnEachCopyOnce() throws Exception {
+        // GIVEN a book whose copies are all reserved
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", COPIES));
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            reservations.add(reservationService.addReservation(book.getId(), UUID.randomUUID()));
+        }
+
+        // WHEN every reservation is cancelled twice at the same time
+        AtomicInteger attempt = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        runConcurrently(COPIES * 2, () -> {
+            Reservation reservation = reservations.get(attempt.getAndIncrement() % COPIES);
+            try {
+                return reservationService.cancelReservation(book.getId(), reservation.getId());
+            } catch (ConflictException ex) {
+                // The other cancellation already cancelled it
+                conflicts.incrementAndGet();
+                return null;
+            }
+        });
+
+        // THEN every reservation is cancelled once, is kept, and every copy is available again
+        assertThat(conflicts.get()).isEqualTo(COPIES);
+        assertThat(reservationRepository.findAll())
+                .hasSize(COPIES)
+                .allSatisfy(reservation -> {
+                    assertThat(reservation.getState()).isEqualTo(ReservationState.CANCELLED);
+                    assertThat(reservation.getClosedAt()).isNotNull();
+                });
+        assertThat(bookRepository.findById(book.getId()))
+                .hasValueSatisfying(stored -> assertThat(stored.getAvailableCopies()).isEqualTo(COPIES));
+    }
+
+    @Test
+    @DisplayName("A reservation cancelled and fulfilled at the same time should end up in exactly one of the states")
+    void cancelAndFulfil_whenCalledConcurrently_shouldApplyOnlyOneTransition() throws Exception {
+        // GIVEN a book whose copies are all reserved
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", COPIES));
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            reservations.add(reservationService.addReservation(book.getId(), UUID.randomUUID()));
+        }
+
+        // WHEN every reservation is cancelled and fulfilled at the same time
+        AtomicInteger attempt = new AtomicInteger();
+        List<Reservation> closed = runConcurrently(COPIES * 2, () -> {
+            int call = attempt.getAndIncrement();
+            UUID reservationId = reservations.get(call % COPIES).getId();
+            try {
+                return call < COPIES
+                        ? reservationService.cancelReservation(book.getId(), reservationId)
+                        : reservationService.fulfilReservation(book.getId(), reservationId);
+            } catch (ConflictException ex) {
+                return null;
+            }
+        });
+
+        // THEN each reservation is closed by exactly one of the calls
+        assertThat(closed).hasSize(COPIES);
+        long cancelled = closed.stream().filter(reservation -> reservation.getState() == ReservationState.CANCELLED).count();
+        assertThat(reservationRepository.findAll()).extracting(Reservation::getState)
+                .doesNotContain(ReservationState.RESERVED);
+        // AND only the cancelled ones gave their copy back
+        assertThat(bookRepository.findById(book.getId()))
+                .hasValueSatisfying(stored -> assertThat(stored.getAvailableCopies()).isEqualTo(cancelled));
+    }
+
+    @Test
+    @DisplayName("A reservation of another book should not be cancelled")
+    void cancelReservation_whenReservationBelongsToAnotherBook_shouldFail() {
+        // GIVEN a reservation of one book
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 1));
+        Book otherBook = bookRepository.save(new Book("Dune", "Frank Herbert", "Arrakis", 1));
+        Reservation reservation = reservationService.addReservation(book.getId(), UUID.randomUUID());
+
+        // WHEN it is cancelled through the other book
+        // THEN the call fails and the reservation stays active
+        assertThatThrownBy(() -> reservationService.cancelReservation(otherBook.getId(), reservation.getId()))
+                .isInstanceOf(BadResourceException.class);
+        assertThat(reservationRepository.findById(reservation.getId()))
+                .map(Reservation::getState).hasValue(ReservationState.RESERVED);
+        // AND a reservation that does not exist is not found
+        assertThatThrownBy(() -> reservationService.cancelReservation(book.getId(), UUID.randomUUID()))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Concurrent reservations of one user should never go past their quota")
+    void addReservation_whenOneUserReservesConcurrently_shouldStopAtTheQuota() throws Exception {
+        // GIVEN twenty books with a copy each
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            books.add(bookRepository.save(new Book("Book " + i, "Author", "Synopsis", 1)));
+        }
+        UUID userId = UUID.randomUUID();
+
+        // WHEN one user reserves all of them at the same time
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger calls = new AtomicInteger();
+        List<Reservation> reservations = runConcurrently(books.size(), () -> {
+            try {
+                return reservationService.addReservation(books.get(calls.getAndIncrement()).getId(), userId);
+            } catch (ConflictException ex) {
+                conflicts.incrementAndGet();
+                return null;
+            }
+        });
+
+        // THEN exactly the quota is reserved and the other calls conflict
+        assertThat(reservations).hasSize(MAX_ACTIVE_RESERVATIONS);
+        assertThat(conflicts.get()).isEqualTo(books.size() - MAX_ACTIVE_RESERVATIONS);
+        // AND the rejected calls took no copy
+        assertThat(bookRepository.findAll()).filteredOn(book -> book.getAvailableCopies() == 0)
+                .hasSize(MAX_ACTIVE_RESERVATIONS);
+
+        // WHEN one of the reservations is cancelled
+        reservationService.cancelReservation(reservations.get(0).getBookId(), reservations.get(0).getId());
+        // THEN the user may reserve another book
+        Book anotherBook = bookRepository.save(new Book("Another Book", "Author", "Synopsis", 1));
+        assertThat(reservationService.addReservation(anotherBook.getId(), userId).getState())
+                .isEqualTo(ReservationState.RESERVED);
+        assertThat(reservationQuotaRepository.findById(userId)).map(ReservationQuota::getActiveReservations)
+                .hasValue(MAX_ACTIVE_RESERVATIONS);
+    }
+
+    @Test
+    @DisplayName("A second active reservation of the same book by a user should conflict and give its copy back")
+    void addReservation_whenUserAlreadyReservedTheBook_shouldConflict() {
+        // GIVEN a book with two copies, one of them reserved by a user
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 2));
+        UUID userId = UUID.randomUUID();
+        reservationService.addReservation(book.getId(), userId);
+
+        // WHEN the user reserves it again
+        // THEN the reservation conflicts
+        assertThatThrownBy(() -> reservationService.addReservation(book.getId(), userId))
+                .isInstanceOf(ConflictException.class)
+                .hasMessageContaining("already has an active reservation");
+        // AND the second copy and the quota are given back
+        assertThat(bookRepository.findById(book.getId()))
+                .hasValueSatisfying(stored -> assertThat(stored.getAvailableCopies()).isEqualTo(1));
+        assertThat(reservationQuotaRepository.findById(userId)).map(ReservationQuota::getActiveReservations)
+                .hasValue(1);
+    }
+
+    @Test
+    @DisplayName("An active reservation stored with legacy UUIDs should make a second one of the same book conflict")
+    void addReservation_whenUserHasALegacyActiveReservation_shouldConflict() {
+        // GIVEN a book with two copies, one of them reserved by a user before UUIDs were migrated
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 2));
+        UUID userId = UUID.randomUUID();
+        mongoTemplate.getDb().getCollection("reservations", BsonDocument.class)
+                .insertOne(new BsonDocument("_id", LegacyUuids.legacy(UUID.randomUUID()))
+                .append("bookId", LegacyUuids.legacy(book.getId()))
+                .append("userId", LegacyUuids.legacy(userId))
+                .append("state", new BsonInt32(ReservationState.RESERVED.getCode())));
+
+        // WHEN the user reserves it again
+        // THEN the reservation conflicts, which the unique index cannot tell across representations
+        assertThatThrownBy(() -> reservationService.addReservation(book.getId(), userId))
+                .isInstanceOf(ConflictException.class)
+                .hasMessageContaining("already has an active reservation");
+        // AND the second copy is left available
+        assertThat(bookRepository.findById(book.getId()))
+                .hasValueSatisfying(stored -> assertThat(stored.getAvailableCopies()).isEqualTo(2));
+    }
+
+    @Test
+    @DisplayName("The quota reconciliation should count the active reservations made before quotas were counted")
+    void reconcile_whenNoCountersExist_shouldCountTheActiveReservationsOfEveryUser() {
+        // GIVEN two active reservations and a cancelled one of a user, saved without counting them
+        UUID userId = UUID.randomUUID();
+        reservationRepository.save(new Reservation(UUID.randomUUID(), userId));
+        reservationRepository.save(new Reservation(UUID.randomUUID(), userId));
+        Reservation cancelled = new Reservation(UUID.randomUUID(), userId);
+        cancelled.setState(ReservationState.CANCELLED);
+        reservationRepository.save(cancelled);
+
+        // WHEN the counters are reconciled, twice
+        reservationQuotaRepository.reconcile();
+        reservationQuotaRepository.reconcile();
+
+        // THEN only the active reservations are counted, once
+        assertThat(reservationQuotaRepository.findById(userId)).map(ReservationQuota::getActiveReservations)
+                .hasValue(2);
+    }
+
+    @Test
+    @DisplayName("The quota reconciliation should correct counters that drifted from the active reservations")
+    void reconcile_whenCountersDrifted_shouldSetThemToTheActiveReservations() {
+        // GIVEN a user with one active reservation whose counter says three
+        UUID userId = UUID.randomUUID();
+        reservationRepository.save(new Reservation(UUID.randomUUID(), userId));
+        ReservationQuota drifted = new ReservationQuota();
+        drifted.setUserId(userId);
+        drifted.setActiveReservations(3);
+        reservationQuotaRepository.save(drifted);
+        // AND a user without active reservations whose counter says two
+        ReservationQuota released = new ReservationQuota();
+        released.setUserId(UUID.randomUUID());
+        released.setActiveReservations(2);
+        reservationQuotaRepository.save(released);
+
+        // WHEN the counters are reconciled
+        long corrected = reservationQuotaRepository.reconcile();
+
+        // THEN both counters are set to the active reservations of their user
+        assertThat(corrected).isEqualTo(2);
+        assertThat(reservationQuotaRepository.findById(userId)).map(ReservationQuota::getActiveReservations)
+                .hasValue(1);
+        assertThat(reservationQuotaRepository.findById(released.getUserId()))
+                .map(ReservationQuota::getActiveReservations)
+                .hasValue(0);
+    }
+
+    @Test
+    @DisplayName("The copies backfill should leave the copies held by active reservations unavailable")
+    void backfillCopies_whenBooksWereReservedBeforeCopiesWereTracked_shouldCountTheirActiveReservations() {
+        // GIVEN two books stored before copies were tracked, one of them with two active reservations
+        UUID reservedBookId = UUID.randomUUID();
+        UUID bookId = UUID.randomUUID();
+        for (UUID id : List.of(reservedBookId, bookId)) {
+            mongoTemplate.getDb().getCollection("books", BsonDocument.class)
+                    .insertOne(new BsonDocument("_id", new BsonBinary(id)).append("title", new BsonString("The Hobbit")));
+        }
+        reservationRepository.save(new Reservation(reservedBookId, UUID.randomUUID()));
+        reservationRepository.save(new Reservation(reservedBookId, UUID.randomUUID()));
+
+        // WHEN their copies are backfilled
+        long backfilled = bookRepository.backfillCopies(1);
+
+        // THEN both get a copy, only available where no reservation holds it
+        assertThat(backfilled).isEqualTo(2);
+        assertThat(bookRepository.findById(reservedBookId)).hasValueSatisfying(book -> {
+            assertThat(book.getCopies()).isEqualTo(1);
+            assertThat(book.getAvailableCopies()).isZero();
+        });
+        assertThat(bookRepository.findById(bookId)).map(Book::getAvailableCopies).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Returning copies should never make more copies available than the book has")
+    void returnCopies_whenEveryCopyIsAvailable_shouldNotReturnMore() {
+        // GIVEN a book with two copies, one of them reserved
+        Book book = bookRepository.save(new Book("The Hobbit", "J.R.R.Tolkien", "An Unexpected Journey", 2));
+        reservationService.addReservation(book.getId(), UUID.randomUUID());
+
+        // WHEN more copies are returned than are reserved
+        // THEN none of them are returned
+        assertThat(bookRepository.returnCopies(book.getId(), 2)).isFalse();
+        assertThat(bookRepository.findById(book.getId())).map(Book::getAvailableCopies).hasValue(1);
+        // AND the reserved copy can still be returned
+        assertThat(bookRepository.returnCopy(book.getId())).isTrue();
+        assertThat(bookRepository.findById(book.getId())).map(Book::getAvailableCopies).hasValue(2);
+    }
+
+    /**
+     * Runs the task on as many threads as there are calls, released together so they contend for the same book.
+     *
+     * @return the non-null results of the calls.
+     */
+    private <T> List<T> runConcurrently(int calls, Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(calls);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                T result = future.get(30, TimeUnit.SECONDS);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
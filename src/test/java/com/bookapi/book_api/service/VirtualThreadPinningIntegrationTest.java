@@ -0,0 +1,143 @@
+package com.bookapi.book_api.service;
+
+import com.bookapi.book_api.dto.generated.BookInput;
+import com.bookapi.book_api.model.Book;
+import com.bookapi.book_api.model.User;
+import com.bookapi.book_api.repository.BookRepository;
+import com.bookapi.book_api.repository.ReservationQuotaRepository;
+import com.bookapi.book_api.repository.ReservationRepository;
+import com.bookapi.book_api.repository.UserRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the services called by request handlers on virtual threads, as they are with
+ * {@code spring.threads.virtual.enabled=true}, and fails when a virtual thread blocks while pinned to its
+ * carrier, e.g. on database I/O inside a {@code synchronized} block.
+ */
+// The requests of a user run at the same time, the quota must not turn them away
+@SpringBootTest(properties = {"spring.threads.virtual.enabled=true", "book-api.reservation-quota.max-active=200"})
+public class VirtualThreadPinningIntegrationTest {
+
+    private static final int REQUESTS = 200;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private CustomOidcUserService customOidcUserService;
+
+    @Autowired
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReservationQuotaRepository reservationQuotaRepository;
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+        reservationQuotaRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Request handling services should never block a pinned virtual thread")
+    void services_whenCalledOnVirtualThreads_shouldNotPinCarrierThreads() throws Exception {
+        // GIVEN a recording of every park of a pinned virtual thread, however short
+        List<String> pinnedStacks = new CopyOnWriteArrayList<>();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", event -> pinnedStacks.add(format(event)));
+            recording.startAsync();
+
+            // WHEN many concurrent logins, book writes, reads, suggestions and reservations run on virtual threads
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> requests = new ArrayList<>();
+                for (int i = 0; i < REQUESTS; i++) {
+                    int request = i;
+                    requests.add(executor.submit(() -> handleRequest(request)));
+                }
+                for (Future<?> request : requests) {
+                    request.get();
+                }
+            }
+            recording.stop();
+        }
+
+        // THEN no virtual thread was pinned while it waited
+        assertThat(pinnedStacks).as("Pinned virtual thread stacks").isEmpty();
+    }
+
+    private void handleRequest(int request) {
+        // The login path, where every request resolves the same few users
+        OidcUser oidcUser = mock(OidcUser.class);
+        when(oidcUser.getEmail()).thenReturn("user" + request % 10 + "@example.com");
+        when(oidcUser.getName()).thenReturn("User " + request % 10);
+        User user = customOidcUserService.processUserRegistration(oidcUser);
+
+        // The book endpoints, including concurrent cache misses and the first estimated count
+        BookInput bookInput = new BookInput();
+        bookInput.setTitle("Book " + request);
+        bookInput.setAuthor("Author");
+        bookInput.setSynopsis("Synopsis");
+        bookInput.setCopies(2);
+        Book book = bookService.createBook(bookInput);
+        bookService.findBookById(book.getId());
+        bookService.estimateBookCount();
+        bookService.suggestBooks("book", 10);
+
+        // The reservation endpoints
+        UUID reservationId = reservationService.addReservation(book.getId(), user.getId()).getId();
+        reservationService.findReservationById(book.getId(), reservationId);
+        reservationService.cancelReservation(book.getId(), reservationId);
+
+        // A periodic rebuild of the suggestions running alongside the requests
+        if (request % 50 == 0) {
+            bookSuggestionIndex.rebuild();
+        }
+    }
+
+    private static String format(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "(no stack trace)";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .map(RecordedFrame::getMethod)
+                .map(method -> method.getType().getName() + "." + method.getName())
+                .collect(Collectors.joining("\n\tat ", "Pinned at ", ""));
+    }
+}